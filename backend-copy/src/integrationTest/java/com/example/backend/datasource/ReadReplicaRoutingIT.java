@@ -0,0 +1,119 @@
+package com.example.backend.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Маршрутизация на двух отдельных PostgreSQL. Второй сервер не в режиме восстановления, поэтому
+ * монитор считает его актуальным; отказ реплики проверяется закрытием ее пула.
+ */
+@Testcontainers
+public class ReadReplicaRoutingIT {
+
+    @Container
+    private static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Container
+    private static final PostgreSQLContainer<?> REPLICA = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private HikariDataSource primaryPool;
+    private HikariDataSource replicaPool;
+    private ReplicaLagMonitor replicaLagMonitor;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeAll
+    public static void markNodes() {
+        for (PostgreSQLContainer<?> node : new PostgreSQLContainer<?>[] {PRIMARY, REPLICA}) {
+            try (HikariDataSource dataSource = pool(node, "setup")) {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+                jdbcTemplate.execute("CREATE TABLE node (name TEXT)");
+                jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", node == PRIMARY ? "primary" : "replica");
+            }
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        primaryPool = pool(PRIMARY, "primary");
+        replicaPool = pool(REPLICA, "replica");
+        replicaPool.setReadOnly(true);
+        replicaLagMonitor = new ReplicaLagMonitor(primaryPool, replicaPool, 2000);
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(primaryPool, replicaPool,
+                replicaLagMonitor);
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        primaryPool.close();
+        replicaPool.close();
+    }
+
+    @Test
+    public void beforeFirstCheck_ReadsFromPrimary() {
+        assertFalse(replicaLagMonitor.isReplicaUsable());
+        assertEquals("primary", readOnly.execute(status -> currentNode()));
+    }
+
+    @Test
+    public void replicaInSync_ReadOnlyGoesToReplica() {
+        replicaLagMonitor.check();
+
+        assertTrue(replicaLagMonitor.isReplicaUsable());
+        assertEquals(0, replicaLagMonitor.getLagMs());
+        assertEquals("replica", readOnly.execute(status -> currentNode()));
+        assertEquals("primary", readWrite.execute(status -> currentNode()));
+        assertEquals("primary", currentNode());
+    }
+
+    @Test
+    public void replicaDown_FallsBackToPrimary() {
+        replicaLagMonitor.check();
+        replicaPool.close();
+
+        replicaLagMonitor.check();
+
+        assertFalse(replicaLagMonitor.isReplicaUsable());
+        assertEquals(ReplicaLagMonitor.UNKNOWN, replicaLagMonitor.getLagMs());
+        assertEquals("primary", readOnly.execute(status -> currentNode()));
+    }
+
+    private String currentNode() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static HikariDataSource pool(PostgreSQLContainer<?> node, String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(node.getJdbcUrl());
+        dataSource.setUsername(node.getUsername());
+        dataSource.setPassword(node.getPassword());
+        dataSource.setPoolName("it-" + name);
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+}
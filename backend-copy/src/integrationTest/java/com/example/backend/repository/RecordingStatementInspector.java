@@ -0,0 +1,31 @@
+package com.example.backend.repository;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Запоминает SQL, который Hibernate отправляет в базу, чтобы тест мог выполнить по нему EXPLAIN.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    public static String last() {
+        if (STATEMENTS.isEmpty()) {
+            throw new IllegalStateException("No SQL statements were recorded");
+        }
+        return STATEMENTS.get(STATEMENTS.size() - 1);
+    }
+}
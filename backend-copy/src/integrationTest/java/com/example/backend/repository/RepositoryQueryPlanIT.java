@@ -0,0 +1,339 @@
+package com.example.backend.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanNode;
+import com.example.backend.service.partition.MonthlyPartitions;
+import com.example.backend.service.plan.PlanParser;
+
+/**
+ * EXPLAIN для SQL, который Hibernate генерирует по каждому методу репозиториев, на схеме из миграций
+ * Flyway и данных объемом как в production: 2 млн сообщений, 500 тыс. запросов. Проверяет, что
+ * запросы идут по индексам V8, а не полным просмотром больших таблиц и не сортировкой, и что
+ * секции messages и sql_queries старше чата отсекаются.
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class RepositoryQueryPlanIT {
+
+    private static final long USER_ID = 42L;
+    // Чат c принадлежит пользователю 2 + c % 1000
+    private static final long CHAT_ID = 4040L;
+    // Данные занимают последние ~23 дня, то есть текущий и прошлый месяц
+    private static final LocalDateTime SINCE = YearMonth.now().minusMonths(1).atDay(1).atStartOfDay();
+    private static final Set<String> LARGE_TABLES = Set.of("chats", "messages", "sql_queries", "sql_query_tables",
+            "database_connections");
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private SqlQueryRepository sqlQueryRepository;
+
+    @Autowired
+    private DatabaseConnectionRepository databaseConnectionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final PlanParser planParser = new PlanParser();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.flyway.enabled", () -> "false");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                RecordingStatementInspector.class::getName);
+    }
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword()); Statement statement = connection.createStatement()) {
+            // Миграция создает секции с текущего месяца
+            statement.execute("SELECT create_monthly_partition('messages', (now() - interval '1 month')::date)");
+            statement.execute("SELECT create_monthly_partition('sql_queries', (now() - interval '1 month')::date)");
+            statement.execute("""
+                    INSERT INTO users (id, username, email, password)
+                    SELECT u, 'user' || u, 'user' || u || '@example.com', 'x' FROM generate_series(2, 1001) u""");
+            statement.execute("""
+                    INSERT INTO chats (id, user_id, title, created_at, updated_at)
+                    SELECT c, 2 + c % 1000, 'chat ' || c, now() - c * interval '1 minute',
+                           now() - (c % 997) * interval '1 minute'
+                    FROM generate_series(1, 50000) c""");
+            statement.execute("""
+                    INSERT INTO messages (id, chat_id, content, is_from_user, created_at)
+                    SELECT m, 1 + m % 50000, 'message ' || m, m % 2 = 0, now() - m * interval '1 second'
+                    FROM generate_series(1, 2000000) m""");
+            statement.execute("""
+                    INSERT INTO database_connections (id, user_id, chat_id, name, db_type, host, port, database_name,
+                                                      username, password, is_active)
+                    SELECT d, 2 + (1 + d % 50000) % 1000, 1 + d % 50000, 'connection ' || d, 'postgresql',
+                           'localhost', 5432, 'db', 'user', 'password', d % 3 = 0
+                    FROM generate_series(1, 150000) d""");
+            statement.execute("""
+                    INSERT INTO sql_queries (id, message_id, user_id, original_query, optimized_query,
+                                             fingerprint, statement_type, original_execution_time_ms,
+                                             execution_time_ms, created_at)
+                    SELECT q, q * 4, 2 + (1 + (q * 4) % 50000) % 1000, 'SELECT ' || q, 'SELECT ' || q,
+                           CASE WHEN q % 10 <> 0 THEN q % 50 END, 'SELECT', 100 + q % 900, 50 + q % 400,
+                           now() - (q * 4) * interval '1 second' + interval '1 second'
+                    FROM generate_series(1, 500000) q""");
+            statement.execute("""
+                    INSERT INTO sql_query_tables (sql_query_id, table_name)
+                    SELECT q, 't' || q % 100 FROM generate_series(1, 500000) q
+                    UNION ALL
+                    SELECT q, 'orders' FROM generate_series(1, 500000, 7) q""");
+            // Статистика для планировщика и карта видимости для Index Only Scan
+            statement.execute("VACUUM ANALYZE");
+        }
+    }
+
+    @BeforeEach
+    public void clearStatements() {
+        RecordingStatementInspector.clear();
+    }
+
+    @Test
+    public void chatsOfUser_UseCompositeIndexWithoutSort() {
+        chatRepository.findByUserIdOrderByUpdatedAtDesc(USER_ID);
+
+        ExecutionPlan plan = explain(USER_ID);
+        assertUsesIndex(plan, "idx_chats_user_updated");
+        assertNoSort(plan);
+    }
+
+    @Test
+    public void chatOfUser_UsesPrimaryKey() {
+        chatRepository.findByIdAndUserId(CHAT_ID, USER_ID);
+
+        assertUsesIndex(explain(CHAT_ID, USER_ID), "chats_pkey");
+    }
+
+    @Test
+    public void chatMessages_UseCompositeIndexWithoutSort() {
+        messageRepository.findByChatIdOrderByCreatedAtAsc(CHAT_ID, SINCE);
+
+        ExecutionPlan plan = explain(CHAT_ID, SINCE);
+        assertUsesIndex(plan, "idx_messages_chat_created");
+        assertNoSort(plan);
+        // Лента не читает запросы сообщений
+        assertFalse(relations(plan).stream().anyMatch(relation -> relation.startsWith("sql_queries")),
+                relations(plan).toString());
+    }
+
+    @Test
+    public void chatHistory_SkipsPartitionsOlderThanChat() {
+        LocalDateTime since = MonthlyPartitions.lowerBound(LocalDateTime.now());
+        String previousMessages = MonthlyPartitions.partitionName("messages", YearMonth.now().minusMonths(1));
+        String previousQueries = MonthlyPartitions.partitionName("sql_queries", YearMonth.now().minusMonths(1));
+
+        messageRepository.findByChatIdOrderByCreatedAtAsc(CHAT_ID, since);
+        Set<String> relations = relations(explain(CHAT_ID, since));
+        assertFalse(relations.contains(previousMessages), relations.toString());
+
+        sqlQueryRepository.findByMessageChatIdOrderByCreatedAtDesc(CHAT_ID, since);
+        relations = relations(explain(CHAT_ID, since, since));
+        assertFalse(relations.contains(previousMessages), relations.toString());
+        assertFalse(relations.contains(previousQueries), relations.toString());
+    }
+
+    @Test
+    public void chatQueries_AreFoundThroughChatMessages() {
+        sqlQueryRepository.findByMessageChatIdOrderByCreatedAtDesc(CHAT_ID, SINCE);
+
+        ExecutionPlan plan = explain(CHAT_ID, SINCE, SINCE);
+        assertUsesIndex(plan, "idx_messages_chat_created");
+        assertUsesIndex(plan, "idx_sql_queries_message_id");
+    }
+
+    @Test
+    public void chatSummary_UsesPrimaryKey() {
+        chatRepository.findSummaryByIdAndUserId(CHAT_ID, USER_ID);
+
+        assertUsesIndex(explain(CHAT_ID, USER_ID), "chats_pkey");
+    }
+
+    @Test
+    public void activeConnections_UsePartialIndex() {
+        databaseConnectionRepository.findByChatIdAndActiveTrue(CHAT_ID);
+
+        assertUsesIndex(explain(CHAT_ID), "idx_database_connections_chat_active");
+    }
+
+    @Test
+    public void activeConnectionViews_UsePartialIndex() {
+        databaseConnectionRepository.findViewsByChatId(CHAT_ID);
+
+        assertUsesIndex(explain(CHAT_ID), "idx_database_connections_chat_active");
+    }
+
+    @Test
+    public void connectionOfChat_UsesPrimaryKey() {
+        databaseConnectionRepository.findByIdAndChatId(CHAT_ID, CHAT_ID);
+
+        assertUsesIndex(explain(CHAT_ID, CHAT_ID), "database_connections_pkey");
+    }
+
+    @Test
+    public void userByUsername_UsesUniqueIndex() {
+        userRepository.findByUsername("user42");
+
+        assertUsesIndex(explain("user42"), "users_username_key");
+    }
+
+    @Test
+    public void topFingerprints_AreReadFromIndexOnly() {
+        sqlQueryRepository.findTopFingerprints(USER_ID, 10);
+
+        ExecutionPlan plan = explain(USER_ID, 10);
+        assertIndexOnly(plan, "idx_sql_queries_user_fingerprint");
+    }
+
+    @Test
+    public void topFingerprintsByTable_UseFingerprintAndTableIndexes() {
+        sqlQueryRepository.findTopFingerprintsByTable(USER_ID, "orders", 10);
+
+        ExecutionPlan plan = explain(USER_ID, "orders", 10);
+        assertUsesIndex(plan, "idx_sql_queries_user_fingerprint");
+    }
+
+    @Test
+    public void fingerprintStats_AreReadFromIndexOnly() {
+        sqlQueryRepository.findFingerprintStats(USER_ID, 7L);
+
+        assertIndexOnly(explain(USER_ID, 7L), "idx_sql_queries_user_fingerprint");
+    }
+
+    @Test
+    public void fingerprintSamples_UsePrimaryKeys() {
+        sqlQueryRepository.findSamplesByIdIn(List.of(1L, 2L, 3L));
+
+        ExecutionPlan plan = explain(1L, 2L, 3L);
+        assertUsesIndex(plan, "sql_queries_pkey");
+        assertUsesIndex(plan, "sql_query_tables_pkey");
+    }
+
+    /**
+     * EXPLAIN последнего запроса Hibernate с теми же значениями параметров.
+     */
+    private ExecutionPlan explain(Object... parameters) {
+        String sql = RecordingStatementInspector.last();
+        assertEquals(parameters.length, sql.chars().filter(c -> c == '?').count(), sql);
+        String json = new JdbcTemplate(dataSource).queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class,
+                parameters);
+        ExecutionPlan plan = planParser.parse(json);
+        for (PlanNode node : plan.getNodes()) {
+            assertFalse(node.isSeqScan() && node.getRelationName() != null
+                            && LARGE_TABLES.contains(node.getRelationName().replaceAll("_p\\d{4}_\\d{2}$", "")),
+                    "Seq Scan on " + node.getRelationName() + " for " + sql + "\n" + json);
+        }
+        return plan;
+    }
+
+    private Set<String> relations(ExecutionPlan plan) {
+        return plan.getNodes().stream()
+                .map(PlanNode::getRelationName)
+                .filter(name -> name != null)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Индекс секции сводится к индексу секционированной таблицы, от которого он создан.
+     */
+    private String parentIndex(String indexName) {
+        List<String> parents = new JdbcTemplate(dataSource).queryForList("""
+                SELECT p.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE c.relname = ?
+                """, String.class, indexName);
+        return parents.isEmpty() ? indexName : parents.get(0);
+    }
+
+    private void assertUsesIndex(ExecutionPlan plan, String indexName) {
+        Set<String> indexes = plan.getNodes().stream()
+                .map(PlanNode::getIndexName)
+                .filter(name -> name != null)
+                .map(this::parentIndex)
+                .collect(Collectors.toSet());
+        assertTrue(indexes.contains(indexName), indexName + " is not used, plan indexes: " + indexes);
+    }
+
+    private void assertIndexOnly(ExecutionPlan plan, String indexName) {
+        assertTrue(plan.getNodes().stream().anyMatch(node -> "Index Only Scan".equals(node.getNodeType())
+                        && node.getIndexName() != null && indexName.equals(parentIndex(node.getIndexName()))),
+                "No Index Only Scan using " + indexName);
+    }
+
+    private void assertNoSort(ExecutionPlan plan) {
+        assertTrue(plan.getNodes().stream().noneMatch(node -> "Sort".equals(node.getNodeType())),
+                "Plan has a Sort node");
+    }
+
+    @TestConfiguration
+    static class ContainerDataSourceConfig {
+
+        // DatabaseConfig задает подключение в коде; в тесте приоритет у контейнера
+        @Bean
+        @Primary
+        DataSource containerDataSource() {
+            DataSourceProperties properties = new DataSourceProperties();
+            properties.setUrl(POSTGRES.getJdbcUrl());
+            properties.setUsername(POSTGRES.getUsername());
+            properties.setPassword(POSTGRES.getPassword());
+            return properties.initializeDataSourceBuilder().build();
+        }
+    }
+}
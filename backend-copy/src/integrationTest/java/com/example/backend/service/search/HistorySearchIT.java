@@ -0,0 +1,208 @@
+package com.example.backend.service.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.backend.model.dto.SearchHitDto;
+import com.example.backend.model.dto.SearchPageDto;
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanNode;
+import com.example.backend.service.plan.PlanParser;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Поиск на схеме из миграций: 500 тыс. сообщений и 100 тыс. запросов 500 пользователей. Проверяет
+ * область видимости, подстроки идентификаторов, тела в content_blobs, страницы без повторов
+ * и то, что ветки поиска идут по GIN-индексам V12, а не полным просмотром.
+ */
+@Testcontainers
+public class HistorySearchIT {
+
+    private static final long USER_ID = 42L;
+    // Чат c принадлежит пользователю 2 + c % 500; 40 — чат пользователя 42, 41 — пользователя 43
+    private static final long CHAT_ID = 40L;
+    private static final long OTHER_CHAT_ID = 41L;
+    private static final Set<String> LARGE_TABLES = Set.of("messages", "sql_queries", "content_blobs");
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static HikariDataSource dataSource;
+    private static HistorySearchService historySearchService;
+
+    @BeforeAll
+    static void migrateAndSeed() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(POSTGRES.getJdbcUrl());
+        dataSource.setUsername(POSTGRES.getUsername());
+        dataSource.setPassword(POSTGRES.getPassword());
+        historySearchService = new HistorySearchService(new NamedParameterJdbcTemplate(dataSource));
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("SELECT create_monthly_partition('messages', (now() - interval '1 month')::date)");
+        jdbcTemplate.execute("SELECT create_monthly_partition('sql_queries', (now() - interval '1 month')::date)");
+        jdbcTemplate.execute("""
+                INSERT INTO users (id, username, email, password)
+                SELECT u, 'user' || u, 'user' || u || '@example.com', 'x' FROM generate_series(2, 501) u""");
+        jdbcTemplate.execute("""
+                INSERT INTO chats (id, user_id, title, created_at, updated_at)
+                SELECT c, 2 + c % 500, 'chat ' || c, now() - interval '40 days', now()
+                FROM generate_series(1, 20000) c""");
+        jdbcTemplate.execute("""
+                INSERT INTO messages (id, chat_id, content, is_from_user, created_at)
+                SELECT m, 1 + m % 20000, 'SELECT * FROM t' || m % 100 || ' WHERE id = ' || m, m % 2 = 0,
+                       now() - m * interval '1 second'
+                FROM generate_series(1, 500000) m""");
+        jdbcTemplate.execute("""
+                INSERT INTO sql_queries (id, message_id, user_id, original_query, optimized_query, created_at)
+                SELECT q, q * 4, 2 + (1 + (q * 4) % 20000) % 500, 'SELECT id FROM orders_' || q % 1000,
+                       'SELECT id FROM orders_' || q % 1000 || ' LIMIT 10', now() - (q * 4) * interval '1 second'
+                FROM generate_series(1, 100000) q""");
+        jdbcTemplate.update("""
+                INSERT INTO messages (id, chat_id, content, is_from_user, created_at) VALUES
+                    (600001, ?, 'join orders with order_items on order_id', true, now()),
+                    (600002, ?, 'join orders with order_items on order_id', true, now())""",
+                CHAT_ID, OTHER_CHAT_ID);
+        jdbcTemplate.update("""
+                INSERT INTO sql_queries (id, message_id, user_id, original_query, created_at)
+                VALUES (100001, 600001, ?, 'SELECT * FROM orders o JOIN order_items i ON i.order_id = o.id', now())""",
+                USER_ID);
+        // Длинный ответ, сохраненный блоком без сжатия
+        String body = "Use a covering index on shipments (carrier_id, shipped_at) ".repeat(100);
+        jdbcTemplate.update("""
+                INSERT INTO content_blobs (id, hash, codec, original_length, data, search_vector)
+                VALUES (1, sha256(convert_to(?, 'UTF8')), 'none', octet_length(convert_to(?, 'UTF8')),
+                        convert_to(?, 'UTF8'), to_tsvector('simple', ?))""", body, body, body, body);
+        jdbcTemplate.update("""
+                INSERT INTO messages (id, chat_id, content_blob_id, is_from_user, created_at)
+                VALUES (600003, ?, 1, false, now())""", CHAT_ID);
+        jdbcTemplate.execute("VACUUM ANALYZE");
+    }
+
+    @AfterAll
+    static void closePool() {
+        dataSource.close();
+    }
+
+    @Test
+    public void search_FindsOnlyOwnMessagesAndQueries() {
+        List<SearchHitDto> hits = historySearchService.search(USER_ID, "orders order_items", null, 20).getHits();
+
+        assertEquals(Set.of("MESSAGE:600001", "QUERY:100001"), keys(hits));
+        SearchHitDto query = hits.stream().filter(hit -> "QUERY".equals(hit.getType())).findFirst().orElseThrow();
+        assertEquals(CHAT_ID, query.getChatId());
+        assertTrue(query.getSnippet().contains("<b>orders</b>"), query.getSnippet());
+    }
+
+    @Test
+    public void search_IdentifierSubstring_MatchesByTrigram() {
+        List<SearchHitDto> hits = historySearchService.search(USER_ID, "order_ite", null, 20).getHits();
+
+        assertEquals(Set.of("MESSAGE:600001", "QUERY:100001"), keys(hits));
+    }
+
+    @Test
+    public void search_LongBodyInBlob_Found() {
+        List<SearchHitDto> hits = historySearchService.search(USER_ID, "shipments carrier_id", null, 20).getHits();
+
+        assertEquals(Set.of("MESSAGE:600003"), keys(hits));
+        assertTrue(hits.get(0).getSnippet().startsWith("Use a covering index"));
+    }
+
+    @Test
+    public void search_KeysetPages_CoverAllHitsOnce() {
+        Long expected = new JdbcTemplate(dataSource).queryForObject("""
+                SELECT count(*) FROM messages m JOIN chats c ON c.id = m.chat_id
+                WHERE c.user_id = ? AND m.content LIKE '%t39 %'""", Long.class, USER_ID);
+        Set<String> seen = new HashSet<>();
+        int pages = 0;
+        String cursor = null;
+        double previousRank = Double.MAX_VALUE;
+        do {
+            SearchPageDto page = historySearchService.search(USER_ID, "t39", cursor, 50);
+            for (SearchHitDto hit : page.getHits()) {
+                assertTrue(seen.add(hit.getType() + ":" + hit.getId()), "Duplicate " + hit.getId());
+                assertTrue(hit.getRank() <= previousRank);
+                previousRank = hit.getRank();
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expected, (long) seen.size());
+        assertTrue(pages > 1);
+    }
+
+    @Test
+    public void search_NoMatches_EmptyLastPage() {
+        SearchPageDto page = historySearchService.search(USER_ID, "nonexistentword", null, 20);
+
+        assertTrue(page.getHits().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void search_UsesGinIndexes() {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", USER_ID)
+                .addValue("query", "orders")
+                .addValue("pattern", "%orders%")
+                .addValue("limit", 21);
+        String json = new NamedParameterJdbcTemplate(dataSource).queryForObject(
+                "EXPLAIN (FORMAT JSON) " + HistorySearchService.sql(true, false), params, String.class);
+        ExecutionPlan plan = new PlanParser().parse(json);
+
+        for (PlanNode node : plan.getNodes()) {
+            assertFalse(node.isSeqScan() && node.getRelationName() != null
+                            && LARGE_TABLES.contains(node.getRelationName().replaceAll("_p\\d{4}_\\d{2}$", "")),
+                    "Seq Scan on " + node.getRelationName() + "\n" + json);
+        }
+        Set<String> indexes = plan.getNodes().stream()
+                .map(PlanNode::getIndexName)
+                .filter(name -> name != null)
+                .map(HistorySearchIT::parentIndex)
+                .collect(Collectors.toSet());
+        assertTrue(indexes.containsAll(Set.of("idx_messages_chat_search", "idx_sql_queries_user_search",
+                "idx_content_blobs_search")), indexes.toString());
+    }
+
+    private static Set<String> keys(List<SearchHitDto> hits) {
+        return hits.stream().map(hit -> hit.getType() + ":" + hit.getId()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Индекс секции сводится к индексу секционированной таблицы, от которого он создан.
+     */
+    private static String parentIndex(String indexName) {
+        List<String> parents = new JdbcTemplate(dataSource).queryForList("""
+                SELECT p.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE c.relname = ?
+                """, String.class, indexName);
+        return parents.isEmpty() ? indexName : parents.get(0);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.backend.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.backend.model.entity.EntityIds;
+
+/**
+ * Вставки в том виде, в каком их отправляет Hibernate: IDENTITY (INSERT на каждую строку с возвратом
+ * ключа) против pooled-lo (один nextval на блок, вставки пакетами). Сценарии: сохранение результата
+ * оптимизации (сообщение пользователя, ответ, sql_queries) и импорт 1000 сообщений одной транзакцией.
+ * По умолчанию H2 в памяти; на PostgreSQL разница заметнее, там каждый запрос — сетевой round trip:
+ * BENCH_JDBC_URL=jdbc:postgresql://localhost:5432/bench?reWriteBatchedInserts=true BENCH_JDBC_USER=postgres
+ * BENCH_JDBC_PASSWORD=postgres ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    private static final int IMPORT_SIZE = 1000;
+    private static final String CONTENT = "SELECT o.id, o.amount FROM orders o WHERE o.status = 'NEW'";
+
+    private Connection connection;
+    private long nextId;
+    private long lastId = -1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                env("BENCH_JDBC_URL", "jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"),
+                env("BENCH_JDBC_USER", "sa"),
+                env("BENCH_JDBC_PASSWORD", ""));
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_identity_queries");
+            statement.execute("DROP TABLE IF EXISTS bench_identity_messages");
+            statement.execute("DROP TABLE IF EXISTS bench_pooled_queries");
+            statement.execute("DROP TABLE IF EXISTS bench_pooled_messages");
+            statement.execute("DROP SEQUENCE IF EXISTS bench_pooled_seq");
+            statement.execute("CREATE TABLE bench_identity_messages (id BIGSERIAL PRIMARY KEY, chat_id BIGINT NOT NULL, "
+                    + "content TEXT NOT NULL, is_from_user BOOLEAN NOT NULL, created_at TIMESTAMP NOT NULL)");
+            statement.execute("CREATE TABLE bench_identity_queries (id BIGSERIAL PRIMARY KEY, "
+                    + "message_id BIGINT NOT NULL REFERENCES bench_identity_messages(id), original_query TEXT NOT NULL, "
+                    + "created_at TIMESTAMP NOT NULL)");
+            statement.execute("CREATE SEQUENCE bench_pooled_seq INCREMENT BY " + EntityIds.ALLOCATION_SIZE);
+            statement.execute("CREATE TABLE bench_pooled_messages (id BIGINT PRIMARY KEY, chat_id BIGINT NOT NULL, "
+                    + "content TEXT NOT NULL, is_from_user BOOLEAN NOT NULL, created_at TIMESTAMP NOT NULL)");
+            statement.execute("CREATE TABLE bench_pooled_queries (id BIGINT PRIMARY KEY, "
+                    + "message_id BIGINT NOT NULL REFERENCES bench_pooled_messages(id), original_query TEXT NOT NULL, "
+                    + "created_at TIMESTAMP NOT NULL)");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long optimizeIdentity() throws SQLException {
+        long messageId = insertIdentityMessage(true);
+        insertIdentityMessage(false);
+        long queryId;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_identity_queries (message_id, original_query, created_at) VALUES (?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            insert.setLong(1, messageId);
+            insert.setString(2, CONTENT);
+            insert.setTimestamp(3, now());
+            insert.executeUpdate();
+            queryId = generatedKey(insert);
+        }
+        connection.commit();
+        return queryId;
+    }
+
+    @Benchmark
+    public long optimizePooled() throws SQLException {
+        long messageId = allocateId();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_pooled_messages (id, chat_id, content, is_from_user, created_at) VALUES (?, ?, ?, ?, ?)")) {
+            addPooledMessage(insert, messageId, true);
+            addPooledMessage(insert, allocateId(), false);
+            insert.executeBatch();
+        }
+        long queryId = allocateId();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_pooled_queries (id, message_id, original_query, created_at) VALUES (?, ?, ?, ?)")) {
+            insert.setLong(1, queryId);
+            insert.setLong(2, messageId);
+            insert.setString(3, CONTENT);
+            insert.setTimestamp(4, now());
+            insert.executeUpdate();
+        }
+        connection.commit();
+        return queryId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_SIZE)
+    public long importIdentity() throws SQLException {
+        long lastKey = 0;
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            lastKey = insertIdentityMessage(i % 2 == 0);
+        }
+        connection.commit();
+        return lastKey;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_SIZE)
+    public long importPooled() throws SQLException {
+        long lastKey = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_pooled_messages (id, chat_id, content, is_from_user, created_at) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < IMPORT_SIZE; i++) {
+                lastKey = allocateId();
+                addPooledMessage(insert, lastKey, i % 2 == 0);
+                // hibernate.jdbc.batch_size
+                if ((i + 1) % EntityIds.ALLOCATION_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return lastKey;
+    }
+
+    private long insertIdentityMessage(boolean fromUser) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_identity_messages (chat_id, content, is_from_user, created_at) VALUES (?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            insert.setLong(1, 1L);
+            insert.setString(2, CONTENT);
+            insert.setBoolean(3, fromUser);
+            insert.setTimestamp(4, now());
+            insert.executeUpdate();
+            return generatedKey(insert);
+        }
+    }
+
+    private void addPooledMessage(PreparedStatement insert, long id, boolean fromUser) throws SQLException {
+        insert.setLong(1, id);
+        insert.setLong(2, 1L);
+        insert.setString(3, CONTENT);
+        insert.setBoolean(4, fromUser);
+        insert.setTimestamp(5, now());
+        insert.addBatch();
+    }
+
+    private long allocateId() throws SQLException {
+        if (nextId > lastId) {
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT nextval('bench_pooled_seq')")) {
+                resultSet.next();
+                nextId = resultSet.getLong(1);
+                lastId = nextId + EntityIds.ALLOCATION_SIZE - 1;
+            }
+        }
+        return nextId++;
+    }
+
+    private long generatedKey(PreparedStatement insert) throws SQLException {
+        try (ResultSet keys = insert.getGeneratedKeys()) {
+            keys.next();
+            return keys.getLong(1);
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+}
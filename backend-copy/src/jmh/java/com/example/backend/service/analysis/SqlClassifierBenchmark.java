@@ -0,0 +1,68 @@
+package com.example.backend.service.analysis;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Определение SQL в сообщении чата размером 100 КБ: прежняя проверка через toUpperCase().trim()
+ * против SqlClassifier. Запуск: ./gradlew jmh; для сравнения аллокаций — с профилировщиком gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlClassifierBenchmark {
+
+    private static final int MESSAGE_SIZE = 100 * 1024;
+
+    @Param({"sql", "commented-cte", "prose"})
+    private String kind;
+
+    private String message;
+
+    @Setup
+    public void setUp() {
+        String head = switch (kind) {
+            case "sql" -> "SELECT o.id, o.amount FROM orders o WHERE o.status = 'NEW'\n";
+            case "commented-cte" -> "-- ежедневный отчет\n/* версия 3 */\nWITH recent AS (SELECT * FROM orders)\n"
+                    + "SELECT * FROM recent\n";
+            default -> "Подскажите, почему отчет строится так долго? Вот что я вижу в логах:\n";
+        };
+        StringBuilder builder = new StringBuilder(MESSAGE_SIZE);
+        while (builder.length() < MESSAGE_SIZE) {
+            builder.append(head);
+        }
+        message = builder.toString();
+    }
+
+    @Benchmark
+    public boolean legacyUpperCase() {
+        String upperContent = message.toUpperCase(Locale.ROOT).trim();
+        return upperContent.startsWith("SELECT")
+                || upperContent.startsWith("INSERT")
+                || upperContent.startsWith("UPDATE")
+                || upperContent.startsWith("DELETE")
+                || upperContent.startsWith("CREATE")
+                || upperContent.startsWith("ALTER")
+                || upperContent.startsWith("DROP");
+    }
+
+    @Benchmark
+    public boolean classifier() {
+        return SqlClassifier.isSql(message);
+    }
+}
@@ -2,24 +2,135 @@ package com.example.backend.config;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
-import com.zaxxer.hikari.HikariConfig;
+import com.example.backend.datasource.ConnectionHolderRegistry;
+import com.example.backend.datasource.PoolSizing;
+import com.example.backend.datasource.ReadReplicaRoutingDataSource;
+import com.example.backend.datasource.ReplicaLagMonitor;
+import com.example.backend.datasource.TrackedDataSource;
 import com.zaxxer.hikari.HikariDataSource;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 public class DatabaseConfig {
 
+    private final Environment environment;
+
+    // 0 — ядра этой машины (база на том же хосте)
+    @Value("${datasource.pool.database-cores:0}")
+    private int databaseCores;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int requestThreads;
+
+    // Адрес и учетные данные из spring.datasource.*, настройки пула из spring.datasource.hikari.*
     @Bean
-    public DataSource dataSource() {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:postgresql://localhost:5432/sql_optimizer");
-        config.setUsername("postgres");
-        config.setPassword("postgres");
-        config.setMaximumPoolSize(10);
-        return new HikariDataSource(config);
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("sql-optimizer-pool");
+        autoSize(dataSource, "spring.datasource.hikari.maximum-pool-size");
+        // Пакет INSERT отправляется одним многострочным INSERT ... VALUES
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url,
+            @Value("${datasource.replica.username}") String username,
+            @Value("${datasource.replica.password}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setPoolName("sql-optimizer-replica-pool");
+        dataSource.setReadOnly(true);
+        autoSize(dataSource, "datasource.replica.hikari.maximum-pool-size");
+        return dataSource;
+    }
+
+    @Bean
+    public ConnectionHolderRegistry connectionHolderRegistry(
+            @Value("${datasource.holders.capture-stack:true}") boolean captureStack) {
+        return new ConnectionHolderRegistry(captureStack);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            @Value("${datasource.replica.max-lag-ms:2000}") long maxLagMs) {
+        return new ReplicaLagMonitor(primaryDataSource, replicaDataSource, maxLagMs);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+    public MeterBinder replicaLagMetrics(ReplicaLagMonitor replicaLagMonitor) {
+        return registry -> Gauge.builder("db.replica.lag", replicaLagMonitor, ReplicaLagMonitor::getLagMs)
+                .description("Replica replay lag behind the primary, -1 when unknown")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    /**
+     * Источник для JPA и JdbcTemplate: транзакции readOnly уходят на реплику, если она включена
+     * и не отстает. Выданные соединения видны в /actuator/dbconnections.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+            @Qualifier("replicaDataSource") ObjectProvider<HikariDataSource> replicaDataSource,
+            ObjectProvider<ReplicaLagMonitor> replicaLagMonitor, ConnectionHolderRegistry connectionHolderRegistry) {
+        DataSource primary = new TrackedDataSource(primaryDataSource, primaryDataSource.getPoolName(),
+                connectionHolderRegistry);
+        HikariDataSource replica = replicaDataSource.getIfAvailable();
+        if (replica == null) {
+            return new LazyConnectionDataSourceProxy(primary);
+        }
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(primary,
+                new TrackedDataSource(replica, replica.getPoolName(), connectionHolderRegistry),
+                replicaLagMonitor.getObject());
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Размер пула по модели потоков, если он не задан явно в свойствах.
+     */
+    private void autoSize(HikariDataSource dataSource, String property) {
+        if (environment.containsProperty(property)) {
+            return;
+        }
+        int cores = databaseCores > 0 ? databaseCores : Runtime.getRuntime().availableProcessors();
+        int size = PoolSizing.maximumPoolSize(cores, PoolSizing.workerThreads(requestThreads));
+        dataSource.setMaximumPoolSize(size);
+        // minimum-idle по умолчанию равен maximum-pool-size, явное значение не должно его превышать
+        if (dataSource.getMinimumIdle() > size) {
+            dataSource.setMinimumIdle(size);
+        }
+        log.info("Pool {} sized to {} connections for {} database cores", dataSource.getPoolName(), size, cores);
     }
 
     @Bean
@@ -1,11 +1,18 @@
 package com.example.backend.config;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.observation.ObservationRegistry;
+
 import lombok.Data;
 
 @Configuration
@@ -21,6 +28,8 @@ public class LLMConfig {
     private String systemPrompt;
     private int connectTimeout = 5000;
     private int readTimeout = 30000;
+    // Схема ответа в запросе к провайдеру для бэкендов по умолчанию
+    private boolean structuredOutput = true;
     
     // LM Studio configuration
     private String localApiUrl = "http://localhost:1234";
@@ -28,19 +37,88 @@ public class LLMConfig {
     private int localConnectTimeout = 10000;
     private int localReadTimeout = 60000;
 
+    // Зарегистрированные бэкенды; если список пуст, строится из настроек выше
+    private List<Backend> backends = new ArrayList<>();
+    private Router router = new Router();
+    private RateLimit rateLimit = new RateLimit();
+    private Budget budget = new Budget();
+
+    @Data
+    public static class Backend {
+        private String name;
+        // gigachat | openai (любой OpenAI-совместимый endpoint, например LM Studio)
+        private String type = "gigachat";
+        private String model;
+        private String url;
+        private int timeoutMs = 60000;
+        private double costPer1kTokens = 0.0;
+        private boolean enabled = true;
+        // false для серверов, которые отклоняют response_format или functions
+        private boolean structuredOutput = true;
+    }
+
+    @Data
+    public static class Router {
+        private boolean hedgeEnabled = true;
+        private long hedgeMinDelayMs = 2000;
+        private long hedgeDefaultDelayMs = 15000;
+        private int windowSize = 100;
+        private int circuitFailureThreshold = 5;
+        private long circuitOpenMs = 30000;
+        private boolean crossProviderFallback = true;
+        private double costWeight = 0.0;
+    }
+
+    @Data
+    public static class RateLimit {
+        // Лимиты по группе провайдера (gigachat, local)
+        private Map<String, Limit> providers = new HashMap<>();
+        // Лимит на одного пользователя, общий для всех провайдеров
+        private Limit user = new Limit();
+    }
+
+    @Data
+    public static class Limit {
+        // 0 — без ограничения по частоте
+        private double permitsPerSecond = 0;
+        private int burst = 1;
+        private int maxInFlight = 8;
+        private int maxQueue = 100;
+        private long maxWaitMs = 30000;
+    }
+
+    @Data
+    public static class Budget {
+        // Окно контекста модели в токенах: промпт + ответ
+        private int contextWindow = 8192;
+        // Ответ не меньше этого числа токенов, иначе промпт сокращается
+        private int minCompletionTokens = 512;
+        // Ожидаемый ответ: обоснование и риски плюс переписанный запрос примерно той же длины
+        private int completionBaseTokens = 600;
+        private double completionPerQueryToken = 1.2;
+        // Узлы плана дешевле этой доли стоимости корня сворачиваются
+        private double planCostFraction = 0.02;
+        private int maxPlanNodes = 60;
+        private int maxMetadataTables = 15;
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
+    public RestTemplate restTemplate(ObservationRegistry observationRegistry) {
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(connectTimeout);
         factory.setReadTimeout(readTimeout);
-        return new RestTemplate(factory);
+        RestTemplate restTemplate = new RestTemplate(factory);
+        restTemplate.setObservationRegistry(observationRegistry);
+        return restTemplate;
     }
 
     @Bean
-    public RestTemplate localRestTemplate() {
+    public RestTemplate localRestTemplate(ObservationRegistry observationRegistry) {
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(localConnectTimeout);
         factory.setReadTimeout(localReadTimeout);
-        return new RestTemplate(factory);
+        RestTemplate restTemplate = new RestTemplate(factory);
+        restTemplate.setObservationRegistry(observationRegistry);
+        return restTemplate;
     }
 }
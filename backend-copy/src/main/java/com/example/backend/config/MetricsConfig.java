@@ -0,0 +1,36 @@
+package com.example.backend.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder stompChannelMetrics(
+            @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+            @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor) {
+        return registry -> {
+            bindChannel(registry, "inbound", inboundExecutor);
+            bindChannel(registry, "outbound", outboundExecutor);
+        };
+    }
+
+    private void bindChannel(MeterRegistry registry, String channel,
+            ThreadPoolTaskExecutor executor) {
+        Gauge.builder("stomp.channel.queue.size", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Messages waiting in the STOMP channel executor queue")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("stomp.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("STOMP channel executor threads currently processing messages")
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.example.backend.model.entity.User;
 import com.example.backend.security.JwtTokenFilter;
 
 import lombok.RequiredArgsConstructor;
@@ -44,6 +45,9 @@ public class SecurityConfig {
                 .requestMatchers("/websocket/**").permitAll()
                 .requestMatchers("/error").permitAll()
                 .requestMatchers("/sql/**").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                // metrics и dbconnections раскрывают внутреннее устройство сервиса и стеки вызовов
+                .requestMatchers("/actuator/**").hasRole(User.ROLE_ADMIN)
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class);
@@ -0,0 +1,31 @@
+package com.example.backend.config;
+
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.backend.tracing.FileSpanExporter;
+import com.example.backend.tracing.InMemorySpanExporter;
+
+/**
+ * Локальные экспортеры спанов. Для внешнего коллектора достаточно задать
+ * management.otlp.tracing.endpoint — OTLP-экспортер настраивается Spring Boot.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "file")
+    public FileSpanExporter fileSpanExporter(@Value("${tracing.file-path:logs/traces.jsonl}") String filePath) {
+        return new FileSpanExporter(Path.of(filePath));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.exporter", havingValue = "memory")
+    public InMemorySpanExporter inMemorySpanExporter(@Value("${tracing.memory-capacity:10000}") int capacity) {
+        return new InMemorySpanExporter(capacity);
+    }
+}
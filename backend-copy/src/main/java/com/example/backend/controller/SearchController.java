@@ -0,0 +1,45 @@
+package com.example.backend.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.model.dto.SearchPageDto;
+import com.example.backend.security.CustomUserDetails;
+import com.example.backend.service.search.HistorySearchService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/search")
+@RequiredArgsConstructor
+@Tag(name = "Поиск", description = "Поиск по чатам и истории запросов")
+@SecurityRequirement(name = "bearerAuth")
+public class SearchController {
+
+    private final HistorySearchService historySearchService;
+
+    @GetMapping
+    @Operation(summary = "Найти сообщения и запросы пользователя; следующая страница — по nextCursor")
+    public ResponseEntity<SearchPageDto> search(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        return ResponseEntity.ok(historySearchService.search(getUserId(userDetails), query, cursor, limit));
+    }
+
+    private Long getUserId(UserDetails userDetails) {
+        if (userDetails instanceof CustomUserDetails) {
+            return ((CustomUserDetails) userDetails).getUserId();
+        }
+        throw new IllegalStateException("UserDetails is not an instance of CustomUserDetails");
+    }
+}
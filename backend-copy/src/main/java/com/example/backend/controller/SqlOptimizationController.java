@@ -11,13 +11,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.backend.exception.ApiException;
 import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.model.dto.FingerprintStatsDto;
 import com.example.backend.model.dto.SqlQueryRequest;
 import com.example.backend.model.dto.SqlQueryResponse;
 import com.example.backend.security.CustomUserDetails;
+import com.example.backend.service.QueryHistoryService;
 import com.example.backend.service.SqlOptimizationService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -37,6 +40,7 @@ import reactor.core.publisher.Mono;
 public class SqlOptimizationController {
 
     private final SqlOptimizationService sqlOptimizationService;
+    private final QueryHistoryService queryHistoryService;
 
     @PostMapping("/optimize")
     @Operation(summary = "Оптимизировать SQL-запрос")
@@ -80,7 +84,26 @@ public class SqlOptimizationController {
         log.info("Getting query history for chatId={}", chatId);
         Long userId = getUserId(userDetails);
         log.info("User ID: {}", userId);
-        return ResponseEntity.ok(sqlOptimizationService.getQueryHistory(chatId, userId));
+        return ResponseEntity.ok(queryHistoryService.getQueryHistory(chatId, userId));
+    }
+
+    @GetMapping("/fingerprints/top")
+    @Operation(summary = "Самые частые формы запросов пользователя и медианное ускорение")
+    public ResponseEntity<List<FingerprintStatsDto>> getTopFingerprints(
+            @RequestParam(required = false) String table,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = getUserId(userDetails);
+        return ResponseEntity.ok(queryHistoryService.getTopFingerprints(userId, table, limit));
+    }
+
+    @GetMapping("/fingerprints/{fingerprint}")
+    @Operation(summary = "Статистика одной формы запроса")
+    public ResponseEntity<FingerprintStatsDto> getFingerprintStats(
+            @PathVariable String fingerprint,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = getUserId(userDetails);
+        return ResponseEntity.ok(queryHistoryService.getFingerprintStats(userId, fingerprint));
     }
 
     private Long getUserId(UserDetails userDetails) {
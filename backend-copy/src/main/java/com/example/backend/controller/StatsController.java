@@ -0,0 +1,40 @@
+package com.example.backend.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.backend.model.dto.UserStatsDto;
+import com.example.backend.security.CustomUserDetails;
+import com.example.backend.service.stats.UserStatsService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/stats")
+@RequiredArgsConstructor
+@Tag(name = "Статистика", description = "Статистика оптимизаций пользователя")
+@SecurityRequirement(name = "bearerAuth")
+public class StatsController {
+
+    private final UserStatsService userStatsService;
+
+    @GetMapping
+    @Operation(summary = "Сэкономленное время, доля ускоренных запросов и лучшие оптимизации")
+    public ResponseEntity<UserStatsDto> getUserStats(@AuthenticationPrincipal UserDetails userDetails) {
+        return ResponseEntity.ok(userStatsService.getUserStats(getUserId(userDetails)));
+    }
+
+    private Long getUserId(UserDetails userDetails) {
+        if (userDetails instanceof CustomUserDetails) {
+            return ((CustomUserDetails) userDetails).getUserId();
+        }
+        throw new IllegalStateException("UserDetails is not an instance of CustomUserDetails");
+    }
+}
@@ -3,12 +3,12 @@ package com.example.backend.controller;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import com.example.backend.model.ChatMessage;
 import com.example.backend.model.dto.MessageDto;
 import com.example.backend.service.ChatService;
+import com.example.backend.tracing.StompPublisher;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,12 +18,15 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class WebSocketController {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final StompPublisher stompPublisher;
     private final ChatService chatService;
 
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(@Payload ChatMessage chatMessage, SimpMessageHeaderAccessor headerAccessor) {
-        log.info("Received message: {}", chatMessage);
+        // Текст не логируется: SQL-скрипт в сообщении может весить сотни килобайт
+        // SQL ли это, решает ChatService
+        log.info("Received message: chatId={}, length={}", chatMessage.getChatId(),
+                chatMessage.getContent() == null ? 0 : chatMessage.getContent().length());
         String username = headerAccessor.getUser().getName();
         chatMessage.setSender(username);
         
@@ -32,6 +35,8 @@ public class WebSocketController {
                 .content(chatMessage.getContent())
                 .fromUser(true)
                 .llmProvider(chatMessage.getLlmProvider())
+                .databaseConnectionId(chatMessage.getDatabaseConnectionId())
+                .mpp(chatMessage.getMpp())
                 .build();
         
         chatService.sendMessage(chatMessage.getChatId(), Long.parseLong(username), messageDto);
@@ -45,6 +50,6 @@ public class WebSocketController {
         
         // Отправляем уведомление о присоединении пользователя
         chatMessage.setType(ChatMessage.MessageType.JOIN);
-        messagingTemplate.convertAndSend("/topic/chat/" + chatMessage.getChatId(), chatMessage);
+        stompPublisher.convertAndSend("/topic/chat/" + chatMessage.getChatId(), chatMessage);
     }
 }
@@ -0,0 +1,61 @@
+package com.example.backend.datasource;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Соединения, выданные пулами и еще не возвращенные: пул, поток, время получения и путь в коде
+ * приложения, на котором соединение было взято.
+ */
+public class ConnectionHolderRegistry {
+
+    private static final String APP_PACKAGE = "com.example.backend.";
+    private static final int MAX_FRAMES = 12;
+
+    public record Holder(long id, String pool, String thread, Instant acquiredAt, List<String> stack) {
+    }
+
+    private final Map<Long, Holder> holders = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final boolean captureStack;
+
+    public ConnectionHolderRegistry(boolean captureStack) {
+        this.captureStack = captureStack;
+    }
+
+    public long acquired(String pool) {
+        long id = ids.incrementAndGet();
+        holders.put(id, new Holder(id, pool, Thread.currentThread().getName(), Instant.now(),
+                captureStack ? applicationFrames() : List.of()));
+        return id;
+    }
+
+    public void released(long id) {
+        holders.remove(id);
+    }
+
+    /**
+     * Держатели от самого давнего.
+     */
+    public List<Holder> snapshot() {
+        return holders.values().stream()
+                .sorted(Comparator.comparing(Holder::acquiredAt))
+                .toList();
+    }
+
+    // StackWalker ленивый: кадры выше первых MAX_FRAMES кадров приложения не разворачиваются
+    private static List<String> applicationFrames() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APP_PACKAGE)
+                        && !frame.getClassName().equals(ConnectionHolderRegistry.class.getName())
+                        && !frame.getClassName().equals(TrackedDataSource.class.getName()))
+                .limit(MAX_FRAMES)
+                .map(StackWalker.StackFrame::toStackTraceElement)
+                .map(StackTraceElement::toString)
+                .toList());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.backend.datasource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * /actuator/dbconnections: заполненность пулов и кто сейчас держит соединения, от самого давнего.
+ */
+@Component
+@Endpoint(id = "dbconnections")
+@RequiredArgsConstructor
+public class ConnectionHoldersEndpoint {
+
+    private final ConnectionHolderRegistry connectionHolderRegistry;
+    private final ObjectProvider<HikariDataSource> pools;
+
+    @ReadOperation
+    public Map<String, Object> connections() {
+        Instant now = Instant.now();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pools", pools.orderedStream().map(this::poolState).toList());
+        result.put("holders", connectionHolderRegistry.snapshot().stream()
+                .map(holder -> {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("pool", holder.pool());
+                    entry.put("thread", holder.thread());
+                    entry.put("acquiredAt", holder.acquiredAt().toString());
+                    entry.put("heldMs", Duration.between(holder.acquiredAt(), now).toMillis());
+                    entry.put("stack", holder.stack());
+                    return entry;
+                })
+                .toList());
+        return result;
+    }
+
+    private Map<String, Object> poolState(HikariDataSource pool) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("name", pool.getPoolName());
+        state.put("maximumPoolSize", pool.getMaximumPoolSize());
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        // Пул создается при первом запросе соединения
+        if (bean != null) {
+            state.put("active", bean.getActiveConnections());
+            state.put("idle", bean.getIdleConnections());
+            state.put("total", bean.getTotalConnections());
+            state.put("awaiting", bean.getThreadsAwaitingConnection());
+        }
+        return state;
+    }
+}
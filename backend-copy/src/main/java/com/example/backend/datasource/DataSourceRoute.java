@@ -0,0 +1,6 @@
+package com.example.backend.datasource;
+
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA
+}
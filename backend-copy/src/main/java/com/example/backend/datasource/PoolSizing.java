@@ -0,0 +1,29 @@
+package com.example.backend.datasource;
+
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Размер пула по модели потоков. Соединений больше, чем потоков, которые одновременно ходят в базу,
+ * не нужно; больше «ядра сервера БД * 2 + 1» (формула HikariCP) — лишние соединения только
+ * конкурируют за ядра и диск и увеличивают время ответа.
+ */
+public final class PoolSizing {
+
+    static final int MIN_POOL_SIZE = 4;
+
+    private PoolSizing() {
+    }
+
+    public static int maximumPoolSize(int databaseCores, int workerThreads) {
+        int optimal = databaseCores * 2 + 1;
+        return Math.max(MIN_POOL_SIZE, Math.min(optimal, workerThreads));
+    }
+
+    /**
+     * Потоки, из которых идут запросы к базе: HTTP, конвейер оптимизации на boundedElastic,
+     * входящий канал STOMP и планировщик.
+     */
+    public static int workerThreads(int requestThreads) {
+        return requestThreads + Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE + 2;
+    }
+}
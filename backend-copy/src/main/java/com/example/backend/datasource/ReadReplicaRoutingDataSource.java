@@ -0,0 +1,33 @@
+package com.example.backend.datasource;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Транзакции readOnly читают с реплики, все остальное идет на primary. Реплика, которая отстала
+ * больше допустимого или недоступна, пропускается до следующей проверки {@link ReplicaLagMonitor}.
+ * Маршрут выбирается при получении соединения, поэтому источник оборачивается в
+ * LazyConnectionDataSourceProxy: иначе соединение берется в начале транзакции, до того как
+ * выставлен признак readOnly.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, primary, DataSourceRoute.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaLagMonitor.isReplicaUsable()
+                ? DataSourceRoute.REPLICA
+                : DataSourceRoute.PRIMARY;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.backend.datasource;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Отставание реплики от primary. Реплика, успевшая проиграть WAL до текущей позиции primary,
+ * не отстает; иначе отставание — время с последней проигранной транзакции. Реплика не в режиме
+ * восстановления (например, логическая) считается актуальной.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn) THEN 0
+                ELSE COALESCE(CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT), ?)
+            END
+            """;
+
+    // Проверки еще не было или реплика недоступна
+    static final long UNKNOWN = -1;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+
+    private volatile long lagMs = UNKNOWN;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMs) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval-ms:1000}")
+    public void check() {
+        boolean wasUsable = isReplicaUsable();
+        try {
+            String primaryLsn = primary.queryForObject("SELECT CAST(pg_current_wal_lsn() AS TEXT)", String.class);
+            Long lag = replica.queryForObject(LAG_SQL, Long.class, primaryLsn, Long.MAX_VALUE);
+            lagMs = lag == null ? UNKNOWN : lag;
+        } catch (DataAccessException e) {
+            lagMs = UNKNOWN;
+            if (wasUsable) {
+                log.warn("Replica lag check failed: {}", e.getMessage());
+            }
+        }
+        boolean usable = isReplicaUsable();
+        if (usable != wasUsable) {
+            log.info("Read-only transactions switched to {} (replica lag {} ms, limit {} ms)",
+                    usable ? DataSourceRoute.REPLICA : DataSourceRoute.PRIMARY, lagMs, maxLagMs);
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        long lag = lagMs;
+        return lag != UNKNOWN && lag <= maxLagMs;
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.backend.datasource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Пул, который отмечает в {@link ConnectionHolderRegistry} каждое выданное соединение до его закрытия.
+ */
+public class TrackedDataSource extends DelegatingDataSource {
+
+    private final String pool;
+    private final ConnectionHolderRegistry registry;
+
+    public TrackedDataSource(DataSource target, String pool, ConnectionHolderRegistry registry) {
+        super(target);
+        this.pool = pool;
+        this.registry = registry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection track(Connection connection) {
+        long id = registry.acquired(pool);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Tracked[" + connection + "]";
+                    default -> {
+                        if ("close".equals(method.getName())) {
+                            registry.released(id);
+                        }
+                        try {
+                            yield method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.backend.exception;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+/**
+ * Провайдер LLM ответил 429. retryAfter — значение заголовка Retry-After, если он был.
+ */
+@Getter
+public class LLMRateLimitException extends ApiException {
+
+    private final Duration retryAfter;
+
+    public LLMRateLimitException(String message, Duration retryAfter) {
+        super(message, HttpStatus.TOO_MANY_REQUESTS);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.backend.metrics;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Таймеры и счетчики конвейера оптимизации SQL.
+ * Все метрики экспортируются через /actuator/prometheus.
+ */
+@Component
+@RequiredArgsConstructor
+public class OptimizationMetrics {
+
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_ANALYZE = "analyze";
+    public static final String STAGE_MPP_ANALYZE = "mpp_analyze";
+    public static final String STAGE_REWRITE = "rewrite";
+    public static final String STAGE_INDEX_ADVISOR = "index_advisor";
+    public static final String STAGE_PROMPT_CONTEXT = "prompt_context";
+    public static final String STAGE_DECOMPOSE = "decompose";
+    public static final String STAGE_DB_LOOKUP = "db_lookup";
+    public static final String STAGE_EXPLAIN = "explain";
+    public static final String STAGE_PERSIST = "persist";
+    public static final String STAGE_PUBLISH = "publish";
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopStage(Timer.Sample sample, String stage, boolean success) {
+        sample.stop(Timer.builder("sql.optimization.stage")
+                .description("Duration of a single stage of the SQL optimization pipeline")
+                .tag("stage", stage)
+                .tag("outcome", success ? OUTCOME_SUCCESS : OUTCOME_ERROR)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    public <T> T recordStage(String stage, Supplier<T> action) {
+        Timer.Sample sample = start();
+        boolean success = false;
+        try {
+            T result = action.get();
+            success = true;
+            return result;
+        } finally {
+            stopStage(sample, stage, success);
+        }
+    }
+
+    public void recordStage(String stage, Runnable action) {
+        recordStage(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Сводит значение поля llm из запроса к ограниченному набору тегов.
+     */
+    public static String providerTag(String llmProvider) {
+        if ("Rules".equals(llmProvider)) {
+            return "rules";
+        }
+        return "Local".equals(llmProvider) ? "local" : "gigachat";
+    }
+
+    public <T> Mono<T> timeOptimization(String provider, Mono<T> pipeline) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = start();
+            return pipeline
+                    .doOnSuccess(result -> stopOptimization(sample, provider, OUTCOME_SUCCESS))
+                    .doOnError(error -> stopOptimization(sample, provider, OUTCOME_ERROR));
+        });
+    }
+
+    public <T> Mono<T> timeLlmCall(String provider, String model, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = start();
+            return call
+                    .doOnSuccess(result -> stopLlmCall(sample, provider, model, OUTCOME_SUCCESS))
+                    .doOnError(error -> stopLlmCall(sample, provider, model, OUTCOME_ERROR));
+        });
+    }
+
+    /**
+     * Учитывает токены из поля usage ответа OpenAI-совместимого API.
+     */
+    public void recordTokenUsage(String provider, String model, JsonNode usage) {
+        if (usage == null || usage.isMissingNode() || usage.isNull()) {
+            return;
+        }
+        incrementTokens(provider, model, "prompt", usage.path("prompt_tokens").asLong(0));
+        incrementTokens(provider, model, "completion", usage.path("completion_tokens").asLong(0));
+    }
+
+    public void recordPromptBudget(String provider, int promptTokens, int maxTokens) {
+        DistributionSummary.builder("llm.prompt.tokens.estimated")
+                .description("Estimated prompt size after token budgeting")
+                .baseUnit("tokens")
+                .tag("provider", provider)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(promptTokens);
+        DistributionSummary.builder("llm.completion.max.tokens")
+                .description("max_tokens requested from the LLM after token budgeting")
+                .baseUnit("tokens")
+                .tag("provider", provider)
+                .register(meterRegistry)
+                .record(maxTokens);
+    }
+
+    public void recordAnalysisVerdict(boolean llmSkipped) {
+        Counter.builder("sql.analysis.verdict")
+                .description("Static analysis verdicts: whether the LLM call was skipped")
+                .tag("outcome", llmSkipped ? "skip_llm" : "llm")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordRetry(String provider, String operation) {
+        Counter.builder("llm.retries")
+                .description("Retries issued by Retry.backoff specs of LLM calls")
+                .tag("provider", provider)
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void incrementTokens(String provider, String model, String type, long amount) {
+        if (amount <= 0) {
+            return;
+        }
+        Counter.builder("llm.tokens")
+                .description("Tokens consumed by LLM calls")
+                .tag("provider", provider)
+                .tag("model", model == null ? "unknown" : model)
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    private void stopOptimization(Timer.Sample sample, String provider, String outcome) {
+        sample.stop(Timer.builder("sql.optimization")
+                .description("End-to-end duration of a SQL optimization request")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void stopLlmCall(Timer.Sample sample, String provider, String model, String outcome) {
+        sample.stop(Timer.builder("llm.request")
+                .description("Duration of LLM completion calls including retries")
+                .tag("provider", provider)
+                .tag("model", model == null ? "unknown" : model)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
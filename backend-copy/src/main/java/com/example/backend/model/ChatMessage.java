@@ -17,6 +17,11 @@ public class ChatMessage {
     private MessageType type;
     private String llmProvider;
 
+    // Параметры оптимизации, если сообщение — SQL-запрос
+    private String databaseConnectionId;
+
+    private Boolean mpp;
+
     public enum MessageType {
         CHAT,
         JOIN,
@@ -0,0 +1,21 @@
+package com.example.backend.model.catalog;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Метаданные таблицы целевой БД для промпта: столбцы с типами, индексы и оценка числа строк.
+ */
+@Getter
+@Builder
+public class TableMetadata {
+    private final String name;
+    private final Long rowEstimate;
+    // Имя столбца → тип в порядке attnum
+    private final Map<String, String> columns;
+    // Определения индексов (pg_get_indexdef)
+    private final List<String> indexes;
+}
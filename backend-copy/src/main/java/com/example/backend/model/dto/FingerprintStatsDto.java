@@ -0,0 +1,27 @@
+package com.example.backend.model.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FingerprintStatsDto {
+
+    // 16 шестнадцатеричных цифр: в JSON-числе 64-битное значение теряет точность
+    private String fingerprint;
+    private String statementType;
+    private String normalizedQuery;
+    private List<String> tables;
+    private Long queryCount;
+    private Long measuredCount;
+    // Медиана отношения времени исходного запроса к оптимизированному; null, если замеров нет
+    private Double medianSpeedup;
+    private LocalDateTime lastSeenAt;
+}
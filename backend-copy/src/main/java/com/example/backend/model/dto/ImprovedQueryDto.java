@@ -0,0 +1,23 @@
+package com.example.backend.model.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImprovedQueryDto {
+
+    private Long queryId;
+    private String normalizedQuery;
+    private double originalTimeMs;
+    private double optimizedTimeMs;
+    private double savedMs;
+    private Double speedup;
+    private LocalDateTime createdAt;
+}
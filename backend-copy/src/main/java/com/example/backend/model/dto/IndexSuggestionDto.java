@@ -0,0 +1,25 @@
+package com.example.backend.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexSuggestionDto {
+
+    private String createStatement;
+    private String table;
+    private List<String> columns;
+    private Double baseCost;
+    private Double costWithIndex;
+    // Доля снижения стоимости плана, от 0 до 1
+    private Double costReduction;
+    // hypopg — стоимость посчитана по гипотетическому индексу, explain — оценка сверху по исходному плану
+    private String method;
+}
@@ -27,5 +27,10 @@ public class MessageDto {
 
     private String llmProvider;
 
+    // Параметры оптимизации, если сообщение — SQL-запрос
+    private String databaseConnectionId;
+
+    private Boolean mpp;
+
     private Long chatId;
 }
@@ -0,0 +1,59 @@
+package com.example.backend.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат оптимизации по полям: модель возвращает его JSON-объектом, правила и разбор по частям
+ * собирают так же. Текст сообщения в чате строится из этих полей, а не наоборот.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OptimizationResult {
+
+    private String optimizedSql;
+    private String rationale;
+    private String estimatedGain;
+    @Builder.Default
+    private List<String> risks = List.of();
+    // CREATE INDEX, предложенные моделью или проверенные планировщиком
+    @Builder.Default
+    private List<String> indexSuggestions = List.of();
+
+    public String toMarkdown() {
+        StringBuilder markdown = new StringBuilder();
+        markdown.append("## Оптимизированный SQL-запрос\n\n");
+        markdown.append("```sql\n").append(optimizedSql.trim()).append("\n```\n\n");
+
+        markdown.append("## Обоснование изменений\n\n");
+        markdown.append(hasText(rationale) ? rationale.trim() : "Модель не описала изменения.").append("\n\n");
+
+        if (indexSuggestions != null && !indexSuggestions.isEmpty()) {
+            markdown.append("## Рекомендуемые индексы\n\n");
+            indexSuggestions.forEach(index -> markdown.append("- `").append(index).append("`\n"));
+            markdown.append("\n");
+        }
+
+        markdown.append("## Оценка улучшения\n\n");
+        markdown.append(hasText(estimatedGain) ? estimatedGain.trim() : "Точный эффект покажет EXPLAIN ANALYZE.")
+                .append("\n\n");
+
+        markdown.append("## Потенциальные риски\n\n");
+        if (risks == null || risks.isEmpty()) {
+            markdown.append("Не выявлены.");
+        } else {
+            risks.forEach(risk -> markdown.append("- ").append(risk).append("\n"));
+        }
+        return markdown.toString().trim();
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.backend.model.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHitDto {
+
+    // MESSAGE — сообщение чата, QUERY — оптимизированный запрос из истории
+    private String type;
+    private Long id;
+    private Long chatId;
+    // Фрагменты с найденными словами
+    private String snippet;
+    private Double rank;
+    private LocalDateTime createdAt;
+}
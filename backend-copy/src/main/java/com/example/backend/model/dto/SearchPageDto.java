@@ -0,0 +1,19 @@
+package com.example.backend.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchPageDto {
+
+    private List<SearchHitDto> hits;
+    // Передается в следующий запрос; null на последней странице
+    private String nextCursor;
+}
@@ -1,11 +1,15 @@
 package com.example.backend.model.dto;
 
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanDiff;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -16,7 +20,13 @@ public class SqlQueryResponse {
     private Long id;
     private String originalQuery;
     private String optimizedQuery;
-    private Long executionTimeMs;
+    // null для запросов, сохраненных до структурированных ответов
+    private OptimizationResult result;
+    private Double executionTimeMs;
     private LocalDateTime createdAt;
     private MessageDto message;
+    private List<IndexSuggestionDto> indexSuggestions;
+    private ExecutionPlan originalPlan;
+    private ExecutionPlan optimizedPlan;
+    private PlanDiff planDiff;
 }
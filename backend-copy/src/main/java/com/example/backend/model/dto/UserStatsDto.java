@@ -0,0 +1,28 @@
+package com.example.backend.model.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatsDto {
+
+    private long optimizationCount;
+    private long measuredCount;
+    private long improvedCount;
+    // Доля ускоренных среди измеренных; null, если замеров нет
+    private Double successRate;
+    // Сумма разниц времени по измеренным запросам; отрицательна, если оптимизации в сумме замедлили
+    private double timeSavedMs;
+    private double originalTimeMs;
+    private double optimizedTimeMs;
+    private LocalDateTime lastOptimizedAt;
+    private List<ImprovedQueryDto> topQueries;
+}
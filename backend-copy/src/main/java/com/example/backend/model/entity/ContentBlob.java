@@ -0,0 +1,70 @@
+package com.example.backend.model.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Immutable;
+
+import com.example.backend.service.storage.BodyCodec;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Сжатое тело сообщения или ответа LLM. Строки неизменяемы и адресуются хэшем текста;
+ * вставляет их {@link com.example.backend.service.storage.ContentStore}.
+ */
+@Entity
+@Table(name = "content_blobs")
+@Immutable
+// Ленивые ссылки из списка сообщений догружаются одним запросом на пачку
+@BatchSize(size = 50)
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentBlob {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private byte[] hash;
+
+    @Column(nullable = false, length = 16)
+    private String codec;
+
+    @Column(name = "original_length", nullable = false)
+    private int originalLength;
+
+    @Column(nullable = false)
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false, insertable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Распакованный текст, считается при первом чтении
+    @Transient
+    private String text;
+
+    public String getText() {
+        if (text == null) {
+            text = BodyCodec.decode(codec, data, originalLength);
+        }
+        return text;
+    }
+
+    /**
+     * Текст, из которого блок только что получен: повторно распаковывать его незачем.
+     */
+    public void rememberText(String text) {
+        this.text = text;
+    }
+}
@@ -18,7 +18,9 @@ import java.time.LocalDateTime;
 public class DatabaseConnection {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "database_connections_seq")
+    @SequenceGenerator(name = "database_connections_seq", sequenceName = "database_connections_id_seq",
+            allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,13 @@
+package com.example.backend.model.entity;
+
+/**
+ * Размер блока идентификаторов: последовательности таблиц увеличиваются на это значение (INCREMENT BY),
+ * Hibernate выдает идентификаторы из блока в памяти (оптимизатор pooled-lo).
+ */
+public final class EntityIds {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    private EntityIds() {
+    }
+}
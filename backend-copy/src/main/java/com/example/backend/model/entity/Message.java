@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 import jakarta.persistence.CascadeType;
@@ -17,11 +18,14 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Entity
 @Table(name = "messages")
@@ -32,7 +36,9 @@ import lombok.NoArgsConstructor;
 public class Message {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_id_seq",
+            allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
 
     @JsonBackReference
@@ -40,9 +46,17 @@ public class Message {
     @JoinColumn(name = "chat_id", nullable = false)
     private Chat chat;
 
-    @Column(nullable = false, columnDefinition = "TEXT")
+    // Короткий текст; длинный хранится сжатым в contentBlob, а колонка остается пустой
+    @Column(columnDefinition = "TEXT")
     private String content;
 
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_blob_id")
+    private ContentBlob contentBlob;
+
     @Column(name = "is_from_user", nullable = false)
     private boolean fromUser;
 
@@ -53,4 +67,8 @@ public class Message {
     @JsonManagedReference
     @OneToOne(mappedBy = "message", cascade = CascadeType.ALL, orphanRemoval = true)
     private SqlQuery sqlQuery;
+
+    public String getContent() {
+        return contentBlob != null ? contentBlob.getText() : content;
+    }
 }
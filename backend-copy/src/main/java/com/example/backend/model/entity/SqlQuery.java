@@ -1,13 +1,21 @@
 package com.example.backend.model.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Entity
 @Table(name = "sql_queries")
@@ -17,7 +25,9 @@ import java.time.LocalDateTime;
 @Builder
 public class SqlQuery {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sql_queries_seq")
+    @SequenceGenerator(name = "sql_queries_seq", sequenceName = "sql_queries_id_seq",
+            allocationSize = EntityIds.ALLOCATION_SIZE)
     private Long id;
 
     @OneToOne
@@ -27,17 +37,77 @@ public class SqlQuery {
     @Column(name = "original_query", nullable = false, columnDefinition = "TEXT")
     private String originalQuery;
 
+    // Только SQL; у строк до V13 здесь markdown-ответ модели целиком
     @Column(name = "optimized_query", columnDefinition = "TEXT")
     private String optimizedQuery;
 
+    // Поля результата оптимизации; null у строк до V13
+    @Column(name = "rationale", columnDefinition = "TEXT")
+    private String rationale;
+
+    @Column(name = "estimated_gain", columnDefinition = "TEXT")
+    private String estimatedGain;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "risks")
+    private List<String> risks;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "suggested_indexes")
+    private List<String> suggestedIndexes;
+
+    // Длинный запрос: сжат и хранится один раз, даже если повторяется в сообщении или другом запросе
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "optimized_blob_id")
+    private ContentBlob optimizedBlob;
+
+    // Владелец запроса; хранится в строке, чтобы агрегаты по пользователю не шли через чаты и сообщения
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
     @ManyToOne
     @JoinColumn(name = "database_connection_id")
     private DatabaseConnection databaseConnection;
 
+    // Медиана замеров EXPLAIN ANALYZE в миллисекундах с дробной частью; -1 — не измерено
     @Column(name = "execution_time_ms")
-    private Long executionTimeMs;
+    private Double executionTimeMs;
+
+    @Column(name = "original_execution_time_ms")
+    private Double originalExecutionTimeMs;
+
+    // Первые 8 байт SHA-256 текста запроса без литералов
+    @Column(name = "fingerprint")
+    private Long fingerprint;
+
+    @Column(name = "normalized_query", columnDefinition = "TEXT")
+    private String normalizedQuery;
+
+    @Column(name = "statement_type", length = 16)
+    private String statementType;
+
+    @ElementCollection
+    @CollectionTable(name = "sql_query_tables", joinColumns = @JoinColumn(name = "sql_query_id"))
+    @Column(name = "table_name")
+    @Builder.Default
+    private Set<String> referencedTables = new HashSet<>();
+
+    // JSON EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON), сжатый gzip
+    @Column(name = "original_plan")
+    private byte[] originalPlan;
+
+    @Column(name = "optimized_plan")
+    private byte[] optimizedPlan;
 
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
+
+    public String getOptimizedQuery() {
+        return optimizedBlob != null ? optimizedBlob.getText() : optimizedQuery;
+    }
 }
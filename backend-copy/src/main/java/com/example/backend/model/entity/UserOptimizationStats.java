@@ -0,0 +1,56 @@
+package com.example.backend.model.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Накопленная статистика оптимизаций пользователя. Пишется только запросами
+ * {@link com.example.backend.repository.UserStatsRepository}, через сущность — только чтение.
+ */
+@Entity
+@Table(name = "user_optimization_stats")
+@Immutable
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserOptimizationStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "optimization_count", nullable = false)
+    private long optimizationCount;
+
+    // Запросы, для которых измерены оба времени
+    @Column(name = "measured_count", nullable = false)
+    private long measuredCount;
+
+    // Измеренные запросы, ставшие быстрее
+    @Column(name = "improved_count", nullable = false)
+    private long improvedCount;
+
+    // Суммы по измеренным запросам
+    @Column(name = "original_time_ms", nullable = false)
+    private double originalTimeMs;
+
+    @Column(name = "optimized_time_ms", nullable = false)
+    private double optimizedTimeMs;
+
+    @Column(name = "last_optimized_at")
+    private LocalDateTime lastOptimizedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
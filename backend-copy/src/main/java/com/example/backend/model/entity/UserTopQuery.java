@@ -0,0 +1,51 @@
+package com.example.backend.model.entity;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Один из запросов пользователя с наибольшим сэкономленным временем; копия полей sql_queries,
+ * чтобы дашборд не читал секции истории.
+ */
+@Entity
+@Table(name = "user_top_queries")
+@Immutable
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserTopQuery {
+
+    // Первичный ключ таблицы — (user_id, sql_query_id), но идентификатор запроса уникален и сам по себе
+    @Id
+    @Column(name = "sql_query_id")
+    private Long sqlQueryId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "normalized_query", columnDefinition = "TEXT")
+    private String normalizedQuery;
+
+    @Column(name = "original_time_ms", nullable = false)
+    private double originalTimeMs;
+
+    @Column(name = "optimized_time_ms", nullable = false)
+    private double optimizedTimeMs;
+
+    @Column(name = "saved_ms", nullable = false)
+    private double savedMs;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,34 @@
+package com.example.backend.model.plan;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Разобранный вывод EXPLAIN (FORMAT JSON): дерево узлов и общие показатели запроса.
+ */
+@Getter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExecutionPlan {
+
+    private final PlanNode root;
+    private final Double planningTimeMs;
+    private final Double executionTimeMs;
+
+    @JsonIgnore
+    public List<PlanNode> getNodes() {
+        return root.getSubtree();
+    }
+
+    /**
+     * Число слайсов Greenplum; для PostgreSQL — 0.
+     */
+    public long getSliceCount() {
+        return getNodes().stream().map(PlanNode::getSlice).filter(slice -> slice != null).distinct().count();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.backend.model.plan;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Одно различие между планами исходного и оптимизированного запроса.
+ */
+@Getter
+@AllArgsConstructor
+public class PlanChange {
+
+    public enum Type {
+        SEQ_SCAN_REMOVED,
+        SEQ_SCAN_ADDED,
+        JOIN_STRATEGY_CHANGED,
+        MOTION_REMOVED,
+        MOTION_ADDED,
+        MISESTIMATE
+    }
+
+    private final Type type;
+    // Таблица или набор таблиц, к которым относится изменение
+    private final String relation;
+    private final String before;
+    private final String after;
+    private final String description;
+}
@@ -0,0 +1,23 @@
+package com.example.backend.model.plan;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Сравнение планов исходного и оптимизированного запроса.
+ */
+@Getter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PlanDiff {
+
+    private final Double originalCost;
+    private final Double optimizedCost;
+    private final Double originalExecutionTimeMs;
+    private final Double optimizedExecutionTimeMs;
+    private final List<PlanChange> changes;
+}
@@ -0,0 +1,100 @@
+package com.example.backend.model.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Узел плана EXPLAIN. Поля actual* и буферы заполнены только для EXPLAIN ANALYZE / BUFFERS,
+ * slice, senders и receivers — только для узлов Greenplum.
+ */
+@Getter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PlanNode {
+
+    private final String nodeType;
+    private final String relationName;
+    private final String alias;
+    private final String indexName;
+    private final String joinType;
+    private final String filter;
+
+    private final Double startupCost;
+    private final Double totalCost;
+    private final Double planRows;
+
+    private final Double actualRows;
+    private final Double actualLoops;
+    private final Double actualTotalTimeMs;
+
+    private final Long sharedHitBlocks;
+    private final Long sharedReadBlocks;
+    private final Long tempReadBlocks;
+    private final Long tempWrittenBlocks;
+
+    private final Integer slice;
+    private final Integer senders;
+    private final Integer receivers;
+
+    @Builder.Default
+    private final List<PlanNode> children = new ArrayList<>();
+
+    @JsonIgnore
+    public boolean isSeqScan() {
+        return "Seq Scan".equals(nodeType);
+    }
+
+    @JsonIgnore
+    public boolean isJoin() {
+        return "Hash Join".equals(nodeType) || "Merge Join".equals(nodeType) || "Nested Loop".equals(nodeType);
+    }
+
+    /**
+     * Узлы пересылки данных между сегментами Greenplum: Gather, Redistribute, Broadcast Motion.
+     */
+    @JsonIgnore
+    public boolean isMotion() {
+        return nodeType != null && nodeType.endsWith("Motion");
+    }
+
+    /**
+     * Фактическое число строк за все циклы; в JSON EXPLAIN «Actual Rows» — среднее на цикл.
+     */
+    @JsonIgnore
+    public Double getTotalActualRows() {
+        if (actualRows == null) {
+            return null;
+        }
+        return actualRows * (actualLoops == null ? 1 : actualLoops);
+    }
+
+    /**
+     * Во сколько раз оценка планировщика разошлась с фактом (не меньше 1); null без ANALYZE.
+     */
+    @JsonIgnore
+    public Double getEstimationError() {
+        if (actualRows == null || planRows == null) {
+            return null;
+        }
+        double estimated = Math.max(1, planRows);
+        double actual = Math.max(1, actualRows);
+        return Math.max(estimated / actual, actual / estimated);
+    }
+
+    /**
+     * Узел и все его потомки в порядке обхода в глубину.
+     */
+    @JsonIgnore
+    public List<PlanNode> getSubtree() {
+        List<PlanNode> nodes = new ArrayList<>();
+        nodes.add(this);
+        children.forEach(child -> nodes.addAll(child.getSubtree()));
+        return nodes;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.backend.model.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Поля чата для списка и карточки: без пользователя, сообщений и подключений.
+ */
+public interface ChatSummary {
+
+    Long getId();
+
+    String getTitle();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+
+    boolean isArchived();
+}
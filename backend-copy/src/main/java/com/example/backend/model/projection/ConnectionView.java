@@ -0,0 +1,11 @@
+package com.example.backend.model.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Подключение чата для списка; пароль не выбирается.
+ */
+public record ConnectionView(Long id, Long chatId, String name, String dbType, String host, int port,
+                             String databaseName, String username, boolean active, LocalDateTime createdAt,
+                             LocalDateTime lastConnectedAt) {
+}
@@ -0,0 +1,10 @@
+package com.example.backend.model.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Последний запрос отпечатка и одна из его таблиц: строка на каждую таблицу, tableName пуст, если таблиц нет.
+ */
+public record FingerprintSample(Long id, String statementType, String normalizedQuery, LocalDateTime createdAt,
+                                String tableName) {
+}
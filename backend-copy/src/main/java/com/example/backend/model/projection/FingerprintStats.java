@@ -0,0 +1,18 @@
+package com.example.backend.model.projection;
+
+/**
+ * Агрегат по отпечатку запроса; ускорение — отношение времени исходного запроса к оптимизированному.
+ */
+public interface FingerprintStats {
+
+    Long getFingerprint();
+
+    Long getQueryCount();
+
+    // Запросы, для которых измерены оба времени
+    Long getMeasuredCount();
+
+    Double getMedianSpeedup();
+
+    Long getLatestQueryId();
+}
@@ -0,0 +1,17 @@
+package com.example.backend.model.projection;
+
+import java.time.LocalDateTime;
+
+import com.example.backend.service.storage.BodyCodec;
+
+/**
+ * Сообщение чата для ленты. Сжатое тело выбирается тем же запросом через LEFT JOIN content_blobs
+ * и распаковывается при чтении {@link #content()}.
+ */
+public record MessageView(Long id, String inlineContent, String blobCodec, Integer blobLength, byte[] blobData,
+                          boolean fromUser, LocalDateTime createdAt) {
+
+    public String content() {
+        return blobData == null ? inlineContent : BodyCodec.decode(blobCodec, blobData, blobLength);
+    }
+}
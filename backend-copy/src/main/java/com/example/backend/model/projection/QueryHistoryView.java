@@ -0,0 +1,36 @@
+package com.example.backend.model.projection;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.example.backend.model.dto.OptimizationResult;
+import com.example.backend.service.storage.BodyCodec;
+
+/**
+ * Запрос из истории чата: без сообщения и подключения, которые ответу не нужны.
+ */
+public record QueryHistoryView(Long id, String originalQuery, String inlineOptimizedQuery, String blobCodec,
+                               Integer blobLength, byte[] blobData, String rationale, String estimatedGain,
+                               List<String> risks, List<String> suggestedIndexes, Double executionTimeMs,
+                               byte[] originalPlan, byte[] optimizedPlan, LocalDateTime createdAt) {
+
+    public String optimizedQuery() {
+        return blobData == null ? inlineOptimizedQuery : BodyCodec.decode(blobCodec, blobData, blobLength);
+    }
+
+    /**
+     * Результат по полям; null для запросов до V13, у которых есть только markdown-ответ.
+     */
+    public OptimizationResult result() {
+        if (rationale == null) {
+            return null;
+        }
+        return OptimizationResult.builder()
+                .optimizedSql(optimizedQuery())
+                .rationale(rationale)
+                .estimatedGain(estimatedGain)
+                .risks(risks == null ? List.of() : risks)
+                .indexSuggestions(suggestedIndexes == null ? List.of() : suggestedIndexes)
+                .build();
+    }
+}
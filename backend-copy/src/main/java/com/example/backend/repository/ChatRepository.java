@@ -1,16 +1,30 @@
 package com.example.backend.repository;
 
 import com.example.backend.model.entity.Chat;
+import com.example.backend.model.projection.ChatSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, Long> {
 
-    List<Chat> findByUserIdOrderByUpdatedAtDesc(Long userId);
+    List<ChatSummary> findByUserIdOrderByUpdatedAtDesc(Long userId);
 
     Optional<Chat> findByIdAndUserId(Long id, Long userId);
+
+    Optional<ChatSummary> findSummaryByIdAndUserId(Long id, Long userId);
+
+    // Одним UPDATE для всех чатов, в которые писали с прошлого сброса
+    @Transactional
+    @Modifying
+    @Query("UPDATE Chat c SET c.updatedAt = :updatedAt WHERE c.id IN :ids AND c.updatedAt < :updatedAt")
+    int touchAll(Collection<Long> ids, LocalDateTime updatedAt);
 }
@@ -0,0 +1,52 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.entity.ContentBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, Long> {
+
+    // FOR SHARE до конца транзакции: ссылку на найденный блок нужно сохранить в ней же,
+    // после коммита без ссылки блок снова доступен сборке мусора
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    Optional<ContentBlob> findByHash(byte[] hash);
+
+    // Параллельная вставка того же текста дожидается первой и ничего не делает.
+    // Поисковый вектор считается по исходному тексту: из сжатых данных его в SQL не получить
+    @Modifying
+    @Query(value = "INSERT INTO content_blobs (hash, codec, original_length, data, search_vector) "
+            + "VALUES (:hash, :codec, :originalLength, :data, to_tsvector('simple', substr(:text, 1, 262144))) "
+            + "ON CONFLICT (hash) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(byte[] hash, String codec, int originalLength, byte[] data, String text);
+
+    // Блоки, сохраненные до появления поиска (V12)
+    @Query(value = "SELECT * FROM content_blobs WHERE search_vector IS NULL AND id > :afterId ORDER BY id "
+            + "LIMIT :limit", nativeQuery = true)
+    List<ContentBlob> findUnindexed(long afterId, int limit);
+
+    @Modifying
+    @Query(value = "UPDATE content_blobs SET search_vector = to_tsvector('simple', substr(:text, 1, 262144)) "
+            + "WHERE id = :id", nativeQuery = true)
+    int updateSearchVector(Long id, String text);
+
+    // Блоки под FOR SHARE пропускаются: держащая их транзакция сейчас сохраняет ссылку
+    @Modifying
+    @Query(value = """
+            DELETE FROM content_blobs
+            WHERE id IN (SELECT b.id FROM content_blobs b
+                         WHERE b.created_at < :before
+                           AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.content_blob_id = b.id)
+                           AND NOT EXISTS (SELECT 1 FROM sql_queries q WHERE q.optimized_blob_id = b.id)
+                         FOR UPDATE SKIP LOCKED)
+            """, nativeQuery = true)
+    int deleteUnreferenced(LocalDateTime before);
+}
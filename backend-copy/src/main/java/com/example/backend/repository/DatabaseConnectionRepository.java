@@ -1,7 +1,9 @@
 package com.example.backend.repository;
 
 import com.example.backend.model.entity.DatabaseConnection;
+import com.example.backend.model.projection.ConnectionView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,6 +14,12 @@ public interface DatabaseConnectionRepository extends JpaRepository<DatabaseConn
 
     List<DatabaseConnection> findByChatIdAndActiveTrue(Long chatId);
 
+    // chat.id берется из внешнего ключа, без соединения с chats
+    @Query("SELECT new com.example.backend.model.projection.ConnectionView(c.id, c.chat.id, c.name, c.dbType, c.host, "
+            + "c.port, c.databaseName, c.username, c.active, c.createdAt, c.lastConnectedAt) "
+            + "FROM DatabaseConnection c WHERE c.chat.id = :chatId AND c.active = true")
+    List<ConnectionView> findViewsByChatId(Long chatId);
+
     Optional<DatabaseConnection> findByIdAndChatId(Long id, Long chatId);
 
     void deleteAllByChatId(Long chatId);
@@ -1,5 +1,6 @@
 package com.example.backend.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,10 +8,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.example.backend.model.entity.Message;
+import com.example.backend.model.projection.MessageView;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
-    @Query("SELECT m FROM Message m LEFT JOIN FETCH m.sqlQuery WHERE m.chat.id = :chatId ORDER BY m.createdAt ASC")
-    List<Message> findByChatIdOrderByCreatedAtAsc(Long chatId);
+    // since — начало месяца создания чата: более старые секции messages отсекаются при планировании
+    @Query("SELECT new com.example.backend.model.projection.MessageView(m.id, m.content, b.codec, b.originalLength, "
+            + "b.data, m.fromUser, m.createdAt) FROM Message m LEFT JOIN m.contentBlob b "
+            + "WHERE m.chat.id = :chatId AND m.createdAt >= :since ORDER BY m.createdAt ASC")
+    List<MessageView> findByChatIdOrderByCreatedAtAsc(Long chatId, LocalDateTime since);
 }
@@ -1,16 +1,66 @@
 package com.example.backend.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.model.projection.FingerprintSample;
+import com.example.backend.model.projection.FingerprintStats;
+import com.example.backend.model.projection.QueryHistoryView;
 
 @Repository
 public interface SqlQueryRepository extends JpaRepository<SqlQuery, Long> {
 
-    @Query("SELECT sq FROM SqlQuery sq LEFT JOIN FETCH sq.message m LEFT JOIN FETCH sq.databaseConnection WHERE m.chat.id = :chatId ORDER BY sq.createdAt DESC")
-    List<SqlQuery> findByMessageChatIdOrderByCreatedAtDesc(Long chatId);
+    // Запрос сохраняется не раньше своего сообщения, поэтому одна граница since отсекает секции обеих таблиц
+    @Query("SELECT new com.example.backend.model.projection.QueryHistoryView(sq.id, sq.originalQuery, "
+            + "sq.optimizedQuery, b.codec, b.originalLength, b.data, sq.rationale, sq.estimatedGain, sq.risks, "
+            + "sq.suggestedIndexes, sq.executionTimeMs, sq.originalPlan, "
+            + "sq.optimizedPlan, sq.createdAt) FROM SqlQuery sq JOIN sq.message m LEFT JOIN sq.optimizedBlob b "
+            + "WHERE m.chat.id = :chatId AND m.createdAt >= :since AND sq.createdAt >= :since ORDER BY sq.createdAt DESC")
+    List<QueryHistoryView> findByMessageChatIdOrderByCreatedAtDesc(Long chatId, LocalDateTime since);
+
+    // Условие fingerprint IS NOT NULL совпадает с предикатом частичного индекса idx_sql_queries_user_fingerprint
+    String FINGERPRINT_STATS = """
+            SELECT q.fingerprint AS fingerprint,
+                   count(*) AS queryCount,
+                   count(CASE WHEN q.original_execution_time_ms > 0 AND q.execution_time_ms > 0 THEN 1 END) AS measuredCount,
+                   percentile_cont(0.5) WITHIN GROUP (ORDER BY CASE
+                       WHEN q.original_execution_time_ms > 0 AND q.execution_time_ms > 0
+                       THEN CAST(q.original_execution_time_ms AS DOUBLE PRECISION) / q.execution_time_ms END) AS medianSpeedup,
+                   max(q.id) AS latestQueryId
+            FROM sql_queries q
+            WHERE q.user_id = :userId AND q.fingerprint IS NOT NULL
+            """;
+
+    @Query(value = FINGERPRINT_STATS + """
+            GROUP BY q.fingerprint
+            ORDER BY queryCount DESC, latestQueryId DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FingerprintStats> findTopFingerprints(Long userId, int limit);
+
+    @Query(value = FINGERPRINT_STATS + """
+              AND EXISTS (SELECT 1 FROM sql_query_tables t WHERE t.sql_query_id = q.id AND t.table_name = :table)
+            GROUP BY q.fingerprint
+            ORDER BY queryCount DESC, latestQueryId DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FingerprintStats> findTopFingerprintsByTable(Long userId, String table, int limit);
+
+    @Query(value = FINGERPRINT_STATS + """
+              AND q.fingerprint = :fingerprint
+            GROUP BY q.fingerprint
+            """, nativeQuery = true)
+    Optional<FingerprintStats> findFingerprintStats(Long userId, Long fingerprint);
+
+    // Только поля, которые показывает статистика отпечатка: без текста исходного запроса и планов
+    @Query("SELECT new com.example.backend.model.projection.FingerprintSample(sq.id, sq.statementType, "
+            + "sq.normalizedQuery, sq.createdAt, t) FROM SqlQuery sq LEFT JOIN sq.referencedTables t WHERE sq.id IN :ids")
+    List<FingerprintSample> findSamplesByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,60 @@
+package com.example.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.example.backend.model.entity.UserOptimizationStats;
+import com.example.backend.model.entity.UserTopQuery;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserOptimizationStats, Long> {
+
+    // Строка пользователя блокируется до конца транзакции: пересчет и параллельные приращения не смешиваются
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_optimization_stats AS s (user_id, optimization_count, measured_count, improved_count,
+                                                      original_time_ms, optimized_time_ms, last_optimized_at)
+            VALUES (:userId, 1, :measured, :improved, :originalTimeMs, :optimizedTimeMs, :createdAt)
+            ON CONFLICT (user_id) DO UPDATE SET
+                optimization_count = s.optimization_count + 1,
+                measured_count = s.measured_count + EXCLUDED.measured_count,
+                improved_count = s.improved_count + EXCLUDED.improved_count,
+                original_time_ms = s.original_time_ms + EXCLUDED.original_time_ms,
+                optimized_time_ms = s.optimized_time_ms + EXCLUDED.optimized_time_ms,
+                last_optimized_at = GREATEST(s.last_optimized_at, EXCLUDED.last_optimized_at),
+                updated_at = CURRENT_TIMESTAMP
+            """, nativeQuery = true)
+    int increment(Long userId, int measured, int improved, double originalTimeMs, double optimizedTimeMs,
+            LocalDateTime createdAt);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_top_queries (user_id, sql_query_id, normalized_query, original_time_ms,
+                                          optimized_time_ms, saved_ms, created_at)
+            VALUES (:userId, :sqlQueryId, :normalizedQuery, :originalTimeMs, :optimizedTimeMs, :savedMs, :createdAt)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertTopQuery(Long userId, Long sqlQueryId, String normalizedQuery, double originalTimeMs,
+            double optimizedTimeMs, double savedMs, LocalDateTime createdAt);
+
+    // Оставляет keep лучших строк пользователя; индекс отдает их без сортировки
+    @Modifying
+    @Query(value = """
+            DELETE FROM user_top_queries t
+            WHERE t.user_id = :userId
+              AND t.sql_query_id NOT IN (SELECT k.sql_query_id FROM user_top_queries k
+                                         WHERE k.user_id = :userId
+                                         ORDER BY k.saved_ms DESC, k.sql_query_id DESC
+                                         LIMIT :keep)
+            """, nativeQuery = true)
+    int trimTopQueries(Long userId, int keep);
+
+    @Query("SELECT t FROM UserTopQuery t WHERE t.userId = :userId ORDER BY t.savedMs DESC, t.sqlQueryId DESC")
+    List<UserTopQuery> findTopQueries(Long userId, Limit limit);
+}
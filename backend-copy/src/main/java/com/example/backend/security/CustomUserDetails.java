@@ -2,15 +2,17 @@ package com.example.backend.security;
 
 import com.example.backend.model.entity.User;
 import lombok.Getter;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import java.util.Collections;
+import java.util.List;
 
 @Getter
 public class CustomUserDetails extends org.springframework.security.core.userdetails.User implements UserDetails {
     private final Long userId;
 
     public CustomUserDetails(User user) {
-        super(user.getUsername(), user.getPassword(), Collections.emptyList());
+        super(user.getUsername(), user.getPassword(), List.of(new SimpleGrantedAuthority(
+                "ROLE_" + (user.getRole() == null ? User.ROLE_USER : user.getRole()))));
         this.userId = user.getId();
     }
 
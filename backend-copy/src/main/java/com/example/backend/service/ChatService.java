@@ -2,25 +2,46 @@ package com.example.backend.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.backend.exception.ResourceNotFoundException;
 import com.example.backend.model.dto.ChatDto;
 import com.example.backend.model.dto.MessageDto;
+import com.example.backend.model.dto.SqlQueryRequest;
 import com.example.backend.model.entity.Chat;
 import com.example.backend.model.entity.Message;
 import com.example.backend.model.entity.User;
+import com.example.backend.model.projection.ChatSummary;
+import com.example.backend.model.projection.MessageView;
 import com.example.backend.repository.ChatRepository;
 import com.example.backend.repository.MessageRepository;
 import com.example.backend.repository.UserRepository;
+import com.example.backend.service.analysis.SqlClassifier;
+import com.example.backend.service.chat.ChatActivityTracker;
+import com.example.backend.service.chat.MessageWriteBehindBuffer;
+import com.example.backend.service.event.SqlMessageReceivedEvent;
+import com.example.backend.service.partition.MonthlyPartitions;
+import com.example.backend.service.storage.ContentStore;
+import com.example.backend.tracing.StompPublisher;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.merge.Merge;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.update.Update;
 
 @Service
 @RequiredArgsConstructor
@@ -31,11 +52,16 @@ public class ChatService {
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
     private final DatabaseConnectionService databaseConnectionService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final StompPublisher stompPublisher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChatActivityTracker chatActivityTracker;
+    private final ContentStore contentStore;
+    private final ObjectProvider<MessageWriteBehindBuffer> writeBehindBuffer;
 
+    @Transactional(readOnly = true)
     public List<ChatDto> getUserChats(Long userId) {
         log.debug("Fetching chats for userId={}", userId);
-        List<Chat> chats = chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+        List<ChatSummary> chats = chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
         return chats.stream()
                 .map(this::mapToDto)
                 .collect(Collectors.toList());
@@ -60,9 +86,10 @@ public class ChatService {
         return mapToDto(savedChat);
     }
 
+    @Transactional(readOnly = true)
     public ChatDto getChat(Long chatId, Long userId) {
         log.debug("Fetching chat: chatId={}, userId={}", chatId, userId);
-        Chat chat = chatRepository.findByIdAndUserId(chatId, userId)
+        ChatSummary chat = chatRepository.findSummaryByIdAndUserId(chatId, userId)
                 .orElseThrow(() -> {
                     log.error("Chat not found: chatId={}, userId={}", chatId, userId);
                     return new ResourceNotFoundException("Chat not found");
@@ -71,30 +98,42 @@ public class ChatService {
         return mapToDto(chat);
     }
 
+    @Transactional(readOnly = true)
     public List<MessageDto> getChatMessages(Long chatId, Long userId) {
         log.debug("Fetching messages for chatId={}, userId={}", chatId, userId);
-        chatRepository.findByIdAndUserId(chatId, userId)
+        ChatSummary chat = chatRepository.findSummaryByIdAndUserId(chatId, userId)
                 .orElseThrow(() -> {
                     log.error("Chat not found: chatId={}, userId={}", chatId, userId);
                     return new ResourceNotFoundException("Chat not found");
                 });
 
-        List<Message> messages = messageRepository.findByChatIdOrderByCreatedAtAsc(chatId);
-        return messages.stream()
+        List<MessageDto> messages = messageRepository.findByChatIdOrderByCreatedAtAsc(chatId,
+                        MonthlyPartitions.lowerBound(chat.getCreatedAt())).stream()
                 .map(this::mapToMessageDto)
                 .collect(Collectors.toList());
+        MessageWriteBehindBuffer buffer = writeBehindBuffer.getIfAvailable();
+        if (buffer != null) {
+            // Досылаем сообщения, которые еще ждут записи; уже записанные могут оказаться в обоих списках
+            List<Message> pending = buffer.pending(chatId);
+            if (!pending.isEmpty()) {
+                messages = Stream.concat(messages.stream(), pending.stream().map(this::mapToMessageDto))
+                        .collect(Collectors.toMap(MessageDto::getId, message -> message, (a, b) -> a))
+                        .values().stream()
+                        .sorted(Comparator.comparing(MessageDto::getCreatedAt).thenComparing(MessageDto::getId))
+                        .collect(Collectors.toList());
+            }
+        }
+        return messages;
     }
 
     @Transactional
     public MessageDto sendMessage(Long chatId, Long userId, MessageDto messageDto) {
-        log.info("Processing sendMessage: chatId={}, userId={}, content={}", chatId, userId, messageDto.getContent());
+        log.info("Processing sendMessage: chatId={}, userId={}, length={}", chatId, userId,
+                messageDto.getContent() == null ? 0 : messageDto.getContent().length());
 
-        Chat chat = chatRepository.findById(chatId)
+        Chat chat = chatRepository.findByIdAndUserId(chatId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Chat not found with id: " + chatId));
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-
         log.debug("Found chat: id={}, title={}", chat.getId(), chat.getTitle());
 
         Message message = new Message();
@@ -103,38 +142,61 @@ public class ChatService {
         message.setFromUser(messageDto.getFromUser());
         message.setCreatedAt(LocalDateTime.now());
 
-        log.debug("Saving message: content={}, fromUser={}", message.getContent(), message.isFromUser());
-        message = messageRepository.save(message);
-        log.info("Message saved successfully: id={}", message.getId());
+        // SQL-запрос пользователя уходит на оптимизацию после коммита, результат придет в топик чата;
+        // остальные сообщения, в том числе не от пользователя, рассылаются сразу. На сообщение с SQL
+        // ссылается sql_queries, поэтому оно пишется в таблицу синхронно, остальные можно отложить
+        boolean sql = message.isFromUser() && isOptimizable(messageDto.getContent());
+        MessageWriteBehindBuffer buffer = writeBehindBuffer.getIfAvailable();
+        if (!sql && buffer != null) {
+            message = buffer.write(message);
+            log.info("Message buffered: id={}", message.getId());
+        } else {
+            contentStore.compact(message);
+            message = messageRepository.save(message);
+            log.info("Message saved successfully: id={}", message.getId());
+        }
 
-        // Отправляем сообщение через WebSocket только если это не SQL-запрос
-        if (!isSQLQuery(messageDto.getContent())) {
+        if (sql && message.isFromUser()) {
+            SqlQueryRequest request = SqlQueryRequest.builder()
+                    .chatId(chatId)
+                    .query(messageDto.getContent())
+                    .llm(messageDto.getLlmProvider())
+                    .databaseConnectionId(messageDto.getDatabaseConnectionId())
+                    .isMPP(Boolean.TRUE.equals(messageDto.getMpp()))
+                    .build();
+            eventPublisher.publishEvent(new SqlMessageReceivedEvent(userId, message, request));
+            log.info("SQL message queued for optimization: id={}", message.getId());
+        } else {
             String destination = "/topic/chat/" + chatId;
             log.debug("Sending message to destination: {}", destination);
-            messagingTemplate.convertAndSend(destination, mapToMessageDto(message));
+            stompPublisher.convertAndSend(destination, mapToMessageDto(message));
             log.info("Successfully sent message to {}: id={}", destination, message.getId());
         }
 
-        // Обновляем время последнего обновления чата
-        chat.setUpdatedAt(LocalDateTime.now());
-        chatRepository.save(chat);
-        log.debug("Updated chat timestamp: id={}", chat.getId());
+        // Время обновления чата пишется пакетно, одним UPDATE на все активные чаты
+        chatActivityTracker.touch(chatId);
 
         return mapToMessageDto(message);
     }
 
-    private boolean isSQLQuery(String content) {
-        if (content == null || content.trim().isEmpty()) {
+    /**
+     * Оптимизируются только запросы и DML, которые целиком разбираются парсером. Классификатор по первому
+     * слову отсекает обычный текст без разбора, но фраза вроде "Update: все еще медленно" доходит до парсера
+     * и остается сообщением чата, как и DDL.
+     */
+    private static boolean isOptimizable(String content) {
+        SqlClassifier.Kind kind = SqlClassifier.classify(content);
+        if (!kind.isQuery() && !kind.isDml()) {
+            return false;
+        }
+        try {
+            Statement statement = CCJSqlParserUtil.parse(content);
+            return statement instanceof Select || statement instanceof Insert || statement instanceof Update
+                    || statement instanceof Delete || statement instanceof Merge;
+        } catch (JSQLParserException e) {
+            log.debug("Message is not a parsable SQL statement: {}", e.getMessage());
             return false;
         }
-        String upperContent = content.toUpperCase().trim();
-        return upperContent.startsWith("SELECT") ||
-                upperContent.startsWith("INSERT") ||
-                upperContent.startsWith("UPDATE") ||
-                upperContent.startsWith("DELETE") ||
-                upperContent.startsWith("CREATE") ||
-                upperContent.startsWith("ALTER") ||
-                upperContent.startsWith("DROP");
     }
 
     @Transactional
@@ -194,6 +256,25 @@ public class ChatService {
                 .build();
     }
 
+    private ChatDto mapToDto(ChatSummary chat) {
+        return ChatDto.builder()
+                .id(chat.getId())
+                .title(chat.getTitle())
+                .createdAt(chat.getCreatedAt())
+                .updatedAt(chat.getUpdatedAt())
+                .archived(chat.isArchived())
+                .build();
+    }
+
+    private MessageDto mapToMessageDto(MessageView message) {
+        return MessageDto.builder()
+                .id(message.id())
+                .content(message.content())
+                .fromUser(message.fromUser())
+                .createdAt(message.createdAt())
+                .build();
+    }
+
     private MessageDto mapToMessageDto(Message message) {
         return MessageDto.builder()
                 .id(message.getId())
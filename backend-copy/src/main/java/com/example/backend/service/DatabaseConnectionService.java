@@ -2,13 +2,17 @@ package com.example.backend.service;
 
 import com.example.backend.exception.DatabaseConnectionException;
 import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.model.catalog.TableMetadata;
 import com.example.backend.model.dto.DatabaseConnectionDto;
 import com.example.backend.model.entity.Chat;
 import com.example.backend.model.entity.DatabaseConnection;
 import com.example.backend.model.entity.User;
+import com.example.backend.model.projection.ConnectionView;
 import com.example.backend.repository.ChatRepository;
 import com.example.backend.repository.DatabaseConnectionRepository;
 import com.example.backend.repository.UserRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -16,11 +20,19 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,15 +40,21 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DatabaseConnectionService {
 
+    // Имя таблицы подставляется в текст запроса, поэтому допускаются только простые идентификаторы
+    private static final Pattern QUALIFIED_NAME =
+            Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+
     private final DatabaseConnectionRepository databaseConnectionRepository;
     private final UserRepository userRepository;
     private final ChatRepository chatRepository;
+    private final ObservationRegistry observationRegistry;
 
     // Cache for active connections
     private final Map<Long, Connection> activeConnections = new HashMap<>();
 
+    @Transactional(readOnly = true)
     public List<DatabaseConnectionDto> getConnectionsForChat(Long chatId) {
-        List<DatabaseConnection> connections = databaseConnectionRepository.findByChatIdAndActiveTrue(chatId);
+        List<ConnectionView> connections = databaseConnectionRepository.findViewsByChatId(chatId);
         return connections.stream()
                 .map(this::mapToDto)
                 .collect(Collectors.toList());
@@ -72,9 +90,13 @@ public class DatabaseConnectionService {
     public boolean testConnection(DatabaseConnectionDto connectionDto) {
         String url = buildJdbcUrl(connectionDto);
 
-        try (Connection connection = DriverManager.getConnection(
-                url, connectionDto.getUsername(), connectionDto.getPassword())) {
-            return connection.isValid(5);
+        try {
+            return connectObservation("target.db.test", connectionDto.getDbType()).observeChecked(() -> {
+                try (Connection connection = DriverManager.getConnection(
+                        url, connectionDto.getUsername(), connectionDto.getPassword())) {
+                    return connection.isValid(5);
+                }
+            });
         } catch (SQLException e) {
             log.error("Failed to connect to database: {}", e.getMessage());
             throw new DatabaseConnectionException("Failed to connect to database: " + e.getMessage());
@@ -95,6 +117,22 @@ public class DatabaseConnectionService {
             }
         }
 
+        Connection connection = openConnection(connectionId);
+        // Cache the connection
+        activeConnections.put(connectionId, connection);
+        return connection;
+    }
+
+    /**
+     * Отдельное соединение вне кэша для операций, меняющих состояние сессии: транзакция EXPLAIN ANALYZE,
+     * гипотетические индексы HypoPG. Кэшированное соединение общее для всех запросов, поэтому такие
+     * операции на нем мешали бы друг другу. Закрывает вызывающий.
+     */
+    public Connection openDedicatedConnection(Long connectionId) {
+        return openConnection(connectionId);
+    }
+
+    private Connection openConnection(Long connectionId) {
         // Get connection details from database
         DatabaseConnection dbConnection = databaseConnectionRepository.findById(connectionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Database connection not found"));
@@ -107,16 +145,14 @@ public class DatabaseConnectionService {
         String url = buildJdbcUrl(dbConnection);
 
         try {
-            Connection connection = DriverManager.getConnection(
-                    url, dbConnection.getUsername(), dbConnection.getPassword());
+            Connection connection = connectObservation("target.db.connect", dbConnection.getDbType())
+                    .observeChecked(() -> DriverManager.getConnection(
+                            url, dbConnection.getUsername(), dbConnection.getPassword()));
 
             // Update last connected timestamp
             dbConnection.setLastConnectedAt(LocalDateTime.now());
             databaseConnectionRepository.save(dbConnection);
 
-            // Cache the connection
-            activeConnections.put(connectionId, connection);
-
             return connection;
         } catch (SQLException e) {
             log.error("Failed to connect to database: {}", e.getMessage());
@@ -124,6 +160,206 @@ public class DatabaseConnectionService {
         }
     }
 
+    /**
+     * Оценки числа строк из pg_class.reltuples для таблиц запроса.
+     * Таблицы, которых нет в каталоге, в результат не попадают; ошибки каталога не прерывают оптимизацию.
+     */
+    public Map<String, Long> getTableRowEstimates(Long connectionId, Collection<String> tableNames) {
+        Map<String, Long> estimates = new HashMap<>();
+        if (tableNames.isEmpty()) {
+            return estimates;
+        }
+        Connection connection = getConnection(connectionId);
+        String sql = "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (String tableName : tableNames) {
+                statement.setString(1, tableName);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        estimates.put(tableName, resultSet.getLong(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read table statistics for connection {}: {}", connectionId, e.getMessage());
+        }
+        return estimates;
+    }
+
+    /**
+     * Ключи распределения Greenplum из gp_distribution_policy. Пустой список — DISTRIBUTED RANDOMLY
+     * или REPLICATED; таблиц, которых нет в gp_distribution_policy, в результате нет.
+     */
+    public Map<String, List<String>> getDistributionKeys(Long connectionId, Collection<String> tableNames) {
+        Map<String, List<String>> keys = new HashMap<>();
+        if (tableNames.isEmpty()) {
+            return keys;
+        }
+        Connection connection = getConnection(connectionId);
+        String sql = "SELECT a.attname FROM gp_distribution_policy p "
+                + "LEFT JOIN pg_attribute a ON a.attrelid = p.localoid AND a.attnum = ANY(p.distkey::int2[]) "
+                + "WHERE p.localoid = to_regclass(?)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (String tableName : tableNames) {
+                statement.setString(1, tableName);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        List<String> columns = keys.computeIfAbsent(tableName, key -> new ArrayList<>());
+                        if (resultSet.getString(1) != null) {
+                            columns.add(resultSet.getString(1));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read distribution policy for connection {}: {}", connectionId, e.getMessage());
+        }
+        return keys;
+    }
+
+    /**
+     * Число строк на каждом сегменте Greenplum. Считается по gp_segment_id только для переданных таблиц:
+     * представление gp_toolkit.gp_skew_coefficients обходит все таблицы базы.
+     * Таблица, не уложившаяся в timeoutSeconds, пропускается.
+     */
+    public Map<String, List<Long>> getSegmentRowCounts(Long connectionId, Collection<String> tableNames,
+            int timeoutSeconds) {
+        Map<String, List<Long>> counts = new HashMap<>();
+        Connection connection = getConnection(connectionId);
+        for (String tableName : tableNames) {
+            if (!QUALIFIED_NAME.matcher(tableName).matches()) {
+                continue;
+            }
+            String sql = "SELECT count(*) FROM " + tableName + " GROUP BY gp_segment_id";
+            try (java.sql.Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet resultSet = statement.executeQuery(sql)) {
+                    List<Long> segmentCounts = new ArrayList<>();
+                    while (resultSet.next()) {
+                        segmentCounts.add(resultSet.getLong(1));
+                    }
+                    counts.put(tableName, segmentCounts);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to count segment rows of {} for connection {}: {}", tableName, connectionId,
+                        e.getMessage());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Столбцы NOT NULL таблиц запроса (столбцы первичного ключа в pg_attribute тоже attnotnull).
+     * Таблиц, которых нет в каталоге, в результате нет.
+     */
+    public Map<String, Set<String>> getNotNullColumns(Long connectionId, Collection<String> tableNames) {
+        Map<String, Set<String>> columns = new HashMap<>();
+        if (tableNames.isEmpty()) {
+            return columns;
+        }
+        Connection connection = getConnection(connectionId);
+        String sql = "SELECT attname FROM pg_attribute WHERE attrelid = to_regclass(?) AND attnum > 0 "
+                + "AND attnotnull AND NOT attisdropped";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (String tableName : tableNames) {
+                statement.setString(1, tableName);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        columns.computeIfAbsent(tableName, key -> new HashSet<>()).add(resultSet.getString(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read NOT NULL columns for connection {}: {}", connectionId, e.getMessage());
+        }
+        return columns;
+    }
+
+    /**
+     * Типы столбцов таблиц запроса в виде regtype: date, timestamp without time zone, text и т.д.
+     * Таблиц, которых нет в каталоге, в результате нет.
+     */
+    public Map<String, Map<String, String>> getColumnTypes(Long connectionId, Collection<String> tableNames) {
+        Map<String, Map<String, String>> types = new HashMap<>();
+        if (tableNames.isEmpty()) {
+            return types;
+        }
+        Connection connection = getConnection(connectionId);
+        String sql = "SELECT attname, atttypid::regtype::text FROM pg_attribute WHERE attrelid = to_regclass(?) "
+                + "AND attnum > 0 AND NOT attisdropped";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (String tableName : tableNames) {
+                statement.setString(1, tableName);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        types.computeIfAbsent(tableName, key -> new HashMap<>())
+                                .put(resultSet.getString(1), resultSet.getString(2));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read column types for connection {}: {}", connectionId, e.getMessage());
+        }
+        return types;
+    }
+
+    /**
+     * Столбцы, индексы и оценка строк таблиц запроса из pg_attribute, pg_index и pg_class.
+     */
+    public Map<String, TableMetadata> getTableMetadata(Long connectionId, Collection<String> tableNames) {
+        Map<String, TableMetadata> metadata = new LinkedHashMap<>();
+        if (tableNames.isEmpty()) {
+            return metadata;
+        }
+        Map<String, Long> rowEstimates = getTableRowEstimates(connectionId, tableNames);
+        Connection connection = getConnection(connectionId);
+        String columnsSql = "SELECT attname, format_type(atttypid, atttypmod) FROM pg_attribute "
+                + "WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped ORDER BY attnum";
+        String indexesSql = "SELECT pg_get_indexdef(indexrelid) FROM pg_index WHERE indrelid = to_regclass(?)";
+        try (PreparedStatement columnsStatement = connection.prepareStatement(columnsSql);
+                PreparedStatement indexesStatement = connection.prepareStatement(indexesSql)) {
+            for (String tableName : tableNames) {
+                Map<String, String> columns = new LinkedHashMap<>();
+                columnsStatement.setString(1, tableName);
+                try (ResultSet resultSet = columnsStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        columns.put(resultSet.getString(1), resultSet.getString(2));
+                    }
+                }
+                if (columns.isEmpty()) {
+                    continue;
+                }
+                List<String> indexes = new ArrayList<>();
+                indexesStatement.setString(1, tableName);
+                try (ResultSet resultSet = indexesStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        indexes.add(resultSet.getString(1));
+                    }
+                }
+                metadata.put(tableName, TableMetadata.builder()
+                        .name(tableName)
+                        .rowEstimate(rowEstimates.get(tableName))
+                        .columns(columns)
+                        .indexes(indexes)
+                        .build());
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to read table metadata for connection {}: {}", connectionId, e.getMessage());
+        }
+        return metadata;
+    }
+
+    /**
+     * Вывод EXPLAIN (FORMAT JSON) без выполнения запроса.
+     */
+    public String explainJson(Long connectionId, String query) throws SQLException {
+        Connection connection = getConnection(connectionId);
+        try (java.sql.Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("EXPLAIN (FORMAT JSON) " + query)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
     public void closeConnection(Long connectionId) {
         Connection connection = activeConnections.remove(connectionId);
         if (connection != null) {
@@ -147,6 +383,11 @@ public class DatabaseConnectionService {
         databaseConnectionRepository.saveAll(connections);
     }
 
+    private Observation connectObservation(String name, String dbType) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .lowCardinalityKeyValue("db.system", dbType == null ? "unknown" : dbType.toLowerCase());
+    }
+
     private String buildJdbcUrl(DatabaseConnectionDto connection) {
         if ("postgresql".equalsIgnoreCase(connection.getDbType()) ||
                 "greenplum".equalsIgnoreCase(connection.getDbType())) {
@@ -167,6 +408,23 @@ public class DatabaseConnectionService {
         throw new DatabaseConnectionException("Unsupported database type: " + connection.getDbType());
     }
 
+    private DatabaseConnectionDto mapToDto(ConnectionView connection) {
+        return DatabaseConnectionDto.builder()
+                .id(connection.id())
+                .chatId(connection.chatId())
+                .name(connection.name())
+                .dbType(connection.dbType())
+                .host(connection.host())
+                .port(connection.port())
+                .databaseName(connection.databaseName())
+                .username(connection.username())
+                .password("********") // Don't expose password in DTO
+                .active(connection.active())
+                .createdAt(connection.createdAt())
+                .lastConnectedAt(connection.lastConnectedAt())
+                .build();
+    }
+
     private DatabaseConnectionDto mapToDto(DatabaseConnection connection) {
         return DatabaseConnectionDto.builder()
                 .id(connection.getId())
@@ -13,20 +13,25 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import com.example.backend.metrics.OptimizationMetrics;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.observation.ObservationRegistry;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Mono;
 import reactor.netty.http.client.HttpClient;
 import reactor.util.retry.Retry;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class GigaChatAuthService {
 
     private static final int MAX_RETRY_ATTEMPTS = 3;
@@ -53,6 +58,8 @@ public class GigaChatAuthService {
     private final AtomicReference<String> tokenRef = new AtomicReference<>();
     private final AtomicReference<Instant> tokenExpiryRef = new AtomicReference<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OptimizationMetrics optimizationMetrics;
+    private final ObservationRegistry observationRegistry;
 
     private WebClient authWebClient;
     private WebClient.Builder apiWebClientBuilder;
@@ -90,6 +97,7 @@ public class GigaChatAuthService {
         this.authWebClient = WebClient.builder()
                 .baseUrl(authUrl)
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .observationRegistry(observationRegistry)
                 .defaultHeader("Content-Type", "application/x-www-form-urlencoded")
                 .defaultHeader("Accept", "application/json")
                 .defaultHeader("RqUID", UUID.randomUUID().toString())
@@ -97,7 +105,8 @@ public class GigaChatAuthService {
 
         this.apiWebClientBuilder = WebClient.builder()
                 .baseUrl(apiUrl)
-                .clientConnector(new ReactorClientHttpConnector(httpClient));
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .observationRegistry(observationRegistry);
     }
 
     private HttpClient createHttpClient() throws Exception {
@@ -118,9 +127,14 @@ public class GigaChatAuthService {
         String currentToken = tokenRef.get();
         if (currentToken == null || isTokenExpired()) {
             return refreshToken()
+                    .name("gigachat.token.refresh")
+                    .tap(Micrometer.observation(observationRegistry))
                     .doOnNext(token -> tokenRef.set(token))
                     .retryWhen(Retry.backoff(MAX_RETRY_ATTEMPTS, java.time.Duration.ofMillis(RETRY_DELAY_MS))
-                            .doBeforeRetry(signal -> log.warn("Retrying token refresh, attempt: {}", signal.totalRetries() + 1))
+                            .doBeforeRetry(signal -> {
+                                log.warn("Retrying token refresh, attempt: {}", signal.totalRetries() + 1);
+                                optimizationMetrics.recordRetry("gigachat", "token_refresh");
+                            })
                             .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> 
                                 new RuntimeException("Failed to refresh token after " + MAX_RETRY_ATTEMPTS + " attempts")));
         }
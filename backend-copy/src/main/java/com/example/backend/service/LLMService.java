@@ -1,24 +1,28 @@
 package com.example.backend.service;
 
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestTemplate;
 
 import com.example.backend.config.LLMConfig;
 import com.example.backend.exception.ApiException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
+import com.example.backend.exception.LLMRateLimitException;
+import com.example.backend.metrics.OptimizationMetrics;
+import com.example.backend.model.dto.OptimizationResult;
+import com.example.backend.service.llm.BudgetedPrompt;
+import com.example.backend.service.llm.LLMRateGovernor;
+import com.example.backend.service.llm.LLMRequest;
+import com.example.backend.service.llm.LLMRouter;
+import com.example.backend.service.llm.OptimizationResultParser;
+import com.example.backend.service.llm.PromptBudgeter;
+import com.example.backend.service.llm.PromptContext;
+
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
@@ -31,155 +35,75 @@ public class LLMService {
     private static final int RETRY_DELAY_MS = 1000;
 
     private final LLMConfig llmConfig;
-    private final GigaChatAuthService gigaChatAuthService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final RestTemplate restTemplate;
-    private final RestTemplate localRestTemplate;
-
-    public Mono<String> optimizeSqlQuery(String query, String llmProvider, String promptTemplate) {
+    private final LLMRouter llmRouter;
+    private final LLMRateGovernor llmRateGovernor;
+    private final PromptBudgeter promptBudgeter;
+    private final OptimizationMetrics optimizationMetrics;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Оптимизация с планом и метаданными целевой БД; промпт укладывается в бюджет токенов модели.
+     * Ответ запрашивается JSON-объектом по схеме; ответ без корректного SQL повторяется как сбой провайдера.
+     */
+    public Mono<OptimizationResult> optimizeSqlQuery(String query, String llmProvider, String promptTemplate,
+            PromptContext promptContext, Long userId) {
         log.debug("Optimizing SQL query with provider: {}", llmProvider);
-        if ("Local".equals(llmProvider)) {
-            return optimizeWithLocalLLM(query, promptTemplate);
-        } else {
-            return optimizeWithCloudLLM(query, promptTemplate);
-        }
-    }
-
-    private Mono<String> optimizeWithLocalLLM(String query, String promptTemplate) {
-        log.debug("Attempting to optimize with local LLM. Local LLM enabled: {}", llmConfig.isLocalEnabled());
-        if (!llmConfig.isLocalEnabled()) {
-            log.error("Local LLM is not enabled");
-            return Mono.error(new ApiException("Local LLM is not enabled", HttpStatus.SERVICE_UNAVAILABLE));
+        if (!StringUtils.hasText(query)) {
+            return Mono.error(new ApiException("SQL query cannot be empty", HttpStatus.BAD_REQUEST));
         }
 
-        try {
-            Map<String, Object> requestBody = prepareRequestBody(query, promptTemplate);
-            log.debug("Prepared request body for local LLM: {}", requestBody);
-
-            return Mono.fromCallable(() -> {
-                try {
-                    log.debug("Sending request to local LLM at URL: {}", llmConfig.getLocalApiUrl());
-                    String response = localRestTemplate.postForObject(
-                            llmConfig.getLocalApiUrl() + "/v1/chat/completions",
-                            requestBody,
-                            String.class);
-
-                    if (response == null) {
-                        log.error("Empty response from local LLM");
-                        throw new ApiException("Empty response from local LLM", HttpStatus.INTERNAL_SERVER_ERROR);
-                    }
-
-                    log.debug("Received response from local LLM: {}", response);
-                    JsonNode rootNode = objectMapper.readTree(response);
-                    JsonNode choicesNode = rootNode.path("choices");
-
-                    if (choicesNode.isArray() && choicesNode.size() > 0) {
-                        JsonNode firstChoice = choicesNode.get(0);
-                        JsonNode messageNode = firstChoice.path("message");
-                        String content = messageNode.path("content").asText();
-
-                        // Форматируем ответ в соответствии с шаблоном
-                        return formatLLMResponse(content);
+        String provider = OptimizationMetrics.providerTag(llmProvider);
+        Mono<OptimizationResult> completion = Mono.defer(() -> {
+            validateConfiguration();
+            BudgetedPrompt prompt = promptBudgeter.budget(promptTemplate + OptimizationResultParser.INSTRUCTIONS,
+                    query, promptContext, llmConfig.getMaxTokens());
+            optimizationMetrics.recordPromptBudget(provider, prompt.getPromptTokens(), prompt.getMaxTokens());
+            LLMRequest request = LLMRequest.builder()
+                    .systemPrompt(prompt.getSystemPrompt())
+                    .userPrompt(prompt.getUserPrompt())
+                    .temperature(llmConfig.getTemperature())
+                    .maxTokens(prompt.getMaxTokens())
+                    .schemaName(OptimizationResultParser.SCHEMA_NAME)
+                    .responseSchema(OptimizationResultParser.SCHEMA)
+                    .build();
+            return llmRouter.route(provider, request).map(OptimizationResultParser::parse);
+        })
+                // Роутер уже переключается между бэкендами; повтор нужен, когда отказали все кандидаты
+                .retryWhen(Retry.backoff(MAX_RETRY_ATTEMPTS, Duration.ofMillis(RETRY_DELAY_MS))
+                        .filter(this::isRetryable)
+                        .doBeforeRetry(signal -> {
+                            log.warn("Retrying LLM API call, attempt: {}", signal.totalRetries() + 1);
+                            optimizationMetrics.recordRetry(provider, "completion");
+                        })
+                        .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> new ApiException(
+                                "Failed to optimize SQL query after " + MAX_RETRY_ATTEMPTS + " attempts",
+                                HttpStatus.SERVICE_UNAVAILABLE)));
+
+        // Слот пользователя держится на все повторы, чтобы один пользователь не занял всю квоту провайдера
+        return llmRateGovernor.withUserLimit(userId, () -> completion)
+                .onErrorMap(e -> {
+                    if (e instanceof ApiException) {
+                        return e;
                     }
-
-                    log.error("Invalid response format from local LLM: {}", response);
-                    throw new ApiException("Invalid response format from local LLM", HttpStatus.INTERNAL_SERVER_ERROR);
-                } catch (Exception e) {
-                    log.error("Error calling local LLM: {}", e.getMessage(), e);
-                    throw new ApiException("Error calling local LLM: " + e.getMessage(),
-                            HttpStatus.SERVICE_UNAVAILABLE);
-                }
-            }).retryWhen(Retry.backoff(MAX_RETRY_ATTEMPTS, Duration.ofMillis(RETRY_DELAY_MS))
-                    .filter(e -> e instanceof ApiException &&
-                            ((ApiException) e).getStatus() == HttpStatus.SERVICE_UNAVAILABLE));
-        } catch (Exception e) {
-            log.error("Failed to prepare request for local LLM: {}", e.getMessage(), e);
-            return Mono.error(new ApiException("Failed to prepare request for local LLM: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR));
-        }
+                    log.error("Error calling LLM API: {}", e.getMessage(), e);
+                    return new ApiException("Error optimizing SQL query: " + e.getMessage(),
+                            HttpStatus.INTERNAL_SERVER_ERROR);
+                })
+                .name("llm.completion")
+                .tag("provider", provider)
+                .tap(Micrometer.observation(observationRegistry));
     }
 
-    private String formatLLMResponse(String content) {
-        // Если ответ уже содержит нужный формат, возвращаем его как есть
-        if (content.contains("Оптимизированный SQL-запрос:") &&
-                content.contains("Обоснование изменений:") &&
-                content.contains("Оценка улучшения:") &&
-                content.contains("Потенциальные риски:")) {
-            return content;
+    private boolean isRetryable(Throwable error) {
+        // 429 от самого провайдера повторяем после паузы Retry-After;
+        // отказ локального лимитера (очередь полна, истекло ожидание) сразу возвращаем клиенту
+        if (error instanceof LLMRateLimitException) {
+            return true;
         }
-
-        // Иначе форматируем ответ
-        StringBuilder formattedResponse = new StringBuilder();
-
-        // Добавляем SQL запрос
-        formattedResponse.append("## Оптимизированный SQL-запрос\n\n");
-        if (content.contains("```sql")) {
-            int start = content.indexOf("```sql") + 6;
-            int end = content.indexOf("```", start);
-            if (end > start) {
-                formattedResponse.append("```sql\n");
-                formattedResponse.append(content.substring(start, end).trim());
-                formattedResponse.append("\n```\n\n");
-            }
-        } else {
-            formattedResponse.append("```sql\n");
-            formattedResponse.append(content.trim());
-            formattedResponse.append("\n```\n\n");
+        if (error instanceof ApiException apiException) {
+            return apiException.getStatus() == HttpStatus.SERVICE_UNAVAILABLE;
         }
-
-        // Добавляем остальные секции
-        formattedResponse.append("## Обоснование изменений\n\n");
-        formattedResponse.append("Оптимизация запроса выполнена с учетом лучших практик SQL.\n\n");
-
-        formattedResponse.append("## Оценка улучшения\n\n");
-        formattedResponse.append("Ожидается улучшение производительности за счет оптимизации структуры запроса.\n\n");
-
-        formattedResponse.append("## Потенциальные риски\n\n");
-        formattedResponse.append("Изменения не должны повлиять на логику работы запроса.");
-
-        return formattedResponse.toString();
-    }
-
-    private Mono<String> optimizeWithCloudLLM(String query, String promptTemplate) {
-        if (!StringUtils.hasText(query)) {
-            return Mono.error(new ApiException("SQL query cannot be empty", HttpStatus.BAD_REQUEST));
-        }
-
-        return Mono.defer(() -> {
-            validateConfiguration();
-            Map<String, Object> requestBody = prepareRequestBody(query, promptTemplate);
-
-            log.debug("Making request to LLM API: URL={}, Body={}",
-                    llmConfig.getApiUrl() + "/chat/completions",
-                    requestBody);
-
-            return gigaChatAuthService.getWebClient()
-                    .flatMap(webClient -> webClient.post()
-                            .uri("/chat/completions")
-                            .contentType(MediaType.APPLICATION_JSON)
-                            .bodyValue(requestBody)
-                            .retrieve()
-                            .onStatus(status -> status.is4xxClientError(),
-                                    clientResponse -> handleClientError(clientResponse))
-                            .onStatus(status -> status.is5xxServerError(),
-                                    clientResponse -> handleServerError(clientResponse))
-                            .bodyToMono(String.class))
-                    .flatMap(this::parseResponse)
-                    .retryWhen(Retry.backoff(MAX_RETRY_ATTEMPTS, java.time.Duration.ofMillis(RETRY_DELAY_MS))
-                            .doBeforeRetry(
-                                    signal -> log.warn("Retrying LLM API call, attempt: {}", signal.totalRetries() + 1))
-                            .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> new ApiException(
-                                    "Failed to optimize SQL query after " + MAX_RETRY_ATTEMPTS + " attempts",
-                                    HttpStatus.SERVICE_UNAVAILABLE)))
-                    .onErrorMap(e -> {
-                        if (e instanceof ApiException) {
-                            return e;
-                        }
-                        log.error("Error calling LLM API: {}", e.getMessage(), e);
-                        return new ApiException("Error optimizing SQL query: " + e.getMessage(),
-                                HttpStatus.INTERNAL_SERVER_ERROR);
-                    });
-        });
+        return false;
     }
 
     private void validateConfiguration() {
@@ -193,76 +117,4 @@ public class LLMService {
             throw new IllegalStateException("LLM max tokens must be positive");
         }
     }
-
-    private Map<String, Object> prepareRequestBody(String query, String promptTemplate) {
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", llmConfig.getModel());
-
-        List<Map<String, String>> messages = new ArrayList<>();
-        messages.add(Map.of("role", "system", "content", promptTemplate));
-        messages.add(Map.of("role", "user", "content", query));
-
-        requestBody.put("messages", messages);
-        requestBody.put("temperature", llmConfig.getTemperature());
-        requestBody.put("max_tokens", llmConfig.getMaxTokens());
-
-        return requestBody;
-    }
-
-    private Mono<? extends Throwable> handleClientError(
-            org.springframework.web.reactive.function.client.ClientResponse clientResponse) {
-        return clientResponse.bodyToMono(String.class)
-                .flatMap(errorBody -> {
-                    log.error("LLM API client error: status={}, body={}",
-                            clientResponse.statusCode(), errorBody);
-                    return Mono.error(new ApiException(
-                            "Invalid request to LLM API: " + errorBody,
-                            HttpStatus.BAD_REQUEST));
-                });
-    }
-
-    private Mono<? extends Throwable> handleServerError(
-            org.springframework.web.reactive.function.client.ClientResponse clientResponse) {
-        return clientResponse.bodyToMono(String.class)
-                .flatMap(errorBody -> {
-                    log.error("LLM API server error: status={}, body={}",
-                            clientResponse.statusCode(), errorBody);
-                    return Mono.error(new ApiException(
-                            "LLM API server error: " + errorBody,
-                            HttpStatus.SERVICE_UNAVAILABLE));
-                });
-    }
-
-    private Mono<String> parseResponse(String response) {
-        if (!StringUtils.hasText(response)) {
-            return Mono.error(new ApiException("Empty response from LLM", HttpStatus.INTERNAL_SERVER_ERROR));
-        }
-
-        try {
-            JsonNode rootNode = objectMapper.readTree(response);
-            JsonNode choicesNode = rootNode.path("choices");
-
-            if (!choicesNode.isArray() || choicesNode.size() == 0) {
-                log.error("Invalid response format: no choices array or empty choices");
-                return Mono.error(new ApiException("Invalid response format from LLM: no choices available",
-                        HttpStatus.INTERNAL_SERVER_ERROR));
-            }
-
-            JsonNode firstChoice = choicesNode.get(0);
-            JsonNode messageNode = firstChoice.path("message");
-
-            if (!messageNode.has("content")) {
-                log.error("Invalid response format: no content in message");
-                return Mono.error(new ApiException("Invalid response format from LLM: no content in message",
-                        HttpStatus.INTERNAL_SERVER_ERROR));
-            }
-
-            String content = messageNode.path("content").asText();
-            return Mono.just(content);
-        } catch (Exception e) {
-            log.error("Failed to parse LLM response: {}", e.getMessage(), e);
-            return Mono.error(new ApiException("Failed to parse LLM response: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR));
-        }
-    }
 }
@@ -2,7 +2,6 @@ package com.example.backend.service;
 
 import java.time.LocalDateTime;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -10,6 +9,8 @@ import com.example.backend.model.dto.MessageDto;
 import com.example.backend.model.entity.Chat;
 import com.example.backend.model.entity.Message;
 import com.example.backend.repository.MessageRepository;
+import com.example.backend.service.storage.ContentStore;
+import com.example.backend.tracing.StompPublisher;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,7 +20,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessageService {
     private final MessageRepository messageRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final StompPublisher stompPublisher;
+    private final ContentStore contentStore;
 
     @Transactional
     public MessageDto saveAndSendMessage(Chat chat, String content, boolean fromUser) {
@@ -30,13 +32,14 @@ public class MessageService {
         message.setCreatedAt(LocalDateTime.now());
         
         log.debug("Saving message: content={}, fromUser={}", message.getContent(), message.isFromUser());
+        contentStore.compact(message);
         message = messageRepository.save(message);
         log.info("Message saved successfully: id={}", message.getId());
 
         // Отправляем сообщение через WebSocket
         String destination = "/topic/chat/" + chat.getId();
         log.debug("Sending message to destination: {}", destination);
-        messagingTemplate.convertAndSend(destination, message);
+        stompPublisher.convertAndSend(destination, message);
         log.info("Successfully sent message to {}: id={}", destination, message.getId());
 
         return mapToMessageDto(message);
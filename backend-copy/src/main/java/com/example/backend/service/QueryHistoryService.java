@@ -0,0 +1,164 @@
+package com.example.backend.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.model.dto.FingerprintStatsDto;
+import com.example.backend.model.dto.MessageDto;
+import com.example.backend.model.dto.SqlQueryResponse;
+import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanDiff;
+import com.example.backend.model.projection.ChatSummary;
+import com.example.backend.model.projection.FingerprintSample;
+import com.example.backend.model.projection.FingerprintStats;
+import com.example.backend.model.projection.QueryHistoryView;
+import com.example.backend.repository.ChatRepository;
+import com.example.backend.repository.SqlQueryRepository;
+import com.example.backend.service.fingerprint.QueryFingerprint;
+import com.example.backend.service.partition.MonthlyPartitions;
+import com.example.backend.service.plan.PlanCompression;
+import com.example.backend.service.plan.PlanDiffer;
+import com.example.backend.service.plan.PlanParser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Чтение истории оптимизаций и статистики отпечатков запросов. Отделено от {@link SqlOptimizationService}:
+ * чтению нужны только репозитории и разбор сохраненных планов, а не LLM и целевые БД.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QueryHistoryService {
+
+    private final SqlQueryRepository sqlQueryRepository;
+    private final ChatRepository chatRepository;
+    private final PlanParser planParser;
+    private final PlanDiffer planDiffer;
+
+    @Transactional(readOnly = true)
+    public List<SqlQueryResponse> getQueryHistory(Long chatId, Long userId) {
+        log.info("Fetching query history for userId={}, chatId={}", userId, chatId);
+
+        ChatSummary chat = chatRepository.findSummaryByIdAndUserId(chatId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Chat not found with ID: " + chatId));
+
+        List<QueryHistoryView> queries = sqlQueryRepository.findByMessageChatIdOrderByCreatedAtDesc(chatId,
+                MonthlyPartitions.lowerBound(chat.getCreatedAt()));
+        return queries.stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public List<FingerprintStatsDto> getTopFingerprints(Long userId, String table, int limit) {
+        log.info("Fetching top query fingerprints for userId={}, table={}, limit={}", userId, table, limit);
+        if (limit < 1 || limit > 100) {
+            throw new ApiException("Limit must be between 1 and 100", HttpStatus.BAD_REQUEST);
+        }
+        List<FingerprintStats> stats = table == null || table.isBlank()
+                ? sqlQueryRepository.findTopFingerprints(userId, limit)
+                : sqlQueryRepository.findTopFingerprintsByTable(userId, table.toLowerCase(Locale.ROOT), limit);
+        return mapToFingerprintStatsDtos(stats);
+    }
+
+    @Transactional(readOnly = true)
+    public FingerprintStatsDto getFingerprintStats(Long userId, String fingerprint) {
+        log.info("Fetching stats of fingerprint {} for userId={}", fingerprint, userId);
+        long value;
+        try {
+            value = Long.parseUnsignedLong(fingerprint, 16);
+        } catch (NumberFormatException e) {
+            throw new ApiException("Invalid fingerprint: " + fingerprint, HttpStatus.BAD_REQUEST);
+        }
+        FingerprintStats stats = sqlQueryRepository.findFingerprintStats(userId, value)
+                .orElseThrow(() -> new ResourceNotFoundException("Fingerprint not found: " + fingerprint));
+        return mapToFingerprintStatsDtos(List.of(stats)).get(0);
+    }
+
+    /**
+     * Текст, тип и таблицы отпечатка берутся из его последнего запроса: одним запросом на всю страницу.
+     */
+    private List<FingerprintStatsDto> mapToFingerprintStatsDtos(List<FingerprintStats> stats) {
+        Map<Long, List<FingerprintSample>> latest = sqlQueryRepository.findSamplesByIdIn(
+                stats.stream().map(FingerprintStats::getLatestQueryId).toList()).stream()
+                .collect(Collectors.groupingBy(FingerprintSample::id));
+        return stats.stream()
+                .map(stat -> {
+                    List<FingerprintSample> rows = latest.getOrDefault(stat.getLatestQueryId(), List.of());
+                    FingerprintSample sample = rows.isEmpty() ? null : rows.get(0);
+                    return FingerprintStatsDto.builder()
+                            .fingerprint(QueryFingerprint.toHex(stat.getFingerprint()))
+                            .statementType(sample == null ? null : sample.statementType())
+                            .normalizedQuery(sample == null ? null : sample.normalizedQuery())
+                            .tables(rows.stream().map(FingerprintSample::tableName).filter(Objects::nonNull)
+                                    .sorted().toList())
+                            .queryCount(stat.getQueryCount())
+                            .measuredCount(stat.getMeasuredCount())
+                            .medianSpeedup(stat.getMedianSpeedup())
+                            .lastSeenAt(sample == null ? null : sample.createdAt())
+                            .build();
+                })
+                .toList();
+    }
+
+    /**
+     * Ответ по только что сохраненному запросу: те же поля, что и в истории.
+     */
+    public SqlQueryResponse mapToResponse(SqlQuery sqlQuery) {
+        return mapToResponse(new QueryHistoryView(sqlQuery.getId(), sqlQuery.getOriginalQuery(),
+                sqlQuery.getOptimizedQuery(), null, null, null, sqlQuery.getRationale(),
+                sqlQuery.getEstimatedGain(), sqlQuery.getRisks(), sqlQuery.getSuggestedIndexes(),
+                sqlQuery.getExecutionTimeMs(), sqlQuery.getOriginalPlan(), sqlQuery.getOptimizedPlan(),
+                sqlQuery.getCreatedAt()));
+    }
+
+    private SqlQueryResponse mapToResponse(QueryHistoryView sqlQuery) {
+        MessageDto messageDto = MessageDto.builder()
+                .content(sqlQuery.originalQuery())
+                .fromUser(true)
+                .build();
+
+        ExecutionPlan originalPlan = readPlan(sqlQuery.id(), sqlQuery.originalPlan());
+        ExecutionPlan optimizedPlan = readPlan(sqlQuery.id(), sqlQuery.optimizedPlan());
+        PlanDiff planDiff = originalPlan != null && optimizedPlan != null
+                ? planDiffer.diff(originalPlan, optimizedPlan)
+                : null;
+
+        return SqlQueryResponse.builder()
+                .id(sqlQuery.id())
+                .originalQuery(sqlQuery.originalQuery())
+                .optimizedQuery(sqlQuery.optimizedQuery())
+                .result(sqlQuery.result())
+                .executionTimeMs(sqlQuery.executionTimeMs())
+                .createdAt(sqlQuery.createdAt())
+                .message(messageDto)
+                .originalPlan(originalPlan)
+                .optimizedPlan(optimizedPlan)
+                .planDiff(planDiff)
+                .build();
+    }
+
+    private ExecutionPlan readPlan(Long sqlQueryId, byte[] compressedPlan) {
+        if (compressedPlan == null) {
+            return null;
+        }
+        try {
+            return planParser.parse(PlanCompression.decompress(compressedPlan));
+        } catch (RuntimeException e) {
+            log.warn("Stored plan of sql query {} is unreadable: {}", sqlQueryId, e.getMessage());
+            return null;
+        }
+    }
+}
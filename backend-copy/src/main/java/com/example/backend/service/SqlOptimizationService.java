@@ -3,44 +3,86 @@ package com.example.backend.service;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.backend.exception.ApiException;
+import com.example.backend.exception.DatabaseConnectionException;
 import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.metrics.OptimizationMetrics;
+import com.example.backend.model.dto.IndexSuggestionDto;
 import com.example.backend.model.dto.MessageDto;
+import com.example.backend.model.dto.OptimizationResult;
 import com.example.backend.model.dto.SqlQueryRequest;
 import com.example.backend.model.dto.SqlQueryResponse;
 import com.example.backend.model.entity.Chat;
 import com.example.backend.model.entity.DatabaseConnection;
 import com.example.backend.model.entity.Message;
 import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.model.plan.ExecutionPlan;
 import com.example.backend.repository.ChatRepository;
 import com.example.backend.repository.DatabaseConnectionRepository;
 import com.example.backend.repository.MessageRepository;
 import com.example.backend.repository.SqlQueryRepository;
-
+import com.example.backend.service.analysis.MppAnalysis;
+import com.example.backend.service.analysis.MppAnalyzer;
+import com.example.backend.service.analysis.QueryAnalysis;
+import com.example.backend.service.analysis.QueryAnalyzer;
+import com.example.backend.service.decompose.ChunkedOptimizer;
+import com.example.backend.service.decompose.Decomposition;
+import com.example.backend.service.event.SqlMessageReceivedEvent;
+import com.example.backend.service.fingerprint.QueryFingerprint;
+import com.example.backend.service.fingerprint.QueryFingerprinter;
+import com.example.backend.service.index.IndexAdvisor;
+import com.example.backend.service.index.IndexSuggestion;
+import com.example.backend.service.llm.PromptContext;
+import com.example.backend.service.plan.PlanCompression;
+import com.example.backend.service.plan.PlanParser;
+import com.example.backend.service.rewrite.RewriteContext;
+import com.example.backend.service.rewrite.RewriteNote;
+import com.example.backend.service.rewrite.SqlRewriteEngine;
+import com.example.backend.service.rewrite.SqlRewriteResult;
+import com.example.backend.service.stats.UserStatsService;
+import com.example.backend.service.storage.ContentStore;
+import com.example.backend.tracing.StompPublisher;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SqlOptimizationService {
 
+    // Значение поля llm, при котором запрос оптимизируется только детерминированными правилами
+    private static final String RULES_PROVIDER = "Rules";
+    private static final String GREENPLUM = "greenplum";
+
     private final SqlQueryRepository sqlQueryRepository;
     private final MessageRepository messageRepository;
     private final ChatRepository chatRepository;
@@ -48,37 +90,118 @@ public class SqlOptimizationService {
     private final LLMService llmService;
     private final DatabaseConnectionService databaseConnectionService;
     private final ChatService chatService;
-    private final SimpMessagingTemplate messagingTemplate;
-
-    @Transactional
+    private final StompPublisher stompPublisher;
+    private final OptimizationMetrics optimizationMetrics;
+    private final ObservationRegistry observationRegistry;
+    private final SqlRewriteEngine sqlRewriteEngine;
+
+    private final QueryAnalyzer queryAnalyzer;
+    private final IndexAdvisor indexAdvisor;
+    private final MppAnalyzer mppAnalyzer;
+    private final PlanParser planParser;
+    private final ChunkedOptimizer chunkedOptimizer;
+    private final QueryFingerprinter queryFingerprinter;
+    private final ContentStore contentStore;
+    private final UserStatsService userStatsService;
+    private final QueryHistoryService queryHistoryService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${sql.rewrite.pre-pass-enabled:true}")
+    private boolean rewritePrePassEnabled;
+
+    @Value("${sql.analysis.enabled:true}")
+    private boolean analysisEnabled;
+
+    @Value("${sql.index-advisor.enabled:true}")
+    private boolean indexAdvisorEnabled;
+
+    @Value("${sql.mpp.analysis-enabled:true}")
+    private boolean mppAnalysisEnabled;
+
+    // Запусков каждого запроса после прогрева; сохраняется медиана
+    @Value("${sql.explain.measure-runs:3}")
+    private int measureRuns;
+
+    // Без @Transactional: транзакция охватила бы только сборку Mono, а не сам конвейер. Репозитории
+    // фиксируют каждую запись отдельно, поэтому соединение не удерживается на время ответа LLM
     public Mono<SqlQueryResponse> optimizeQuery(Long userId, SqlQueryRequest request) {
-        log.info("Starting query optimization for userId={}, chatId={}, query={}, llm={}, isMPP={}",
-                userId, request.getChatId(), request.getQuery(), request.getLlm(), request.isMPP());
+        return optimize(userId, request, null);
+    }
+
+    /**
+     * SQL-запрос, отправленный в чат через REST или STOMP: сообщение уже сохранено ChatService,
+     * повторно оно не пишется. Оптимизация идет в фоне, результат публикуется в топик чата.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSqlMessageReceived(SqlMessageReceivedEvent event) {
+        Long chatId = event.getRequest().getChatId();
+        optimize(event.getUserId(), event.getRequest(), event.getMessage())
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(
+                        response -> log.info("Chat message {} optimized: sqlQueryId={}",
+                                event.getMessage().getId(), response.getId()),
+                        error -> {
+                            log.warn("Optimization of chat message {} failed: {}", event.getMessage().getId(),
+                                    error.getMessage());
+                            // Ответа на HTTP-запрос уже нет: об ошибке клиент узнает из топика чата
+                            stompPublisher.convertAndSend("/topic/chat/" + chatId, MessageDto.builder()
+                                    .chatId(chatId)
+                                    .content("Не удалось оптимизировать запрос: " + error.getMessage())
+                                    .fromUser(false)
+                                    .createdAt(LocalDateTime.now())
+                                    .build());
+                        });
+    }
+
+    /**
+     * savedMessage — уже сохраненное сообщение с запросом; null, если его нужно создать.
+     */
+    private Mono<SqlQueryResponse> optimize(Long userId, SqlQueryRequest request, Message savedMessage) {
+        log.info("Starting query optimization for userId={}, chatId={}, length={}, llm={}, isMPP={}",
+                userId, request.getChatId(), request.getQuery().length(), request.getLlm(), request.isMPP());
 
         // Создаем сообщение для исходного запроса пользователя
-        AtomicReference<Message> userMessageRef = new AtomicReference<>(new Message());
+        AtomicReference<Message> userMessageRef = new AtomicReference<>(
+                savedMessage != null ? savedMessage : new Message());
         Message initialMessage = userMessageRef.get();
-        initialMessage.setContent(request.getQuery());
-        initialMessage.setFromUser(true);
-        initialMessage.setCreatedAt(LocalDateTime.now());
+        if (savedMessage == null) {
+            initialMessage.setContent(request.getQuery());
+            initialMessage.setFromUser(true);
+            initialMessage.setCreatedAt(LocalDateTime.now());
+        }
+        AtomicReference<Statement> statementRef = new AtomicReference<>();
+        AtomicReference<QueryFingerprint> fingerprintRef = new AtomicReference<>();
 
-        return Mono.fromCallable(() -> {
+        Mono<SqlQueryResponse> pipeline = Mono.fromCallable(() -> {
             log.debug("Validating chat existence and ownership");
             // Validate chat existence and ownership
-            Chat chat = chatRepository.findById(request.getChatId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Chat not found with ID: " + request.getChatId()));
+            Chat chat = savedMessage != null ? savedMessage.getChat()
+                    : optimizationMetrics.recordStage(OptimizationMetrics.STAGE_DB_LOOKUP,
+                            () -> chatRepository.findById(request.getChatId())
+                                    .orElseThrow(() -> new ResourceNotFoundException(
+                                            "Chat not found with ID: " + request.getChatId())));
             log.debug("Chat found: id={}, title={}", chat.getId(), chat.getTitle());
 
             log.debug("Validating SQL query syntax");
             // Validate SQL query syntax
-            validateSqlQuery(request.getQuery());
+            statementRef.set(optimizationMetrics.recordStage(OptimizationMetrics.STAGE_PARSE,
+                    () -> validateSqlQuery(request.getQuery())));
             log.debug("SQL query syntax is valid");
-
-            // Устанавливаем чат для сообщения и сохраняем его
-            initialMessage.setChat(chat);
-            Message savedMessage = messageRepository.save(initialMessage);
-            userMessageRef.set(savedMessage);
-            log.debug("Saved user message: id={}", savedMessage.getId());
+            // Отпечаток снимается с исходного дерева: правила и разбиение на части меняют его на месте
+            fingerprintRef.set(queryFingerprinter.fingerprint(statementRef.get()));
+
+            // Устанавливаем чат для сообщения и сохраняем его, если ChatService еще не сохранил
+            if (savedMessage == null) {
+                initialMessage.setChat(chat);
+                // Блок текста держится под FOR SHARE до коммита ссылки на него: иначе его может удалить сборка мусора
+                Message message = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_PERSIST,
+                        () -> transactionTemplate.execute(status -> {
+                            contentStore.compact(initialMessage);
+                            return messageRepository.save(initialMessage);
+                        }));
+                userMessageRef.set(message);
+                log.debug("Saved user message: id={}", message.getId());
+            }
 
             return chat;
         })
@@ -89,10 +212,11 @@ public class SqlOptimizationService {
                         log.debug("Looking up database connection: id={}", request.getDatabaseConnectionId());
                         try {
                             Long dbConnectionId = Long.parseLong(request.getDatabaseConnectionId());
-                            dbConnection = databaseConnectionRepository.findById(dbConnectionId)
-                                    .orElseThrow(() -> new ResourceNotFoundException(
-                                            "Database connection not found with ID: "
-                                                    + request.getDatabaseConnectionId()));
+                            dbConnection = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_DB_LOOKUP,
+                                    () -> databaseConnectionRepository.findById(dbConnectionId)
+                                            .orElseThrow(() -> new ResourceNotFoundException(
+                                                    "Database connection not found with ID: "
+                                                            + request.getDatabaseConnectionId())));
                             log.debug("Found database connection: id={}, name={}", dbConnection.getId(),
                                     dbConnection.getName());
                         } catch (NumberFormatException e) {
@@ -106,65 +230,172 @@ public class SqlOptimizationService {
 
                     // Формируем промпт с учетом MPP и наличия соединения
                     String promptTemplate = request.getPromptTemplate();
-                    if (promptTemplate == null || promptTemplate.isEmpty()) {
+                    boolean customPrompt = promptTemplate != null && !promptTemplate.isEmpty();
+                    if (!customPrompt) {
                         promptTemplate = getDefaultPromptTemplate(request.isMPP(), finalDbConnection != null);
                     }
 
-                    return llmService
-                            .optimizeSqlQuery(request.getQuery(), request.getLlm(), promptTemplate)
-                            .doOnSuccess(optimizedQuery -> log.debug("LLM optimization successful: {}", optimizedQuery))
-                            .doOnError(error -> log.error("LLM optimization failed: {}", error.getMessage(), error))
-                            .flatMap(optimizedQuery -> {
+                    // Статический анализ идет до правил: они меняют дерево на месте.
+                    // С собственным промптом пользователь явно просит ответ модели, поэтому анализ пропускаем
+                    boolean rulesOnly = RULES_PROVIDER.equals(request.getLlm());
+                    QueryAnalysis analysis = null;
+                    if (!rulesOnly && analysisEnabled && !customPrompt) {
+                        analysis = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_ANALYZE,
+                                () -> analyzeQuery(statementRef.get(), finalDbConnection));
+                        optimizationMetrics.recordAnalysisVerdict(analysis.isBelowThreshold());
+                        log.debug("Query analysis: score={}, threshold={}", analysis.getScore(),
+                                analysis.getThreshold());
+                    }
+
+                    // Для Greenplum главная цена — перемещения данных и перекос, их не видно по тексту запроса
+                    MppAnalysis mppAnalysis = null;
+                    if (mppAnalysisEnabled && finalDbConnection != null
+                            && GREENPLUM.equalsIgnoreCase(finalDbConnection.getDbType())) {
+                        mppAnalysis = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_MPP_ANALYZE,
+                                () -> analyzeMpp(finalDbConnection, request.getQuery(), statementRef.get()));
+                        log.debug("MPP analysis findings: {}", mppAnalysis.getFindings().size());
+                    }
+                    boolean hasMppFindings = mppAnalysis != null && !mppAnalysis.getFindings().isEmpty();
+                    boolean skipLlm = rulesOnly
+                            || (analysis != null && analysis.isBelowThreshold() && !hasMppFindings);
+
+                    // Кандидаты в индексы тоже берутся из исходного дерева, до правил
+                    List<IndexSuggestion> indexSuggestions = List.of();
+                    if (indexAdvisorEnabled && finalDbConnection != null) {
+                        indexSuggestions = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_INDEX_ADVISOR,
+                                () -> adviseIndexes(finalDbConnection, request.getQuery(), statementRef.get()));
+                        log.debug("Index advisor suggestions: {}", indexSuggestions.size());
+                    }
+                    final List<IndexSuggestion> finalIndexSuggestions = indexSuggestions;
+
+                    // Детерминированные правила: либо вместо LLM, либо как предварительный проход
+                    SqlRewriteResult rewrite = null;
+                    if (skipLlm || rewritePrePassEnabled) {
+                        rewrite = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_REWRITE,
+                                () -> sqlRewriteEngine.rewrite(request.getQuery(), statementRef.get(),
+                                        rewriteContext(finalDbConnection, statementRef.get())));
+                        log.debug("Rule-based rewrite: changed={}, notes={}", rewrite.isChanged(),
+                                rewrite.getNotes().size());
+                    }
+
+                    Mono<OptimizationResult> optimization;
+                    if (skipLlm) {
+                        optimization = Mono.just(ruleBasedResult(rewrite, analysis, indexSuggestions, mppAnalysis));
+                    } else {
+                        String queryForLlm = request.getQuery();
+                        if (rewrite != null && rewrite.isChanged()) {
+                            queryForLlm = rewrite.getRewrittenSql();
+                            promptTemplate = promptTemplate + describeRewriteForPrompt(rewrite);
+                        }
+                        if (!indexSuggestions.isEmpty()) {
+                            promptTemplate = promptTemplate + describeIndexesForPrompt(indexSuggestions);
+                        }
+                        if (hasMppFindings) {
+                            promptTemplate = promptTemplate + describeMppForPrompt(mppAnalysis);
+                        }
+                        String finalQueryForLlm = queryForLlm;
+                        // Большой запрос уходит в модель по частям; собственный промпт пользователя не делится
+                        Decomposition decomposition = customPrompt ? null
+                                : optimizationMetrics.recordStage(OptimizationMetrics.STAGE_DECOMPOSE,
+                                        () -> chunkedOptimizer.decompose(finalQueryForLlm, statementRef.get()));
+                        if (decomposition != null) {
+                            optimization = chunkedOptimizer.optimize(finalQueryForLlm, decomposition,
+                                    request.getLlm(), userId);
+                        } else {
+                            PromptContext promptContext = finalDbConnection == null
+                                    ? PromptContext.empty()
+                                    : optimizationMetrics.recordStage(OptimizationMetrics.STAGE_PROMPT_CONTEXT,
+                                            () -> buildPromptContext(finalDbConnection, finalQueryForLlm,
+                                                    statementRef.get()));
+                            optimization = llmService.optimizeSqlQuery(queryForLlm, request.getLlm(), promptTemplate,
+                                    promptContext, userId);
+                        }
+                        optimization = optimization
+                                .doOnSuccess(result -> log.debug("LLM optimization successful: {}",
+                                        result.getOptimizedSql()))
+                                .doOnError(error -> log.error("LLM optimization failed: {}", error.getMessage(), error));
+                    }
+
+                    // Сохранение и замеры EXPLAIN ANALYZE блокируют поток: уводим их с event loop и parallel
+                    return optimization
+                            .publishOn(Schedulers.boundedElastic())
+                            .flatMap(result -> {
                                 log.debug("Saving optimized query");
 
-                                // Создаем сообщение для оптимизированного запроса
-                                Message message = new Message();
-                                message.setChat(chat);
-                                message.setContent(optimizedQuery);
-                                message.setFromUser(false);
-                                message.setCreatedAt(LocalDateTime.now());
-                                message = messageRepository.save(message);
+                                // Сообщение в чате — результат в markdown; поля результата хранятся в sql_queries
+                                Message newMessage = new Message();
+                                newMessage.setChat(chat);
+                                newMessage.setContent(result.toMarkdown());
+                                newMessage.setFromUser(false);
+                                newMessage.setCreatedAt(LocalDateTime.now());
+                                Message message = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_PERSIST,
+                                        () -> transactionTemplate.execute(status -> {
+                                            contentStore.compact(newMessage);
+                                            return messageRepository.save(newMessage);
+                                        }));
                                 log.debug("Saved message for optimized query: id={}", message.getId());
 
                                 // Build and save SqlQuery entity
+                                QueryFingerprint fingerprint = fingerprintRef.get();
                                 SqlQuery sqlQuery = SqlQuery.builder()
                                         .message(userMessageRef.get())
+                                        .user(chat.getUser())
                                         .originalQuery(request.getQuery())
-                                        .optimizedQuery(optimizedQuery)
+                                        .optimizedQuery(result.getOptimizedSql())
+                                        .rationale(result.getRationale())
+                                        .estimatedGain(result.getEstimatedGain())
+                                        .risks(result.getRisks())
+                                        .suggestedIndexes(result.getIndexSuggestions())
                                         .databaseConnection(finalDbConnection)
+                                        .fingerprint(fingerprint.getFingerprint())
+                                        .normalizedQuery(fingerprint.getNormalizedQuery())
+                                        .statementType(fingerprint.getStatementType())
+                                        .referencedTables(new HashSet<>(fingerprint.getTables()))
                                         .createdAt(LocalDateTime.now())
                                         .build();
 
-                                // Measure execution time if connection exists
+                                // Снимаем планы исходного и оптимизированного запроса, если есть соединение
                                 if (finalDbConnection != null) {
-                                    log.debug("Measuring query execution time");
+                                    log.debug("Capturing execution plans");
+                                    Timer.Sample explainSample = optimizationMetrics.start();
+                                    boolean measured = false;
                                     try {
-                                        long executionTime = measureQueryExecutionTime(finalDbConnection.getId(),
-                                                optimizedQuery);
-                                        sqlQuery.setExecutionTimeMs(executionTime);
-                                        log.debug("Execution time measured: {}ms", executionTime);
+                                        capturePlans(finalDbConnection.getId(), request.getQuery(),
+                                                result.getOptimizedSql(), sqlQuery);
+                                        measured = true;
+                                        log.debug("Execution time measured: {}ms", sqlQuery.getExecutionTimeMs());
                                     } catch (SQLException e) {
-                                        log.warn("Failed to measure execution time for query: {}", e.getMessage());
+                                        log.warn("Failed to capture execution plans: {}", e.getMessage());
+                                    } finally {
+                                        optimizationMetrics.stopStage(explainSample, OptimizationMetrics.STAGE_EXPLAIN,
+                                                measured);
                                     }
                                 }
 
                                 log.debug("Saving SqlQuery entity");
-                                SqlQuery savedQuery = sqlQueryRepository.save(sqlQuery);
+                                // Блок текста, история и статистика пользователя пишутся одной транзакцией
+                                SqlQuery savedQuery = optimizationMetrics.recordStage(OptimizationMetrics.STAGE_PERSIST,
+                                        () -> transactionTemplate.execute(status -> {
+                                            contentStore.compact(sqlQuery);
+                                            SqlQuery saved = sqlQueryRepository.save(sqlQuery);
+                                            userStatsService.record(saved);
+                                            return saved;
+                                        }));
                                 log.info("SQL query saved: id={}", savedQuery.getId());
 
                                 // Отправляем сообщение через WebSocket
                                 String destination = "/topic/chat/" + request.getChatId();
-                                messagingTemplate.convertAndSend(destination, mapToMessageDto(message));
+                                MessageDto messageDto = mapToMessageDto(message, request.getChatId());
+                                optimizationMetrics.recordStage(OptimizationMetrics.STAGE_PUBLISH,
+                                        () -> stompPublisher.convertAndSend(destination, messageDto));
                                 log.info("Successfully sent message to {}: id={}", destination, message.getId());
 
-                                return Mono.just(SqlQueryResponse.builder()
-                                        .id(savedQuery.getId())
-                                        .originalQuery(savedQuery.getOriginalQuery())
-                                        .optimizedQuery(savedQuery.getOptimizedQuery())
-                                        .executionTimeMs(savedQuery.getExecutionTimeMs())
-                                        .createdAt(savedQuery.getCreatedAt())
-                                        .message(mapToMessageDto(message))
-                                        .build());
+                                SqlQueryResponse response = queryHistoryService.mapToResponse(savedQuery);
+                                response.setMessage(messageDto);
+                                response.setIndexSuggestions(finalIndexSuggestions.stream()
+                                        .map(this::mapToIndexSuggestionDto)
+                                        .toList());
+                                return Mono.just(response);
                             });
                 })
                 .onErrorMap(e -> {
@@ -175,86 +406,341 @@ public class SqlOptimizationService {
                     }
                     return e;
                 });
-    }
-
-    public List<SqlQueryResponse> getQueryHistory(Long chatId, Long userId) {
-        log.info("Fetching query history for userId={}, chatId={}", userId, chatId);
-
-        // Validate chat existence
-        chatRepository.findById(chatId)
-                .orElseThrow(() -> new ResourceNotFoundException("Chat not found with ID: " + chatId));
 
-        List<SqlQuery> queries = sqlQueryRepository.findByMessageChatIdOrderByCreatedAtDesc(chatId);
-        return queries.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        String provider = OptimizationMetrics.providerTag(request.getLlm());
+        return optimizationMetrics.timeOptimization(provider, pipeline)
+                .name("sql.optimize")
+                .tag("provider", provider)
+                .tap(Micrometer.observation(observationRegistry));
     }
 
-    private void validateSqlQuery(String query) {
+    private Statement validateSqlQuery(String query) {
         try {
-            CCJSqlParserUtil.parse(query);
+            return CCJSqlParserUtil.parse(query);
         } catch (JSQLParserException e) {
             log.error("Invalid SQL query syntax: {}", e.getMessage());
             throw new ApiException("Invalid SQL query: " + e.getMessage(), HttpStatus.BAD_REQUEST);
         }
     }
 
-    private long measureQueryExecutionTime(Long connectionId, String query) throws SQLException {
-        if (!query.trim().toUpperCase().startsWith("SELECT")) {
-            log.info("Skipping execution time measurement for non-SELECT query: {}", query);
-            return -1; // Use -1 to indicate no measurement for non-SELECT queries
+    /**
+     * EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) исходного и оптимизированного запроса; планы сохраняются
+     * в sqlQuery сжатыми. После прогрева оба запроса запускаются measure-runs раз попеременно,
+     * чтобы ни один не получал систематически более теплый кэш; сохраняются медиана времени и ее план.
+     * Изменяющие данные запросы не выполняются: для них время остается -1.
+     */
+    private void capturePlans(Long connectionId, String originalSql, String optimizedSql, SqlQuery sqlQuery)
+            throws SQLException {
+        boolean measureOptimized = optimizedSql != null && isSelect(optimizedSql);
+        if (!measureOptimized) {
+            log.info("Skipping execution time measurement for non-SELECT query");
+            sqlQuery.setExecutionTimeMs(-1.0);
         }
+        // Транзакция замера не должна пересекаться с другими запросами на общем кэшированном соединении
+        try (Connection connection = databaseConnectionService.openDedicatedConnection(connectionId)) {
+            PlanSamples original = isSelect(originalSql) ? new PlanSamples(originalSql) : null;
+            PlanSamples optimized = measureOptimized ? new PlanSamples(optimizedSql) : null;
+            // Прогрев: первый запуск читает данные с диска, его время не учитывается
+            original = sampleOriginal(connection, connectionId, original, false);
+            sample(connection, connectionId, optimized, false);
+            for (int run = 0; run < Math.max(1, measureRuns); run++) {
+                if (run % 2 == 0) {
+                    original = sampleOriginal(connection, connectionId, original, true);
+                    sample(connection, connectionId, optimized, true);
+                } else {
+                    sample(connection, connectionId, optimized, true);
+                    original = sampleOriginal(connection, connectionId, original, true);
+                }
+            }
+            if (original != null) {
+                sqlQuery.setOriginalPlan(PlanCompression.compress(original.medianPlan()));
+                sqlQuery.setOriginalExecutionTimeMs(original.medianTimeMs());
+            }
+            if (optimized != null) {
+                sqlQuery.setOptimizedPlan(PlanCompression.compress(optimized.medianPlan()));
+                sqlQuery.setExecutionTimeMs(optimized.medianTimeMs());
+            }
+        }
+    }
+
+    // Без исходного плана не будет только сравнения, время оптимизированного запроса все равно нужно
+    private PlanSamples sampleOriginal(Connection connection, Long connectionId, PlanSamples original, boolean keep) {
+        try {
+            sample(connection, connectionId, original, keep);
+            return original;
+        } catch (SQLException e) {
+            log.warn("Failed to capture plan of the original query: {}", e.getMessage());
+            return null;
+        }
+    }
 
-        Connection connection = databaseConnectionService.getConnection(connectionId);
-        String explainQuery = "EXPLAIN ANALYZE " + query;
+    private void sample(Connection connection, Long connectionId, PlanSamples samples, boolean keep)
+            throws SQLException {
+        if (samples == null) {
+            return;
+        }
+        String planJson = explainAnalyze(connection, connectionId, samples.sql);
+        if (keep) {
+            samples.add(planJson, executionTimeMs(planJson));
+        }
+    }
 
-        try (Statement stmt = connection.createStatement();
-                ResultSet rs = stmt.executeQuery(explainQuery)) {
-            StringBuilder output = new StringBuilder();
-            while (rs.next()) {
-                output.append(rs.getString(1)).append("\n");
-            }
+    private double executionTimeMs(String planJson) {
+        try {
+            Double executionTime = planParser.parse(planJson).getExecutionTimeMs();
+            return executionTime == null ? -1.0 : executionTime;
+        } catch (ApiException e) {
+            log.warn("Execution time not found in EXPLAIN ANALYZE output: {}", e.getMessage());
+            return -1.0;
+        }
+    }
+
+    /**
+     * Замеры одного запроса: планы и время каждого запуска.
+     */
+    static final class PlanSamples {
+
+        private final String sql;
+        private final List<String> plans = new ArrayList<>();
+        private final List<Double> timesMs = new ArrayList<>();
+
+        PlanSamples(String sql) {
+            this.sql = sql;
+        }
 
-            Pattern pattern = Pattern.compile("Execution Time: (\\d+\\.\\d+) ms");
-            Matcher matcher = pattern.matcher(output.toString());
-            if (matcher.find()) {
-                return (long) Double.parseDouble(matcher.group(1));
-            } else {
-                log.warn("Execution time not found in EXPLAIN ANALYZE output");
-                return -1;
+        void add(String planJson, double timeMs) {
+            plans.add(planJson);
+            timesMs.add(timeMs);
+        }
+
+        // Нижняя медиана: значение реального запуска, чтобы время совпадало с сохраненным планом
+        private int medianIndex() {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < timesMs.size(); i++) {
+                order.add(i);
             }
+            order.sort(Comparator.comparingDouble(timesMs::get));
+            return order.get((order.size() - 1) / 2);
+        }
+
+        String medianPlan() {
+            return plans.get(medianIndex());
+        }
+
+        // -1, если хотя бы в одном плане нет времени выполнения
+        double medianTimeMs() {
+            return timesMs.stream().anyMatch(time -> time < 0) ? -1.0 : timesMs.get(medianIndex());
+        }
+    }
+
+    private String explainAnalyze(Connection connection, Long connectionId, String query) throws SQLException {
+        String explainQuery = "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + query;
+
+        try {
+            return Observation.createNotStarted("target.db.explain", observationRegistry)
+                    .contextualName("explain analyze")
+                    .highCardinalityKeyValue("db.connection.id", String.valueOf(connectionId))
+                    .observeChecked(() -> {
+                        // ANALYZE выполняет запрос: read-only транзакция с откатом не дает ему ничего изменить
+                        connection.setAutoCommit(false);
+                        try (java.sql.Statement stmt = connection.createStatement()) {
+                            stmt.execute("SET TRANSACTION READ ONLY");
+                            try (ResultSet rs = stmt.executeQuery(explainQuery)) {
+                                return rs.next() ? rs.getString(1) : null;
+                            }
+                        } finally {
+                            connection.rollback();
+                        }
+                    });
         } catch (SQLException e) {
             log.error("SQLException during execution time measurement: {}", e.getMessage());
             throw e;
         }
     }
 
-    private SqlQueryResponse mapToResponse(SqlQuery sqlQuery) {
-        MessageDto messageDto = MessageDto.builder()
-                .content(sqlQuery.getOriginalQuery())
-                .fromUser(true)
-                .build();
-
-        return SqlQueryResponse.builder()
-                .id(sqlQuery.getId())
-                .originalQuery(sqlQuery.getOriginalQuery())
-                .optimizedQuery(sqlQuery.getOptimizedQuery())
-                .executionTimeMs(sqlQuery.getExecutionTimeMs())
-                .createdAt(sqlQuery.getCreatedAt())
-                .message(messageDto)
-                .build();
+    // ANALYZE выполняет запрос: перед ним нужен полный разбор, а не классификация по первому слову
+    private boolean isSelect(String query) {
+        try {
+            return CCJSqlParserUtil.parse(query) instanceof Select;
+        } catch (JSQLParserException e) {
+            return false;
+        }
     }
 
-    private MessageDto mapToMessageDto(Message message) {
+    private MessageDto mapToMessageDto(Message message, Long chatId) {
         return MessageDto.builder()
                 .id(message.getId())
-                .chatId(message.getChat().getId())
+                .chatId(chatId)
                 .content(message.getContent())
                 .fromUser(message.isFromUser())
                 .createdAt(message.getCreatedAt())
                 .build();
     }
 
+    private QueryAnalysis analyzeQuery(Statement statement, DatabaseConnection dbConnection) {
+        Map<String, Long> tableRowEstimates = Map.of();
+        if (dbConnection != null) {
+            try {
+                tableRowEstimates = databaseConnectionService.getTableRowEstimates(dbConnection.getId(),
+                        queryAnalyzer.tableNames(statement));
+            } catch (DatabaseConnectionException e) {
+                log.warn("Catalog statistics unavailable, analyzing without them: {}", e.getMessage());
+            }
+        }
+        return queryAnalyzer.analyze(statement, tableRowEstimates);
+    }
+
+    /**
+     * NOT NULL столбцов целевой БД: без них правила, зависящие от NULL, дают только подсказки.
+     */
+    private RewriteContext rewriteContext(DatabaseConnection dbConnection, Statement statement) {
+        if (dbConnection == null) {
+            return RewriteContext.empty();
+        }
+        try {
+            Set<String> tables = queryAnalyzer.tableNames(statement);
+            return new RewriteContext(databaseConnectionService.getNotNullColumns(dbConnection.getId(), tables),
+                    databaseConnectionService.getColumnTypes(dbConnection.getId(), tables));
+        } catch (DatabaseConnectionException e) {
+            log.warn("Rewrite context skipped, target database unavailable: {}", e.getMessage());
+            return RewriteContext.empty();
+        }
+    }
+
+    private List<IndexSuggestion> adviseIndexes(DatabaseConnection dbConnection, String query, Statement statement) {
+        try {
+            return indexAdvisor.advise(dbConnection.getId(), query, statement);
+        } catch (DatabaseConnectionException e) {
+            log.warn("Index advisor skipped, target database unavailable: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private MppAnalysis analyzeMpp(DatabaseConnection dbConnection, String query, Statement statement) {
+        try {
+            return mppAnalyzer.analyze(dbConnection.getId(), query, statement);
+        } catch (DatabaseConnectionException e) {
+            log.warn("MPP analysis skipped, target database unavailable: {}", e.getMessage());
+            return MppAnalysis.builder().findings(List.of()).distributionKeys(Map.of()).skewCoefficients(Map.of())
+                    .build();
+        }
+    }
+
+    /**
+     * План и метаданные таблиц для {query_plan} и {tables_meta}; сокращает их PromptBudgeter.
+     */
+    private PromptContext buildPromptContext(DatabaseConnection dbConnection, String query, Statement statement) {
+        try {
+            ExecutionPlan plan = null;
+            if (statement instanceof Select) {
+                try {
+                    plan = planParser.parse(databaseConnectionService.explainJson(dbConnection.getId(), query));
+                } catch (SQLException | ApiException e) {
+                    log.warn("Query plan unavailable for the prompt: {}", e.getMessage());
+                }
+            }
+            return PromptContext.builder()
+                    .plan(plan)
+                    .tables(databaseConnectionService.getTableMetadata(dbConnection.getId(),
+                            queryAnalyzer.tableNames(statement)))
+                    .referencedColumns(queryAnalyzer.referencedColumns(statement))
+                    .build();
+        } catch (DatabaseConnectionException e) {
+            log.warn("Prompt context skipped, target database unavailable: {}", e.getMessage());
+            return PromptContext.empty();
+        }
+    }
+
+    private IndexSuggestionDto mapToIndexSuggestionDto(IndexSuggestion suggestion) {
+        return IndexSuggestionDto.builder()
+                .createStatement(suggestion.getCreateStatement())
+                .table(suggestion.getCandidate().getTable())
+                .columns(suggestion.getCandidate().getColumns())
+                .baseCost(suggestion.getBaseCost())
+                .costWithIndex(suggestion.getCostWithIndex())
+                .costReduction(suggestion.getCostReduction())
+                .method(suggestion.getMethod())
+                .build();
+    }
+
+    /**
+     * Ответ без вызова LLM: результат правил и, если LLM пропущена по итогам анализа, вердикт анализатора.
+     */
+    private OptimizationResult ruleBasedResult(SqlRewriteResult rewrite, QueryAnalysis analysis,
+            List<IndexSuggestion> indexSuggestions, MppAnalysis mppAnalysis) {
+        StringBuilder rationale = new StringBuilder();
+        if (analysis != null) {
+            rationale.append("Статический анализ оценил потенциал оптимизации в ").append(analysis.getScore())
+                    .append(" из 100 (порог ").append(analysis.getThreshold())
+                    .append("): запрос уже близок к оптимальному, модель не вызывалась.\n");
+            analysis.getFindings().forEach(finding -> rationale.append("- ").append(finding).append("\n"));
+            rationale.append("\n");
+        }
+        List<RewriteNote> applied = rewrite.getNotes().stream().filter(RewriteNote::isApplied).toList();
+        if (applied.isEmpty()) {
+            rationale.append("Детерминированные правила не нашли механических улучшений.\n");
+        }
+        applied.forEach(note -> rationale.append("- ").append(note.getDescription()).append("\n"));
+        rewrite.getNotes().stream()
+                .filter(note -> !note.isApplied())
+                .forEach(note -> rationale.append("- Рекомендация: ").append(note.getDescription()).append("\n"));
+
+        if (mppAnalysis != null && !mppAnalysis.getFindings().isEmpty()) {
+            rationale.append("\n### Распределение данных в Greenplum\n\n");
+            mppAnalysis.getFindings().forEach(finding -> rationale.append("- ").append(finding).append("\n"));
+        }
+        if (!indexSuggestions.isEmpty()) {
+            rationale.append("\n### Оценки индексов\n\n");
+            indexSuggestions.forEach(suggestion -> rationale.append("- ").append(suggestion.getCandidate().getTable())
+                    .append(" (").append(String.join(", ", suggestion.getCandidate().getColumns())).append("): ")
+                    .append(formatIndexGain(suggestion)).append("\n"));
+        }
+
+        return OptimizationResult.builder()
+                .optimizedSql(rewrite.getRewrittenSql().trim())
+                .rationale(rationale.toString().trim())
+                .estimatedGain(applied.isEmpty()
+                        ? "Запрос оставлен без изменений."
+                        : "Применено правил: " + applied.size() + ". Точный эффект покажет EXPLAIN ANALYZE.")
+                .risks(applied.stream().map(RewriteNote::getRisk).filter(Objects::nonNull).distinct().toList())
+                .indexSuggestions(indexSuggestions.stream().map(IndexSuggestion::getCreateStatement).toList())
+                .build();
+    }
+
+    private String describeRewriteForPrompt(SqlRewriteResult rewrite) {
+        StringBuilder description = new StringBuilder(
+                "\n\nК запросу уже применены детерминированные правила, повторно их не описывай:\n");
+        rewrite.getNotes().stream()
+                .filter(RewriteNote::isApplied)
+                .forEach(note -> description.append("- ").append(note.getDescription()).append("\n"));
+        return description.toString();
+    }
+
+    private String describeIndexesForPrompt(List<IndexSuggestion> indexSuggestions) {
+        StringBuilder description = new StringBuilder(
+                "\n\nИндексы проверены планировщиком на целевой БД. Предлагай индексы только из этого списка "
+                        + "и опирайся на эти оценки:\n");
+        indexSuggestions.forEach(suggestion -> description.append("- ").append(suggestion.getCreateStatement())
+                .append(" — ").append(formatIndexGain(suggestion)).append("\n"));
+        return description.toString();
+    }
+
+    private String describeMppForPrompt(MppAnalysis mppAnalysis) {
+        StringBuilder description = new StringBuilder(
+                "\n\nАнализ кластера Greenplum. Устрани перемещения данных и учти перекос, "
+                        + "опираясь на эти факты:\n");
+        mppAnalysis.getFindings().forEach(finding -> description.append("- ").append(finding).append("\n"));
+        return description.toString();
+    }
+
+    private String formatIndexGain(IndexSuggestion suggestion) {
+        String gain = String.format(Locale.ROOT, "стоимость плана %.0f → %.0f (−%.0f%%)",
+                suggestion.getBaseCost(), suggestion.getCostWithIndex(), suggestion.getCostReduction() * 100);
+        return IndexSuggestion.METHOD_HYPOPG.equals(suggestion.getMethod())
+                ? gain + ", HypoPG"
+                : gain + ", оценка сверху по EXPLAIN";
+    }
+
     private String getDefaultPromptTemplate(boolean isMPP, boolean hasConnection) {
         if (isMPP && hasConnection) {
             return """
@@ -265,31 +751,13 @@ public class SqlOptimizationService {
                     План выполнения (EXPLAIN): {query_plan}
                     Метаданные таблиц: {tables_meta}
 
-                    Выходные данные
-                    Оптимизированный SQL-запрос:
-                    {optimized_query}
-                    Обоснование изменений:
-                    Кратко опиши, какие узкие места были найдены в плане запроса, и какие методы оптимизации применены.
-                    Оценка улучшения:
-                    Примерное снижение времени выполнения или факторы, которые повлияют на производительность.
-                    Потенциальные риски:
-                    Возможные побочные эффекты изменений, если таковые имеются.""";
+                    Опиши в rationale узкие места, найденные в плане запроса, и примененные методы оптимизации.""";
         } else if (isMPP && !hasConnection) {
             return """
                     Ты — специалист по оптимизации SQL-запросов в MPP-системах, включая Greenplum. Твоя цель — переписать SQL-запрос так, чтобы он выполнялся быстрее и использовал меньше ресурсов, без изменения логики и без вмешательства в СУБД.
 
                     Входные данные SQL-запрос:
-                    {query_text}
-
-                    Выходные данные
-                    Оптимизированный SQL-запрос:
-                    {optimized_query}
-                    Обоснование изменений:
-                    Кратко опиши, какие методы оптимизации применены и почему.
-                    Оценка улучшения:
-                    Примерное снижение времени выполнения или факторы, которые повлияют на производительность.
-                    Потенциальные риски:
-                    Возможные побочные эффекты изменений, если таковые имеются.""";
+                    {query_text}""";
         } else if (!isMPP && hasConnection) {
             return """
                     Ты — специалист по оптимизации SQL-запросов в PostgreSQL. Твоя цель — переписать SQL-запрос так, чтобы он выполнялся быстрее и использовал меньше ресурсов, без изменения логики и без вмешательства в СУБД.
@@ -299,31 +767,13 @@ public class SqlOptimizationService {
                     План выполнения (EXPLAIN): {query_plan}
                     Метаданные таблиц: {tables_meta}
 
-                    Выходные данные
-                    Оптимизированный SQL-запрос:
-                    {optimized_query}
-                    Обоснование изменений:
-                    Кратко опиши, какие узкие места были найдены в плане запроса, и какие методы оптимизации применены.
-                    Оценка улучшения:
-                    Примерное снижение времени выполнения или факторы, которые повлияют на производительность.
-                    Потенциальные риски:
-                    Возможные побочные эффекты изменений, если таковые имеются.""";
+                    Опиши в rationale узкие места, найденные в плане запроса, и примененные методы оптимизации.""";
         } else {
             return """
                     Ты — специалист по оптимизации SQL-запросов в PostgreSQL. Твоя цель — переписать SQL-запрос так, чтобы он выполнялся быстрее и использовал меньше ресурсов, без изменения логики и без вмешательства в СУБД.
 
                     Входные данные SQL-запрос:
-                    {query_text}
-
-                    Выходные данные
-                    Оптимизированный SQL-запрос:
-                    {optimized_query}
-                    Обоснование изменений:
-                    Кратко опиши, какие методы оптимизации применены и почему.
-                    Оценка улучшения:
-                    Примерное снижение времени выполнения или факторы, которые повлияют на производительность.
-                    Потенциальные риски:
-                    Возможные побочные эффекты изменений, если таковые имеются.""";
+                    {query_text}""";
         }
     }
 }
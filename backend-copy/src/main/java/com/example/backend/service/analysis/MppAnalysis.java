@@ -0,0 +1,21 @@
+package com.example.backend.service.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Результат MPP-анализа запроса к Greenplum: распределение таблиц, перекос по сегментам
+ * и перемещения данных в плане.
+ */
+@Getter
+@Builder
+public class MppAnalysis {
+    private final List<String> findings;
+    // Ключи распределения по таблицам; пустой список — DISTRIBUTED RANDOMLY или REPLICATED
+    private final Map<String, List<String>> distributionKeys;
+    // Коэффициент вариации числа строк по сегментам, в процентах — как skccoeff в gp_toolkit
+    private final Map<String, Double> skewCoefficients;
+}
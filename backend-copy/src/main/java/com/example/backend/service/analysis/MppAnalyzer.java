@@ -0,0 +1,293 @@
+package com.example.backend.service.analysis;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanNode;
+import com.example.backend.service.DatabaseConnectionService;
+import com.example.backend.service.plan.PlanParser;
+import com.example.backend.service.rewrite.RewriteSupport;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+
+/**
+ * Анализ запроса к Greenplum: в MPP основную цену платят перемещения данных между сегментами
+ * (Redistribute и Broadcast Motion) и перекос данных, а не выбор индексов. Находки конкретны —
+ * с таблицами, ключами и числом строк — и передаются в ответ правил и в промпт.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MppAnalyzer {
+
+    private final DatabaseConnectionService databaseConnectionService;
+    private final QueryAnalyzer queryAnalyzer;
+    private final PlanParser planParser;
+
+    // Точный подсчет по сегментам читает таблицы целиком, поэтому только по явному включению
+    @Value("${sql.mpp.skew-check-enabled:false}")
+    private boolean skewCheckEnabled = false;
+
+    @Value("${sql.mpp.skew-check-timeout-seconds:10}")
+    private int skewCheckTimeoutSeconds = 10;
+
+    @Value("${sql.mpp.skew-check-cache-ttl-minutes:60}")
+    private long skewCheckCacheTtlMinutes = 60;
+
+    // Строки по сегментам: ключ — id соединения и имя таблицы
+    private final Map<String, SegmentRows> segmentRowsCache = new ConcurrentHashMap<>();
+
+    private record SegmentRows(List<Long> counts, long expiresAt) {
+    }
+
+    @Value("${sql.mpp.skew-threshold-percent:20}")
+    private double skewThresholdPercent = 20;
+
+    public MppAnalysis analyze(Long connectionId, String sql, Statement statement) {
+        Set<String> tables = queryAnalyzer.tableNames(statement);
+        Map<String, Long> rowEstimates = databaseConnectionService.getTableRowEstimates(connectionId, tables);
+        Map<String, List<String>> distributionKeys = databaseConnectionService.getDistributionKeys(connectionId, tables);
+        Map<String, List<Long>> segmentRows = skewCheckEnabled
+                ? segmentRows(connectionId, distributionKeys.keySet())
+                : Map.of();
+
+        ExecutionPlan plan = null;
+        if (statement instanceof Select) {
+            try {
+                plan = planParser.parse(databaseConnectionService.explainJson(connectionId, sql));
+            } catch (SQLException | ApiException e) {
+                log.warn("MPP analysis runs without a plan: {}", e.getMessage());
+            }
+        }
+        return analyze(statement, distributionKeys, rowEstimates, segmentRows, plan);
+    }
+
+    /**
+     * Строки по сегментам из кэша; подсчитываются только таблицы, которых в кэше нет или срок которых истек.
+     * Перекос меняется медленно, а повторные запросы к тем же таблицам не должны каждый раз читать их целиком.
+     */
+    Map<String, List<Long>> segmentRows(Long connectionId, Collection<String> tables) {
+        long now = System.currentTimeMillis();
+        segmentRowsCache.values().removeIf(cached -> cached.expiresAt() <= now);
+
+        Map<String, List<Long>> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String table : tables) {
+            SegmentRows cached = segmentRowsCache.get(cacheKey(connectionId, table));
+            if (cached != null) {
+                result.put(table, cached.counts());
+            } else {
+                missing.add(table);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long expiresAt = now + TimeUnit.MINUTES.toMillis(skewCheckCacheTtlMinutes);
+            databaseConnectionService.getSegmentRowCounts(connectionId, missing, skewCheckTimeoutSeconds)
+                    .forEach((table, counts) -> {
+                        segmentRowsCache.put(cacheKey(connectionId, table),
+                                new SegmentRows(List.copyOf(counts), expiresAt));
+                        result.put(table, counts);
+                    });
+        }
+        return result;
+    }
+
+    private static String cacheKey(Long connectionId, String table) {
+        return connectionId + ":" + table.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Находки по уже собранным данным каталога и плану; plan может быть null.
+     */
+    MppAnalysis analyze(Statement statement, Map<String, List<String>> distributionKeys, Map<String, Long> rowEstimates,
+            Map<String, List<Long>> segmentRows, ExecutionPlan plan) {
+        Map<String, List<String>> keys = caseInsensitive(distributionKeys);
+        Map<String, Long> rows = caseInsensitive(rowEstimates);
+        List<String> findings = new ArrayList<>();
+
+        keys.forEach((table, columns) -> {
+            if (columns.isEmpty()) {
+                findings.add("Таблица " + table + " распределена случайно или реплицирована: соединения с ней "
+                        + "по любому ключу требуют перемещения данных");
+            }
+        });
+
+        for (JoinKey join : joinKeys(statement)) {
+            checkJoinSide(join.leftTable, join.leftColumn, join, keys, rows, findings);
+            checkJoinSide(join.rightTable, join.rightColumn, join, keys, rows, findings);
+        }
+
+        Map<String, Double> skewCoefficients = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        segmentRows.forEach((table, counts) -> {
+            Double coefficient = skewCoefficient(counts);
+            if (coefficient == null) {
+                return;
+            }
+            skewCoefficients.put(table, coefficient);
+            if (coefficient >= skewThresholdPercent) {
+                long max = counts.stream().mapToLong(Long::longValue).max().orElse(0);
+                double average = counts.stream().mapToLong(Long::longValue).average().orElse(0);
+                findings.add(String.format(Locale.ROOT, "Перекос данных в %s: коэффициент вариации %.0f%%, "
+                        + "на самом загруженном сегменте %s строк при среднем %s — этот сегмент определяет время "
+                        + "всего запроса", table, coefficient, formatRows(max), formatRows(average)));
+            }
+        });
+
+        if (plan != null) {
+            collectMotions(plan, findings);
+        }
+
+        return MppAnalysis.builder()
+                .findings(List.copyOf(new LinkedHashSet<>(findings)))
+                .distributionKeys(keys)
+                .skewCoefficients(skewCoefficients)
+                .build();
+    }
+
+    private void checkJoinSide(String table, String column, JoinKey join, Map<String, List<String>> keys,
+            Map<String, Long> rows, List<String> findings) {
+        List<String> distribution = keys.get(table);
+        if (distribution == null || distribution.isEmpty()) {
+            return;
+        }
+        if (distribution.size() == 1 && distribution.get(0).equalsIgnoreCase(column)) {
+            return;
+        }
+        Long tableRows = rows.get(table);
+        findings.add("Соединение по " + join + ": " + table + " распределена по (" + String.join(", ", distribution)
+                + "), а не по " + column + " — потребуется Redistribute или Broadcast Motion"
+                + (tableRows != null && tableRows > 0 ? " ~" + formatRows(tableRows) + " строк" : ""));
+    }
+
+    private void collectMotions(ExecutionPlan plan, List<String> findings) {
+        long slices = plan.getSliceCount();
+        for (PlanNode node : plan.getNodes()) {
+            if (!node.isMotion() || "Gather Motion".equals(node.getNodeType())) {
+                continue;
+            }
+            String relations = relations(node);
+            String planRows = node.getPlanRows() == null ? "" : " ~" + formatRows(node.getPlanRows()) + " строк";
+            if ("Broadcast Motion".equals(node.getNodeType())) {
+                findings.add("Broadcast Motion " + relations + ":" + planRows
+                        + " копируются на каждый сегмент; выгодно только для маленьких таблиц");
+            } else if ("Redistribute Motion".equals(node.getNodeType())) {
+                findings.add("Redistribute Motion " + relations + ":" + planRows
+                        + " перераспределяются по сети между сегментами");
+            }
+        }
+        if (slices > 2) {
+            findings.add("План состоит из " + slices + " слайсов: каждый Motion добавляет этап обмена данными");
+        }
+    }
+
+    /**
+     * Коэффициент вариации числа строк по сегментам в процентах; пустая таблица перекоса не имеет.
+     */
+    static Double skewCoefficient(List<Long> counts) {
+        if (counts == null || counts.size() < 2) {
+            return null;
+        }
+        double average = counts.stream().mapToLong(Long::longValue).average().orElse(0);
+        if (average == 0) {
+            return null;
+        }
+        double variance = counts.stream().mapToDouble(count -> Math.pow(count - average, 2)).sum() / counts.size();
+        return Math.sqrt(variance) / average * 100;
+    }
+
+    private List<JoinKey> joinKeys(Statement statement) {
+        List<JoinKey> joins = new ArrayList<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            Map<String, Table> sources = new HashMap<>();
+            for (FromItem fromItem : RewriteSupport.fromItems(plainSelect)) {
+                String qualifier = RewriteSupport.qualifier(fromItem);
+                if (fromItem instanceof Table table && qualifier != null) {
+                    sources.put(qualifier.toLowerCase(), table);
+                }
+            }
+            List<Expression> conditions = new ArrayList<>(RewriteSupport.conjuncts(plainSelect.getWhere()));
+            if (plainSelect.getJoins() != null) {
+                for (Join join : plainSelect.getJoins()) {
+                    if (join.getOnExpressions() != null) {
+                        join.getOnExpressions().forEach(on -> conditions.addAll(RewriteSupport.conjuncts(on)));
+                    }
+                }
+            }
+            for (Expression condition : conditions) {
+                if (condition instanceof EqualsTo equalsTo
+                        && equalsTo.getLeftExpression() instanceof Column left && left.getTable() != null
+                        && equalsTo.getRightExpression() instanceof Column right && right.getTable() != null) {
+                    Table leftTable = sources.get(String.valueOf(left.getTable().getName()).toLowerCase());
+                    Table rightTable = sources.get(String.valueOf(right.getTable().getName()).toLowerCase());
+                    if (leftTable != null && rightTable != null && leftTable != rightTable) {
+                        joins.add(new JoinKey(leftTable.getFullyQualifiedName(), left.getColumnName(),
+                                rightTable.getFullyQualifiedName(), right.getColumnName()));
+                    }
+                }
+            }
+        }
+        return joins;
+    }
+
+    private String relations(PlanNode node) {
+        Set<String> relations = new LinkedHashSet<>();
+        node.getSubtree().stream()
+                .map(PlanNode::getRelationName)
+                .filter(relation -> relation != null)
+                .forEach(relations::add);
+        return relations.isEmpty() ? "(промежуточный результат)" : String.join(", ", relations);
+    }
+
+    static String formatRows(double rows) {
+        if (rows >= 1_000_000_000) {
+            return String.format(Locale.ROOT, "%.1f млрд", rows / 1_000_000_000);
+        }
+        if (rows >= 1_000_000) {
+            return String.format(Locale.ROOT, "%.0f млн", rows / 1_000_000);
+        }
+        if (rows >= 10_000) {
+            return String.format(Locale.ROOT, "%.0f тыс.", rows / 1_000);
+        }
+        return String.format(Locale.ROOT, "%.0f", rows);
+    }
+
+    private static <V> Map<String, V> caseInsensitive(Map<String, V> source) {
+        Map<String, V> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (source != null) {
+            result.putAll(source);
+        }
+        return result;
+    }
+
+    private record JoinKey(String leftTable, String leftColumn, String rightTable, String rightColumn) {
+        @Override
+        public String toString() {
+            return leftTable + "." + leftColumn + " = " + rightTable + "." + rightColumn;
+        }
+    }
+}
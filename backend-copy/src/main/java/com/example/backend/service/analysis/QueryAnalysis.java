@@ -0,0 +1,26 @@
+package com.example.backend.service.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Результат статического анализа запроса: оценка потенциала оптимизации и найденные признаки.
+ */
+@Getter
+@Builder
+public class QueryAnalysis {
+    private final int score;
+    private final int threshold;
+    private final List<String> findings;
+    private final Map<String, Long> tableRowEstimates;
+
+    /**
+     * Запрос настолько прост, что вызов LLM не окупится.
+     */
+    public boolean isBelowThreshold() {
+        return score < threshold;
+    }
+}
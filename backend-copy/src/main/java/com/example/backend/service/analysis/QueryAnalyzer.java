@@ -0,0 +1,292 @@
+package com.example.backend.service.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.service.rewrite.RewriteSupport;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.ExtractExpression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+
+/**
+ * Быстрая оценка того, есть ли в запросе что оптимизировать, по дереву JSqlParser и, если доступна,
+ * статистике каталога. Точечные выборки и простые агрегаты получают низкую оценку и не отправляются в LLM.
+ */
+@Slf4j
+@Component
+public class QueryAnalyzer {
+
+    private static final int JOIN_WEIGHT = 10;
+    private static final int SUBQUERY_WEIGHT = 15;
+    private static final int CTE_WEIGHT = 10;
+    private static final int SET_OPERATION_WEIGHT = 10;
+    private static final int PREDICATE_FUNCTION_WEIGHT = 15;
+    private static final int LEADING_WILDCARD_WEIGHT = 10;
+    private static final int SELECT_STAR_WEIGHT = 5;
+    private static final int ORDER_WITHOUT_LIMIT_WEIGHT = 10;
+    private static final int LARGE_TABLE_WEIGHT = 15;
+    private static final int FULL_SCAN_WEIGHT = 20;
+    private static final int SMALL_DATA_BONUS = -20;
+
+    private static final long LARGE_TABLE_ROWS = 1_000_000;
+    private static final long FULL_SCAN_ROWS = 100_000;
+    private static final long SMALL_TABLE_ROWS = 10_000;
+    private static final int MAX_SCORE = 100;
+
+    @Value("${sql.analysis.threshold:20}")
+    private int threshold = 20;
+
+    /**
+     * Имена таблиц запроса без CTE — для запроса статистики каталога.
+     */
+    public Set<String> tableNames(Statement statement) {
+        Set<String> names = new LinkedHashSet<>(new TablesNamesFinder().getTableList(statement));
+        if (statement instanceof Select select && select.getWithItemsList() != null) {
+            select.getWithItemsList().forEach(withItem -> names.removeIf(name -> name.equalsIgnoreCase(withItem.getName())));
+        }
+        return names;
+    }
+
+    /**
+     * Имена всех столбцов, упомянутых в запросе, включая подзапросы и CTE.
+     */
+    public Set<String> referencedColumns(Statement statement) {
+        Set<String> columns = new LinkedHashSet<>();
+        ExpressionVisitorAdapter collector = new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                columns.add(column.getColumnName());
+            }
+
+            @Override
+            public void visit(SubSelect subSelect) {
+                // Подзапросы входят в plainSelects отдельно
+            }
+        };
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            RewriteSupport.expressions(plainSelect).forEach(expression -> expression.accept(collector));
+        }
+        return columns;
+    }
+
+    public QueryAnalysis analyze(Statement statement, Map<String, Long> tableRowEstimates) {
+        if (!(statement instanceof Select select)) {
+            return QueryAnalysis.builder()
+                    .score(MAX_SCORE)
+                    .threshold(threshold)
+                    .findings(List.of("Запрос изменяет данные — анализируется моделью без упрощенной проверки"))
+                    .tableRowEstimates(tableRowEstimates)
+                    .build();
+        }
+
+        List<String> findings = new ArrayList<>();
+        int score = 0;
+
+        List<WithItem> withItems = select.getWithItemsList();
+        if (withItems != null && !withItems.isEmpty()) {
+            score += CTE_WEIGHT * withItems.size();
+            findings.add("CTE: " + withItems.size());
+        }
+        if (select.getSelectBody() instanceof SetOperationList setOperationList) {
+            score += SET_OPERATION_WEIGHT * setOperationList.getOperations().size();
+            findings.add("Операции над множествами: " + setOperationList.getOperations());
+            if (setOperationList.getOrderByElements() != null && setOperationList.getLimit() == null
+                    && setOperationList.getFetch() == null) {
+                score += ORDER_WITHOUT_LIMIT_WEIGHT;
+                findings.add("ORDER BY без LIMIT сортирует весь результат");
+            }
+        }
+
+        int joins = 0;
+        int subqueries = 0;
+        int predicateFunctions = 0;
+        int leadingWildcards = 0;
+        boolean hasUnfilteredScan = false;
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            if (plainSelect.getJoins() != null) {
+                joins += plainSelect.getJoins().size();
+            }
+            for (FromItem fromItem : RewriteSupport.fromItems(plainSelect)) {
+                if (fromItem instanceof SubSelect) {
+                    subqueries++;
+                }
+            }
+            for (Expression expression : RewriteSupport.expressions(plainSelect)) {
+                subqueries += countSubSelects(expression);
+            }
+            for (Expression condition : conditions(plainSelect)) {
+                PredicateVisitor visitor = new PredicateVisitor();
+                condition.accept(visitor);
+                predicateFunctions += visitor.functionsOnColumns;
+                leadingWildcards += visitor.leadingWildcards;
+            }
+            if (plainSelect.getSelectItems().stream()
+                    .anyMatch(item -> item instanceof AllColumns || item instanceof AllTableColumns)) {
+                score += SELECT_STAR_WEIGHT;
+                findings.add("SELECT * читает все столбцы и мешает index-only scan");
+            }
+            if (plainSelect.getOrderByElements() != null && !plainSelect.getOrderByElements().isEmpty()
+                    && plainSelect.getLimit() == null && plainSelect.getFetch() == null) {
+                score += ORDER_WITHOUT_LIMIT_WEIGHT;
+                findings.add("ORDER BY без LIMIT сортирует весь результат");
+            }
+            if (plainSelect.getWhere() == null && plainSelect.getFromItem() != null && plainSelect.getGroupBy() == null) {
+                hasUnfilteredScan = true;
+            }
+        }
+        if (joins > 0) {
+            score += JOIN_WEIGHT * joins;
+            findings.add("Соединений: " + joins);
+        }
+        if (subqueries > 0) {
+            score += SUBQUERY_WEIGHT * subqueries;
+            findings.add("Подзапросов: " + subqueries);
+        }
+        if (predicateFunctions > 0) {
+            score += PREDICATE_FUNCTION_WEIGHT * predicateFunctions;
+            findings.add("Функции над столбцами в условиях: " + predicateFunctions + " — индекс по столбцу не используется");
+        }
+        if (leadingWildcards > 0) {
+            score += LEADING_WILDCARD_WEIGHT * leadingWildcards;
+            findings.add("LIKE с ведущим % не использует B-tree индекс: " + leadingWildcards);
+        }
+
+        score += scoreStatistics(tableRowEstimates, hasUnfilteredScan, findings);
+        score = Math.max(0, Math.min(MAX_SCORE, score));
+        log.debug("Query analysis score={}, threshold={}, findings={}", score, threshold, findings);
+        return QueryAnalysis.builder()
+                .score(score)
+                .threshold(threshold)
+                .findings(List.copyOf(new LinkedHashSet<>(findings)))
+                .tableRowEstimates(tableRowEstimates)
+                .build();
+    }
+
+    private int scoreStatistics(Map<String, Long> tableRowEstimates, boolean hasUnfilteredScan, List<String> findings) {
+        if (tableRowEstimates == null || tableRowEstimates.isEmpty()) {
+            return 0;
+        }
+        int score = 0;
+        long largest = tableRowEstimates.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        for (Map.Entry<String, Long> entry : tableRowEstimates.entrySet()) {
+            if (entry.getValue() >= LARGE_TABLE_ROWS) {
+                score += LARGE_TABLE_WEIGHT;
+                findings.add("Большая таблица " + entry.getKey() + ": ~" + entry.getValue() + " строк");
+            }
+        }
+        if (hasUnfilteredScan && largest >= FULL_SCAN_ROWS) {
+            score += FULL_SCAN_WEIGHT;
+            findings.add("Выборка без WHERE по таблице из ~" + largest + " строк");
+        }
+        if (largest < SMALL_TABLE_ROWS) {
+            score += SMALL_DATA_BONUS;
+            findings.add("Все таблицы меньше " + SMALL_TABLE_ROWS + " строк — выигрыш от оптимизации мал");
+        }
+        return score;
+    }
+
+    private Collection<Expression> conditions(PlainSelect plainSelect) {
+        List<Expression> conditions = new ArrayList<>();
+        if (plainSelect.getWhere() != null) {
+            conditions.add(plainSelect.getWhere());
+        }
+        if (plainSelect.getJoins() != null) {
+            for (Join join : plainSelect.getJoins()) {
+                if (join.getOnExpressions() != null) {
+                    conditions.addAll(join.getOnExpressions());
+                }
+            }
+        }
+        return conditions;
+    }
+
+    private int countSubSelects(Expression expression) {
+        int[] count = {0};
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(SubSelect subSelect) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Считает функции и приведения типов над столбцами и LIKE с ведущим % в условии, не заходя в подзапросы.
+     */
+    private static class PredicateVisitor extends ExpressionVisitorAdapter {
+        private int functionsOnColumns;
+        private int leadingWildcards;
+
+        @Override
+        public void visit(Function function) {
+            if (function.getParameters() != null && referencesColumn(function.getParameters().getExpressions())) {
+                functionsOnColumns++;
+            }
+        }
+
+        @Override
+        public void visit(CastExpression cast) {
+            if (cast.getLeftExpression() instanceof Column) {
+                functionsOnColumns++;
+            }
+        }
+
+        @Override
+        public void visit(ExtractExpression extract) {
+            if (extract.getExpression() instanceof Column) {
+                functionsOnColumns++;
+            }
+        }
+
+        @Override
+        public void visit(LikeExpression like) {
+            super.visit(like);
+            if (like.getRightExpression() instanceof StringValue pattern && pattern.getValue().startsWith("%")) {
+                leadingWildcards++;
+            }
+        }
+
+        @Override
+        public void visit(SubSelect subSelect) {
+            // Подзапросы анализируются отдельно как самостоятельные PlainSelect
+        }
+
+        private boolean referencesColumn(List<Expression> expressions) {
+            boolean[] found = {false};
+            ExpressionVisitorAdapter columnFinder = new ExpressionVisitorAdapter() {
+                @Override
+                public void visit(Column column) {
+                    found[0] = true;
+                }
+            };
+            expressions.forEach(expression -> expression.accept(columnFinder));
+            return found[0];
+        }
+    }
+}
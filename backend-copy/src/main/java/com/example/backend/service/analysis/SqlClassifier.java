@@ -0,0 +1,201 @@
+package com.example.backend.service.analysis;
+
+/**
+ * Определяет по первому ключевому слову, является ли сообщение SQL-запросом. Пропускает пробелы,
+ * строчные и вложенные блочные комментарии и открывающие скобки; сравнивает ключевое слово без учета
+ * регистра прямо в исходной строке. Копий сообщения не создает: вызывается на каждое сообщение чата,
+ * а сообщение может весить сотни килобайт.
+ */
+public final class SqlClassifier {
+
+    public enum Kind {
+        SELECT, WITH, INSERT, UPDATE, DELETE, MERGE, EXPLAIN, CREATE, ALTER, DROP, TRUNCATE, NONE;
+
+        public boolean isSql() {
+            return this != NONE;
+        }
+
+        /**
+         * Запрос только читает данные (с точностью до изменяющих CTE, которые отсекает read-only транзакция).
+         */
+        public boolean isQuery() {
+            return this == SELECT || this == WITH;
+        }
+
+        public boolean isDml() {
+            return this == INSERT || this == UPDATE || this == DELETE || this == MERGE;
+        }
+    }
+
+    // values() копирует массив при каждом вызове
+    private static final Kind[] KEYWORDS = Kind.values();
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private SqlClassifier() {
+    }
+
+    public static boolean isSql(CharSequence text) {
+        return classify(text).isSql();
+    }
+
+    public static Kind classify(CharSequence text) {
+        return text == null ? Kind.NONE : classify(text, 0);
+    }
+
+    private static Kind classify(CharSequence text, int from) {
+        int length = text.length();
+        int i = skipInsignificant(text, from);
+        // (SELECT ...) UNION (SELECT ...)
+        while (i < length && text.charAt(i) == '(') {
+            i = skipInsignificant(text, i + 1);
+        }
+        if (i >= length) {
+            return Kind.NONE;
+        }
+        for (Kind kind : KEYWORDS) {
+            if (kind != Kind.NONE && matchesKeyword(text, i, kind.name())) {
+                return confirm(kind, text, i + kind.name().length());
+            }
+        }
+        return Kind.NONE;
+    }
+
+    /**
+     * WITH, EXPLAIN и MERGE часто начинают обычные фразы, поэтому для них проверяется и продолжение:
+     * WITH имя [(столбцы)] AS, EXPLAIN перед SQL-запросом, MERGE INTO.
+     */
+    private static Kind confirm(Kind kind, CharSequence text, int after) {
+        switch (kind) {
+            case WITH:
+                return isCteStart(text, after) ? kind : Kind.NONE;
+            case EXPLAIN:
+                int i = skipInsignificant(text, after);
+                if (i < text.length() && text.charAt(i) == '(') {
+                    // EXPLAIN (ANALYZE, BUFFERS) SELECT ...
+                    i = skipPastParentheses(text, i);
+                } else {
+                    i = skipKeyword(text, i, "ANALYZE");
+                    i = skipKeyword(text, i, "ANALYSE");
+                    i = skipKeyword(text, i, "VERBOSE");
+                }
+                return i >= 0 && classify(text, i).isSql() ? kind : Kind.NONE;
+            case MERGE:
+                int into = skipInsignificant(text, after);
+                return matchesKeyword(text, into, "INTO") ? kind : Kind.NONE;
+            default:
+                return kind;
+        }
+    }
+
+    private static boolean isCteStart(CharSequence text, int after) {
+        int i = skipKeyword(text, skipInsignificant(text, after), "RECURSIVE");
+        i = skipInsignificant(text, i);
+        int nameStart = i;
+        if (i < text.length() && text.charAt(i) == '"') {
+            i++;
+            while (i < text.length() && text.charAt(i) != '"') {
+                i++;
+            }
+            i++;
+        } else {
+            while (i < text.length() && isIdentifierPart(text.charAt(i))) {
+                i++;
+            }
+        }
+        if (i == nameStart || i > text.length()) {
+            return false;
+        }
+        i = skipInsignificant(text, i);
+        if (i < text.length() && text.charAt(i) == '(') {
+            i = skipPastParentheses(text, i);
+            if (i < 0) {
+                return false;
+            }
+            i = skipInsignificant(text, i);
+        }
+        return matchesKeyword(text, i, "AS");
+    }
+
+    /**
+     * Позиция после слова keyword и пробелов за ним или from, если слова там нет.
+     */
+    private static int skipKeyword(CharSequence text, int from, String keyword) {
+        int i = skipInsignificant(text, from);
+        return matchesKeyword(text, i, keyword) ? skipInsignificant(text, i + keyword.length()) : from;
+    }
+
+    /**
+     * Позиция после скобки, закрывающей открытую в from, или -1, если ее нет.
+     */
+    private static int skipPastParentheses(CharSequence text, int from) {
+        int depth = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Позиция первого символа после пробелов и комментариев, начиная с from.
+     */
+    static int skipInsignificant(CharSequence text, int from) {
+        int length = text.length();
+        int i = from;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == BYTE_ORDER_MARK) {
+                i++;
+            } else if (c == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+                i += 2;
+                while (i < length && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                // В PostgreSQL блочные комментарии вкладываются
+                int depth = 1;
+                i += 2;
+                while (i < length && depth > 0) {
+                    if (text.charAt(i) == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                        depth++;
+                        i += 2;
+                    } else if (text.charAt(i) == '*' && i + 1 < length && text.charAt(i + 1) == '/') {
+                        depth--;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                }
+            } else {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static boolean matchesKeyword(CharSequence text, int from, String keyword) {
+        int end = from + keyword.length();
+        if (end > text.length()) {
+            return false;
+        }
+        for (int k = 0; k < keyword.length(); k++) {
+            char c = text.charAt(from + k);
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            if (c != keyword.charAt(k)) {
+                return false;
+            }
+        }
+        // SELECTED или DROPBOX — не ключевые слова
+        return end == text.length() || !isIdentifierPart(text.charAt(end));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
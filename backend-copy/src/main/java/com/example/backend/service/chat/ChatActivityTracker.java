@@ -0,0 +1,61 @@
+package com.example.backend.service.chat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.repository.ChatRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Время последней активности чатов. Вместо UPDATE chats на каждое сообщение чаты копятся в наборе
+ * и раз в chat.activity.flush-interval-ms обновляются одним запросом; сотня сообщений в один чат
+ * за интервал дает одно обновление.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatActivityTracker {
+
+    private final ChatRepository chatRepository;
+
+    private final Set<Long> touched = ConcurrentHashMap.newKeySet();
+
+    public void touch(Long chatId) {
+        touched.add(chatId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.activity.flush-interval-ms:1000}")
+    public void flush() {
+        if (touched.isEmpty()) {
+            return;
+        }
+        List<Long> chatIds = new ArrayList<>();
+        for (Iterator<Long> iterator = touched.iterator(); iterator.hasNext();) {
+            chatIds.add(iterator.next());
+            iterator.remove();
+        }
+        try {
+            int updated = chatRepository.touchAll(chatIds, LocalDateTime.now());
+            log.debug("Chat activity flushed: chats={}, updated={}", chatIds.size(), updated);
+        } catch (RuntimeException e) {
+            // Следующий сброс повторит попытку
+            touched.addAll(chatIds);
+            log.warn("Failed to flush chat activity for {} chats: {}", chatIds.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
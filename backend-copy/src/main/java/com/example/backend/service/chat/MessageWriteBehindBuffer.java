@@ -0,0 +1,247 @@
+package com.example.backend.service.chat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.backend.model.entity.Chat;
+import com.example.backend.model.entity.ContentBlob;
+import com.example.backend.model.entity.EntityIds;
+import com.example.backend.model.entity.Message;
+import com.example.backend.service.storage.ContentStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Отложенная запись сообщений чата. Сообщение получает идентификатор из последовательности
+ * (блоками по {@link EntityIds#ALLOCATION_SIZE}), дописывается в журнал и сразу рассылается;
+ * в таблицу messages очередь уходит пакетами по расписанию. После рестарта журнал проигрывается
+ * заново, повторная вставка уже записанных строк отсекается ON CONFLICT.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "chat.write-behind.enabled", havingValue = "true")
+public class MessageWriteBehindBuffer {
+
+    private static final String INSERT_SQL = "INSERT INTO messages (id, chat_id, content, content_blob_id, "
+            + "is_from_user, created_at) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (id, created_at) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentStore contentStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ConcurrentLinkedDeque<Message> queue = new ConcurrentLinkedDeque<>();
+    // Запись в журнал и постановка в очередь атомарны относительно усечения журнала
+    private final ReentrantLock journalLock = new ReentrantLock();
+
+    @Value("${chat.write-behind.journal-path:data/message-journal.log}")
+    private String journalPath;
+
+    @Value("${chat.write-behind.fsync:true}")
+    private boolean fsync;
+
+    @Value("${chat.write-behind.batch-size:500}")
+    private int batchSize;
+
+    private FileChannel journal;
+    private long nextId;
+    private long lastId = -1;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path path = Paths.get(journalPath);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(path)) {
+            replay(path);
+        }
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Присваивает сообщению идентификатор, фиксирует его в журнале и ставит в очередь на запись.
+     */
+    public Message write(Message message) {
+        if (message.getCreatedAt() == null) {
+            message.setCreatedAt(LocalDateTime.now());
+        }
+        message.setId(allocateId());
+        byte[] line;
+        try {
+            line = (objectMapper.writeValueAsString(toEntry(message)) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize message " + message.getId(), e);
+        }
+        journalLock.lock();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            if (fsync) {
+                journal.force(false);
+            }
+            queue.add(message);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot append message " + message.getId() + " to journal", e);
+        } finally {
+            journalLock.unlock();
+        }
+        return message;
+    }
+
+    /**
+     * Сообщения чата, еще не записанные в таблицу.
+     */
+    public List<Message> pending(Long chatId) {
+        return queue.stream()
+                .filter(message -> chatId.equals(message.getChat().getId()))
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${chat.write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        while (!queue.isEmpty()) {
+            List<Message> batch = new ArrayList<>();
+            for (Message message : queue) {
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+                batch.add(message);
+            }
+            try {
+                insert(batch);
+            } catch (DataAccessException e) {
+                // Сообщения остаются в очереди и журнале до следующего сброса
+                log.warn("Failed to flush {} buffered messages: {}", batch.size(), e.getMessage());
+                return;
+            }
+            // flush не выполняется параллельно, так что голова очереди — это и есть пакет
+            for (int i = 0; i < batch.size(); i++) {
+                queue.pollFirst();
+            }
+            log.debug("Flushed {} buffered messages", batch.size());
+        }
+        journalLock.lock();
+        try {
+            if (queue.isEmpty() && journal.size() > 0) {
+                journal.truncate(0);
+                if (fsync) {
+                    journal.force(false);
+                }
+            }
+        } catch (IOException e) {
+            // Не страшно: при проигрывании журнала записанные строки будут пропущены
+            log.warn("Failed to truncate message journal: {}", e.getMessage());
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    private void insert(List<Message> batch) {
+        // Блоки текста и ссылки на них пишутся одной транзакцией, иначе блок может удалить сборка мусора
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch.stream().map(this::toRow).toList()));
+        } catch (DataIntegrityViolationException e) {
+            // Чат удален, пока сообщение ждало в очереди: вставляем по одному и отбрасываем такие строки
+            for (Message message : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            jdbcTemplate.update(INSERT_SQL, toRow(message)));
+                } catch (DataIntegrityViolationException rowError) {
+                    log.warn("Dropping buffered message {} of chat {}: {}", message.getId(),
+                            message.getChat().getId(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private synchronized long allocateId() {
+        if (nextId > lastId) {
+            // pooled-lo, как у Hibernate: значение последовательности — начало блока
+            Long value = jdbcTemplate.queryForObject("SELECT nextval('messages_id_seq')", Long.class);
+            nextId = value;
+            lastId = value + EntityIds.ALLOCATION_SIZE - 1;
+        }
+        return nextId++;
+    }
+
+    private void replay(Path path) throws IOException {
+        int replayed = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                Map<?, ?> entry = objectMapper.readValue(line, Map.class);
+                Message message = new Message();
+                message.setId(((Number) entry.get("id")).longValue());
+                message.setChat(Chat.builder().id(((Number) entry.get("chatId")).longValue()).build());
+                message.setContent((String) entry.get("content"));
+                message.setFromUser(Boolean.TRUE.equals(entry.get("fromUser")));
+                message.setCreatedAt(LocalDateTime.parse((String) entry.get("createdAt")));
+                queue.add(message);
+                replayed++;
+            } catch (IOException | RuntimeException e) {
+                // Недописанная последняя строка после аварийной остановки
+                log.warn("Skipping corrupt message journal entry: {}", e.getMessage());
+            }
+        }
+        log.info("Replayed {} messages from journal {}", replayed, path);
+    }
+
+    private Map<String, Object> toEntry(Message message) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", message.getId());
+        entry.put("chatId", message.getChat().getId());
+        entry.put("content", message.getContent());
+        entry.put("fromUser", message.isFromUser());
+        entry.put("createdAt", message.getCreatedAt().toString());
+        return entry;
+    }
+
+    private Object[] toRow(Message message) {
+        // Журнал и очередь держат полный текст, сжимается он только при записи в таблицу
+        ContentBlob blob = contentStore.intern(message.getContent());
+        return new Object[] {message.getId(), message.getChat().getId(), blob == null ? message.getContent() : null,
+                blob == null ? null : blob.getId(), message.isFromUser(), Timestamp.valueOf(message.getCreatedAt())};
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.backend.service.decompose;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.dto.OptimizationResult;
+import com.example.backend.service.LLMService;
+import com.example.backend.service.llm.LLMRateGovernor;
+import com.example.backend.service.llm.PromptContext;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.statement.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Оптимизация больших запросов по частям: каждая часть уходит в модель отдельным вызовом,
+ * вызовы идут параллельно, результат собирается обратно в исходный каркас. Время ответа
+ * определяется самой большой частью, а не всем скриптом.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkedOptimizer {
+
+    private static final String UNIT_PROMPT = """
+            Ты — специалист по оптимизации SQL-запросов. Перед тобой часть большого запроса ({unit}), остальные \
+            части оптимизируются отдельно. Перепиши ее так, чтобы она выполнялась быстрее, не меняя результат: \
+            те же столбцы в том же порядке и с теми же именами.
+            {cte_names}
+            Входные данные SQL-запрос:
+            {query_text}
+
+            В optimizedSql верни переписанную часть одним SELECT без WITH, в rationale кратко обоснуй изменения.""";
+
+    private final QueryDecomposer queryDecomposer;
+    private final LLMService llmService;
+    private final LLMRateGovernor llmRateGovernor;
+
+    @Value("${sql.decompose.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sql.decompose.min-query-chars:20000}")
+    private int minQueryChars;
+
+    @Value("${sql.decompose.min-unit-chars:500}")
+    private int minUnitChars;
+
+    @Value("${sql.decompose.max-concurrency:4}")
+    private int maxConcurrency;
+
+    /**
+     * Разбиение запроса или null, если запрос небольшой или делить его не на что.
+     */
+    public Decomposition decompose(String query, Statement statement) {
+        if (!enabled || query.length() < minQueryChars) {
+            return null;
+        }
+        Decomposition decomposition = queryDecomposer.decompose(statement, minUnitChars);
+        return decomposition != null && decomposition.getUnits().size() >= 2 ? decomposition : null;
+    }
+
+    public Mono<OptimizationResult> optimize(String query, Decomposition decomposition, String llmProvider,
+            Long userId) {
+        log.info("Optimizing query in {} parts, concurrency {}", decomposition.getUnits().size(), maxConcurrency);
+        Mono<OptimizationResult> chunks = Flux.fromIterable(decomposition.getUnits())
+                .flatMap(unit -> optimizeUnit(unit, decomposition, llmProvider), maxConcurrency)
+                .collectList()
+                .map(results -> assemble(query, decomposition, results));
+        // Весь разбор занимает один слот пользователя: части одного запроса не должны упираться в его лимит
+        return llmRateGovernor.withUserLimit(userId, () -> chunks);
+    }
+
+    private Mono<UnitResult> optimizeUnit(QueryUnit unit, Decomposition decomposition, String llmProvider) {
+        String cteNames = decomposition.getCteNames().isEmpty() ? ""
+                : "Имена " + String.join(", ", decomposition.getCteNames())
+                        + " — другие CTE этого запроса: ссылайся на них как есть.\n";
+        String prompt = UNIT_PROMPT.replace("{unit}", unit.getLabel()).replace("{cte_names}", cteNames);
+        return llmService.optimizeSqlQuery(unit.getSql(), llmProvider, prompt, PromptContext.empty(), null)
+                .map(result -> new UnitResult(unit, result, null))
+                .onErrorResume(e -> {
+                    log.warn("Optimization of {} failed: {}", unit.getLabel(), e.getMessage());
+                    return Mono.just(new UnitResult(unit, null, e.getMessage()));
+                });
+    }
+
+    private OptimizationResult assemble(String query, Decomposition decomposition, List<UnitResult> results) {
+        Map<QueryUnit, String> optimizedBodies = new HashMap<>();
+        results.stream().filter(result -> result.sql() != null)
+                .forEach(result -> optimizedBodies.put(result.unit(), result.sql()));
+        if (optimizedBodies.isEmpty()) {
+            throw new ApiException("Failed to optimize any part of the SQL query: " + results.get(0).error(),
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        String sql;
+        List<QueryUnit> rejected;
+        try {
+            Reassembly reassembly = queryDecomposer.reassemble(decomposition, optimizedBodies);
+            sql = reassembly.getSql();
+            rejected = reassembly.getRejected();
+        } catch (ApiException e) {
+            log.warn("Reassembled query is invalid, returning the original: {}", e.getMessage());
+            sql = query;
+            rejected = List.copyOf(optimizedBodies.keySet());
+        }
+        // Ответы приходят в порядке готовности, в ответе части идут в порядке запроса
+        Map<QueryUnit, UnitResult> byUnit = results.stream()
+                .collect(Collectors.toMap(UnitResult::unit, result -> result));
+        List<UnitResult> ordered = decomposition.getUnits().stream().map(byUnit::get).toList();
+        return summarize(sql, ordered, rejected);
+    }
+
+    private OptimizationResult summarize(String sql, List<UnitResult> ordered, List<QueryUnit> rejected) {
+        StringBuilder rationale = new StringBuilder();
+        rationale.append("Запрос разбит на части (").append(ordered.size())
+                .append("), они оптимизированы независимо и собраны обратно.");
+        List<String> risks = new ArrayList<>();
+        risks.add("Части оптимизировались без контекста друг друга: проверьте условия соединения "
+                + "и фильтры каркаса.");
+        Set<String> indexes = new LinkedHashSet<>();
+        long applied = 0;
+        for (UnitResult unitResult : ordered) {
+            String label = unitResult.unit().getLabel();
+            if (unitResult.result() == null) {
+                risks.add(label + ": оставлена без изменений, модель не ответила.");
+                continue;
+            }
+            if (rejected.contains(unitResult.unit())) {
+                risks.add(label + ": оставлена без изменений, переписанный текст не прошел проверку.");
+                continue;
+            }
+            applied++;
+            OptimizationResult result = unitResult.result();
+            // Заголовки ответа модели понижаются, чтобы не спорить с заголовками сводки
+            String unitRationale = result.getRationale().replaceAll("(?m)^#{1,3} ", "#### ");
+            rationale.append("\n\n### ").append(label).append("\n\n")
+                    .append(unitRationale.isEmpty() ? "Часть переписана моделью." : unitRationale);
+            result.getRisks().forEach(risk -> risks.add(label + ": " + risk));
+            indexes.addAll(result.getIndexSuggestions());
+        }
+        return OptimizationResult.builder()
+                .optimizedSql(sql.trim())
+                .rationale(rationale.toString())
+                .estimatedGain("Переписано частей: " + applied + " из " + ordered.size()
+                        + ". Точный эффект покажет EXPLAIN ANALYZE.")
+                .risks(risks)
+                .indexSuggestions(List.copyOf(indexes))
+                .build();
+    }
+
+    private record UnitResult(QueryUnit unit, OptimizationResult result, String error) {
+
+        String sql() {
+            return result == null ? null : result.getOptimizedSql();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.backend.service.decompose;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.sf.jsqlparser.statement.select.Select;
+
+@Getter
+@AllArgsConstructor
+public class Decomposition {
+    private final Select statement;
+    private final List<QueryUnit> units;
+    // Имена CTE запроса: части ссылаются на них, и модель не должна их переименовывать
+    private final List<String> cteNames;
+}
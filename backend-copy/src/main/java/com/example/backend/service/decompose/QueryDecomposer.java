@@ -0,0 +1,175 @@
+package com.example.backend.service.decompose;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.service.rewrite.RewriteSupport;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import net.sf.jsqlparser.statement.select.WithItem;
+
+/**
+ * Делит SELECT на части, которые модель может оптимизировать независимо: тела CTE, производные
+ * таблицы и ветви UNION основного запроса. Каркас запроса (соединения, внешние условия) не меняется,
+ * поэтому после подстановки переписанных частей запрос собирается обратно из того же дерева.
+ */
+@Slf4j
+@Component
+public class QueryDecomposer {
+
+    /**
+     * Части не короче minUnitChars; более мелкие остаются в каркасе как есть.
+     */
+    public Decomposition decompose(Statement statement, int minUnitChars) {
+        if (!(statement instanceof Select select)) {
+            return null;
+        }
+        List<QueryUnit> units = new ArrayList<>();
+        List<String> cteNames = new ArrayList<>();
+        if (select.getWithItemsList() != null) {
+            for (WithItem withItem : select.getWithItemsList()) {
+                cteNames.add(withItem.getName());
+                // Рекурсивная CTE ссылается сама на себя, отдельно ее не переписать
+                if (withItem.isRecursive() || withItem.getSubSelect() == null) {
+                    continue;
+                }
+                SubSelect subSelect = withItem.getSubSelect();
+                addUnit(units, QueryUnit.Kind.CTE, withItem.getName(), subSelect.getSelectBody(),
+                        subSelect::setSelectBody, minUnitChars);
+            }
+        }
+
+        SelectBody body = select.getSelectBody();
+        if (body instanceof SetOperationList setOperationList) {
+            List<SelectBody> branches = setOperationList.getSelects();
+            for (int i = 0; i < branches.size(); i++) {
+                int index = i;
+                addUnit(units, QueryUnit.Kind.UNION_BRANCH, String.valueOf(i + 1), branches.get(i),
+                        replacement -> branches.set(index, replacement), minUnitChars);
+            }
+        } else if (body instanceof PlainSelect plainSelect) {
+            int before = units.size();
+            for (FromItem fromItem : RewriteSupport.fromItems(plainSelect)) {
+                if (fromItem instanceof SubSelect subSelect && subSelect.getWithItemsList() == null) {
+                    String name = subSelect.getAlias() != null ? subSelect.getAlias().getName()
+                            : String.valueOf(units.size() - before + 1);
+                    addUnit(units, QueryUnit.Kind.DERIVED_TABLE, name, subSelect.getSelectBody(),
+                            subSelect::setSelectBody, minUnitChars);
+                }
+            }
+            // Без производных таблиц основной запрос — такая же часть, как CTE
+            if (units.size() == before) {
+                addUnit(units, QueryUnit.Kind.MAIN, "main", plainSelect, select::setSelectBody, minUnitChars);
+            }
+        }
+        return new Decomposition(select, units, cteNames);
+    }
+
+    /**
+     * Подставляет переписанные тела частей и проверяет сборку повторным разбором. Часть остается исходной,
+     * если ее текст не разбирается как SELECT или число столбцов результата изменилось.
+     */
+    public Reassembly reassemble(Decomposition decomposition, Map<QueryUnit, String> optimizedBodies) {
+        List<QueryUnit> rejected = new ArrayList<>();
+        for (QueryUnit unit : decomposition.getUnits()) {
+            String optimized = optimizedBodies.get(unit);
+            if (optimized == null) {
+                continue;
+            }
+            SelectBody replacement = parseBody(unit, optimized);
+            if (replacement == null) {
+                rejected.add(unit);
+            } else {
+                unit.replace(replacement);
+            }
+        }
+
+        String sql = decomposition.getStatement().toString();
+        try {
+            CCJSqlParserUtil.parse(sql);
+        } catch (JSQLParserException e) {
+            throw new ApiException("Reassembled SQL query is invalid: " + e.getMessage(),
+                    HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        return new Reassembly(sql, rejected);
+    }
+
+    private void addUnit(List<QueryUnit> units, QueryUnit.Kind kind, String name, SelectBody body,
+            Consumer<SelectBody> replacer, int minUnitChars) {
+        String sql = body.toString();
+        if (sql.length() >= minUnitChars) {
+            units.add(new QueryUnit(kind, name, sql, replacer));
+        }
+    }
+
+    private SelectBody parseBody(QueryUnit unit, String optimized) {
+        String sql = optimized.trim();
+        while (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (JSQLParserException e) {
+            log.warn("Optimized {} is not valid SQL: {}", unit.getLabel(), e.getMessage());
+            return null;
+        }
+        // Собственный WITH внутри части не переносится в каркас
+        if (!(statement instanceof Select select)
+                || (select.getWithItemsList() != null && !select.getWithItemsList().isEmpty())) {
+            log.warn("Optimized {} is not a plain SELECT", unit.getLabel());
+            return null;
+        }
+        SelectBody body = select.getSelectBody();
+        if (unit.getKind() == QueryUnit.Kind.UNION_BRANCH && !(body instanceof PlainSelect)) {
+            return null;
+        }
+        int expected = columnCount(parseOriginal(unit));
+        int actual = columnCount(body);
+        if (expected >= 0 && actual >= 0 && expected != actual) {
+            log.warn("Optimized {} returns {} columns instead of {}", unit.getLabel(), actual, expected);
+            return null;
+        }
+        return body;
+    }
+
+    private SelectBody parseOriginal(QueryUnit unit) {
+        try {
+            return ((Select) CCJSqlParserUtil.parse(unit.getSql())).getSelectBody();
+        } catch (JSQLParserException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Число столбцов результата или -1, если его не определить по тексту (SELECT *).
+     */
+    private int columnCount(SelectBody body) {
+        if (body instanceof SetOperationList setOperationList && !setOperationList.getSelects().isEmpty()) {
+            return columnCount(setOperationList.getSelects().get(0));
+        }
+        if (!(body instanceof PlainSelect plainSelect)) {
+            return -1;
+        }
+        boolean star = plainSelect.getSelectItems().stream()
+                .anyMatch(item -> item instanceof AllColumns || item instanceof AllTableColumns);
+        return star ? -1 : plainSelect.getSelectItems().size();
+    }
+}
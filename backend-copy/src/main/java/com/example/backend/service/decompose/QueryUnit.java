@@ -0,0 +1,40 @@
+package com.example.backend.service.decompose;
+
+import java.util.function.Consumer;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.sf.jsqlparser.statement.select.SelectBody;
+
+/**
+ * Независимо оптимизируемая часть запроса: CTE, производная таблица или ветвь UNION.
+ * replacer подставляет переписанное тело на место исходного в общем дереве.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class QueryUnit {
+
+    public enum Kind {
+        CTE, DERIVED_TABLE, UNION_BRANCH, MAIN
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final String sql;
+    @Getter(AccessLevel.NONE)
+    private final Consumer<SelectBody> replacer;
+
+    public String getLabel() {
+        return switch (kind) {
+            case CTE -> "CTE " + name;
+            case DERIVED_TABLE -> "Производная таблица " + name;
+            case UNION_BRANCH -> "Ветвь UNION " + name;
+            case MAIN -> "Основной запрос";
+        };
+    }
+
+    void replace(SelectBody body) {
+        replacer.accept(body);
+    }
+}
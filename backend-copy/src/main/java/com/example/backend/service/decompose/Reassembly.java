@@ -0,0 +1,14 @@
+package com.example.backend.service.decompose;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class Reassembly {
+    private final String sql;
+    // Части, переписанный текст которых не прошел проверку и остался исходным
+    private final List<QueryUnit> rejected;
+}
@@ -0,0 +1,18 @@
+package com.example.backend.service.event;
+
+import com.example.backend.model.dto.SqlQueryRequest;
+import com.example.backend.model.entity.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * В чат пришел SQL-запрос: сообщение уже сохранено, осталось передать его на оптимизацию.
+ */
+@Getter
+@AllArgsConstructor
+public class SqlMessageReceivedEvent {
+    private final Long userId;
+    private final Message message;
+    private final SqlQueryRequest request;
+}
@@ -0,0 +1,24 @@
+package com.example.backend.service.fingerprint;
+
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class QueryFingerprint {
+    private final long fingerprint;
+    // Текст запроса без литералов: по нему считается отпечаток
+    private final String normalizedQuery;
+    private final String statementType;
+    private final Set<String> tables;
+
+    public String getHex() {
+        return toHex(fingerprint);
+    }
+
+    public static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.backend.service.fingerprint;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import com.example.backend.service.analysis.QueryAnalyzer;
+import com.example.backend.service.rewrite.RewriteSupport;
+
+import lombok.RequiredArgsConstructor;
+import net.sf.jsqlparser.expression.DateValue;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.HexValue;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TimeValue;
+import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.merge.Merge;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.util.deparser.ExpressionDeParser;
+import net.sf.jsqlparser.util.deparser.SelectDeParser;
+import net.sf.jsqlparser.util.deparser.StatementDeParser;
+
+/**
+ * Отпечаток формы запроса: дерево печатается заново с литералами, замененными на ?, списки литералов
+ * в IN сворачиваются в один ?, текст приводится к нижнему регистру. Запросы, отличающиеся только
+ * значениями, получают один и тот же 64-битный отпечаток (первые 8 байт SHA-256 нормализованного текста).
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryFingerprinter {
+
+    // LIMIT и OFFSET печатаются без обхода выражений, их числа убираются после печати
+    private static final Pattern LIMIT_VALUE = Pattern.compile("\\b(limit|offset)\\s+\\d+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final QueryAnalyzer queryAnalyzer;
+
+    public QueryFingerprint fingerprint(Statement statement) {
+        String normalized = normalize(statement);
+        Set<String> tables = new TreeSet<>();
+        queryAnalyzer.tableNames(statement).forEach(table -> tables.add(table.toLowerCase(Locale.ROOT)));
+        return new QueryFingerprint(hash(normalized), normalized, statementType(statement), tables);
+    }
+
+    String normalize(Statement statement) {
+        StringBuilder buffer = new StringBuilder();
+        ExpressionDeParser expressionDeParser = new LiteralStrippingDeParser();
+        SelectDeParser selectDeParser = new SelectDeParser(expressionDeParser, buffer);
+        expressionDeParser.setSelectVisitor(selectDeParser);
+        expressionDeParser.setBuffer(buffer);
+        statement.accept(new StatementDeParser(expressionDeParser, selectDeParser, buffer));
+
+        String text = WHITESPACE.matcher(buffer.toString().toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        return LIMIT_VALUE.matcher(text).replaceAll("$1 ?");
+    }
+
+    static String statementType(Statement statement) {
+        if (statement instanceof Select) {
+            return "SELECT";
+        } else if (statement instanceof Insert) {
+            return "INSERT";
+        } else if (statement instanceof Update) {
+            return "UPDATE";
+        } else if (statement instanceof Delete) {
+            return "DELETE";
+        } else if (statement instanceof Merge) {
+            return "MERGE";
+        }
+        return "OTHER";
+    }
+
+    private static long hash(String normalized) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest, 0, Long.BYTES).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class LiteralStrippingDeParser extends ExpressionDeParser {
+
+        @Override
+        public void visit(LongValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(DoubleValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(StringValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(HexValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(DateValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(TimeValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(TimestampValue value) {
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(SignedExpression expression) {
+            if (RewriteSupport.isLiteral(expression)) {
+                getBuffer().append('?');
+            } else {
+                super.visit(expression);
+            }
+        }
+
+        @Override
+        public void visit(InExpression in) {
+            // Длина списка значений не меняет форму запроса
+            if (in.getRightItemsList() instanceof ExpressionList list && list.getExpressions() != null
+                    && list.getExpressions().stream().allMatch(RewriteSupport::isLiteral)) {
+                in.getLeftExpression().accept(this);
+                getBuffer().append(in.isNot() ? " NOT IN (?)" : " IN (?)");
+                return;
+            }
+            super.visit(in);
+        }
+    }
+}
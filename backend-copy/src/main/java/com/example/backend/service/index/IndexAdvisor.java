@@ -0,0 +1,183 @@
+package com.example.backend.service.index;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.service.DatabaseConnectionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+/**
+ * Проверяет кандидатов в индексы на целевой БД. При установленном HypoPG для каждого кандидата
+ * создается гипотетический индекс и сравнивается стоимость плана; без HypoPG стоимость с индексом
+ * оценивается сверху по узлам Seq Scan с фильтром в исходном плане. Запрос при этом не выполняется.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexAdvisor {
+
+    private final DatabaseConnectionService databaseConnectionService;
+    private final IndexCandidateExtractor candidateExtractor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${sql.index-advisor.max-suggestions:5}")
+    private int maxSuggestions = 5;
+
+    @Value("${sql.index-advisor.min-cost-reduction:0.1}")
+    private double minCostReduction = 0.1;
+
+    /**
+     * Индексы, снижающие стоимость плана хотя бы на min-cost-reduction, по убыванию выигрыша.
+     * Ошибки целевой БД не прерывают оптимизацию: в этом случае рекомендаций нет.
+     */
+    public List<IndexSuggestion> advise(Long connectionId, String sql, Statement statement) {
+        if (!(statement instanceof Select)) {
+            return List.of();
+        }
+        List<IndexCandidate> candidates = candidateExtractor.extract(statement);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        // Гипотетические индексы HypoPG видны всем запросам сессии: на общем кэшированном соединении они
+        // влияли бы на планы параллельных запросов, поэтому сессия советника — отдельное соединение
+        List<IndexSuggestion> suggestions;
+        try (Connection connection = databaseConnectionService.openDedicatedConnection(connectionId)) {
+            JsonNode basePlan = explain(connection, sql);
+            double baseCost = basePlan.path("Total Cost").asDouble();
+            suggestions = isHypoPgAvailable(connection)
+                    ? evaluateWithHypoPg(connection, sql, baseCost, candidates)
+                    : estimateFromPlan(basePlan, baseCost, candidates);
+        } catch (SQLException e) {
+            log.warn("Index advisor failed for connection {}: {}", connectionId, e.getMessage());
+            return List.of();
+        }
+
+        return suggestions.stream()
+                .filter(suggestion -> suggestion.getCostReduction() >= minCostReduction)
+                .sorted(Comparator.comparingDouble(IndexSuggestion::getCostReduction).reversed())
+                .limit(maxSuggestions)
+                .toList();
+    }
+
+    private List<IndexSuggestion> evaluateWithHypoPg(Connection connection, String sql, double baseCost,
+            List<IndexCandidate> candidates) throws SQLException {
+        List<IndexSuggestion> suggestions = new ArrayList<>();
+        for (IndexCandidate candidate : candidates) {
+            Long indexOid = createHypotheticalIndex(connection, candidate);
+            if (indexOid == null) {
+                continue;
+            }
+            // Кандидаты оцениваются по одному: предыдущий индекс удаляется до создания следующего
+            try {
+                suggestions.add(IndexSuggestion.builder()
+                        .candidate(candidate)
+                        .baseCost(baseCost)
+                        .costWithIndex(explain(connection, sql).path("Total Cost").asDouble())
+                        .method(IndexSuggestion.METHOD_HYPOPG)
+                        .build());
+            } finally {
+                dropHypotheticalIndex(connection, indexOid);
+            }
+        }
+        return suggestions;
+    }
+
+    private List<IndexSuggestion> estimateFromPlan(JsonNode basePlan, double baseCost,
+            List<IndexCandidate> candidates) {
+        Map<String, Double> seqScanCosts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        collectFilteredSeqScans(basePlan, seqScanCosts);
+
+        List<IndexSuggestion> suggestions = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (IndexCandidate candidate : candidates) {
+            String relation = relationName(candidate.getTable());
+            Double scanCost = seqScanCosts.get(relation);
+            // Без HypoPG кандидаты одной таблицы неразличимы — оставляем первый, по фильтру WHERE
+            if (scanCost == null || !seen.add(relation.toLowerCase())) {
+                continue;
+            }
+            suggestions.add(IndexSuggestion.builder()
+                    .candidate(candidate)
+                    .baseCost(baseCost)
+                    .costWithIndex(Math.max(0, baseCost - scanCost))
+                    .method(IndexSuggestion.METHOD_EXPLAIN)
+                    .build());
+        }
+        return suggestions;
+    }
+
+    private void collectFilteredSeqScans(JsonNode plan, Map<String, Double> costs) {
+        if ("Seq Scan".equals(plan.path("Node Type").asText()) && plan.hasNonNull("Filter")
+                && plan.hasNonNull("Relation Name")) {
+            costs.merge(plan.get("Relation Name").asText(), plan.path("Total Cost").asDouble(), Double::sum);
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            collectFilteredSeqScans(child, costs);
+        }
+    }
+
+    private JsonNode explain(Connection connection, String sql) throws SQLException {
+        try (java.sql.Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("EXPLAIN (FORMAT JSON) " + sql)) {
+            if (!resultSet.next()) {
+                throw new SQLException("EXPLAIN returned no rows");
+            }
+            return objectMapper.readTree(resultSet.getString(1)).path(0).path("Plan");
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new SQLException("Unparseable EXPLAIN output: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isHypoPgAvailable(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM pg_extension WHERE extname = 'hypopg'");
+                ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private Long createHypotheticalIndex(Connection connection, IndexCandidate candidate) {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT indexrelid FROM hypopg_create_index(?)")) {
+            statement.setString(1, candidate.toCreateStatement());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            // Например, столбец относится к представлению или неверно разрешен алиас
+            log.debug("Skipping index candidate {}: {}", candidate, e.getMessage());
+            return null;
+        }
+    }
+
+    private void dropHypotheticalIndex(Connection connection, long indexOid) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT hypopg_drop_index(?::oid)")) {
+            statement.setLong(1, indexOid);
+            statement.execute();
+        }
+    }
+
+    private String relationName(String table) {
+        int dot = table.lastIndexOf('.');
+        return dot < 0 ? table : table.substring(dot + 1);
+    }
+}
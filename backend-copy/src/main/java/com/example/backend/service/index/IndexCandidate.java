@@ -0,0 +1,28 @@
+package com.example.backend.service.index;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Набор столбцов одной таблицы, по которому имеет смысл проверить индекс.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class IndexCandidate {
+
+    private final String table;
+    private final List<String> columns;
+
+    public String toCreateStatement() {
+        return "CREATE INDEX ON " + table + " (" + String.join(", ", columns) + ")";
+    }
+
+    @Override
+    public String toString() {
+        return table + "(" + String.join(", ", columns) + ")";
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.backend.service.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import com.example.backend.service.rewrite.RewriteSupport;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+/**
+ * Кандидаты в индексы по дереву запроса: столбцы равенств и диапазонов из WHERE, ключи соединений
+ * и ORDER BY. Для каждой таблицы строится индекс «равенства, затем один диапазон», отдельные индексы
+ * по ключам соединений и индекс «равенства, затем сортировка».
+ */
+@Component
+public class IndexCandidateExtractor {
+
+    private static final int MAX_INDEX_COLUMNS = 3;
+    // В CREATE INDEX попадают только простые идентификаторы: текст уходит в hypopg_create_index как есть
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+
+    public List<IndexCandidate> extract(Statement statement) {
+        Map<String, TableColumns> byTable = new LinkedHashMap<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            collect(plainSelect, byTable);
+        }
+
+        Set<IndexCandidate> candidates = new LinkedHashSet<>();
+        byTable.forEach((table, columns) -> {
+            List<String> filter = new ArrayList<>(columns.equality);
+            columns.range.stream().filter(column -> !filter.contains(column)).findFirst().ifPresent(filter::add);
+            addCandidate(candidates, table, filter);
+            columns.joinKeys.forEach(key -> addCandidate(candidates, table, List.of(key)));
+            if (!columns.order.isEmpty()) {
+                List<String> ordered = new ArrayList<>(columns.equality);
+                columns.order.stream().filter(column -> !ordered.contains(column)).forEach(ordered::add);
+                addCandidate(candidates, table, ordered);
+            }
+        });
+        return new ArrayList<>(candidates);
+    }
+
+    private void collect(PlainSelect plainSelect, Map<String, TableColumns> byTable) {
+        Map<String, Table> sources = new HashMap<>();
+        for (FromItem fromItem : RewriteSupport.fromItems(plainSelect)) {
+            String qualifier = RewriteSupport.qualifier(fromItem);
+            if (fromItem instanceof Table table && qualifier != null) {
+                sources.put(qualifier.toLowerCase(), table);
+            }
+        }
+        if (sources.isEmpty()) {
+            return;
+        }
+        // Неквалифицированный столбец однозначен, только если источник один
+        Table single = RewriteSupport.fromItems(plainSelect).size() == 1 && sources.size() == 1
+                ? sources.values().iterator().next() : null;
+
+        for (Expression condition : RewriteSupport.conjuncts(plainSelect.getWhere())) {
+            collectCondition(condition, sources, single, byTable);
+        }
+        if (plainSelect.getJoins() != null) {
+            for (Join join : plainSelect.getJoins()) {
+                if (join.getOnExpressions() == null) {
+                    continue;
+                }
+                for (Expression on : join.getOnExpressions()) {
+                    for (Expression condition : RewriteSupport.conjuncts(on)) {
+                        collectCondition(condition, sources, single, byTable);
+                    }
+                }
+            }
+        }
+        if (plainSelect.getOrderByElements() != null && single != null) {
+            List<String> order = new ArrayList<>();
+            for (OrderByElement element : plainSelect.getOrderByElements()) {
+                if (!(element.getExpression() instanceof Column column) || resolve(column, sources, single) != single) {
+                    return;
+                }
+                order.add(column.getColumnName());
+            }
+            columns(byTable, single).order.addAll(order);
+        }
+    }
+
+    private void collectCondition(Expression condition, Map<String, Table> sources, Table single,
+            Map<String, TableColumns> byTable) {
+        if (condition instanceof EqualsTo equalsTo
+                && equalsTo.getLeftExpression() instanceof Column left && !isBooleanLiteral(left)
+                && equalsTo.getRightExpression() instanceof Column right && !isBooleanLiteral(right)) {
+            Table leftTable = resolve(left, sources, single);
+            Table rightTable = resolve(right, sources, single);
+            if (leftTable != null && rightTable != null && leftTable != rightTable) {
+                columns(byTable, leftTable).joinKeys.add(left.getColumnName());
+                columns(byTable, rightTable).joinKeys.add(right.getColumnName());
+            }
+            return;
+        }
+        if (condition instanceof EqualsTo equalsTo) {
+            addFiltered(equalsTo.getLeftExpression(), equalsTo.getRightExpression(), true, sources, single, byTable);
+        } else if (condition instanceof InExpression in && !in.isNot()) {
+            addFiltered(in.getLeftExpression(), null, true, sources, single, byTable);
+        } else if (condition instanceof Between between && !between.isNot()) {
+            addFiltered(between.getLeftExpression(), null, false, sources, single, byTable);
+        } else if (condition instanceof ComparisonOperator comparison && !(condition instanceof NotEqualsTo)) {
+            addFiltered(comparison.getLeftExpression(), comparison.getRightExpression(), false, sources, single,
+                    byTable);
+        }
+    }
+
+    private void addFiltered(Expression left, Expression right, boolean equality, Map<String, Table> sources,
+            Table single, Map<String, TableColumns> byTable) {
+        Column column = left instanceof Column leftColumn && !isBooleanLiteral(leftColumn) ? leftColumn
+                : right instanceof Column rightColumn && !isBooleanLiteral(rightColumn) ? rightColumn : null;
+        Table table = column == null ? null : resolve(column, sources, single);
+        if (table == null) {
+            return;
+        }
+        TableColumns columns = columns(byTable, table);
+        (equality ? columns.equality : columns.range).add(column.getColumnName());
+    }
+
+    private Table resolve(Column column, Map<String, Table> sources, Table single) {
+        if (column.getTable() == null || column.getTable().getName() == null) {
+            return single;
+        }
+        return sources.get(column.getTable().getName().toLowerCase());
+    }
+
+    // JSqlParser разбирает TRUE и FALSE как столбцы
+    private boolean isBooleanLiteral(Column column) {
+        return column.getTable() == null
+                && ("true".equalsIgnoreCase(column.getColumnName()) || "false".equalsIgnoreCase(column.getColumnName()));
+    }
+
+    private TableColumns columns(Map<String, TableColumns> byTable, Table table) {
+        return byTable.computeIfAbsent(table.getFullyQualifiedName(), key -> new TableColumns());
+    }
+
+    private void addCandidate(Set<IndexCandidate> candidates, String table, List<String> columns) {
+        if (columns.isEmpty() || !IDENTIFIER.matcher(table).matches()
+                || !columns.stream().allMatch(column -> IDENTIFIER.matcher(column).matches())) {
+            return;
+        }
+        candidates.add(new IndexCandidate(table, List.copyOf(columns.subList(0, Math.min(columns.size(),
+                MAX_INDEX_COLUMNS)))));
+    }
+
+    private static class TableColumns {
+        private final Set<String> equality = new LinkedHashSet<>();
+        private final Set<String> range = new LinkedHashSet<>();
+        private final Set<String> joinKeys = new LinkedHashSet<>();
+        private final Set<String> order = new LinkedHashSet<>();
+    }
+}
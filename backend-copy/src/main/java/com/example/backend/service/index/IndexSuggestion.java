@@ -0,0 +1,36 @@
+package com.example.backend.service.index;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Проверенный на целевой БД индекс: стоимость плана без него и с ним.
+ */
+@Getter
+@Builder
+public class IndexSuggestion {
+
+    // Стоимость с индексом посчитана планировщиком по гипотетическому индексу HypoPG
+    public static final String METHOD_HYPOPG = "hypopg";
+    // HypoPG нет: оценка сверху — стоимость последовательного сканирования таблицы в исходном плане
+    public static final String METHOD_EXPLAIN = "explain";
+
+    private final IndexCandidate candidate;
+    private final double baseCost;
+    private final double costWithIndex;
+    private final String method;
+
+    public String getCreateStatement() {
+        return candidate.toCreateStatement() + ";";
+    }
+
+    /**
+     * Доля снижения стоимости плана, от 0 до 1.
+     */
+    public double getCostReduction() {
+        if (baseCost <= 0) {
+            return 0;
+        }
+        return Math.max(0, (baseCost - costWithIndex) / baseCost);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.metrics.OptimizationMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Общая часть бэкендов с OpenAI-совместимым API /chat/completions.
+ */
+@Slf4j
+@Getter
+public abstract class AbstractChatCompletionBackend implements LLMBackend {
+
+    private final String name;
+    private final String group;
+    private final String model;
+    private final double costPer1kTokens;
+    private final Duration timeout;
+    // Передавать ли схему ответа провайдеру; без нее формат задает только промпт
+    private final boolean structuredOutput;
+    private final OptimizationMetrics optimizationMetrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    protected AbstractChatCompletionBackend(String name, String group, String model, double costPer1kTokens,
+            Duration timeout, boolean structuredOutput, OptimizationMetrics optimizationMetrics) {
+        this.name = name;
+        this.group = group;
+        this.model = model;
+        this.costPer1kTokens = costPer1kTokens;
+        this.timeout = timeout;
+        this.structuredOutput = structuredOutput;
+        this.optimizationMetrics = optimizationMetrics;
+    }
+
+    protected Map<String, Object> prepareRequestBody(LLMRequest request) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "system", "content", request.getSystemPrompt()));
+        messages.add(Map.of("role", "user", "content", request.getUserPrompt()));
+
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", request.getTemperature());
+        requestBody.put("max_tokens", request.getMaxTokens());
+
+        if (structuredOutput && request.getResponseSchema() != null) {
+            applyResponseSchema(requestBody, request.getSchemaName(), request.getResponseSchema());
+        }
+        return requestBody;
+    }
+
+    /**
+     * Способ, которым провайдер принимает схему ответа: response_format или вызов функции.
+     */
+    protected abstract void applyResponseSchema(Map<String, Object> requestBody, String schemaName,
+            Map<String, Object> schema);
+
+    /**
+     * Извлекает текст первого варианта ответа и учитывает расход токенов. Если модель ответила вызовом
+     * функции, текстом ответа считаются ее аргументы.
+     */
+    protected String extractContent(String response) {
+        if (!StringUtils.hasText(response)) {
+            throw new ApiException("Empty response from LLM backend " + name, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        JsonNode rootNode;
+        try {
+            rootNode = objectMapper.readTree(response);
+        } catch (Exception e) {
+            log.error("Failed to parse response from {}: {}", name, e.getMessage(), e);
+            throw new ApiException("Failed to parse LLM response: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        optimizationMetrics.recordTokenUsage(group, model, rootNode.path("usage"));
+
+        JsonNode choicesNode = rootNode.path("choices");
+        if (!choicesNode.isArray() || choicesNode.size() == 0) {
+            log.error("Invalid response format from {}: no choices array or empty choices", name);
+            throw new ApiException("Invalid response format from LLM: no choices available",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        JsonNode messageNode = choicesNode.get(0).path("message");
+        JsonNode arguments = messageNode.path("function_call").path("arguments");
+        if (!arguments.isMissingNode() && !arguments.isNull()) {
+            // GigaChat передает аргументы объектом, OpenAI — строкой с JSON
+            return arguments.isTextual() ? arguments.asText() : arguments.toString();
+        }
+        if (!messageNode.has("content")) {
+            log.error("Invalid response format from {}: no content in message", name);
+            throw new ApiException("Invalid response format from LLM: no content in message",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return messageNode.path("content").asText();
+    }
+}
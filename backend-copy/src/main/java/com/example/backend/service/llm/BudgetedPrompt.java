@@ -0,0 +1,16 @@
+package com.example.backend.service.llm;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Промпт, уложенный в окно контекста модели, и размер ответа под него.
+ */
+@Getter
+@Builder
+public class BudgetedPrompt {
+    private final String systemPrompt;
+    private final String userPrompt;
+    private final int promptTokens;
+    private final int maxTokens;
+}
@@ -0,0 +1,96 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.exception.LLMRateLimitException;
+import com.example.backend.metrics.OptimizationMetrics;
+import com.example.backend.service.GigaChatAuthService;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Модель GigaChat, вызываемая через облачный API с OAuth-токеном.
+ */
+@Slf4j
+public class GigaChatBackend extends AbstractChatCompletionBackend {
+
+    private final GigaChatAuthService gigaChatAuthService;
+
+    public GigaChatBackend(String name, String model, double costPer1kTokens, Duration timeout,
+            boolean structuredOutput, GigaChatAuthService gigaChatAuthService,
+            OptimizationMetrics optimizationMetrics) {
+        super(name, GROUP_GIGACHAT, model, costPer1kTokens, timeout, structuredOutput, optimizationMetrics);
+        this.gigaChatAuthService = gigaChatAuthService;
+    }
+
+    @Override
+    public Mono<String> complete(LLMRequest request) {
+        return Mono.defer(() -> {
+            Map<String, Object> requestBody = prepareRequestBody(request);
+            log.debug("Making request to GigaChat backend {}: Body={}", getName(), requestBody);
+
+            return gigaChatAuthService.getWebClient()
+                    .flatMap(webClient -> webClient.post()
+                            .uri("/chat/completions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(requestBody)
+                            .retrieve()
+                            .onStatus(HttpStatusCode::is4xxClientError, this::handleClientError)
+                            .onStatus(HttpStatusCode::is5xxServerError, this::handleServerError)
+                            .bodyToMono(String.class))
+                    .map(this::extractContent)
+                    .timeout(getTimeout());
+        });
+    }
+
+    /**
+     * GigaChat не принимает response_format: схема передается параметрами единственной функции,
+     * вызов которой обязателен, а результат приходит в ее аргументах.
+     */
+    @Override
+    protected void applyResponseSchema(Map<String, Object> requestBody, String schemaName,
+            Map<String, Object> schema) {
+        requestBody.put("functions", List.of(Map.of(
+                "name", schemaName,
+                "description", "Сохранить результат оптимизации SQL-запроса",
+                "parameters", schema)));
+        requestBody.put("function_call", Map.of("name", schemaName));
+    }
+
+    private Mono<? extends Throwable> handleClientError(ClientResponse clientResponse) {
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(errorBody -> {
+                    log.error("LLM API client error: backend={}, status={}, body={}",
+                            getName(), clientResponse.statusCode(), errorBody);
+                    if (clientResponse.statusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                        String retryAfter = clientResponse.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                        return Mono.error(new LLMRateLimitException("LLM API rate limit exceeded: " + errorBody,
+                                LLMRateGovernor.parseRetryAfter(retryAfter)));
+                    }
+                    return Mono.error(new ApiException("Invalid request to LLM API: " + errorBody,
+                            HttpStatus.BAD_REQUEST));
+                });
+    }
+
+    private Mono<? extends Throwable> handleServerError(ClientResponse clientResponse) {
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(errorBody -> {
+                    log.error("LLM API server error: backend={}, status={}, body={}",
+                            getName(), clientResponse.statusCode(), errorBody);
+                    return Mono.error(new ApiException("LLM API server error: " + errorBody,
+                            HttpStatus.SERVICE_UNAVAILABLE));
+                });
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.backend.service.llm;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Зарегистрированный бэкенд LLM (модель GigaChat или OpenAI-совместимый endpoint).
+ */
+public interface LLMBackend {
+
+    String GROUP_GIGACHAT = "gigachat";
+    String GROUP_LOCAL = "local";
+
+    String getName();
+
+    /**
+     * Группа провайдера, соответствующая значению llm из запроса: gigachat или local.
+     */
+    String getGroup();
+
+    String getModel();
+
+    double getCostPer1kTokens();
+
+    Mono<String> complete(LLMRequest request);
+}
@@ -0,0 +1,84 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.metrics.OptimizationMetrics;
+import com.example.backend.service.GigaChatAuthService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Создает бэкенды из llm.backends[*]. Если список не задан, регистрирует GigaChat с моделью llm.model
+ * и локальный endpoint llm.local-api-url (при llm.local-enabled=true).
+ */
+@Component
+@RequiredArgsConstructor
+public class LLMBackendFactory {
+
+    private final LLMConfig llmConfig;
+    private final GigaChatAuthService gigaChatAuthService;
+    private final RestTemplate localRestTemplate;
+    private final OptimizationMetrics optimizationMetrics;
+
+    public List<LLMBackend> createBackends() {
+        List<LLMConfig.Backend> configured = llmConfig.getBackends().isEmpty()
+                ? defaultBackends()
+                : llmConfig.getBackends();
+
+        List<LLMBackend> backends = new ArrayList<>();
+        for (LLMConfig.Backend backend : configured) {
+            if (backend.isEnabled()) {
+                backends.add(createBackend(backend));
+            }
+        }
+        return backends;
+    }
+
+    private LLMBackend createBackend(LLMConfig.Backend backend) {
+        String model = StringUtils.hasText(backend.getModel()) ? backend.getModel() : llmConfig.getModel();
+        String name = StringUtils.hasText(backend.getName()) ? backend.getName() : backend.getType() + "-" + model;
+        Duration timeout = Duration.ofMillis(backend.getTimeoutMs());
+
+        if ("gigachat".equalsIgnoreCase(backend.getType())) {
+            return new GigaChatBackend(name, model, backend.getCostPer1kTokens(), timeout,
+                    backend.isStructuredOutput(), gigaChatAuthService, optimizationMetrics);
+        }
+        if ("openai".equalsIgnoreCase(backend.getType())) {
+            String url = StringUtils.hasText(backend.getUrl()) ? backend.getUrl() : llmConfig.getLocalApiUrl();
+            return new OpenAiCompatibleBackend(name, model, url, backend.getCostPer1kTokens(), timeout,
+                    backend.isStructuredOutput(), localRestTemplate, optimizationMetrics);
+        }
+        throw new IllegalStateException("Unsupported LLM backend type: " + backend.getType());
+    }
+
+    private List<LLMConfig.Backend> defaultBackends() {
+        List<LLMConfig.Backend> defaults = new ArrayList<>();
+
+        LLMConfig.Backend gigaChat = new LLMConfig.Backend();
+        gigaChat.setName("gigachat");
+        gigaChat.setType("gigachat");
+        gigaChat.setModel(llmConfig.getModel());
+        gigaChat.setTimeoutMs(llmConfig.getReadTimeout());
+        gigaChat.setStructuredOutput(llmConfig.isStructuredOutput());
+        defaults.add(gigaChat);
+
+        if (llmConfig.isLocalEnabled()) {
+            LLMConfig.Backend local = new LLMConfig.Backend();
+            local.setName("local");
+            local.setType("openai");
+            local.setModel(llmConfig.getModel());
+            local.setUrl(llmConfig.getLocalApiUrl());
+            local.setTimeoutMs(llmConfig.getLocalReadTimeout());
+            local.setStructuredOutput(llmConfig.isStructuredOutput());
+            defaults.add(local);
+        }
+        return defaults;
+    }
+}
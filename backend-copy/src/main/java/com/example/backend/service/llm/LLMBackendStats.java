@@ -0,0 +1,127 @@
+package com.example.backend.service.llm;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Скользящая статистика бэкенда: задержки и ошибки за последние N вызовов,
+ * число запросов в работе и состояние circuit breaker.
+ */
+public class LLMBackendStats {
+
+    private final long[] latenciesMs;
+    private final boolean[] failures;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private int samples;
+    private int next;
+    private int consecutiveFailures;
+    private long openUntilMs;
+    private boolean open;
+    private boolean trialInProgress;
+
+    public LLMBackendStats(int windowSize, int failureThreshold, long openDurationMs) {
+        this.latenciesMs = new long[windowSize];
+        this.failures = new boolean[windowSize];
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    public synchronized void recordSuccess(long latencyMs) {
+        record(latencyMs, false);
+        consecutiveFailures = 0;
+        open = false;
+        trialInProgress = false;
+    }
+
+    /**
+     * @param serverFailure 5xx, таймаут или сетевая ошибка — учитывается circuit breaker'ом
+     */
+    public synchronized void recordFailure(long latencyMs, boolean serverFailure) {
+        record(latencyMs, true);
+        if (!serverFailure) {
+            trialInProgress = false;
+            return;
+        }
+        consecutiveFailures++;
+        if (trialInProgress || consecutiveFailures >= failureThreshold) {
+            open = true;
+            openUntilMs = System.currentTimeMillis() + openDurationMs;
+        }
+        trialInProgress = false;
+    }
+
+    /**
+     * Вызов отменен (например, выиграл хедж-запрос) — результат не учитывается.
+     */
+    public synchronized void recordCancel() {
+        trialInProgress = false;
+    }
+
+    public synchronized boolean isAvailable() {
+        return !open || (!trialInProgress && System.currentTimeMillis() >= openUntilMs);
+    }
+
+    /**
+     * Резервирует вызов. В полуоткрытом состоянии пропускает ровно один пробный запрос.
+     */
+    public synchronized boolean tryAcquire() {
+        if (!open) {
+            return true;
+        }
+        if (trialInProgress || System.currentTimeMillis() < openUntilMs) {
+            return false;
+        }
+        trialInProgress = true;
+        return true;
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    public synchronized double errorRate() {
+        if (samples == 0) {
+            return 0.0;
+        }
+        int errors = 0;
+        for (int i = 0; i < samples; i++) {
+            if (failures[i]) {
+                errors++;
+            }
+        }
+        return (double) errors / samples;
+    }
+
+    /**
+     * @return перцентиль задержки успешных и неуспешных вызовов или -1, если данных нет
+     */
+    public synchronized long latencyPercentile(double percentile) {
+        if (samples == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latenciesMs, samples);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * samples) - 1;
+        return sorted[Math.max(0, Math.min(index, samples - 1))];
+    }
+
+    public synchronized int sampleCount() {
+        return samples;
+    }
+
+    public AtomicInteger inFlight() {
+        return inFlight;
+    }
+
+    private void record(long latencyMs, boolean failure) {
+        latenciesMs[next] = latencyMs;
+        failures[next] = failure;
+        next = (next + 1) % latenciesMs.length;
+        if (samples < latenciesMs.length) {
+            samples++;
+        }
+    }
+}
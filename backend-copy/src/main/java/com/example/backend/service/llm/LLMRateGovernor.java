@@ -0,0 +1,200 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.LLMRateLimitException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Клиентские лимиты на вызовы LLM: отдельно на группу провайдера и на пользователя.
+ * Лимиты задаются в llm.rate-limit.*; очереди ожидания и отказы видны в /actuator/prometheus.
+ */
+@Slf4j
+@Component
+public class LLMRateGovernor {
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
+    private static final String SCOPE_PROVIDER = "provider";
+    private static final String SCOPE_USER = "user";
+    private static final long IDLE_SWEEP_INTERVAL_SECONDS = 60;
+
+    private final LLMConfig.RateLimit config;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler scheduler;
+    private final Map<String, RequestGovernor> providerGovernors = new ConcurrentHashMap<>();
+    private final Map<Long, RequestGovernor> userGovernors = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LLMRateGovernor(LLMConfig llmConfig, MeterRegistry meterRegistry) {
+        this(llmConfig.getRateLimit(), meterRegistry, Schedulers.parallel());
+    }
+
+    public LLMRateGovernor(LLMConfig.RateLimit config, MeterRegistry meterRegistry, Scheduler scheduler) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = scheduler;
+
+        Gauge.builder("llm.governor.queue.size", userGovernors,
+                        governors -> governors.values().stream().mapToInt(RequestGovernor::queueSize).sum())
+                .description("LLM requests waiting for a rate limit permit")
+                .tag("scope", SCOPE_USER)
+                .register(meterRegistry);
+        Gauge.builder("llm.governor.in.flight", userGovernors,
+                        governors -> governors.values().stream().mapToInt(RequestGovernor::inFlight).sum())
+                .description("LLM requests holding a rate limit permit")
+                .tag("scope", SCOPE_USER)
+                .register(meterRegistry);
+        // Ограничитель нужен пользователю только пока он шлет запросы; без очистки карта растет с числом
+        // пользователей, а датчики обходят ее целиком
+        scheduler.schedulePeriodically(this::evictIdleUserGovernors, IDLE_SWEEP_INTERVAL_SECONDS,
+                IDLE_SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Выполняет вызов под лимитом пользователя. Ожидание в очереди входит в таймаут maxWait.
+     */
+    public <T> Mono<T> withUserLimit(Long userId, Supplier<Mono<T>> call) {
+        if (userId == null) {
+            return Mono.defer(call);
+        }
+        return execute(() -> userGovernor(userId), SCOPE_USER, call);
+    }
+
+    /**
+     * Выполняет вызов под лимитом группы провайдера; 429 от провайдера приостанавливает группу
+     * на время из Retry-After.
+     */
+    public <T> Mono<T> withProviderLimit(String provider, Supplier<Mono<T>> call) {
+        RequestGovernor governor = providerGovernor(provider);
+        return execute(() -> governor, SCOPE_PROVIDER, () -> Mono.defer(call)
+                .doOnError(LLMRateLimitException.class, e -> governor.pause(retryAfterOrDefault(e))));
+    }
+
+    /**
+     * Разбирает заголовок Retry-After: число секунд или HTTP-дата.
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            try {
+                Duration duration = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME));
+                return duration.isNegative() ? Duration.ZERO : duration;
+            } catch (DateTimeParseException ex) {
+                log.warn("Unparseable Retry-After header: {}", value);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Удаляет простаивающие ограничители пользователей; возвращает число удаленных.
+     */
+    int evictIdleUserGovernors() {
+        int before = userGovernors.size();
+        userGovernors.values().removeIf(RequestGovernor::retireIfIdle);
+        int evicted = before - userGovernors.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle user rate limiters", evicted);
+        }
+        return evicted;
+    }
+
+    int userGovernorCount() {
+        return userGovernors.size();
+    }
+
+    private <T> Mono<T> execute(Supplier<RequestGovernor> governors, String scope, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return acquire(governors)
+                    .doOnSuccess(permit -> sample.stop(waitTimer(scope, "granted")))
+                    .doOnError(error -> {
+                        sample.stop(waitTimer(scope, "rejected"));
+                        Counter.builder("llm.governor.rejected")
+                                .description("LLM requests rejected by the client-side rate limiter")
+                                .tag("scope", scope)
+                                .register(meterRegistry)
+                                .increment();
+                        log.warn("LLM rate limiter ({}) rejected request: {}", scope, error.getMessage());
+                    })
+                    .flatMap(permit -> Mono.defer(call).doFinally(signal -> permit.release()));
+        });
+    }
+
+    // Ограничитель могли снять с учета между поиском и запросом разрешения: тогда берется актуальный из карты
+    private Mono<RequestGovernor.Permit> acquire(Supplier<RequestGovernor> governors) {
+        return Mono.defer(() -> governors.get().acquire())
+                .switchIfEmpty(Mono.defer(() -> acquire(governors)));
+    }
+
+    private Timer waitTimer(String scope, String outcome) {
+        return Timer.builder("llm.governor.wait")
+                .description("Time spent waiting for a rate limit permit")
+                .tag("scope", scope)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private RequestGovernor providerGovernor(String provider) {
+        return providerGovernors.computeIfAbsent(provider, key -> {
+            LLMConfig.Limit limit = config.getProviders().getOrDefault(key, new LLMConfig.Limit());
+            RequestGovernor governor = new RequestGovernor("provider:" + key, limit, scheduler);
+            Gauge.builder("llm.governor.queue.size", governor, RequestGovernor::queueSize)
+                    .description("LLM requests waiting for a rate limit permit")
+                    .tag("scope", SCOPE_PROVIDER)
+                    .tag("provider", key)
+                    .register(meterRegistry);
+            Gauge.builder("llm.governor.in.flight", governor, RequestGovernor::inFlight)
+                    .description("LLM requests holding a rate limit permit")
+                    .tag("scope", SCOPE_PROVIDER)
+                    .tag("provider", key)
+                    .register(meterRegistry);
+            Gauge.builder("llm.governor.tokens", governor, RequestGovernor::availableTokens)
+                    .description("Tokens left in the provider token bucket")
+                    .tag("provider", key)
+                    .register(meterRegistry);
+            return governor;
+        });
+    }
+
+    private RequestGovernor userGovernor(Long userId) {
+        return userGovernors.computeIfAbsent(userId,
+                key -> new RequestGovernor("user:" + key, config.getUser(), scheduler));
+    }
+
+    private Duration retryAfterOrDefault(LLMRateLimitException e) {
+        Duration retryAfter = e.getRetryAfter();
+        if (retryAfter == null || retryAfter.isZero()) {
+            return DEFAULT_RETRY_AFTER;
+        }
+        return retryAfter.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : retryAfter;
+    }
+}
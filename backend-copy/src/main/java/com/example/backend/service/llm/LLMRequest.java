@@ -0,0 +1,22 @@
+package com.example.backend.service.llm;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Параметры одного запроса к LLM, не зависящие от конкретного бэкенда.
+ * Модель подставляет сам бэкенд.
+ */
+@Getter
+@Builder
+public class LLMRequest {
+    private final String systemPrompt;
+    private final String userPrompt;
+    private final double temperature;
+    private final int maxTokens;
+    // JSON Schema ответа; null — ответ свободным текстом
+    private final String schemaName;
+    private final Map<String, Object> responseSchema;
+}
@@ -0,0 +1,250 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.ApiException;
+import com.example.backend.metrics.OptimizationMetrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+/**
+ * Выбирает бэкенд LLM по скользящей задержке, доле ошибок, числу запросов в работе и стоимости.
+ * Если основной бэкенд не ответил за p95, параллельно отправляет хедж-запрос во второй;
+ * при ошибке 5xx или 429 сразу переключается на следующий, а после серии 5xx открывает circuit breaker.
+ */
+@Slf4j
+@Component
+public class LLMRouter {
+
+    private static final int MIN_SAMPLES_FOR_HEDGE = 10;
+
+    private final LLMConfig.Router routerConfig;
+    private final List<LLMBackend> backends;
+    private final Map<String, LLMBackendStats> stats = new ConcurrentHashMap<>();
+    private final LLMRateGovernor rateGovernor;
+    private final OptimizationMetrics optimizationMetrics;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public LLMRouter(LLMConfig llmConfig, LLMBackendFactory backendFactory, LLMRateGovernor rateGovernor,
+            OptimizationMetrics optimizationMetrics, MeterRegistry meterRegistry) {
+        this(llmConfig.getRouter(), backendFactory.createBackends(), rateGovernor, optimizationMetrics,
+                meterRegistry);
+    }
+
+    public LLMRouter(LLMConfig.Router routerConfig, List<LLMBackend> backends, LLMRateGovernor rateGovernor,
+            OptimizationMetrics optimizationMetrics, MeterRegistry meterRegistry) {
+        this.routerConfig = routerConfig;
+        this.backends = List.copyOf(backends);
+        this.rateGovernor = rateGovernor;
+        this.optimizationMetrics = optimizationMetrics;
+        this.meterRegistry = meterRegistry;
+
+        for (LLMBackend backend : this.backends) {
+            LLMBackendStats backendStats = new LLMBackendStats(routerConfig.getWindowSize(),
+                    routerConfig.getCircuitFailureThreshold(), routerConfig.getCircuitOpenMs());
+            stats.put(backend.getName(), backendStats);
+            bindMetrics(backend, backendStats);
+        }
+        log.info("Registered LLM backends: {}", this.backends.stream()
+                .map(backend -> backend.getName() + "(" + backend.getGroup() + ", " + backend.getModel() + ")")
+                .collect(Collectors.joining(", ")));
+    }
+
+    public Mono<String> route(String preferredGroup, LLMRequest request) {
+        return Mono.defer(() -> {
+            List<LLMBackend> candidates = rankCandidates(preferredGroup);
+            if (candidates.isEmpty()) {
+                log.error("No LLM backend available for provider {}", preferredGroup);
+                return Mono.error(new ApiException("No LLM backend available for provider " + preferredGroup,
+                        HttpStatus.SERVICE_UNAVAILABLE));
+            }
+            log.debug("LLM routing candidates for {}: {}", preferredGroup,
+                    candidates.stream().map(LLMBackend::getName).collect(Collectors.toList()));
+            return dispatch(candidates, 0, request);
+        }).onErrorMap(this::normalizeError);
+    }
+
+    List<LLMBackend> rankCandidates(String preferredGroup) {
+        Comparator<LLMBackend> byScore = Comparator.comparingDouble(this::score);
+        List<LLMBackend> candidates = new ArrayList<>();
+        backends.stream()
+                .filter(backend -> backend.getGroup().equals(preferredGroup))
+                .filter(backend -> stats.get(backend.getName()).isAvailable())
+                .sorted(byScore)
+                .forEach(candidates::add);
+        if (routerConfig.isCrossProviderFallback()) {
+            backends.stream()
+                    .filter(backend -> !backend.getGroup().equals(preferredGroup))
+                    .filter(backend -> stats.get(backend.getName()).isAvailable())
+                    .sorted(byScore)
+                    .forEach(candidates::add);
+        }
+        return candidates;
+    }
+
+    private Mono<String> dispatch(List<LLMBackend> candidates, int index, LLMRequest request) {
+        LLMBackend primary = candidates.get(index);
+        Mono<String> attempt = call(primary, request, index == 0 ? "primary" : "failover");
+        // Следующий кандидат для переключения: сдвигается, если хедж успел уйти во второй бэкенд
+        AtomicInteger next = new AtomicInteger(index + 1);
+        if (routerConfig.isHedgeEnabled() && index + 1 < candidates.size()) {
+            attempt = hedge(primary, candidates.get(index + 1), attempt, request, next);
+        }
+
+        return attempt.onErrorResume(error -> {
+            Throwable normalized = normalizeError(error);
+            int remaining = next.get();
+            if (remaining >= candidates.size() || !isFailoverable(normalized)) {
+                return Mono.error(error);
+            }
+            log.warn("LLM backend {} failed ({}), failing over to {}", primary.getName(),
+                    normalized.getMessage(), candidates.get(remaining).getName());
+            return dispatch(candidates, remaining, request);
+        });
+    }
+
+    /**
+     * Основной запрос и хедж во второй бэкенд, если основной не ответил за p95. Ошибка основного
+     * до хеджа сразу завершает попытку и отменяет таймер: переключение решает dispatch, а ошибка клиента
+     * (400, 401) никуда повторно не отправляется. После хеджа побеждает первый ответ, ошибка возвращается,
+     * когда отказали оба запроса.
+     */
+    private Mono<String> hedge(LLMBackend primary, LLMBackend secondary, Mono<String> attempt, LLMRequest request,
+            AtomicInteger next) {
+        Duration delay = hedgeDelay(primary);
+        // Запросы, которые еще могут ответить; последний отказавший передает свою ошибку
+        AtomicInteger running = new AtomicInteger(1);
+        Mono<String> primarySource = attempt.onErrorResume(
+                error -> isFailoverable(normalizeError(error)) && running.decrementAndGet() > 0,
+                error -> Mono.never());
+        Mono<String> hedgeSource = Mono.delay(delay).then(Mono.defer(() -> {
+            if (running.getAndIncrement() == 0) {
+                // Основной уже отказал: его ошибка завершает попытку
+                return Mono.never();
+            }
+            next.incrementAndGet();
+            log.info("LLM backend {} did not answer within {}ms, hedging to {}",
+                    primary.getName(), delay.toMillis(), secondary.getName());
+            return call(secondary, request, "hedge").onErrorResume(
+                    error -> running.decrementAndGet() > 0,
+                    error -> Mono.never());
+        }));
+        return Mono.firstWithSignal(primarySource, hedgeSource);
+    }
+
+    private Mono<String> call(LLMBackend backend, LLMRequest request, String reason) {
+        LLMBackendStats backendStats = stats.get(backend.getName());
+        // Лимит провайдера проверяется до circuit breaker: время в очереди не считается задержкой бэкенда
+        return rateGovernor.withProviderLimit(backend.getGroup(), () -> Mono.defer(() -> {
+            if (!backendStats.tryAcquire()) {
+                return Mono.error(new ApiException("Circuit breaker is open for LLM backend " + backend.getName(),
+                        HttpStatus.SERVICE_UNAVAILABLE));
+            }
+            meterRegistry.counter("llm.router.dispatch", "backend", backend.getName(), "reason", reason)
+                    .increment();
+            backendStats.inFlight().incrementAndGet();
+            long start = System.nanoTime();
+            return optimizationMetrics.timeLlmCall(backend.getGroup(), backend.getModel(), backend.complete(request))
+                    .doOnSuccess(result -> backendStats.recordSuccess(elapsedMs(start)))
+                    .doOnError(error -> backendStats.recordFailure(elapsedMs(start), isServerFailure(error)))
+                    .doOnCancel(backendStats::recordCancel)
+                    .doFinally(signal -> backendStats.inFlight().decrementAndGet());
+        }));
+    }
+
+    private double score(LLMBackend backend) {
+        LLMBackendStats backendStats = stats.get(backend.getName());
+        long p95 = backendStats.latencyPercentile(0.95);
+        double latency = p95 >= 0 ? p95 : routerConfig.getHedgeDefaultDelayMs();
+        return latency
+                * (1 + 4 * backendStats.errorRate())
+                * (1 + backendStats.inFlight().get() / 4.0)
+                * (1 + routerConfig.getCostWeight() * backend.getCostPer1kTokens());
+    }
+
+    private Duration hedgeDelay(LLMBackend backend) {
+        LLMBackendStats backendStats = stats.get(backend.getName());
+        if (backendStats.sampleCount() < MIN_SAMPLES_FOR_HEDGE) {
+            return Duration.ofMillis(routerConfig.getHedgeDefaultDelayMs());
+        }
+        return Duration.ofMillis(Math.max(routerConfig.getHedgeMinDelayMs(), backendStats.latencyPercentile(0.95)));
+    }
+
+    private boolean isServerFailure(Throwable error) {
+        if (error instanceof ApiException apiException) {
+            return apiException.getStatus().is5xxServerError();
+        }
+        return true;
+    }
+
+    private boolean isFailoverable(Throwable error) {
+        if (error instanceof ApiException apiException) {
+            return apiException.getStatus().is5xxServerError()
+                    || apiException.getStatus() == HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return true;
+    }
+
+    /**
+     * Разворачивает составную ошибку и приводит таймауты к ApiException.
+     */
+    private Throwable normalizeError(Throwable error) {
+        Throwable result = error;
+        if (Exceptions.isMultiple(result)) {
+            List<Throwable> errors = Exceptions.unwrapMultiple(result);
+            result = errors.get(errors.size() - 1);
+        } else if (result.getSuppressed().length > 0 && !(result instanceof ApiException)) {
+            Throwable[] suppressed = result.getSuppressed();
+            result = suppressed[suppressed.length - 1];
+        }
+        if (result instanceof TimeoutException) {
+            return new ApiException("LLM backend timed out", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return result;
+    }
+
+    private long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void bindMetrics(LLMBackend backend, LLMBackendStats backendStats) {
+        Tags tags = Tags.of("backend", backend.getName(), "provider", backend.getGroup(), "model", backend.getModel());
+        Gauge.builder("llm.backend.in.flight", backendStats, s -> s.inFlight().get())
+                .description("LLM calls currently in flight per backend")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("llm.backend.error.rate", backendStats, LLMBackendStats::errorRate)
+                .description("Share of failed calls in the rolling window")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("llm.backend.latency.p95", backendStats, s -> s.latencyPercentile(0.95))
+                .description("Rolling p95 latency used for routing and hedging")
+                .baseUnit("milliseconds")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("llm.backend.circuit.open", backendStats, s -> s.isOpen() ? 1 : 0)
+                .description("1 when the backend circuit breaker is open")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.exception.LLMRateLimitException;
+import com.example.backend.metrics.OptimizationMetrics;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Локальная модель за OpenAI-совместимым endpoint (LM Studio, vLLM, llama.cpp server).
+ */
+@Slf4j
+public class OpenAiCompatibleBackend extends AbstractChatCompletionBackend {
+
+    private final String apiUrl;
+    private final RestTemplate restTemplate;
+
+    public OpenAiCompatibleBackend(String name, String model, String apiUrl, double costPer1kTokens,
+            Duration timeout, boolean structuredOutput, RestTemplate restTemplate,
+            OptimizationMetrics optimizationMetrics) {
+        super(name, GROUP_LOCAL, model, costPer1kTokens, timeout, structuredOutput, optimizationMetrics);
+        this.apiUrl = apiUrl;
+        this.restTemplate = restTemplate;
+    }
+
+    @Override
+    public Mono<String> complete(LLMRequest request) {
+        return Mono.fromCallable(() -> {
+            Map<String, Object> requestBody = prepareRequestBody(request);
+            log.debug("Sending request to local LLM {} at URL: {}", getName(), apiUrl);
+            try {
+                String response = restTemplate.postForObject(apiUrl + "/v1/chat/completions", requestBody,
+                        String.class);
+                log.debug("Received response from local LLM {}: {}", getName(), response);
+                return extractContent(response);
+            } catch (HttpClientErrorException e) {
+                log.error("Local LLM {} rejected request: status={}", getName(), e.getStatusCode());
+                if (e.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    String retryAfter = e.getResponseHeaders() != null
+                            ? e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)
+                            : null;
+                    throw new LLMRateLimitException("Local LLM rate limit exceeded: " + e.getMessage(),
+                            LLMRateGovernor.parseRetryAfter(retryAfter));
+                }
+                throw new ApiException("Error calling local LLM: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+            } catch (RestClientException e) {
+                log.error("Error calling local LLM {}: {}", getName(), e.getMessage(), e);
+                throw new ApiException("Error calling local LLM: " + e.getMessage(),
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        })
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(getTimeout());
+    }
+
+    /**
+     * response_format с json_schema: LM Studio, vLLM и llama.cpp server ограничивают по схеме саму генерацию.
+     */
+    @Override
+    protected void applyResponseSchema(Map<String, Object> requestBody, String schemaName,
+            Map<String, Object> schema) {
+        requestBody.put("response_format", Map.of(
+                "type", "json_schema",
+                "json_schema", Map.of("name", schemaName, "strict", true, "schema", schema)));
+    }
+}
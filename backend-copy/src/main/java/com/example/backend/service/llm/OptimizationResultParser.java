@@ -0,0 +1,210 @@
+package com.example.backend.service.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.dto.OptimizationResult;
+import com.example.backend.service.analysis.SqlClassifier;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+/**
+ * Ответ модели в виде {@link OptimizationResult}. Бэкенды просят у провайдера JSON по схеме {@link #SCHEMA},
+ * но локальные модели без поддержки схемы оборачивают объект в текст или блок кода, пишут переводы строк
+ * внутри строк и висячие запятые — объект ищется в ответе и читается без строгих правил JSON.
+ * Ответ без JSON (собственный промпт пользователя) разбирается по блоку ```sql.
+ * SQL проверяется парсером: ответ без корректного запроса повторяется как сбой провайдера.
+ */
+@Slf4j
+public final class OptimizationResultParser {
+
+    public static final String SCHEMA_NAME = "optimization_result";
+
+    public static final Map<String, Object> SCHEMA = Map.of(
+            "type", "object",
+            "properties", Map.of(
+                    "optimizedSql", Map.of("type", "string",
+                            "description", "Оптимизированный SQL-запрос целиком"),
+                    "rationale", Map.of("type", "string",
+                            "description", "Найденные узкие места и примененные методы оптимизации"),
+                    "estimatedGain", Map.of("type", "string",
+                            "description", "Ожидаемое снижение времени выполнения или влияющие на него факторы"),
+                    "risks", Map.of("type", "array", "items", Map.of("type", "string"),
+                            "description", "Возможные побочные эффекты изменений"),
+                    "indexSuggestions", Map.of("type", "array", "items", Map.of("type", "string"),
+                            "description", "Рекомендуемые индексы, каждый одной командой CREATE INDEX")),
+            "required", List.of("optimizedSql", "rationale", "estimatedGain", "risks", "indexSuggestions"),
+            "additionalProperties", false);
+
+    /**
+     * Формат ответа для системного промпта: нужен моделям, которые не принимают схему в запросе.
+     */
+    public static final String INSTRUCTIONS = """
+
+
+            Формат ответа: один JSON-объект без текста до и после него.
+            {"optimizedSql": "оптимизированный SQL-запрос целиком", \
+            "rationale": "какие узкие места найдены и какие методы оптимизации применены", \
+            "estimatedGain": "примерное снижение времени выполнения или факторы, которые на него повлияют", \
+            "risks": ["возможные побочные эффекты изменений"], \
+            "indexSuggestions": ["CREATE INDEX ..."]}
+            Пустые списки допустимы.""";
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .enable(JsonReadFeature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .build();
+
+    private static final String SQL_FENCE = "```sql";
+    private static final String FENCE = "```";
+
+    private OptimizationResultParser() {
+    }
+
+    public static OptimizationResult parse(String content) {
+        if (!StringUtils.hasText(content)) {
+            throw invalid("LLM response is empty");
+        }
+        JsonNode node = findResultObject(content);
+        OptimizationResult result = node != null ? fromJson(node) : fromMarkdown(content);
+        if (node == null) {
+            log.debug("LLM response contains no JSON result, parsed as markdown");
+        }
+        if (!StringUtils.hasText(result.getOptimizedSql())) {
+            throw invalid("LLM response contains no optimized SQL query");
+        }
+        try {
+            CCJSqlParserUtil.parse(result.getOptimizedSql());
+        } catch (JSQLParserException e) {
+            String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            throw invalid("LLM returned an invalid SQL query: " + firstLine(reason));
+        }
+        return result;
+    }
+
+    /**
+     * Первый сбалансированный объект с полем optimizedSql. Вложенные объекты тоже проверяются:
+     * модель может обернуть результат, например в {"result": {...}}.
+     */
+    static JsonNode findResultObject(String text) {
+        for (int start = text.indexOf('{'); start >= 0; start = text.indexOf('{', start + 1)) {
+            int end = matchingBrace(text, start);
+            if (end < 0) {
+                // Ответ оборван по max_tokens: закрывающей скобки нет и у следующих объектов
+                return null;
+            }
+            try {
+                JsonNode node = MAPPER.readTree(text.substring(start, end + 1));
+                if (node.isObject() && node.hasNonNull("optimizedSql")) {
+                    return node;
+                }
+            } catch (Exception e) {
+                log.trace("Skipping non-JSON braces at {}: {}", start, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Позиция закрывающей скобки объекта, начатого в start; скобки внутри строк не считаются.
+     */
+    private static int matchingBrace(String text, int start) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static OptimizationResult fromJson(JsonNode node) {
+        return OptimizationResult.builder()
+                .optimizedSql(stripFence(node.path("optimizedSql").asText()))
+                .rationale(node.path("rationale").asText("").trim())
+                .estimatedGain(node.path("estimatedGain").asText("").trim())
+                .risks(strings(node.path("risks")))
+                .indexSuggestions(strings(node.path("indexSuggestions")))
+                .build();
+    }
+
+    /**
+     * Ответ в свободной форме: первый блок ```sql и текст после него, иначе весь ответ, если он сам запрос.
+     */
+    private static OptimizationResult fromMarkdown(String content) {
+        int start = content.indexOf(SQL_FENCE);
+        int end = start >= 0 ? content.indexOf(FENCE, start + SQL_FENCE.length()) : -1;
+        if (end > start) {
+            // Заголовки модели понижаются, чтобы не спорить с заголовками сообщения
+            String rationale = content.substring(end + FENCE.length()).replaceAll("(?m)^#{1,3} ", "#### ").trim();
+            return OptimizationResult.builder()
+                    .optimizedSql(content.substring(start + SQL_FENCE.length(), end).trim())
+                    .rationale(rationale)
+                    .build();
+        }
+        String sql = SqlClassifier.classify(content).isQuery() ? content.trim() : null;
+        return OptimizationResult.builder().optimizedSql(sql).rationale("").build();
+    }
+
+    // Строка вместо массива тоже принимается: так отвечают модели без схемы
+    private static List<String> strings(JsonNode node) {
+        List<String> values = new ArrayList<>();
+        if (node.isArray()) {
+            node.forEach(item -> addText(values, item.asText()));
+        } else if (node.isTextual()) {
+            addText(values, node.asText());
+        }
+        return values;
+    }
+
+    private static void addText(List<String> values, String value) {
+        if (StringUtils.hasText(value)) {
+            values.add(value.trim());
+        }
+    }
+
+    private static String stripFence(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.startsWith(FENCE) && trimmed.endsWith(FENCE) && trimmed.length() > 2 * FENCE.length()) {
+            int firstLine = trimmed.indexOf('\n');
+            return firstLine < 0 ? "" : trimmed.substring(firstLine + 1, trimmed.length() - FENCE.length()).trim();
+        }
+        return trimmed;
+    }
+
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "unknown parse error";
+        }
+        int newline = message.indexOf('\n');
+        return newline < 0 ? message : message.substring(0, newline);
+    }
+
+    private static ApiException invalid(String message) {
+        return new ApiException(message, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.backend.service.llm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.catalog.TableMetadata;
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanNode;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.WithItem;
+
+/**
+ * Укладывает промпт в окно контекста модели: убирает повторяющиеся тела CTE, сворачивает дешевые
+ * узлы плана, сокращает метаданные до столбцов запроса и подбирает max_tokens под длину запроса.
+ * Если промпт не помещается, сначала урезаются план и метаданные, запрос не сокращается никогда.
+ */
+@Slf4j
+@Component
+public class PromptBudgeter {
+
+    private static final String QUERY_PLACEHOLDER = "{query_text}";
+    private static final String PLAN_PLACEHOLDER = "{query_plan}";
+    private static final String METADATA_PLACEHOLDER = "{tables_meta}";
+    // Ступени сокращения: доля стоимости корня, ниже которой узлы плана сворачиваются, и число таблиц
+    private static final double[] PLAN_FRACTIONS = {0.05, 0.15, 0.3};
+    private static final int[] METADATA_TABLE_LIMITS = {5, 1};
+    private static final int MAX_FILTER_LENGTH = 120;
+
+    private final LLMConfig.Budget config;
+
+    @Autowired
+    public PromptBudgeter(LLMConfig llmConfig) {
+        this(llmConfig.getBudget());
+    }
+
+    public PromptBudgeter(LLMConfig.Budget config) {
+        this.config = config;
+    }
+
+    public BudgetedPrompt budget(String promptTemplate, String query, PromptContext context, int maxCompletionTokens) {
+        String userPrompt = dedupeCtes(query);
+        int queryTokens = TokenEstimator.estimate(userPrompt);
+        int completionTokens = Math.min(maxCompletionTokens, Math.max(config.getMinCompletionTokens(),
+                (int) Math.ceil(config.getCompletionBaseTokens() + config.getCompletionPerQueryToken() * queryTokens)));
+
+        // Запрос уходит сообщением пользователя; в системном промпте он бы удвоил размер
+        String template = promptTemplate.replace(QUERY_PLACEHOLDER, "(запрос — в сообщении пользователя)");
+
+        double planFraction = config.getPlanCostFraction();
+        int metadataTables = config.getMaxMetadataTables();
+        int step = 0;
+        while (true) {
+            String systemPrompt = template
+                    .replace(PLAN_PLACEHOLDER, renderPlan(context.getPlan(), planFraction))
+                    .replace(METADATA_PLACEHOLDER, summarizeMetadata(context, metadataTables));
+            int promptTokens = TokenEstimator.estimate(systemPrompt) + queryTokens;
+            int available = config.getContextWindow() - promptTokens;
+            if (available >= config.getMinCompletionTokens()) {
+                int maxTokens = Math.min(completionTokens, available);
+                log.debug("Prompt budget: prompt~{} tokens, max_tokens={}, plan fraction={}, metadata tables={}",
+                        promptTokens, maxTokens, planFraction, metadataTables);
+                return BudgetedPrompt.builder()
+                        .systemPrompt(systemPrompt)
+                        .userPrompt(userPrompt)
+                        .promptTokens(promptTokens)
+                        .maxTokens(maxTokens)
+                        .build();
+            }
+            if (step < PLAN_FRACTIONS.length) {
+                planFraction = Math.max(planFraction, PLAN_FRACTIONS[step]);
+                metadataTables = Math.min(metadataTables, step < METADATA_TABLE_LIMITS.length
+                        ? METADATA_TABLE_LIMITS[step] : 0);
+                step++;
+            } else if (planFraction <= 1) {
+                // Последняя ступень: без плана и метаданных
+                planFraction = 2;
+                metadataTables = 0;
+            } else {
+                throw new ApiException(String.format(Locale.ROOT,
+                        "SQL query is too large for the model context: ~%d prompt tokens, context window %d",
+                        promptTokens, config.getContextWindow()), HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+        }
+    }
+
+    /**
+     * Заменяет тело CTE, совпадающее с телом одного из предыдущих, на SELECT * из первого:
+     * сгенерированные запросы часто повторяют один и тот же подзапрос под разными именами.
+     */
+    String dedupeCtes(String query) {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(query);
+        } catch (JSQLParserException e) {
+            return query;
+        }
+        if (!(statement instanceof Select select) || select.getWithItemsList() == null) {
+            return query;
+        }
+        Map<String, String> firstByBody = new HashMap<>();
+        boolean changed = false;
+        for (WithItem withItem : select.getWithItemsList()) {
+            if (withItem.isRecursive() || withItem.getSubSelect() == null) {
+                continue;
+            }
+            String body = normalize(withItem.getSubSelect().getSelectBody().toString());
+            String first = firstByBody.putIfAbsent(body, withItem.getName());
+            if (first != null) {
+                try {
+                    Select reference = (Select) CCJSqlParserUtil.parse("SELECT * FROM " + first);
+                    withItem.getSubSelect().setSelectBody(reference.getSelectBody());
+                    changed = true;
+                } catch (JSQLParserException e) {
+                    log.debug("Cannot reference CTE {}: {}", first, e.getMessage());
+                }
+            }
+        }
+        return changed ? select.toString() : query;
+    }
+
+    /**
+     * Дерево плана в одну строку на узел; поддеревья дешевле доли fraction от стоимости корня
+     * сворачиваются в счетчик.
+     */
+    String renderPlan(ExecutionPlan plan, double fraction) {
+        if (plan == null || fraction > 1) {
+            return "недоступен";
+        }
+        PlanNode root = plan.getRoot();
+        double minCost = root.getTotalCost() == null ? 0 : root.getTotalCost() * fraction;
+        StringBuilder text = new StringBuilder("\n");
+        int[] budget = {config.getMaxPlanNodes()};
+        renderNode(root, 0, minCost, budget, text);
+        if (plan.getExecutionTimeMs() != null) {
+            text.append(String.format(Locale.ROOT, "Execution Time: %.1f ms\n", plan.getExecutionTimeMs()));
+        }
+        return text.toString();
+    }
+
+    private void renderNode(PlanNode node, int depth, double minCost, int[] budget, StringBuilder text) {
+        budget[0]--;
+        text.append("  ".repeat(depth)).append(node.getNodeType());
+        if (node.getRelationName() != null) {
+            text.append(" on ").append(node.getRelationName());
+        }
+        if (node.getIndexName() != null) {
+            text.append(" using ").append(node.getIndexName());
+        }
+        if (node.getTotalCost() != null) {
+            text.append(String.format(Locale.ROOT, " cost=%.0f", node.getTotalCost()));
+        }
+        if (node.getPlanRows() != null) {
+            text.append(String.format(Locale.ROOT, " rows=%.0f", node.getPlanRows()));
+        }
+        if (node.getTotalActualRows() != null) {
+            text.append(String.format(Locale.ROOT, " actual=%.0f", node.getTotalActualRows()));
+        }
+        if (node.getFilter() != null && node.getFilter().length() <= MAX_FILTER_LENGTH) {
+            text.append(" filter: ").append(node.getFilter());
+        }
+        text.append("\n");
+
+        int pruned = 0;
+        for (PlanNode child : node.getChildren()) {
+            boolean cheap = child.getTotalCost() != null && child.getTotalCost() < minCost;
+            if (cheap || budget[0] <= 0) {
+                pruned += child.getSubtree().size();
+            } else {
+                renderNode(child, depth + 1, minCost, budget, text);
+            }
+        }
+        if (pruned > 0) {
+            text.append("  ".repeat(depth + 1)).append("… еще узлов: ").append(pruned).append("\n");
+        }
+    }
+
+    /**
+     * По таблице: оценка строк, столбцы запроса с типами, индексы; остальные столбцы только пересчитываются.
+     */
+    String summarizeMetadata(PromptContext context, int maxTables) {
+        Map<String, TableMetadata> tables = context.getTables();
+        if (tables == null || tables.isEmpty() || maxTables <= 0) {
+            return "недоступны";
+        }
+        Set<String> referenced = context.getReferencedColumns() == null ? Set.of() : context.getReferencedColumns();
+        StringBuilder text = new StringBuilder("\n");
+        // Сначала самые большие таблицы: их метаданные важнее для плана
+        List<TableMetadata> ordered = tables.values().stream()
+                .sorted((a, b) -> Long.compare(rows(b), rows(a)))
+                .limit(maxTables)
+                .toList();
+        for (TableMetadata table : ordered) {
+            text.append("- ").append(table.getName());
+            if (table.getRowEstimate() != null) {
+                text.append(" (~").append(table.getRowEstimate()).append(" строк)");
+            }
+            List<String> columns = table.getColumns().entrySet().stream()
+                    .filter(column -> referenced.stream().anyMatch(name -> name.equalsIgnoreCase(column.getKey())))
+                    .map(column -> column.getKey() + " " + column.getValue())
+                    .toList();
+            text.append(": ").append(columns.isEmpty() ? "столбцы запроса не найдены" : String.join(", ", columns));
+            int other = table.getColumns().size() - columns.size();
+            if (other > 0) {
+                text.append(" (+").append(other).append(" других столбцов)");
+            }
+            if (!table.getIndexes().isEmpty()) {
+                text.append("; индексы: ").append(String.join("; ", table.getIndexes()));
+            }
+            text.append("\n");
+        }
+        if (tables.size() > ordered.size()) {
+            text.append("- … еще таблиц: ").append(tables.size() - ordered.size()).append("\n");
+        }
+        return text.toString();
+    }
+
+    private long rows(TableMetadata table) {
+        return table.getRowEstimate() == null ? 0 : table.getRowEstimate();
+    }
+
+    private String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.backend.service.llm;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.example.backend.model.catalog.TableMetadata;
+import com.example.backend.model.plan.ExecutionPlan;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Данные целевой БД для подстановки в {query_plan} и {tables_meta} промпта.
+ */
+@Getter
+@Builder
+public class PromptContext {
+
+    private static final PromptContext EMPTY = PromptContext.builder().build();
+
+    private final ExecutionPlan plan;
+    private final Map<String, TableMetadata> tables;
+    // Столбцы, упомянутые в запросе: в метаданных остальные только пересчитываются
+    private final Set<String> referencedColumns;
+
+    public static PromptContext empty() {
+        return EMPTY;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.backend.service.llm;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.HttpStatus;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.ApiException;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Token bucket плюс ограничение числа запросов в работе для одного ключа (провайдера или пользователя).
+ * Запросы сверх лимита ждут в очереди FIFO ограниченной длины не дольше maxWait;
+ * после 429 с Retry-After выдача разрешений приостанавливается до указанного момента.
+ */
+@Slf4j
+class RequestGovernor {
+
+    private final String name;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final int maxInFlight;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final Scheduler scheduler;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private int inFlight;
+    private boolean drainScheduled;
+    private boolean retired;
+
+    RequestGovernor(String name, LLMConfig.Limit limit, Scheduler scheduler) {
+        this.name = name;
+        this.permitsPerSecond = limit.getPermitsPerSecond();
+        this.burst = Math.max(1, limit.getBurst());
+        this.maxInFlight = limit.getMaxInFlight() > 0 ? limit.getMaxInFlight() : Integer.MAX_VALUE;
+        this.maxQueue = Math.max(0, limit.getMaxQueue());
+        this.maxWait = Duration.ofMillis(limit.getMaxWaitMs());
+        this.scheduler = scheduler;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Выдает разрешение сразу или ставит запрос в очередь.
+     * Разрешение нужно вернуть через {@link Permit#release()}; повторный вызов ничего не делает.
+     * Снятый с учета ограничитель ({@link #retireIfIdle()}) завершается без разрешения.
+     */
+    Mono<Permit> acquire() {
+        Mono<Permit> permit = Mono.create(sink -> {
+            boolean grantedNow = false;
+            synchronized (this) {
+                if (retired) {
+                    sink.success();
+                    return;
+                }
+                if (waiters.isEmpty() && tryTake(System.nanoTime())) {
+                    grantedNow = true;
+                } else if (waiters.size() >= maxQueue) {
+                    sink.error(new ApiException("LLM request queue is full for " + name,
+                            HttpStatus.TOO_MANY_REQUESTS));
+                    return;
+                } else {
+                    Waiter waiter = new Waiter(sink);
+                    waiters.addLast(waiter);
+                    sink.onCancel(() -> cancel(waiter));
+                    scheduleDrain(System.nanoTime());
+                }
+            }
+            if (grantedNow) {
+                sink.success(new Permit(this));
+            }
+        });
+        return permit
+                .timeout(maxWait, Mono.error(() -> new ApiException(
+                        "Timed out after " + maxWait.toMillis() + "ms waiting for LLM rate limit of " + name,
+                        HttpStatus.TOO_MANY_REQUESTS)))
+                // Разрешение, выданное уже отмененному подписчику, сразу возвращаем
+                .doOnDiscard(Permit.class, Permit::release);
+    }
+
+    /**
+     * Приостанавливает выдачу разрешений, например по заголовку Retry-After.
+     */
+    void pause(Duration duration) {
+        synchronized (this) {
+            long until = System.nanoTime() + duration.toNanos();
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+                tokens = 0;
+            }
+        }
+        log.info("LLM rate limiter {} paused for {}ms", name, duration.toMillis());
+    }
+
+    /**
+     * Снимает ограничитель с учета, если он простаивает: корзина полна, очереди и выданных разрешений нет.
+     * Такой ограничитель неотличим от нового, поэтому его можно удалить и при следующем запросе создать заново.
+     */
+    synchronized boolean retireIfIdle() {
+        long now = System.nanoTime();
+        refill(now);
+        if (inFlight == 0 && waiters.isEmpty() && tokens >= burst && now - pausedUntilNanos >= 0) {
+            retired = true;
+        }
+        return retired;
+    }
+
+    synchronized int queueSize() {
+        return waiters.size();
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized double availableTokens() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private void cancel(Waiter waiter) {
+        synchronized (this) {
+            waiters.remove(waiter);
+        }
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            long now = System.nanoTime();
+            while (!waiters.isEmpty() && tryTake(now)) {
+                granted.add(waiters.pollFirst());
+            }
+            if (!waiters.isEmpty()) {
+                scheduleDrain(now);
+            }
+        }
+        // Отдаем разрешения вне блокировки: подписчик может сразу начать вызов LLM
+        granted.forEach(waiter -> waiter.sink.success(new Permit(this)));
+    }
+
+    private boolean tryTake(long now) {
+        if (now - pausedUntilNanos < 0 || inFlight >= maxInFlight) {
+            return false;
+        }
+        if (permitsPerSecond > 0) {
+            refill(now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private void refill(long now) {
+        if (permitsPerSecond <= 0) {
+            return;
+        }
+        double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        if (elapsedSeconds > 0) {
+            tokens = Math.min(burst, tokens + elapsedSeconds * permitsPerSecond);
+            lastRefillNanos = now;
+        }
+    }
+
+    /**
+     * Планирует повторную раздачу, когда появится токен или закончится пауза.
+     * Если ждем только освобождения слота, раздачу запустит {@link #release()}.
+     */
+    private void scheduleDrain(long now) {
+        if (drainScheduled) {
+            return;
+        }
+        long delayNanos = 0;
+        if (now - pausedUntilNanos < 0) {
+            delayNanos = pausedUntilNanos - now;
+        } else if (inFlight >= maxInFlight) {
+            return;
+        } else if (permitsPerSecond > 0 && tokens < 1) {
+            delayNanos = (long) ((1 - tokens) / permitsPerSecond * 1_000_000_000L);
+        }
+        drainScheduled = true;
+        scheduler.schedule(this::drain, Math.max(delayNanos, 1_000_000L), TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    static final class Permit {
+        private final RequestGovernor governor;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(RequestGovernor governor) {
+            this.governor = governor;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                governor.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.backend.service.llm;
+
+/**
+ * Приближенный подсчет токенов без словаря модели. BPE-токенизаторы GigaChat и OpenAI-совместимых
+ * моделей кодируют латиницу и цифры примерно по 4 символа на токен, кириллицу — по 3,
+ * а знаки препинания SQL чаще всего отдельными токенами. Ошибка в пределах 15–20% для бюджета достаточна.
+ */
+public final class TokenEstimator {
+
+    private static final int LATIN_CHARS_PER_TOKEN = 4;
+    private static final int OTHER_LETTERS_PER_TOKEN = 3;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (isLatinWordChar(c)) {
+                int start = i;
+                while (i < length && isLatinWordChar(text.charAt(i))) {
+                    i++;
+                }
+                tokens += ceilDiv(i - start, LATIN_CHARS_PER_TOKEN);
+            } else if (Character.isLetter(c)) {
+                int start = i;
+                while (i < length && Character.isLetter(text.charAt(i)) && !isLatinWordChar(text.charAt(i))) {
+                    i++;
+                }
+                tokens += ceilDiv(i - start, OTHER_LETTERS_PER_TOKEN);
+            } else {
+                tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isLatinWordChar(char c) {
+        return c < 128 && (Character.isLetterOrDigit(c) || c == '_');
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
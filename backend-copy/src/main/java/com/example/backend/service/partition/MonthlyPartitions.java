@@ -0,0 +1,49 @@
+package com.example.backend.service.partition;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Имена и границы месячных секций messages и sql_queries (см. create_monthly_partition в V9).
+ */
+public final class MonthlyPartitions {
+
+    private static final Pattern PARTITION_SUFFIX = Pattern.compile("_p(\\d{4})_(\\d{2})$");
+    // Для записей без даты создания: секции не отсекаются
+    private static final LocalDateTime UNBOUNDED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private MonthlyPartitions() {
+    }
+
+    /**
+     * Нижняя граница created_at для истории чата: сообщения не старше чата, а секции помесячные,
+     * поэтому начало месяца отсекает те же секции и не зависит от расхождения часов приложения и базы.
+     */
+    public static LocalDateTime lowerBound(LocalDateTime chatCreatedAt) {
+        if (chatCreatedAt == null) {
+            return UNBOUNDED;
+        }
+        return YearMonth.from(chatCreatedAt).atDay(1).atStartOfDay();
+    }
+
+    public static String partitionName(String table, YearMonth month) {
+        return String.format(Locale.ROOT, "%s_p%04d_%02d", table, month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Месяц секции по ее имени или null, если это не месячная секция таблицы table.
+     */
+    public static YearMonth month(String table, String partition) {
+        if (!partition.startsWith(table)) {
+            return null;
+        }
+        Matcher matcher = PARTITION_SUFFIX.matcher(partition);
+        if (!matcher.find() || matcher.start() != table.length()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
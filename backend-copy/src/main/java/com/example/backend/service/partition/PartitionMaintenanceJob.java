@@ -0,0 +1,192 @@
+package com.example.backend.service.partition;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.backend.service.storage.BodyCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Обслуживание месячных секций messages и sql_queries: создает секции на несколько месяцев вперед,
+ * а секции старше срока хранения выгружает в архив (JSON Lines, gzip), отсоединяет и удаляет.
+ * Рабочий набор остается постоянным: в запросах чатов участвуют только секции за время жизни чата.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "partition.maintenance.enabled", havingValue = "true", matchIfMissing = true)
+public class PartitionMaintenanceJob {
+
+    static final String MESSAGES = "messages";
+    static final String SQL_QUERIES = "sql_queries";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${partition.premake-months:3}")
+    private int premakeMonths;
+
+    // 0 — хранить всю историю
+    @Value("${partition.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${partition.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${partition.archive.dir:data/archive}")
+    private String archiveDir;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${partition.maintenance.cron:0 30 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        try {
+            createPartitions(current);
+            if (retentionMonths > 0) {
+                applyRetention(current.minusMonths(retentionMonths));
+            }
+        } catch (RuntimeException e) {
+            log.error("Partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void createPartitions(YearMonth current) {
+        for (int i = 0; i <= premakeMonths; i++) {
+            Date month = Date.valueOf(current.plusMonths(i).atDay(1));
+            for (String table : List.of(MESSAGES, SQL_QUERIES)) {
+                jdbcTemplate.queryForObject("SELECT create_monthly_partition(?, ?)", String.class, table, month);
+            }
+        }
+    }
+
+    /**
+     * Секции месяцев раньше cutoff. Сначала sql_queries: запрос всегда не старше своего сообщения.
+     */
+    void applyRetention(YearMonth cutoff) {
+        for (String table : List.of(SQL_QUERIES, MESSAGES)) {
+            for (String partition : partitions(table)) {
+                YearMonth month = MonthlyPartitions.month(table, partition);
+                if (month != null && month.isBefore(cutoff)) {
+                    retire(table, partition, month);
+                }
+            }
+        }
+    }
+
+    private List<String> partitions(String table) {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = ?
+                ORDER BY c.relname
+                """, String.class, table);
+    }
+
+    private void retire(String table, String partition, YearMonth month) {
+        Path archive = archiveEnabled ? export(table, partition) : null;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (SQL_QUERIES.equals(table)) {
+                // DETACH не запускает триггеры удаления: таблицы запросов чистятся явно
+                jdbcTemplate.update("DELETE FROM sql_query_tables WHERE sql_query_id IN (SELECT id FROM "
+                        + partition + ")");
+            } else {
+                // Запросы, сохраненные в начале следующего месяца, ссылаются на сообщения этой секции
+                Timestamp nextMonth = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+                jdbcTemplate.update("DELETE FROM sql_queries WHERE created_at >= ? AND created_at < ? "
+                        + "AND message_id IN (SELECT id FROM " + partition + ")",
+                        nextMonth, Timestamp.valueOf(nextMonth.toLocalDateTime().plusDays(1)));
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        });
+        log.info("Retired partition {} ({}), archive: {}", partition, month, archive);
+    }
+
+    /**
+     * Выгружает секцию построчно курсором, не загружая ее в память целиком. Сжатые тела
+     * распаковываются в архив: блоки без ссылок потом удалит сборка мусора.
+     */
+    private Path export(String table, String partition) {
+        String blobColumn = MESSAGES.equals(table) ? "content_blob_id" : "optimized_blob_id";
+        String textColumn = MESSAGES.equals(table) ? "content" : "optimized_query";
+        Path file = Paths.get(archiveDir, partition + ".jsonl.gz");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(1000);
+        long rows = transactionTemplate.execute(status -> {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8))) {
+                long[] count = {0};
+                cursor.query("SELECT p.*, b.codec AS blob_codec, b.original_length AS blob_length, "
+                        + "b.data AS blob_data FROM " + partition + " p "
+                        + "LEFT JOIN content_blobs b ON b.id = p." + blobColumn + " ORDER BY p.id", resultSet -> {
+                    ResultSetMetaData metaData = resultSet.getMetaData();
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        Object value = resultSet.getObject(i);
+                        if (value instanceof Array array) {
+                            value = array.getArray();
+                        }
+                        row.put(metaData.getColumnName(i), value instanceof Timestamp timestamp
+                                ? timestamp.toLocalDateTime().toString() : value);
+                    }
+                    byte[] blob = (byte[]) row.remove("blob_data");
+                    String codec = (String) row.remove("blob_codec");
+                    Object length = row.remove("blob_length");
+                    if (blob != null) {
+                        row.put(textColumn, BodyCodec.decode(codec, blob, ((Number) length).intValue()));
+                    }
+                    try {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+                return count[0];
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Exported {} rows of {} to {}", rows, partition, file);
+        return file;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.backend.service.plan;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanChange;
+import com.example.backend.model.plan.PlanDiff;
+import com.example.backend.model.plan.PlanNode;
+
+/**
+ * Сопоставляет планы исходного и оптимизированного запроса. Деревья после переписывания
+ * обычно не изоморфны, поэтому узлы выравниваются по смыслу: сканирования — по таблице,
+ * соединения и Motion — по набору таблиц в поддереве.
+ */
+@Component
+public class PlanDiffer {
+
+    // Ошибка оценки, начиная с которой планировщик обычно выбирает не ту стратегию
+    private static final double MISESTIMATE_FACTOR = 10;
+    // Расхождения на единицах строк не влияют на выбор плана
+    private static final double MISESTIMATE_MIN_ROWS = 100;
+
+    public PlanDiff diff(ExecutionPlan original, ExecutionPlan optimized) {
+        List<PlanChange> changes = new ArrayList<>();
+        diffSeqScans(original, optimized, changes);
+        diffJoins(original, optimized, changes);
+        diffMotions(original, optimized, changes);
+        collectMisestimates(original, "исходном", changes);
+        collectMisestimates(optimized, "оптимизированном", changes);
+
+        return PlanDiff.builder()
+                .originalCost(original.getRoot().getTotalCost())
+                .optimizedCost(optimized.getRoot().getTotalCost())
+                .originalExecutionTimeMs(original.getExecutionTimeMs())
+                .optimizedExecutionTimeMs(optimized.getExecutionTimeMs())
+                .changes(changes)
+                .build();
+    }
+
+    private void diffSeqScans(ExecutionPlan original, ExecutionPlan optimized, List<PlanChange> changes) {
+        Map<String, List<String>> before = scansByRelation(original);
+        Map<String, List<String>> after = scansByRelation(optimized);
+        Set<String> relations = new LinkedHashSet<>(before.keySet());
+        relations.addAll(after.keySet());
+
+        for (String relation : relations) {
+            List<String> beforeScans = before.getOrDefault(relation, List.of());
+            List<String> afterScans = after.getOrDefault(relation, List.of());
+            long beforeSeq = beforeScans.stream().filter("Seq Scan"::equals).count();
+            long afterSeq = afterScans.stream().filter("Seq Scan"::equals).count();
+            if (beforeSeq > afterSeq) {
+                changes.add(new PlanChange(PlanChange.Type.SEQ_SCAN_REMOVED, relation, describe(beforeScans),
+                        describe(afterScans), "Последовательное сканирование " + relation + " больше не нужно"));
+            } else if (afterSeq > beforeSeq) {
+                changes.add(new PlanChange(PlanChange.Type.SEQ_SCAN_ADDED, relation, describe(beforeScans),
+                        describe(afterScans), "Появилось последовательное сканирование " + relation));
+            }
+        }
+    }
+
+    private void diffJoins(ExecutionPlan original, ExecutionPlan optimized, List<PlanChange> changes) {
+        Map<String, String> before = nodeTypesByRelations(original, PlanNode::isJoin);
+        Map<String, String> after = nodeTypesByRelations(optimized, PlanNode::isJoin);
+        before.forEach((relations, beforeType) -> {
+            String afterType = after.get(relations);
+            if (afterType != null && !afterType.equals(beforeType)) {
+                changes.add(new PlanChange(PlanChange.Type.JOIN_STRATEGY_CHANGED, relations, beforeType, afterType,
+                        "Соединение " + relations + ": " + beforeType + " → " + afterType));
+            }
+        });
+    }
+
+    private void diffMotions(ExecutionPlan original, ExecutionPlan optimized, List<PlanChange> changes) {
+        Map<String, Long> before = motionCounts(original);
+        Map<String, Long> after = motionCounts(optimized);
+        Set<String> keys = new LinkedHashSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        for (String key : keys) {
+            long beforeCount = before.getOrDefault(key, 0L);
+            long afterCount = after.getOrDefault(key, 0L);
+            if (beforeCount == afterCount) {
+                continue;
+            }
+            String[] parts = key.split("\\|", 2);
+            PlanChange.Type type = beforeCount > afterCount ? PlanChange.Type.MOTION_REMOVED : PlanChange.Type.MOTION_ADDED;
+            changes.add(new PlanChange(type, parts[1], String.valueOf(beforeCount), String.valueOf(afterCount),
+                    parts[0] + " над " + parts[1] + ": " + beforeCount + " → " + afterCount));
+        }
+    }
+
+    private void collectMisestimates(ExecutionPlan plan, String planName, List<PlanChange> changes) {
+        for (PlanNode node : plan.getNodes()) {
+            Double error = node.getEstimationError();
+            if (error == null || error < MISESTIMATE_FACTOR
+                    || Math.max(node.getPlanRows(), node.getActualRows()) < MISESTIMATE_MIN_ROWS) {
+                continue;
+            }
+            String relation = node.getRelationName() != null ? node.getRelationName() : node.getNodeType();
+            changes.add(new PlanChange(PlanChange.Type.MISESTIMATE, relation,
+                    formatRows(node.getPlanRows()), formatRows(node.getActualRows()),
+                    String.format(Locale.ROOT, "В %s плане %s (%s) ошибается в оценке строк в %.0f раз", planName,
+                            node.getNodeType(), relation, error)));
+        }
+    }
+
+    private Map<String, List<String>> scansByRelation(ExecutionPlan plan) {
+        Map<String, List<String>> scans = new LinkedHashMap<>();
+        plan.getNodes().stream()
+                .filter(node -> node.getRelationName() != null)
+                .forEach(node -> scans.computeIfAbsent(node.getRelationName(), key -> new ArrayList<>())
+                        .add(node.getNodeType()));
+        return scans;
+    }
+
+    private Map<String, String> nodeTypesByRelations(ExecutionPlan plan, Predicate<PlanNode> filter) {
+        Map<String, String> types = new LinkedHashMap<>();
+        plan.getNodes().stream()
+                .filter(filter)
+                .forEach(node -> types.putIfAbsent(relations(node), node.getNodeType()));
+        return types;
+    }
+
+    private Map<String, Long> motionCounts(ExecutionPlan plan) {
+        return plan.getNodes().stream()
+                .filter(PlanNode::isMotion)
+                .collect(Collectors.groupingBy(node -> node.getNodeType() + "|" + relations(node),
+                        LinkedHashMap::new, Collectors.counting()));
+    }
+
+    private String relations(PlanNode node) {
+        Set<String> relations = node.getSubtree().stream()
+                .map(PlanNode::getRelationName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        return relations.isEmpty() ? "—" : String.join(", ", relations);
+    }
+
+    private String formatRows(double rows) {
+        return String.format(Locale.ROOT, "%.0f", rows);
+    }
+
+    private String describe(List<String> scans) {
+        return scans.isEmpty() ? "—" : String.join(", ", scans);
+    }
+}
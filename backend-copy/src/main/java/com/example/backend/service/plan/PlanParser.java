@@ -0,0 +1,95 @@
+package com.example.backend.service.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Разбор EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) PostgreSQL и Greenplum в дерево PlanNode.
+ * Без ANALYZE или BUFFERS соответствующие поля узлов остаются пустыми.
+ */
+@Component
+public class PlanParser {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ExecutionPlan parse(String explainJson) {
+        if (explainJson == null || explainJson.isBlank()) {
+            throw new ApiException("EXPLAIN output is empty", HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        JsonNode document;
+        try {
+            document = objectMapper.readTree(explainJson);
+        } catch (JsonProcessingException e) {
+            throw new ApiException("Unparseable EXPLAIN output: " + e.getOriginalMessage(),
+                    HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        // EXPLAIN (FORMAT JSON) возвращает массив из одного объекта
+        JsonNode top = document.isArray() ? document.path(0) : document;
+        if (!top.has("Plan")) {
+            throw new ApiException("EXPLAIN output has no Plan node", HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        return ExecutionPlan.builder()
+                .root(parseNode(top.get("Plan")))
+                .planningTimeMs(doubleOrNull(top, "Planning Time"))
+                // Greenplum 5 и PostgreSQL до 9.4 пишут «Total Runtime»
+                .executionTimeMs(top.has("Execution Time")
+                        ? doubleOrNull(top, "Execution Time")
+                        : doubleOrNull(top, "Total Runtime"))
+                .build();
+    }
+
+    private PlanNode parseNode(JsonNode node) {
+        List<PlanNode> children = new ArrayList<>();
+        for (JsonNode child : node.path("Plans")) {
+            children.add(parseNode(child));
+        }
+        return PlanNode.builder()
+                .nodeType(textOrNull(node, "Node Type"))
+                .relationName(textOrNull(node, "Relation Name"))
+                .alias(textOrNull(node, "Alias"))
+                .indexName(textOrNull(node, "Index Name"))
+                .joinType(textOrNull(node, "Join Type"))
+                .filter(textOrNull(node, "Filter"))
+                .startupCost(doubleOrNull(node, "Startup Cost"))
+                .totalCost(doubleOrNull(node, "Total Cost"))
+                .planRows(doubleOrNull(node, "Plan Rows"))
+                .actualRows(doubleOrNull(node, "Actual Rows"))
+                .actualLoops(doubleOrNull(node, "Actual Loops"))
+                .actualTotalTimeMs(doubleOrNull(node, "Actual Total Time"))
+                .sharedHitBlocks(longOrNull(node, "Shared Hit Blocks"))
+                .sharedReadBlocks(longOrNull(node, "Shared Read Blocks"))
+                .tempReadBlocks(longOrNull(node, "Temp Read Blocks"))
+                .tempWrittenBlocks(longOrNull(node, "Temp Written Blocks"))
+                .slice(intOrNull(node, "Slice"))
+                .senders(intOrNull(node, "Senders"))
+                .receivers(intOrNull(node, "Receivers"))
+                .children(children)
+                .build();
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private static Double doubleOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asDouble() : null;
+    }
+
+    private static Long longOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asLong() : null;
+    }
+
+    private static Integer intOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asInt() : null;
+    }
+}
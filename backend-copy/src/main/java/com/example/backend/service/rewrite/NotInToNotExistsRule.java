@@ -0,0 +1,195 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SubSelect;
+
+/**
+ * a NOT IN (SELECT b FROM t ...) → NOT EXISTS (SELECT 1 FROM t WHERE ... AND t.b = a).
+ * NOT EXISTS выполняется как hashed anti join; NOT IN по подзапросу — как hashed SubPlan
+ * или, если хеш не помещается в work_mem, как вложенный цикл.
+ * Применяется только к условиям верхнего уровня WHERE, когда ссылки на столбцы однозначны
+ * и оба столбца заведомо не NULL.
+ */
+@Component
+@Order(20)
+public class NotInToNotExistsRule implements SqlRewriteRule {
+
+    public static final String ID = "not-in-to-not-exists";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement) {
+        return apply(statement, RewriteContext.empty());
+    }
+
+    /**
+     * NOT IN и NOT EXISTS совпадают, только если ни один из двух столбцов не бывает NULL: NULL в подзапросе
+     * делает NOT IN ложным для всех строк, а строку с NULL слева NOT IN отбрасывает, NOT EXISTS — оставляет.
+     * Если NOT NULL не доказан схемой или условием IS NOT NULL, запрос не меняется, остается подсказка.
+     */
+    @Override
+    public List<RewriteNote> apply(Statement statement, RewriteContext context) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            if (plainSelect.getWhere() == null) {
+                continue;
+            }
+            List<Expression> conjuncts = RewriteSupport.conjuncts(plainSelect.getWhere());
+            boolean changed = false;
+            for (int i = 0; i < conjuncts.size(); i++) {
+                Candidate candidate = match(plainSelect, conjuncts.get(i));
+                if (candidate == null) {
+                    continue;
+                }
+                List<String> nullable = new ArrayList<>();
+                if (!isNotNull(plainSelect, candidate.outerColumn(), conjuncts, context)) {
+                    nullable.add(candidate.outerColumn().toString());
+                }
+                if (!isNotNull(candidate.inner(), candidate.innerColumn(),
+                        RewriteSupport.conjuncts(candidate.inner().getWhere()), context)) {
+                    nullable.add(candidate.innerColumn().toString());
+                }
+                if (!nullable.isEmpty()) {
+                    notes.add(RewriteNote.hint(ID, "Условие " + conjuncts.get(i) + " можно переписать в NOT EXISTS "
+                            + "(anti join), если " + String.join(" и ", nullable) + " не содержат NULL: "
+                            + "объявите столбцы NOT NULL или добавьте условие IS NOT NULL"));
+                    continue;
+                }
+                notes.add(RewriteNote.applied(ID, "Условие " + conjuncts.get(i)
+                        + " переписано в NOT EXISTS, чтобы планировщик мог построить anti join"));
+                conjuncts.set(i, rewrite(candidate));
+                changed = true;
+            }
+            if (changed) {
+                plainSelect.setWhere(RewriteSupport.and(conjuncts));
+            }
+        }
+        return notes;
+    }
+
+    /**
+     * Условие вида a NOT IN (SELECT b FROM ...), которое можно переписать без потери однозначности ссылок.
+     */
+    private Candidate match(PlainSelect outer, Expression condition) {
+        if (!(condition instanceof InExpression in) || !in.isNot()
+                || !(in.getLeftExpression() instanceof Column outerColumn)) {
+            return null;
+        }
+        SubSelect subSelect = RewriteSupport.inSubSelect(in);
+        if (subSelect == null || subSelect.getWithItemsList() != null
+                || !(subSelect.getSelectBody() instanceof PlainSelect inner)) {
+            return null;
+        }
+        if (inner.getSelectItems().size() != 1
+                || !(inner.getSelectItems().get(0) instanceof SelectExpressionItem item)
+                || !(item.getExpression() instanceof Column innerColumn)
+                || inner.getDistinct() != null || inner.getGroupBy() != null || inner.getHaving() != null
+                || inner.getLimit() != null || inner.getOffset() != null || inner.getFetch() != null) {
+            return null;
+        }
+
+        Column qualifiedOuter = qualify(outerColumn, outer);
+        Column qualifiedInner = qualify(innerColumn, inner);
+        if (qualifiedOuter == null || qualifiedInner == null) {
+            return null;
+        }
+        // Внешний столбец не должен перекрываться источником с тем же именем внутри подзапроса
+        String outerQualifier = qualifiedOuter.getTable().getName();
+        for (FromItem fromItem : RewriteSupport.fromItems(inner)) {
+            if (outerQualifier.equalsIgnoreCase(RewriteSupport.qualifier(fromItem))) {
+                return null;
+            }
+        }
+        return new Candidate(subSelect, inner, qualifiedOuter, qualifiedInner);
+    }
+
+    private Expression rewrite(Candidate candidate) {
+        PlainSelect inner = candidate.inner();
+        List<Expression> innerConditions = RewriteSupport.conjuncts(inner.getWhere());
+        innerConditions.add(new EqualsTo(candidate.innerColumn(), candidate.outerColumn()));
+        inner.setWhere(RewriteSupport.and(innerConditions));
+        inner.getSelectItems().set(0, RewriteSupport.selectOne());
+
+        ExistsExpression exists = new ExistsExpression();
+        exists.setNot(true);
+        exists.setRightExpression(candidate.subSelect());
+        return exists;
+    }
+
+    /**
+     * Столбец не бывает NULL: в WHERE есть column IS NOT NULL, либо столбец NOT NULL в схеме
+     * и его таблица не стоит на дополняемой NULL стороне внешнего соединения.
+     */
+    private boolean isNotNull(PlainSelect source, Column column, List<Expression> conjuncts, RewriteContext context) {
+        for (Expression conjunct : conjuncts) {
+            if (conjunct instanceof IsNullExpression isNull && isNull.isNot()
+                    && isNull.getLeftExpression() instanceof Column checked
+                    && sameColumn(qualify(checked, source), column)) {
+                return true;
+            }
+        }
+        String qualifier = column.getTable().getName();
+        FromItem fromItem = RewriteSupport.fromItems(source).stream()
+                .filter(item -> qualifier.equalsIgnoreCase(RewriteSupport.qualifier(item)))
+                .findFirst()
+                .orElse(null);
+        return fromItem instanceof Table table && !isNullExtended(source, fromItem)
+                && context.isNotNull(table.getFullyQualifiedName(), column.getColumnName());
+    }
+
+    private boolean isNullExtended(PlainSelect source, FromItem fromItem) {
+        List<Join> joins = source.getJoins() == null ? List.of() : source.getJoins();
+        boolean seen = source.getFromItem() == fromItem;
+        for (Join join : joins) {
+            if (join.getRightItem() == fromItem) {
+                if (join.isLeft() || join.isFull()) {
+                    return true;
+                }
+                seen = true;
+            } else if (seen && (join.isRight() || join.isFull())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean sameColumn(Column left, Column right) {
+        return left != null && left.getColumnName().equalsIgnoreCase(right.getColumnName())
+                && left.getTable().getName().equalsIgnoreCase(right.getTable().getName());
+    }
+
+    private Column qualify(Column column, PlainSelect source) {
+        if (column.getTable() != null && column.getTable().getName() != null) {
+            return column;
+        }
+        if (!RewriteSupport.isSimpleSource(source)) {
+            return null;
+        }
+        String qualifier = RewriteSupport.qualifier(source.getFromItem());
+        return qualifier == null ? null : new Column(new Table(qualifier), column.getColumnName());
+    }
+
+    private record Candidate(SubSelect subSelect, PlainSelect inner, Column outerColumn, Column innerColumn) {
+    }
+}
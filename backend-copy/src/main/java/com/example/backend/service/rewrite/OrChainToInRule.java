@@ -0,0 +1,142 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+
+/**
+ * col = 1 OR col = 2 OR col = 3 → col IN (1, 2, 3).
+ * Планировщик превращает IN в один ScalarArrayOp, который использует индекс, вместо BitmapOr.
+ */
+@Component
+@Order(30)
+public class OrChainToInRule implements SqlRewriteRule {
+
+    public static final String ID = "or-chain-to-in";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (var plainSelect : RewriteSupport.plainSelects(statement)) {
+            RewriteSupport.rewriteConditions(plainSelect, expression -> rewrite(expression, notes));
+        }
+        return notes;
+    }
+
+    private Expression rewrite(Expression expression, List<RewriteNote> notes) {
+        if (expression instanceof AndExpression and) {
+            and.setLeftExpression(rewrite(and.getLeftExpression(), notes));
+            and.setRightExpression(rewrite(and.getRightExpression(), notes));
+            return and;
+        }
+        if (expression instanceof Parenthesis parenthesis) {
+            parenthesis.setExpression(rewrite(parenthesis.getExpression(), notes));
+            return parenthesis;
+        }
+        if (expression instanceof NotExpression not) {
+            not.setExpression(rewrite(not.getExpression(), notes));
+            return not;
+        }
+        if (!(expression instanceof OrExpression)) {
+            return expression;
+        }
+
+        List<Expression> disjuncts = new ArrayList<>();
+        flattenOr(expression, disjuncts, notes);
+
+        // Группируем сравнения с литералами по столбцу, сохраняя порядок первого вхождения
+        Map<String, List<Expression>> valuesByColumn = new LinkedHashMap<>();
+        Map<String, Column> columns = new LinkedHashMap<>();
+        Map<String, Integer> conditionCount = new LinkedHashMap<>();
+        for (Expression disjunct : disjuncts) {
+            Column column = comparedColumn(disjunct);
+            if (column != null) {
+                String key = column.getFullyQualifiedName();
+                columns.putIfAbsent(key, column);
+                valuesByColumn.computeIfAbsent(key, k -> new ArrayList<>()).addAll(literalValues(disjunct));
+                conditionCount.merge(key, 1, Integer::sum);
+            }
+        }
+
+        List<Expression> result = new ArrayList<>();
+        List<String> merged = new ArrayList<>();
+        for (Expression disjunct : disjuncts) {
+            Column column = comparedColumn(disjunct);
+            if (column == null || conditionCount.get(column.getFullyQualifiedName()) < 2) {
+                result.add(disjunct);
+                continue;
+            }
+            String key = column.getFullyQualifiedName();
+            if (merged.contains(key)) {
+                continue;
+            }
+            merged.add(key);
+            List<Expression> values = distinctValues(valuesByColumn.get(key));
+            result.add(new InExpression(columns.get(key), new ExpressionList(values)));
+            notes.add(RewriteNote.applied(ID, String.format(
+                    "Цепочка из %d условий OR по столбцу %s заменена на %s IN (...) со списком из %d значений",
+                    conditionCount.get(key), key, key, values.size())));
+        }
+        return RewriteSupport.or(result);
+    }
+
+    private void flattenOr(Expression expression, List<Expression> disjuncts, List<RewriteNote> notes) {
+        if (expression instanceof OrExpression or) {
+            flattenOr(or.getLeftExpression(), disjuncts, notes);
+            flattenOr(or.getRightExpression(), disjuncts, notes);
+        } else if (expression instanceof Parenthesis parenthesis
+                && parenthesis.getExpression() instanceof OrExpression) {
+            flattenOr(parenthesis.getExpression(), disjuncts, notes);
+        } else {
+            disjuncts.add(rewrite(expression, notes));
+        }
+    }
+
+    private Column comparedColumn(Expression expression) {
+        if (expression instanceof EqualsTo equalsTo
+                && equalsTo.getLeftExpression() instanceof Column column
+                && RewriteSupport.isLiteral(equalsTo.getRightExpression())) {
+            return column;
+        }
+        if (expression instanceof InExpression in && !in.isNot()
+                && in.getLeftExpression() instanceof Column column
+                && in.getRightItemsList() instanceof ExpressionList list
+                && list.getExpressions().stream().allMatch(RewriteSupport::isLiteral)) {
+            return column;
+        }
+        return null;
+    }
+
+    private List<Expression> literalValues(Expression expression) {
+        if (expression instanceof EqualsTo equalsTo) {
+            return List.of(equalsTo.getRightExpression());
+        }
+        return ((ExpressionList) ((InExpression) expression).getRightItemsList()).getExpressions();
+    }
+
+    private List<Expression> distinctValues(List<Expression> values) {
+        Map<String, Expression> unique = new LinkedHashMap<>();
+        values.forEach(value -> unique.putIfAbsent(value.toString(), value));
+        return new ArrayList<>(unique.values());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Distinct;
+import net.sf.jsqlparser.statement.select.GroupByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+/**
+ * Убирает DISTINCT, если все выражения GROUP BY выведены в SELECT: строки и так уникальны.
+ */
+@Component
+@Order(50)
+public class RedundantDistinctRule implements SqlRewriteRule {
+
+    public static final String ID = "redundant-distinct";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            if (isRedundant(plainSelect)) {
+                plainSelect.setDistinct(null);
+                notes.add(RewriteNote.applied(ID, "Удален DISTINCT: GROUP BY "
+                        + plainSelect.getGroupBy().getGroupByExpressionList()
+                        + " уже гарантирует уникальность строк, лишняя сортировка или хеширование не нужны"));
+            }
+        }
+        return notes;
+    }
+
+    private boolean isRedundant(PlainSelect plainSelect) {
+        Distinct distinct = plainSelect.getDistinct();
+        GroupByElement groupBy = plainSelect.getGroupBy();
+        if (distinct == null || groupBy == null
+                || (distinct.getOnSelectItems() != null && !distinct.getOnSelectItems().isEmpty())
+                || (groupBy.getGroupingSets() != null && !groupBy.getGroupingSets().isEmpty())
+                || groupBy.getGroupByExpressionList() == null
+                || groupBy.getGroupByExpressionList().getExpressions() == null
+                || groupBy.getGroupByExpressionList().getExpressions().isEmpty()) {
+            return false;
+        }
+
+        // Алиасы не учитываются: имя в GROUP BY PostgreSQL сначала ищет среди столбцов FROM,
+        // и в SELECT DISTINCT lower(name) AS name ... GROUP BY name группировка идет по исходному name
+        Set<String> selected = new HashSet<>();
+        for (SelectItem item : plainSelect.getSelectItems()) {
+            if (item instanceof SelectExpressionItem expressionItem) {
+                selected.add(expressionItem.getExpression().toString().toLowerCase());
+            }
+        }
+        for (Expression expression : groupBy.getGroupByExpressionList().getExpressions()) {
+            if (!selected.contains(expression.toString().toLowerCase())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.backend.service.rewrite;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сведения о схеме целевой БД для правил: столбцы NOT NULL (включая столбцы первичных ключей) и типы столбцов
+ * по таблицам. Без подключения контекст пустой, и правила, эквивалентность которых зависит от схемы, дают только подсказки.
+ */
+public class RewriteContext {
+
+    private static final RewriteContext EMPTY = new RewriteContext(Map.of());
+
+    // Имя таблицы в нижнем регистре → столбцы NOT NULL в нижнем регистре
+    private final Map<String, Set<String>> notNullColumns;
+    // Имя таблицы → столбец → тип в виде regtype (date, timestamp without time zone, text...)
+    private final Map<String, Map<String, String>> columnTypes;
+
+    public RewriteContext(Map<String, Set<String>> notNullColumns) {
+        this(notNullColumns, Map.of());
+    }
+
+    public RewriteContext(Map<String, Set<String>> notNullColumns, Map<String, Map<String, String>> columnTypes) {
+        this.notNullColumns = new HashMap<>();
+        notNullColumns.forEach((table, columns) -> this.notNullColumns.put(normalize(table),
+                Set.copyOf(columns.stream().map(RewriteContext::normalize).toList())));
+        this.columnTypes = new HashMap<>();
+        columnTypes.forEach((table, types) -> {
+            Map<String, String> normalized = new HashMap<>();
+            types.forEach((column, type) -> normalized.put(normalize(column), type.toLowerCase(Locale.ROOT)));
+            this.columnTypes.put(normalize(table), normalized);
+        });
+    }
+
+    public static RewriteContext empty() {
+        return EMPTY;
+    }
+
+    public boolean isNotNull(String table, String column) {
+        Set<String> columns = notNullColumns.get(normalize(table));
+        return columns != null && columns.contains(normalize(column));
+    }
+
+    /**
+     * Тип столбца или null, если таблица или столбец схеме не известны.
+     */
+    public String columnType(String table, String column) {
+        Map<String, String> types = columnTypes.get(normalize(table));
+        return types == null ? null : types.get(normalize(column));
+    }
+
+    private static String normalize(String name) {
+        return name.replace("\"", "").toLowerCase(Locale.ROOT);
+    }
+}
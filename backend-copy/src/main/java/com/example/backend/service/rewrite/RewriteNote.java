@@ -0,0 +1,28 @@
+package com.example.backend.service.rewrite;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Пояснение к срабатыванию правила. applied=false — только подсказка, запрос не изменен.
+ */
+@Getter
+@AllArgsConstructor
+public class RewriteNote {
+    private final String ruleId;
+    private final String description;
+    private final String risk;
+    private final boolean applied;
+
+    public static RewriteNote applied(String ruleId, String description) {
+        return new RewriteNote(ruleId, description, null, true);
+    }
+
+    public static RewriteNote applied(String ruleId, String description, String risk) {
+        return new RewriteNote(ruleId, description, risk, true);
+    }
+
+    public static RewriteNote hint(String ruleId, String description) {
+        return new RewriteNote(ruleId, description, null, false);
+    }
+}
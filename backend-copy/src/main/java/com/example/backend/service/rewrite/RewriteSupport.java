@@ -0,0 +1,274 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import net.sf.jsqlparser.expression.DateValue;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.LateralSubSelect;
+import net.sf.jsqlparser.statement.select.ParenthesisFromItem;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import net.sf.jsqlparser.statement.select.WithItem;
+
+/**
+ * Общие операции над деревом JSqlParser для правил переписывания и статического анализа.
+ */
+public final class RewriteSupport {
+
+    private RewriteSupport() {
+    }
+
+    /**
+     * Все PlainSelect запроса: основной, CTE, производные таблицы и подзапросы в выражениях.
+     */
+    public static List<PlainSelect> plainSelects(Statement statement) {
+        List<PlainSelect> result = new ArrayList<>();
+        if (statement instanceof Select select) {
+            if (select.getWithItemsList() != null) {
+                select.getWithItemsList().forEach(withItem -> collectBody(withItem, result));
+            }
+            collectBody(select.getSelectBody(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Все выражения условий PlainSelect: WHERE, HAVING и ON у соединений.
+     */
+    static void rewriteConditions(PlainSelect plainSelect, UnaryOperator<Expression> rewriter) {
+        if (plainSelect.getWhere() != null) {
+            plainSelect.setWhere(rewriter.apply(plainSelect.getWhere()));
+        }
+        if (plainSelect.getHaving() != null) {
+            plainSelect.setHaving(rewriter.apply(plainSelect.getHaving()));
+        }
+        if (plainSelect.getJoins() != null) {
+            for (Join join : plainSelect.getJoins()) {
+                if (join.getOnExpressions() != null && !join.getOnExpressions().isEmpty()) {
+                    List<Expression> rewritten = new ArrayList<>();
+                    join.getOnExpressions().forEach(expression -> rewritten.add(rewriter.apply(expression)));
+                    join.setOnExpressions(rewritten);
+                }
+            }
+        }
+    }
+
+    /**
+     * Обходит логическую структуру условия (AND, OR, NOT, скобки), не заходя в подзапросы,
+     * и заменяет листья результатом leafRewriter.
+     */
+    static Expression rewriteLeaves(Expression expression, UnaryOperator<Expression> leafRewriter) {
+        if (expression instanceof AndExpression and) {
+            and.setLeftExpression(rewriteLeaves(and.getLeftExpression(), leafRewriter));
+            and.setRightExpression(rewriteLeaves(and.getRightExpression(), leafRewriter));
+            return and;
+        }
+        if (expression instanceof OrExpression or) {
+            or.setLeftExpression(rewriteLeaves(or.getLeftExpression(), leafRewriter));
+            or.setRightExpression(rewriteLeaves(or.getRightExpression(), leafRewriter));
+            return or;
+        }
+        if (expression instanceof Parenthesis parenthesis) {
+            parenthesis.setExpression(rewriteLeaves(parenthesis.getExpression(), leafRewriter));
+            return parenthesis;
+        }
+        if (expression instanceof NotExpression not) {
+            not.setExpression(rewriteLeaves(not.getExpression(), leafRewriter));
+            return not;
+        }
+        return leafRewriter.apply(expression);
+    }
+
+    public static List<Expression> conjuncts(Expression expression) {
+        List<Expression> result = new ArrayList<>();
+        if (expression instanceof AndExpression and) {
+            result.addAll(conjuncts(and.getLeftExpression()));
+            result.addAll(conjuncts(and.getRightExpression()));
+        } else if (expression != null) {
+            result.add(expression);
+        }
+        return result;
+    }
+
+    static Expression and(List<Expression> expressions) {
+        Expression result = null;
+        for (Expression expression : expressions) {
+            Expression operand = expression instanceof OrExpression ? new Parenthesis(expression) : expression;
+            result = result == null ? operand : new AndExpression(result, operand);
+        }
+        return result;
+    }
+
+    static Expression or(List<Expression> expressions) {
+        Expression result = null;
+        for (Expression expression : expressions) {
+            result = result == null ? expression : new OrExpression(result, expression);
+        }
+        return result;
+    }
+
+    public static boolean isLiteral(Expression expression) {
+        return expression instanceof LongValue
+                || expression instanceof DoubleValue
+                || expression instanceof StringValue
+                || expression instanceof DateValue
+                || expression instanceof TimestampValue
+                || expression instanceof JdbcParameter
+                || expression instanceof JdbcNamedParameter
+                || expression instanceof SignedExpression signed && isLiteral(signed.getExpression());
+    }
+
+    /**
+     * Имя, по которому на источник ссылаются в запросе: алиас или имя таблицы.
+     */
+    public static String qualifier(FromItem fromItem) {
+        if (fromItem == null) {
+            return null;
+        }
+        if (fromItem.getAlias() != null) {
+            return fromItem.getAlias().getName();
+        }
+        return fromItem instanceof Table table ? table.getName() : null;
+    }
+
+    public static List<FromItem> fromItems(PlainSelect plainSelect) {
+        List<FromItem> result = new ArrayList<>();
+        if (plainSelect.getFromItem() != null) {
+            result.add(plainSelect.getFromItem());
+        }
+        if (plainSelect.getJoins() != null) {
+            plainSelect.getJoins().forEach(join -> result.add(join.getRightItem()));
+        }
+        return result;
+    }
+
+    static boolean isSimpleSource(PlainSelect plainSelect) {
+        return plainSelect.getFromItem() != null
+                && (plainSelect.getJoins() == null || plainSelect.getJoins().isEmpty());
+    }
+
+    public static List<PlainSelect> plainSelects(SubSelect subSelect) {
+        List<PlainSelect> result = new ArrayList<>();
+        collectSubSelect(subSelect, result);
+        return result;
+    }
+
+    /**
+     * Выражения PlainSelect, в которых могут быть ссылки на столбцы: SELECT, WHERE, ON, GROUP BY, HAVING, ORDER BY.
+     * Подзапросы внутри выражений не разворачиваются.
+     */
+    public static List<Expression> expressions(PlainSelect plainSelect) {
+        List<Expression> result = new ArrayList<>();
+        for (SelectItem item : plainSelect.getSelectItems()) {
+            if (item instanceof SelectExpressionItem expressionItem) {
+                result.add(expressionItem.getExpression());
+            }
+        }
+        if (plainSelect.getJoins() != null) {
+            plainSelect.getJoins().stream()
+                    .filter(join -> join.getOnExpressions() != null)
+                    .forEach(join -> result.addAll(join.getOnExpressions()));
+        }
+        result.add(plainSelect.getWhere());
+        if (plainSelect.getGroupBy() != null && plainSelect.getGroupBy().getGroupByExpressionList() != null) {
+            result.addAll(plainSelect.getGroupBy().getGroupByExpressionList().getExpressions());
+        }
+        result.add(plainSelect.getHaving());
+        if (plainSelect.getOrderByElements() != null) {
+            plainSelect.getOrderByElements().forEach(element -> result.add(element.getExpression()));
+        }
+        result.removeIf(expression -> expression == null);
+        return result;
+    }
+
+    /**
+     * Подзапрос справа от IN: JSqlParser кладет его либо в список значений, либо в правое выражение.
+     */
+    static SubSelect inSubSelect(InExpression in) {
+        if (in.getRightItemsList() instanceof SubSelect subSelect) {
+            return subSelect;
+        }
+        return in.getRightExpression() instanceof SubSelect subSelect ? subSelect : null;
+    }
+
+    static SelectExpressionItem selectOne() {
+        return new SelectExpressionItem(new LongValue(1));
+    }
+
+    private static void collectBody(SelectBody body, List<PlainSelect> result) {
+        if (body instanceof PlainSelect plainSelect) {
+            result.add(plainSelect);
+            fromItems(plainSelect).forEach(fromItem -> collectFromItem(fromItem, result));
+            if (plainSelect.getJoins() != null) {
+                plainSelect.getJoins().stream()
+                        .filter(join -> join.getOnExpressions() != null)
+                        .flatMap(join -> join.getOnExpressions().stream())
+                        .forEach(expression -> collectExpression(expression, result));
+            }
+            for (SelectItem item : plainSelect.getSelectItems()) {
+                if (item instanceof SelectExpressionItem expressionItem) {
+                    collectExpression(expressionItem.getExpression(), result);
+                }
+            }
+            collectExpression(plainSelect.getWhere(), result);
+            collectExpression(plainSelect.getHaving(), result);
+        } else if (body instanceof SetOperationList setOperationList) {
+            setOperationList.getSelects().forEach(select -> collectBody(select, result));
+        } else if (body instanceof WithItem withItem && withItem.getSubSelect() != null) {
+            collectSubSelect(withItem.getSubSelect(), result);
+        }
+    }
+
+    private static void collectFromItem(FromItem fromItem, List<PlainSelect> result) {
+        if (fromItem instanceof SubSelect subSelect) {
+            collectSubSelect(subSelect, result);
+        } else if (fromItem instanceof LateralSubSelect lateral && lateral.getSubSelect() != null) {
+            collectSubSelect(lateral.getSubSelect(), result);
+        } else if (fromItem instanceof ParenthesisFromItem parenthesis) {
+            collectFromItem(parenthesis.getFromItem(), result);
+        }
+    }
+
+    private static void collectSubSelect(SubSelect subSelect, List<PlainSelect> result) {
+        if (subSelect.getWithItemsList() != null) {
+            subSelect.getWithItemsList().forEach(withItem -> collectBody(withItem, result));
+        }
+        collectBody(subSelect.getSelectBody(), result);
+    }
+
+    private static void collectExpression(Expression expression, List<PlainSelect> result) {
+        if (expression == null) {
+            return;
+        }
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(SubSelect subSelect) {
+                collectSubSelect(subSelect, result);
+            }
+        });
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.backend.service.rewrite;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExtractExpression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+/**
+ * Заменяет функции над столбцом в равенствах на диапазон по самому столбцу,
+ * чтобы условие могло использовать индекс:
+ * date(col) = '2024-01-01' и col::date = '2024-01-01' → col >= '2024-01-01' AND col < '2024-01-02',
+ * EXTRACT(YEAR FROM col) = 2024 → col >= '2024-01-01' AND col < '2025-01-01'.
+ * Диапазон эквивалентен исходному условию только для столбцов типа date и timestamp: у текстового столбца
+ * строки сравниваются лексикографически. Если тип по схеме не подтвержден, остается подсказка.
+ */
+@Component
+@Order(40)
+public class SargablePredicateRule implements SqlRewriteRule {
+
+    public static final String ID = "sargable-predicate";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement) {
+        return apply(statement, RewriteContext.empty());
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement, RewriteContext context) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            RewriteSupport.rewriteConditions(plainSelect, condition -> RewriteSupport.rewriteLeaves(condition,
+                    leaf -> rewrite(plainSelect, leaf, context, notes)));
+        }
+        return notes;
+    }
+
+    private Expression rewrite(PlainSelect source, Expression leaf, RewriteContext context, List<RewriteNote> notes) {
+        if (!(leaf instanceof EqualsTo equalsTo)) {
+            return leaf;
+        }
+        Expression left = equalsTo.getLeftExpression();
+        Expression right = equalsTo.getRightExpression();
+        Range range = toRange(left, right);
+        if (range == null) {
+            range = toRange(right, left);
+        }
+        if (range == null) {
+            return leaf;
+        }
+        String type = columnType(source, range.column(), context);
+        if (type == null) {
+            notes.add(RewriteNote.hint(ID, "Условие " + leaf + " можно заменить на " + range.condition()
+                    + ", если " + range.column() + " имеет тип date или timestamp: диапазон по столбцу "
+                    + "использует индекс, функция над столбцом — нет"));
+            return leaf;
+        }
+        if (!isDateTime(type)) {
+            return leaf;
+        }
+        notes.add(RewriteNote.applied(ID, "Условие " + leaf + " заменено на " + range
+                + ": функция над столбцом не дает использовать индекс, а диапазон по столбцу — дает"));
+        return new Parenthesis(range.condition());
+    }
+
+    private Range toRange(Expression wrapped, Expression value) {
+        Column column = dateArgument(wrapped);
+        if (column != null) {
+            LocalDate day = parseDate(value);
+            return day == null ? null : new Range(column, between(column, day, day.plusDays(1)));
+        }
+        if (wrapped instanceof ExtractExpression extract
+                && "year".equalsIgnoreCase(extract.getName())
+                && extract.getExpression() instanceof Column yearColumn
+                && value instanceof LongValue year) {
+            LocalDate start = LocalDate.of((int) year.getValue(), 1, 1);
+            return new Range(yearColumn, between(yearColumn, start, start.plusYears(1)));
+        }
+        return null;
+    }
+
+    /**
+     * Тип столбца по схеме. Таблица определяется по квалификатору столбца, а у неквалифицированного —
+     * по единственному источнику FROM; подзапросы и CTE схеме не известны.
+     */
+    private String columnType(PlainSelect source, Column column, RewriteContext context) {
+        String qualifier = column.getTable() == null ? null : column.getTable().getName();
+        FromItem fromItem;
+        if (qualifier != null) {
+            fromItem = RewriteSupport.fromItems(source).stream()
+                    .filter(item -> qualifier.equalsIgnoreCase(RewriteSupport.qualifier(item)))
+                    .findFirst()
+                    .orElse(null);
+        } else {
+            fromItem = RewriteSupport.isSimpleSource(source) ? source.getFromItem() : null;
+        }
+        return fromItem instanceof Table table
+                ? context.columnType(table.getFullyQualifiedName(), column.getColumnName())
+                : null;
+    }
+
+    private boolean isDateTime(String type) {
+        return type.equals("date") || type.startsWith("timestamp");
+    }
+
+    private Column dateArgument(Expression expression) {
+        if (expression instanceof Function function
+                && "date".equalsIgnoreCase(function.getName())
+                && function.getParameters() != null
+                && function.getParameters().getExpressions().size() == 1
+                && function.getParameters().getExpressions().get(0) instanceof Column column) {
+            return column;
+        }
+        if (expression instanceof CastExpression cast
+                && cast.getLeftExpression() instanceof Column column
+                && cast.getType() != null
+                && "date".equalsIgnoreCase(cast.getType().getDataType())) {
+            return column;
+        }
+        return null;
+    }
+
+    private LocalDate parseDate(Expression value) {
+        if (!(value instanceof StringValue stringValue)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(stringValue.getValue());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Expression between(Column column, LocalDate from, LocalDate to) {
+        return new AndExpression(
+                new GreaterThanEquals().withLeftExpression(column)
+                        .withRightExpression(new StringValue(from.toString())),
+                new MinorThan().withLeftExpression(column)
+                        .withRightExpression(new StringValue(to.toString())));
+    }
+
+    private record Range(Column column, Expression condition) {
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SubSelect;
+
+/**
+ * Убирает SELECT * из подзапросов:
+ * в EXISTS список столбцов заменяется на 1, в производных таблицах — на столбцы,
+ * которые реально использует внешний запрос. Узкая проекция позволяет index-only scan
+ * и уменьшает ширину строк в hash join и сортировках.
+ */
+@Component
+@Order(10)
+public class SelectStarInSubqueryRule implements SqlRewriteRule {
+
+    public static final String ID = "select-star-in-subquery";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            RewriteSupport.rewriteConditions(plainSelect,
+                    condition -> RewriteSupport.rewriteLeaves(condition, leaf -> rewriteExists(leaf, notes)));
+            for (FromItem fromItem : RewriteSupport.fromItems(plainSelect)) {
+                if (fromItem instanceof SubSelect subSelect) {
+                    narrowDerivedTable(plainSelect, subSelect, notes);
+                }
+            }
+        }
+        return notes;
+    }
+
+    private Expression rewriteExists(Expression leaf, List<RewriteNote> notes) {
+        if (leaf instanceof ExistsExpression exists
+                && exists.getRightExpression() instanceof SubSelect subSelect
+                && subSelect.getSelectBody() instanceof PlainSelect inner
+                && isSelectStar(inner)) {
+            inner.getSelectItems().set(0, RewriteSupport.selectOne());
+            notes.add(RewriteNote.applied(ID,
+                    "В подзапросе EXISTS SELECT * заменен на SELECT 1: важен только факт наличия строки"));
+        }
+        return leaf;
+    }
+
+    private void narrowDerivedTable(PlainSelect outer, SubSelect subSelect, List<RewriteNote> notes) {
+        if (subSelect.getAlias() == null
+                || !(subSelect.getSelectBody() instanceof PlainSelect inner)
+                || !isSelectStar(inner)
+                || !RewriteSupport.isSimpleSource(inner)
+                || inner.getDistinct() != null) {
+            return;
+        }
+        List<String> columns = referencedColumns(outer, subSelect.getAlias().getName());
+        if (columns == null || columns.isEmpty()) {
+            return;
+        }
+        List<SelectItem> items = new ArrayList<>();
+        columns.forEach(column -> items.add(new SelectExpressionItem(new Column(column))));
+        inner.setSelectItems(items);
+        notes.add(RewriteNote.applied(ID, "В производной таблице " + subSelect.getAlias().getName()
+                + " SELECT * заменен на столбцы, которые использует внешний запрос: " + String.join(", ", columns)));
+    }
+
+    /**
+     * Столбцы производной таблицы, на которые ссылается внешний запрос (включая его подзапросы),
+     * или null, если набор нельзя определить надежно.
+     */
+    private List<String> referencedColumns(PlainSelect outer, String alias) {
+        boolean singleSource = RewriteSupport.isSimpleSource(outer);
+        Set<String> outputAliases = new HashSet<>();
+        for (SelectItem item : outer.getSelectItems()) {
+            if (item instanceof AllColumns || referencesAllColumns(item, alias)) {
+                return null;
+            }
+            if (item instanceof SelectExpressionItem expressionItem && expressionItem.getAlias() != null) {
+                outputAliases.add(expressionItem.getAlias().getName().toLowerCase());
+            }
+        }
+        if (outer.getJoins() != null && outer.getJoins().stream().anyMatch(join -> join.isNatural()
+                || (join.getUsingColumns() != null && !join.getUsingColumns().isEmpty()))) {
+            return null;
+        }
+
+        Map<String, String> columns = new LinkedHashMap<>();
+        List<SubSelect> nested = new ArrayList<>();
+        boolean[] unsafe = {false};
+        ExpressionVisitorAdapter outerVisitor = new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                String table = column.getTable() != null ? column.getTable().getName() : null;
+                String name = column.getColumnName();
+                if (table == null) {
+                    if (isBooleanLiteral(name)) {
+                        return;
+                    }
+                    // Вне ORDER BY PostgreSQL ищет имя среди входных столбцов, а не алиасов SELECT:
+                    // совпадение с алиасом делает ссылку неоднозначной для переписывания
+                    if (outputAliases.contains(name.toLowerCase())) {
+                        unsafe[0] = true;
+                        return;
+                    }
+                    if (!singleSource) {
+                        unsafe[0] = true;
+                        return;
+                    }
+                } else if (!alias.equalsIgnoreCase(table)) {
+                    return;
+                }
+                columns.putIfAbsent(name.toLowerCase(), name);
+            }
+
+            @Override
+            public void visit(SubSelect subSelect) {
+                nested.add(subSelect);
+            }
+        };
+        // Голое имя в ORDER BY ссылается на алиас SELECT, а не на столбец производной таблицы
+        Set<Expression> outputReferences = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (outer.getOrderByElements() != null) {
+            outer.getOrderByElements().stream()
+                    .map(OrderByElement::getExpression)
+                    .filter(expression -> expression instanceof Column column
+                            && (column.getTable() == null || column.getTable().getName() == null)
+                            && outputAliases.contains(column.getColumnName().toLowerCase()))
+                    .forEach(outputReferences::add);
+        }
+        RewriteSupport.expressions(outer).stream()
+                .filter(expression -> !outputReferences.contains(expression))
+                .forEach(expression -> expression.accept(outerVisitor));
+
+        // Во вложенных подзапросах учитываем только явные ссылки alias.column
+        ExpressionVisitorAdapter nestedVisitor = new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                if (column.getTable() != null && alias.equalsIgnoreCase(column.getTable().getName())) {
+                    columns.putIfAbsent(column.getColumnName().toLowerCase(), column.getColumnName());
+                }
+            }
+
+            @Override
+            public void visit(SubSelect subSelect) {
+                // Вложенные подзапросы уже перечислены в plainSelects
+            }
+        };
+        for (SubSelect subSelect : nested) {
+            for (PlainSelect plainSelect : RewriteSupport.plainSelects(subSelect)) {
+                boolean shadowed = RewriteSupport.fromItems(plainSelect).stream()
+                        .anyMatch(fromItem -> alias.equalsIgnoreCase(RewriteSupport.qualifier(fromItem)));
+                if (shadowed || plainSelect.getSelectItems().stream().anyMatch(item -> referencesAllColumns(item, alias))) {
+                    return null;
+                }
+                RewriteSupport.expressions(plainSelect).forEach(expression -> expression.accept(nestedVisitor));
+            }
+        }
+        return unsafe[0] ? null : new ArrayList<>(columns.values());
+    }
+
+    private boolean referencesAllColumns(SelectItem item, String alias) {
+        return item instanceof AllTableColumns tableColumns
+                && alias.equalsIgnoreCase(tableColumns.getTable().getName());
+    }
+
+    private boolean isSelectStar(PlainSelect plainSelect) {
+        return plainSelect.getSelectItems().size() == 1 && plainSelect.getSelectItems().get(0) instanceof AllColumns;
+    }
+
+    private boolean isBooleanLiteral(String name) {
+        return "true".equalsIgnoreCase(name) || "false".equalsIgnoreCase(name);
+    }
+}
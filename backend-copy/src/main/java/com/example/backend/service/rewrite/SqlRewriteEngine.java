@@ -0,0 +1,62 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.example.backend.exception.ApiException;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+
+/**
+ * Прогоняет запрос через все зарегистрированные {@link SqlRewriteRule} в порядке @Order.
+ * Работает только с деревом в памяти, без обращения к БД и LLM.
+ */
+@Slf4j
+@Component
+public class SqlRewriteEngine {
+
+    private final List<SqlRewriteRule> rules;
+
+    public SqlRewriteEngine(List<SqlRewriteRule> rules) {
+        this.rules = List.copyOf(rules);
+        log.info("Registered SQL rewrite rules: {}",
+                this.rules.stream().map(SqlRewriteRule::getId).collect(Collectors.joining(", ")));
+    }
+
+    public SqlRewriteResult rewrite(String sql) {
+        try {
+            return rewrite(sql, CCJSqlParserUtil.parse(sql));
+        } catch (JSQLParserException e) {
+            throw new ApiException("Invalid SQL query: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public SqlRewriteResult rewrite(String originalSql, Statement statement) {
+        return rewrite(originalSql, statement, RewriteContext.empty());
+    }
+
+    /**
+     * Применяет правила к уже разобранному запросу. Дерево statement изменяется на месте.
+     */
+    public SqlRewriteResult rewrite(String originalSql, Statement statement, RewriteContext context) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (SqlRewriteRule rule : rules) {
+            try {
+                notes.addAll(rule.apply(statement, context));
+            } catch (RuntimeException e) {
+                log.warn("SQL rewrite rule {} failed: {}", rule.getId(), e.getMessage());
+            }
+        }
+        boolean changed = notes.stream().anyMatch(RewriteNote::isApplied);
+        String rewrittenSql = changed ? statement.toString() : originalSql;
+        log.debug("SQL rewrite finished: {} notes, changed={}", notes.size(), changed);
+        return new SqlRewriteResult(originalSql, rewrittenSql, notes);
+    }
+}
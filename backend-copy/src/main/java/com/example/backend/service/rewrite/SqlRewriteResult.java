@@ -0,0 +1,18 @@
+package com.example.backend.service.rewrite;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SqlRewriteResult {
+    private final String originalSql;
+    private final String rewrittenSql;
+    private final List<RewriteNote> notes;
+
+    public boolean isChanged() {
+        return notes.stream().anyMatch(RewriteNote::isApplied);
+    }
+}
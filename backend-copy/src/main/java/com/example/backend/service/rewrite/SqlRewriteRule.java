@@ -0,0 +1,24 @@
+package com.example.backend.service.rewrite;
+
+import java.util.List;
+
+import net.sf.jsqlparser.statement.Statement;
+
+/**
+ * Детерминированное правило переписывания SQL.
+ * Правило меняет дерево на месте и возвращает пояснение по каждому изменению или подсказке.
+ * Новое правило достаточно объявить Spring-компонентом — движок подхватит его сам.
+ */
+public interface SqlRewriteRule {
+
+    String getId();
+
+    List<RewriteNote> apply(Statement statement);
+
+    /**
+     * Вариант со сведениями о схеме; правила, которым схема не нужна, его не переопределяют.
+     */
+    default List<RewriteNote> apply(Statement statement, RewriteContext context) {
+        return apply(statement);
+    }
+}
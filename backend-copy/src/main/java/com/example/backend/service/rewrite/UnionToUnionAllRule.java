@@ -0,0 +1,80 @@
+package com.example.backend.service.rewrite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import net.sf.jsqlparser.statement.select.UnionOp;
+
+/**
+ * UNION → UNION ALL там, где дубликаты не влияют на результат: в подзапросах IN и EXISTS.
+ * Для остальных UNION оставляет подсказку: без знания данных нельзя доказать, что ветки не пересекаются.
+ */
+@Component
+@Order(60)
+public class UnionToUnionAllRule implements SqlRewriteRule {
+
+    public static final String ID = "union-to-union-all";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public List<RewriteNote> apply(Statement statement) {
+        List<RewriteNote> notes = new ArrayList<>();
+        for (PlainSelect plainSelect : RewriteSupport.plainSelects(statement)) {
+            RewriteSupport.rewriteConditions(plainSelect,
+                    condition -> RewriteSupport.rewriteLeaves(condition, leaf -> rewrite(leaf, notes)));
+        }
+        if (statement instanceof Select select
+                && select.getSelectBody() instanceof SetOperationList setOperationList
+                && hasDistinctUnion(setOperationList)) {
+            notes.add(RewriteNote.hint(ID, "UNION удаляет дубликаты сортировкой или хешированием всего результата. "
+                    + "Если ветки заведомо не пересекаются, замените его на UNION ALL"));
+        }
+        return notes;
+    }
+
+    private Expression rewrite(Expression leaf, List<RewriteNote> notes) {
+        SubSelect subSelect = null;
+        if (leaf instanceof InExpression in && !in.isNot()) {
+            subSelect = RewriteSupport.inSubSelect(in);
+        } else if (leaf instanceof ExistsExpression exists
+                && exists.getRightExpression() instanceof SubSelect existsSubSelect) {
+            subSelect = existsSubSelect;
+        }
+        if (subSelect != null
+                && subSelect.getSelectBody() instanceof SetOperationList setOperationList
+                && hasDistinctUnion(setOperationList)
+                && setOperationList.getOperations().stream().allMatch(UnionOp.class::isInstance)
+                && setOperationList.getLimit() == null
+                && setOperationList.getOffset() == null
+                && setOperationList.getFetch() == null) {
+            setOperationList.getOperations().forEach(operation -> {
+                UnionOp union = (UnionOp) operation;
+                union.setAll(true);
+                union.setDistinct(false);
+            });
+            notes.add(RewriteNote.applied(ID, "UNION внутри " + (leaf instanceof ExistsExpression ? "EXISTS" : "IN")
+                    + " заменен на UNION ALL: для проверки вхождения дубликаты не важны, а их удаление стоит сортировки"));
+        }
+        return leaf;
+    }
+
+    private boolean hasDistinctUnion(SetOperationList setOperationList) {
+        return setOperationList.getOperations().stream()
+                .anyMatch(operation -> operation instanceof UnionOp union && !union.isAll());
+    }
+}
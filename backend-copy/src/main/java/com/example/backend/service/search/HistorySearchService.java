@@ -0,0 +1,169 @@
+package com.example.backend.service.search;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.dto.SearchHitDto;
+import com.example.backend.model.dto.SearchPageDto;
+import com.example.backend.service.storage.BodyCodec;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Поиск по сообщениям чатов и истории запросов пользователя (V12): слова — по tsvector, подстроки
+ * идентификаторов от трех символов — по триграммам. Длинные тела ищутся через content_blobs.
+ * Результаты упорядочены по рангу, страницы — по курсору, без OFFSET.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HistorySearchService {
+
+    static final int MESSAGE = 0;
+    static final int QUERY = 1;
+
+    private static final int MIN_SUBSTRING_CHARS = 3;
+    private static final int MAX_QUERY_CHARS = 200;
+    private static final int SNIPPET_CHARS = 300;
+    // Совпадение подстроки поднимает результат выше совпавших только по словам
+    private static final String SUBSTRING_BONUS = "0.1";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Transactional(readOnly = true)
+    public SearchPageDto search(Long userId, String query, String cursor, int limit) {
+        if (limit < 1 || limit > 100) {
+            throw new ApiException("Limit must be between 1 and 100", HttpStatus.BAD_REQUEST);
+        }
+        String text = query == null ? "" : query.strip();
+        if (text.isEmpty() || text.length() > MAX_QUERY_CHARS) {
+            throw new ApiException("Search query must be 1-" + MAX_QUERY_CHARS + " characters",
+                    HttpStatus.BAD_REQUEST);
+        }
+        boolean substring = text.length() >= MIN_SUBSTRING_CHARS;
+        SearchCursor after = cursor == null || cursor.isBlank() ? null : SearchCursor.decode(cursor);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("query", text)
+                .addValue("pattern", "%" + escapeLike(text) + "%")
+                // Лишняя строка показывает, есть ли следующая страница
+                .addValue("limit", limit + 1);
+        if (after != null) {
+            params.addValue("afterRank", after.rank())
+                    .addValue("afterKind", after.kind())
+                    .addValue("afterId", after.id());
+        }
+        List<Hit> hits = namedParameterJdbcTemplate.query(sql(substring, after != null), params, this::mapHit);
+
+        boolean hasMore = hits.size() > limit;
+        List<Hit> page = hasMore ? hits.subList(0, limit) : hits;
+        Hit last = page.isEmpty() ? null : page.get(page.size() - 1);
+        log.debug("Search for user {} returned {} hits, more: {}", userId, page.size(), hasMore);
+        return SearchPageDto.builder()
+                .hits(page.stream().map(Hit::dto).toList())
+                .nextCursor(hasMore ? new SearchCursor(last.dto().getRank(), last.kind(), last.dto().getId()).encode()
+                        : null)
+                .build();
+    }
+
+    private record Hit(int kind, SearchHitDto dto) {
+    }
+
+    /**
+     * Каждая ветка проверяется своим GIN-индексом, совпадения одной строки из нескольких веток
+     * схлопываются с максимальным рангом. Фрагменты и чат запроса считаются только для строк страницы.
+     */
+    static String sql(boolean substring, boolean afterCursor) {
+        String messageSubstring = substring ? " OR m.content ILIKE :pattern" : "";
+        String querySubstring = substring ? " OR sq.original_query ILIKE :pattern" : "";
+        String messageBonus = substring
+                ? " + CASE WHEN m.content ILIKE :pattern THEN " + SUBSTRING_BONUS + " ELSE 0 END" : "";
+        String queryBonus = substring
+                ? " + CASE WHEN sq.original_query ILIKE :pattern THEN " + SUBSTRING_BONUS + " ELSE 0 END" : "";
+        String keyset = afterCursor
+                ? " WHERE rank < :afterRank OR (rank = :afterRank AND (kind > :afterKind "
+                        + "OR (kind = :afterKind AND id < :afterId)))"
+                : "";
+        return """
+                WITH q AS (SELECT websearch_to_tsquery('simple', :query) AS tsq),
+                raw AS (
+                    SELECT %1$d AS kind, m.id, m.created_at, m.chat_id, CAST(NULL AS BIGINT) AS blob_id,
+                           CAST(ts_rank_cd(m.search_vector, q.tsq) AS DOUBLE PRECISION)%3$s AS rank
+                    FROM q, messages m
+                    WHERE m.chat_id IN (SELECT c.id FROM chats c WHERE c.user_id = :userId)
+                      AND (m.search_vector @@ q.tsq%5$s)
+                    UNION ALL
+                    SELECT %1$d, m.id, m.created_at, m.chat_id, b.id,
+                           CAST(ts_rank_cd(b.search_vector, q.tsq) AS DOUBLE PRECISION)
+                    FROM q, content_blobs b
+                    JOIN messages m ON m.content_blob_id = b.id
+                    WHERE b.search_vector @@ q.tsq
+                      AND m.chat_id IN (SELECT c.id FROM chats c WHERE c.user_id = :userId)
+                    UNION ALL
+                    SELECT %2$d, sq.id, sq.created_at, NULL, NULL,
+                           CAST(ts_rank_cd(sq.search_vector, q.tsq) AS DOUBLE PRECISION)%4$s
+                    FROM q, sql_queries sq
+                    WHERE sq.user_id = :userId AND (sq.search_vector @@ q.tsq%6$s)
+                    UNION ALL
+                    SELECT %2$d, sq.id, sq.created_at, NULL, b.id,
+                           CAST(ts_rank_cd(b.search_vector, q.tsq) AS DOUBLE PRECISION)
+                    FROM q, content_blobs b
+                    JOIN sql_queries sq ON sq.optimized_blob_id = b.id
+                    WHERE b.search_vector @@ q.tsq AND sq.user_id = :userId
+                ),
+                hits AS (
+                    SELECT kind, id, created_at, max(chat_id) AS chat_id, max(blob_id) AS blob_id, max(rank) AS rank
+                    FROM raw
+                    GROUP BY kind, id, created_at
+                )
+                SELECT h.kind, h.id, h.created_at, h.rank, coalesce(h.chat_id, qm.chat_id) AS chat_id,
+                       ts_headline('simple', CASE WHEN h.kind = %1$d THEN m.content ELSE sq.original_query END, q.tsq,
+                                   'MaxFragments=2, MinWords=5, MaxWords=20') AS snippet,
+                       b.codec AS blob_codec, b.original_length AS blob_length, b.data AS blob_data
+                FROM (SELECT * FROM hits%7$s ORDER BY rank DESC, kind, id DESC LIMIT :limit) h
+                CROSS JOIN q
+                LEFT JOIN messages m ON h.kind = %1$d AND m.id = h.id AND m.created_at = h.created_at
+                LEFT JOIN sql_queries sq ON h.kind = %2$d AND sq.id = h.id AND sq.created_at = h.created_at
+                LEFT JOIN messages qm ON h.kind = %2$d AND qm.id = sq.message_id AND qm.created_at <= sq.created_at
+                LEFT JOIN content_blobs b ON b.id = h.blob_id
+                ORDER BY h.rank DESC, h.kind, h.id DESC
+                """.formatted(MESSAGE, QUERY, messageBonus, queryBonus, messageSubstring, querySubstring, keyset);
+    }
+
+    private Hit mapHit(ResultSet resultSet, int rowNum) throws SQLException {
+        int kind = resultSet.getInt("kind");
+        String snippet = resultSet.getString("snippet");
+        byte[] blob = resultSet.getBytes("blob_data");
+        // Тело сообщения хранится в блоке; у запроса фрагмент берется из исходного текста, если он есть
+        if (blob != null && (kind == MESSAGE || snippet == null)) {
+            snippet = abbreviate(BodyCodec.decode(resultSet.getString("blob_codec"), blob,
+                    resultSet.getInt("blob_length")));
+        }
+        return new Hit(kind, SearchHitDto.builder()
+                .type(kind == MESSAGE ? "MESSAGE" : "QUERY")
+                .id(resultSet.getLong("id"))
+                .chatId(resultSet.getObject("chat_id", Long.class))
+                .snippet(snippet)
+                .rank(resultSet.getDouble("rank"))
+                .createdAt(resultSet.getTimestamp("created_at").toLocalDateTime())
+                .build());
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= SNIPPET_CHARS ? text : text.substring(0, SNIPPET_CHARS) + "…";
+    }
+
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.backend.service.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.http.HttpStatus;
+
+import com.example.backend.exception.ApiException;
+
+/**
+ * Позиция последнего результата страницы в порядке (rank DESC, kind, id DESC). Ранг передается
+ * без округления: следующая страница сравнивает его на равенство с тем же значением из SQL.
+ */
+record SearchCursor(double rank, int kind, long id) {
+
+    String encode() {
+        String value = rank + ":" + kind + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SearchCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected 3 parts, got " + parts.length);
+            }
+            return new SearchCursor(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException("Invalid search cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
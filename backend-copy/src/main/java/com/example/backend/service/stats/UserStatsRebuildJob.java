@@ -0,0 +1,142 @@
+package com.example.backend.service.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Пересчет статистики пользователей из истории sql_queries: исправляет расхождения приращений
+ * (например, после ручных правок или удаления чатов). Пользователи делятся на диапазоны id,
+ * диапазоны считаются параллельно, каждый в своей транзакции.
+ * Секции, удаленные по сроку хранения, в пересчет не попадают.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.rebuild.enabled", havingValue = "true", matchIfMissing = true)
+public class UserStatsRebuildJob {
+
+    // Условия как в V11: измерены оба времени
+    private static final String MEASURED = "q.original_execution_time_ms > 0 AND q.execution_time_ms > 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.rebuild.chunk-size:500}")
+    private int chunkSize;
+
+    // Каждый поток держит соединение пула на время пересчета диапазона
+    @Value("${stats.rebuild.parallelism:2}")
+    private int parallelism;
+
+    @Value("${stats.top-queries:10}")
+    private int topQueries;
+
+    record Chunk(long fromId, long toId) {
+    }
+
+    @Scheduled(cron = "${stats.rebuild.cron:0 0 5 * * SUN}")
+    public void rebuild() {
+        Long maxUserId = jdbcTemplate.queryForObject("SELECT max(id) FROM users", Long.class);
+        if (maxUserId == null) {
+            return;
+        }
+        List<Chunk> chunks = chunks(maxUserId, chunkSize);
+        long started = System.currentTimeMillis();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            CompletableFuture.allOf(chunks.stream()
+                    .map(chunk -> CompletableFuture.runAsync(() -> {
+                        try {
+                            rebuild(chunk);
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                            log.error("Stats rebuild failed for users {}..{}: {}", chunk.fromId(), chunk.toId(),
+                                    e.getMessage(), e);
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+        log.info("Rebuilt user stats in {} chunks ({} failed) in {} ms", chunks.size(), failed.get(),
+                System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Строки статистики диапазона блокируются до пересчета: приращение из транзакции, сохраняющей
+     * запрос, ждет его окончания и применяется поверх, а уже зафиксированные запросы пересчет видит.
+     */
+    void rebuild(Chunk chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO user_optimization_stats (user_id) SELECT id FROM users "
+                    + "WHERE id BETWEEN ? AND ? ON CONFLICT (user_id) DO NOTHING", chunk.fromId(), chunk.toId());
+            // Порядок блокировок по user_id: параллельные диапазоны не пересекаются, приращения берут одну строку
+            jdbcTemplate.queryForList("SELECT user_id FROM user_optimization_stats WHERE user_id BETWEEN ? AND ? "
+                    + "ORDER BY user_id FOR UPDATE", Long.class, chunk.fromId(), chunk.toId());
+            jdbcTemplate.update("""
+                    UPDATE user_optimization_stats s SET
+                        optimization_count = a.optimization_count,
+                        measured_count = a.measured_count,
+                        improved_count = a.improved_count,
+                        original_time_ms = a.original_time_ms,
+                        optimized_time_ms = a.optimized_time_ms,
+                        last_optimized_at = a.last_optimized_at,
+                        updated_at = CURRENT_TIMESTAMP
+                    FROM (SELECT u.user_id,
+                                 count(q.id) AS optimization_count,
+                                 count(q.id) FILTER (WHERE %1$s) AS measured_count,
+                                 count(q.id) FILTER (WHERE %1$s
+                                     AND q.execution_time_ms < q.original_execution_time_ms) AS improved_count,
+                                 coalesce(sum(q.original_execution_time_ms) FILTER (WHERE %1$s), 0) AS original_time_ms,
+                                 coalesce(sum(q.execution_time_ms) FILTER (WHERE %1$s), 0) AS optimized_time_ms,
+                                 max(q.created_at) AS last_optimized_at
+                          FROM user_optimization_stats u
+                          LEFT JOIN sql_queries q ON q.user_id = u.user_id
+                          WHERE u.user_id BETWEEN ? AND ?
+                          GROUP BY u.user_id) a
+                    WHERE s.user_id = a.user_id
+                    """.formatted(MEASURED), chunk.fromId(), chunk.toId());
+            jdbcTemplate.update("DELETE FROM user_top_queries WHERE user_id BETWEEN ? AND ?",
+                    chunk.fromId(), chunk.toId());
+            jdbcTemplate.update("""
+                    INSERT INTO user_top_queries (user_id, sql_query_id, normalized_query, original_time_ms,
+                                                  optimized_time_ms, saved_ms, created_at)
+                    SELECT user_id, id, normalized_query, original_execution_time_ms, execution_time_ms,
+                           saved_ms, created_at
+                    FROM (SELECT q.user_id, q.id, q.normalized_query, q.original_execution_time_ms,
+                                 q.execution_time_ms, q.original_execution_time_ms - q.execution_time_ms AS saved_ms,
+                                 q.created_at,
+                                 row_number() OVER (PARTITION BY q.user_id
+                                     ORDER BY q.original_execution_time_ms - q.execution_time_ms DESC,
+                                              q.id DESC) AS rank
+                          FROM sql_queries q
+                          WHERE q.user_id BETWEEN ? AND ? AND q.execution_time_ms > 0
+                            AND q.original_execution_time_ms > q.execution_time_ms) ranked
+                    WHERE rank <= ?
+                    """, chunk.fromId(), chunk.toId(), topQueries);
+        });
+    }
+
+    static List<Chunk> chunks(long maxUserId, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (long from = 1; from <= maxUserId; from += chunkSize) {
+            chunks.add(new Chunk(from, Math.min(from + chunkSize - 1, maxUserId)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.backend.service.stats;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.backend.model.dto.ImprovedQueryDto;
+import com.example.backend.model.dto.UserStatsDto;
+import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.model.entity.UserOptimizationStats;
+import com.example.backend.model.entity.UserTopQuery;
+import com.example.backend.repository.UserStatsRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Статистика оптимизаций пользователя: приращение на каждый сохраненный запрос и чтение
+ * одной строки агрегатов с лучшими запросами. Полный пересчет — {@link UserStatsRebuildJob}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserStatsService {
+
+    private final UserStatsRepository userStatsRepository;
+
+    @Value("${stats.top-queries:10}")
+    private int topQueries;
+
+    /**
+     * Учитывает сохраненный запрос. Вызывается в транзакции его вставки: если она откатится,
+     * приращение откатится вместе с ней.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(SqlQuery sqlQuery) {
+        if (sqlQuery.getUser() == null) {
+            return;
+        }
+        Long userId = sqlQuery.getUser().getId();
+        double originalTimeMs = positive(sqlQuery.getOriginalExecutionTimeMs());
+        double optimizedTimeMs = positive(sqlQuery.getExecutionTimeMs());
+        boolean measured = originalTimeMs > 0 && optimizedTimeMs > 0;
+        boolean improved = measured && optimizedTimeMs < originalTimeMs;
+        userStatsRepository.increment(userId, measured ? 1 : 0, improved ? 1 : 0,
+                measured ? originalTimeMs : 0, measured ? optimizedTimeMs : 0, sqlQuery.getCreatedAt());
+        if (improved) {
+            userStatsRepository.insertTopQuery(userId, sqlQuery.getId(), sqlQuery.getNormalizedQuery(),
+                    originalTimeMs, optimizedTimeMs, originalTimeMs - optimizedTimeMs, sqlQuery.getCreatedAt());
+            userStatsRepository.trimTopQueries(userId, topQueries);
+        }
+        log.debug("Recorded query {} in stats of user {}: measured={}, improved={}", sqlQuery.getId(), userId,
+                measured, improved);
+    }
+
+    @Transactional(readOnly = true)
+    public UserStatsDto getUserStats(Long userId) {
+        UserStatsDto dto = userStatsRepository.findById(userId)
+                .map(this::mapToDto)
+                .orElseGet(() -> UserStatsDto.builder().build());
+        dto.setTopQueries(userStatsRepository.findTopQueries(userId, Limit.of(topQueries)).stream()
+                .map(this::mapToDto)
+                .toList());
+        return dto;
+    }
+
+    private UserStatsDto mapToDto(UserOptimizationStats stats) {
+        return UserStatsDto.builder()
+                .optimizationCount(stats.getOptimizationCount())
+                .measuredCount(stats.getMeasuredCount())
+                .improvedCount(stats.getImprovedCount())
+                .successRate(stats.getMeasuredCount() == 0 ? null
+                        : (double) stats.getImprovedCount() / stats.getMeasuredCount())
+                .timeSavedMs(stats.getOriginalTimeMs() - stats.getOptimizedTimeMs())
+                .originalTimeMs(stats.getOriginalTimeMs())
+                .optimizedTimeMs(stats.getOptimizedTimeMs())
+                .lastOptimizedAt(stats.getLastOptimizedAt())
+                .build();
+    }
+
+    private ImprovedQueryDto mapToDto(UserTopQuery query) {
+        return ImprovedQueryDto.builder()
+                .queryId(query.getSqlQueryId())
+                .normalizedQuery(query.getNormalizedQuery())
+                .originalTimeMs(query.getOriginalTimeMs())
+                .optimizedTimeMs(query.getOptimizedTimeMs())
+                .savedMs(query.getSavedMs())
+                .speedup(query.getOriginalTimeMs() / query.getOptimizedTimeMs())
+                .createdAt(query.getCreatedAt())
+                .build();
+    }
+
+    // -1 означает, что время не измерено
+    private static double positive(Double value) {
+        return value == null || value < 0 ? 0 : value;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.backend.service.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Кодеки тел в content_blobs. Название кодека хранится рядом с данными, так что алгоритм можно
+ * сменить, не перепаковывая уже записанные строки.
+ */
+public final class BodyCodec {
+
+    public static final String DEFLATE = "deflate";
+    public static final String NONE = "none";
+
+    public record Encoded(String codec, byte[] data) {
+    }
+
+    private BodyCodec() {
+    }
+
+    public static Encoded encode(byte[] raw, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                buffer.write(chunk, 0, length);
+            }
+            byte[] data = buffer.toByteArray();
+            // Несжимаемое тело хранится как есть, распаковка ему ничего не дает
+            return data.length < raw.length ? new Encoded(DEFLATE, data) : new Encoded(NONE, raw);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decode(String codec, byte[] data, int originalLength) {
+        byte[] raw = switch (codec) {
+            case NONE -> data;
+            case DEFLATE -> inflate(data, originalLength);
+            default -> throw new IllegalStateException("Unknown body codec: " + codec);
+        };
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] hash(byte[] raw) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(raw);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int originalLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            // Длина известна заранее: буфер выделяется один раз, без копирования
+            byte[] raw = new byte[originalLength];
+            int offset = 0;
+            while (offset < originalLength && !inflater.finished()) {
+                int length = inflater.inflate(raw, offset, originalLength - offset);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != originalLength) {
+                throw new IllegalStateException("Body is truncated: " + offset + " of " + originalLength + " bytes");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Body is corrupt: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
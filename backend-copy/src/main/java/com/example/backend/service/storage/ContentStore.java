@@ -0,0 +1,131 @@
+package com.example.backend.service.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.backend.model.entity.ContentBlob;
+import com.example.backend.model.entity.Message;
+import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.repository.ContentBlobRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Хранение длинных тел: текст длиннее порога сжимается и пишется в content_blobs один раз на
+ * уникальное содержимое, строка сообщения или запроса ссылается на блок. Блок загружается
+ * и распаковывается только при чтении текста.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContentStore {
+
+    private static final int INDEX_BATCH_SIZE = 100;
+
+    private final ContentBlobRepository contentBlobRepository;
+
+    @Value("${storage.compression.min-bytes:4096}")
+    private int minBytes;
+
+    @Value("${storage.compression.level:6}")
+    private int level;
+
+    // Запас для блоков, вставленных транзакцией, которая еще не закоммитила ссылку на них
+    @Value("${storage.blobs.gc-grace-hours:24}")
+    private int gcGraceHours;
+
+    @Value("${storage.blobs.index-on-startup:true}")
+    private boolean indexOnStartup;
+
+    /**
+     * Блок для текста или null, если текст короче порога и хранится в строке как есть.
+     * Вызывается в транзакции, которая сохраняет ссылку на блок: блокировка FOR SHARE держится только до ее конца.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ContentBlob intern(String text) {
+        if (text == null || text.length() < minBytes / 3) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < minBytes) {
+            return null;
+        }
+        byte[] hash = BodyCodec.hash(raw);
+        ContentBlob blob = contentBlobRepository.findByHash(hash).orElseGet(() -> {
+            BodyCodec.Encoded encoded = BodyCodec.encode(raw, level);
+            contentBlobRepository.insertIfAbsent(hash, encoded.codec(), raw.length, encoded.data(), text);
+            log.debug("Stored body of {} bytes as {} bytes ({})", raw.length, encoded.data().length,
+                    encoded.codec());
+            return contentBlobRepository.findByHash(hash).orElseThrow();
+        });
+        blob.rememberText(text);
+        return blob;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void compact(Message message) {
+        ContentBlob blob = intern(message.getContent());
+        if (blob != null) {
+            message.setContentBlob(blob);
+            message.setContent(null);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void compact(SqlQuery sqlQuery) {
+        ContentBlob blob = intern(sqlQuery.getOptimizedQuery());
+        if (blob != null) {
+            sqlQuery.setOptimizedBlob(blob);
+            sqlQuery.setOptimizedQuery(null);
+        }
+    }
+
+    /**
+     * Поисковые векторы блоков, сохраненных до V12. Блоки неизменяемы: каждый индексируется один раз.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexUnindexedBlobs() {
+        if (!indexOnStartup) {
+            return;
+        }
+        try {
+            long afterId = 0;
+            int indexed = 0;
+            List<ContentBlob> batch;
+            while (!(batch = contentBlobRepository.findUnindexed(afterId, INDEX_BATCH_SIZE)).isEmpty()) {
+                for (ContentBlob blob : batch) {
+                    contentBlobRepository.updateSearchVector(blob.getId(), blob.getText());
+                    afterId = blob.getId();
+                }
+                indexed += batch.size();
+            }
+            if (indexed > 0) {
+                log.info("Indexed {} content blobs for search", indexed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Content blob indexing failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Блоки, на которые больше ничего не ссылается: удаленные чаты и секции, снятые по сроку хранения.
+     */
+    @Transactional
+    @Scheduled(cron = "${storage.blobs.gc-cron:0 0 4 * * *}")
+    public void collectGarbage() {
+        int deleted = contentBlobRepository.deleteUnreferenced(LocalDateTime.now().minusHours(gcGraceHours));
+        if (deleted > 0) {
+            log.info("Deleted {} unreferenced content blobs", deleted);
+        }
+    }
+}
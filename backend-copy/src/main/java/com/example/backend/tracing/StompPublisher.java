@@ -0,0 +1,59 @@
+package com.example.backend.tracing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+
+/**
+ * Отправка сообщений в STOMP-топики со спаном на публикацию
+ * и контекстом трассировки (traceparent) в нативных заголовках кадра.
+ */
+@Component
+public class StompPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObservationRegistry observationRegistry;
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    public StompPublisher(SimpMessagingTemplate messagingTemplate,
+            ObservationRegistry observationRegistry,
+            ObjectProvider<Tracer> tracer,
+            ObjectProvider<Propagator> propagator) {
+        this.messagingTemplate = messagingTemplate;
+        this.observationRegistry = observationRegistry;
+        this.tracer = tracer.getIfAvailable(() -> Tracer.NOOP);
+        this.propagator = propagator.getIfAvailable(() -> Propagator.NOOP);
+    }
+
+    public void convertAndSend(String destination, Object payload) {
+        Observation.createNotStarted("stomp.publish", observationRegistry)
+                .contextualName("stomp publish")
+                .lowCardinalityKeyValue("destination.prefix", destinationPrefix(destination))
+                .highCardinalityKeyValue("destination", destination)
+                .observe(() -> messagingTemplate.convertAndSend(destination, payload, propagationHeaders()));
+    }
+
+    private Map<String, Object> propagationHeaders() {
+        Map<String, Object> headers = new HashMap<>();
+        TraceContext context = tracer.currentTraceContext().context();
+        if (context != null) {
+            propagator.inject(context, headers, (carrier, key, value) -> carrier.put(key, value));
+        }
+        return headers;
+    }
+
+    private String destinationPrefix(String destination) {
+        int lastSlash = destination.lastIndexOf('/');
+        return lastSlash > 0 ? destination.substring(0, lastSlash) : destination;
+    }
+}
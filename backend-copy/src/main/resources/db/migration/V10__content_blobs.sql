@@ -0,0 +1,29 @@
+-- Длинные ответы LLM хранятся сжатыми в content_blobs, по одной строке на уникальный текст:
+-- одинаковый ответ, сохраненный в сообщении и в sql_queries или повторенный для другого запроса,
+-- занимает место один раз. Короткие тела остаются в TEXT колонках
+CREATE SEQUENCE content_blobs_id_seq;
+
+CREATE TABLE content_blobs (
+                               id BIGINT PRIMARY KEY DEFAULT nextval('content_blobs_id_seq'),
+                               -- SHA-256 исходного текста в UTF-8
+                               hash BYTEA NOT NULL UNIQUE,
+                               codec VARCHAR(16) NOT NULL,
+                               original_length INTEGER NOT NULL,
+                               data BYTEA NOT NULL,
+                               created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER SEQUENCE content_blobs_id_seq OWNED BY content_blobs.id;
+-- Данные уже сжаты: TOAST не пытается сжать их повторно
+ALTER TABLE content_blobs ALTER COLUMN data SET STORAGE EXTERNAL;
+
+ALTER TABLE messages ALTER COLUMN content DROP NOT NULL;
+ALTER TABLE messages ADD COLUMN content_blob_id BIGINT REFERENCES content_blobs(id);
+ALTER TABLE messages ADD CONSTRAINT messages_content_present
+    CHECK (content IS NOT NULL OR content_blob_id IS NOT NULL);
+
+ALTER TABLE sql_queries ADD COLUMN optimized_blob_id BIGINT REFERENCES content_blobs(id);
+
+-- Для проверки внешних ключей и поиска блоков без ссылок
+CREATE INDEX idx_messages_content_blob_id ON messages(content_blob_id) WHERE content_blob_id IS NOT NULL;
+CREATE INDEX idx_sql_queries_optimized_blob_id ON sql_queries(optimized_blob_id) WHERE optimized_blob_id IS NOT NULL;
@@ -0,0 +1,57 @@
+-- Статистика оптимизаций пользователя для дашборда: обновляется в транзакции сохранения запроса,
+-- чтение — одна строка и не больше stats.top-queries строк лучших запросов, независимо от объема истории.
+-- Измеренный запрос — оба времени больше нуля, как в статистике отпечатков
+CREATE TABLE user_optimization_stats (
+                                         user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+                                         optimization_count BIGINT NOT NULL DEFAULT 0,
+                                         measured_count BIGINT NOT NULL DEFAULT 0,
+                                         improved_count BIGINT NOT NULL DEFAULT 0,
+                                         original_time_ms BIGINT NOT NULL DEFAULT 0,
+                                         optimized_time_ms BIGINT NOT NULL DEFAULT 0,
+                                         last_optimized_at TIMESTAMP,
+                                         updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Запросы с наибольшим сэкономленным временем. Внешнего ключа на секционированную sql_queries нет:
+-- строка самодостаточна и переживает удаление секции
+CREATE TABLE user_top_queries (
+                                  user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+                                  sql_query_id BIGINT NOT NULL,
+                                  normalized_query TEXT,
+                                  original_time_ms BIGINT NOT NULL,
+                                  optimized_time_ms BIGINT NOT NULL,
+                                  saved_ms BIGINT NOT NULL,
+                                  created_at TIMESTAMP NOT NULL,
+                                  PRIMARY KEY (user_id, sql_query_id)
+);
+
+-- UserStatsRepository.findTopQueries и обрезка до stats.top-queries строк
+CREATE INDEX idx_user_top_queries_user_saved ON user_top_queries(user_id, saved_ms DESC, sql_query_id DESC);
+
+INSERT INTO user_optimization_stats (user_id, optimization_count, measured_count, improved_count,
+                                     original_time_ms, optimized_time_ms, last_optimized_at)
+SELECT q.user_id,
+       count(*),
+       count(*) FILTER (WHERE q.original_execution_time_ms > 0 AND q.execution_time_ms > 0),
+       count(*) FILTER (WHERE q.original_execution_time_ms > 0 AND q.execution_time_ms > 0
+                          AND q.execution_time_ms < q.original_execution_time_ms),
+       coalesce(sum(q.original_execution_time_ms)
+                    FILTER (WHERE q.original_execution_time_ms > 0 AND q.execution_time_ms > 0), 0),
+       coalesce(sum(q.execution_time_ms)
+                    FILTER (WHERE q.original_execution_time_ms > 0 AND q.execution_time_ms > 0), 0),
+       max(q.created_at)
+FROM sql_queries q
+WHERE q.user_id IS NOT NULL
+GROUP BY q.user_id;
+
+INSERT INTO user_top_queries (user_id, sql_query_id, normalized_query, original_time_ms, optimized_time_ms,
+                              saved_ms, created_at)
+SELECT user_id, id, normalized_query, original_execution_time_ms, execution_time_ms, saved_ms, created_at
+FROM (SELECT q.user_id, q.id, q.normalized_query, q.original_execution_time_ms, q.execution_time_ms,
+             q.original_execution_time_ms - q.execution_time_ms AS saved_ms, q.created_at,
+             row_number() OVER (PARTITION BY q.user_id
+                 ORDER BY q.original_execution_time_ms - q.execution_time_ms DESC, q.id DESC) AS rank
+      FROM sql_queries q
+      WHERE q.user_id IS NOT NULL AND q.execution_time_ms > 0
+        AND q.original_execution_time_ms > q.execution_time_ms) ranked
+WHERE rank <= 10;
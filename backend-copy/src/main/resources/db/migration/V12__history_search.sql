@@ -0,0 +1,24 @@
+-- Поиск по истории чатов и запросов: полнотекстовый (tsvector, словарь simple — SQL и идентификаторы
+-- не стеммятся) и подстрочный по идентификаторам (триграммы). btree_gin позволяет держать в одном
+-- GIN-индексе и владельца, и документ: фильтр по пользователю и по словам проверяется одним индексом.
+-- В tsvector попадают первые 256 К символов текста: больший документ не помещается в tsvector
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+ALTER TABLE messages ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', substr(coalesce(content, ''), 1, 262144))) STORED;
+
+ALTER TABLE sql_queries ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', substr(coalesce(original_query, '') || ' '
+                                                        || coalesce(optimized_query, ''), 1, 262144))) STORED;
+
+-- Тела в content_blobs сжаты, выражение над ними не посчитать: вектор пишет ContentStore при вставке
+-- блока, блоки, созданные до этой миграции, индексируются при старте приложения
+ALTER TABLE content_blobs ADD COLUMN search_vector tsvector;
+
+-- HistorySearchService: сообщения чатов пользователя, запросы пользователя, длинные тела
+CREATE INDEX idx_messages_chat_search ON messages USING gin (chat_id, search_vector);
+CREATE INDEX idx_messages_chat_content_trgm ON messages USING gin (chat_id, content gin_trgm_ops);
+CREATE INDEX idx_sql_queries_user_search ON sql_queries USING gin (user_id, search_vector);
+CREATE INDEX idx_sql_queries_user_original_trgm ON sql_queries USING gin (user_id, original_query gin_trgm_ops);
+CREATE INDEX idx_content_blobs_search ON content_blobs USING gin (search_vector);
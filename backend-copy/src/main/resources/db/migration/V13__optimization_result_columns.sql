@@ -0,0 +1,7 @@
+-- Результат оптимизации по полям: в optimized_query только SQL, обоснование, оценка, риски и индексы
+-- в своих столбцах. Строки до V13 не разбираются: в optimized_query у них markdown-ответ целиком,
+-- новые столбцы NULL, по rationale IS NULL их отличает чтение истории
+ALTER TABLE sql_queries ADD COLUMN rationale TEXT;
+ALTER TABLE sql_queries ADD COLUMN estimated_gain TEXT;
+ALTER TABLE sql_queries ADD COLUMN risks TEXT[];
+ALTER TABLE sql_queries ADD COLUMN suggested_indexes TEXT[];
@@ -0,0 +1,15 @@
+-- Время выполнения — медиана нескольких замеров EXPLAIN ANALYZE в миллисекундах с дробной частью:
+-- запросы быстрее миллисекунды больше не округляются до нуля и не выпадают из статистики и ускорения.
+-- Столбцы секционированной sql_queries меняются во всех секциях, индексы с INCLUDE перестраиваются
+ALTER TABLE sql_queries
+    ALTER COLUMN execution_time_ms TYPE DOUBLE PRECISION,
+    ALTER COLUMN original_execution_time_ms TYPE DOUBLE PRECISION;
+
+ALTER TABLE user_optimization_stats
+    ALTER COLUMN original_time_ms TYPE DOUBLE PRECISION,
+    ALTER COLUMN optimized_time_ms TYPE DOUBLE PRECISION;
+
+ALTER TABLE user_top_queries
+    ALTER COLUMN original_time_ms TYPE DOUBLE PRECISION,
+    ALTER COLUMN optimized_time_ms TYPE DOUBLE PRECISION,
+    ALTER COLUMN saved_ms TYPE DOUBLE PRECISION;
@@ -0,0 +1,5 @@
+-- Роль пользователя: служебные эндпоинты actuator (metrics, dbconnections) доступны только ADMIN.
+-- Администратором становится суперпользователь из V2, остальные — USER
+ALTER TABLE users ADD COLUMN role VARCHAR(16) NOT NULL DEFAULT 'USER';
+
+UPDATE users SET role = 'ADMIN' WHERE username = 'postgres';
@@ -0,0 +1,7 @@
+-- Планы EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) исходного и оптимизированного запроса, сжатые gzip
+ALTER TABLE sql_queries ADD COLUMN original_plan BYTEA;
+ALTER TABLE sql_queries ADD COLUMN optimized_plan BYTEA;
+
+-- Данные уже сжаты: TOAST не должен пытаться сжимать их повторно
+ALTER TABLE sql_queries ALTER COLUMN original_plan SET STORAGE EXTERNAL;
+ALTER TABLE sql_queries ALTER COLUMN optimized_plan SET STORAGE EXTERNAL;
@@ -0,0 +1,28 @@
+-- Отпечаток формы запроса для аналитики нагрузки
+ALTER TABLE sql_queries ADD COLUMN user_id BIGINT REFERENCES users(id) ON DELETE CASCADE;
+ALTER TABLE sql_queries ADD COLUMN fingerprint BIGINT;
+ALTER TABLE sql_queries ADD COLUMN normalized_query TEXT;
+ALTER TABLE sql_queries ADD COLUMN statement_type VARCHAR(16);
+ALTER TABLE sql_queries ADD COLUMN original_execution_time_ms BIGINT;
+
+-- Владелец уже сохраненных запросов
+UPDATE sql_queries q
+SET user_id = c.user_id
+FROM messages m
+JOIN chats c ON c.id = m.chat_id
+WHERE m.id = q.message_id;
+
+-- Таблицы, на которые ссылается запрос
+CREATE TABLE sql_query_tables (
+                                  sql_query_id BIGINT NOT NULL REFERENCES sql_queries(id) ON DELETE CASCADE,
+                                  table_name VARCHAR(255) NOT NULL,
+                                  PRIMARY KEY (sql_query_id, table_name)
+);
+
+CREATE INDEX idx_sql_query_tables_table_name ON sql_query_tables(table_name, sql_query_id);
+
+-- Агрегаты по отпечаткам читаются из индекса без обращения к таблице с текстами запросов
+CREATE INDEX idx_sql_queries_user_fingerprint ON sql_queries(user_id, fingerprint)
+    INCLUDE (original_execution_time_ms, execution_time_ms)
+    WHERE fingerprint IS NOT NULL;
+CREATE INDEX idx_sql_queries_user_statement_type ON sql_queries(user_id, statement_type);
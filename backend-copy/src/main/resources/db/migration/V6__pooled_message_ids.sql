@@ -0,0 +1,3 @@
+-- Идентификаторы сообщений выдаются блоками по 50 (оптимизатор pooled-lo): один nextval на 50 вставок,
+-- вставки можно объединять в JDBC-пакеты. Уже выданные значения меньше следующего блока, пересечений нет
+ALTER SEQUENCE messages_id_seq INCREMENT BY 50;
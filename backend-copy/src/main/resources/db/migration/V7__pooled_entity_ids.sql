@@ -0,0 +1,14 @@
+-- Остальные таблицы переходят на идентификаторы блоками по 50 (pooled-lo), как messages в V6:
+-- Hibernate не выполняет INSERT ради получения id и может объединять вставки в JDBC-пакеты
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE chats_id_seq INCREMENT BY 50;
+ALTER SEQUENCE database_connections_id_seq INCREMENT BY 50;
+ALTER SEQUENCE sql_queries_id_seq INCREMENT BY 50;
+
+-- Значение по умолчанию nextval() выдало бы начало чужого блока и столкнулось бы с идентификаторами
+-- приложения; вставки в обход Hibernate должны брать id явно из последовательности
+ALTER TABLE users ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE chats ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE messages ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE database_connections ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE sql_queries ALTER COLUMN id DROP DEFAULT;
@@ -0,0 +1,25 @@
+-- Индексы под запросы репозиториев: фильтр и сортировка в одном индексе, без отдельного узла Sort.
+-- Одностолбцовые индексы, ставшие префиксом составных, удаляются
+
+-- ChatRepository.findByUserIdOrderByUpdatedAtDesc
+CREATE INDEX idx_chats_user_updated ON chats(user_id, updated_at DESC);
+DROP INDEX idx_chats_user_id;
+
+-- MessageRepository.findByChatIdOrderByCreatedAtAsc, SqlQueryRepository.findByMessageChatIdOrderByCreatedAtDesc
+CREATE INDEX idx_messages_chat_created ON messages(chat_id, created_at);
+DROP INDEX idx_messages_chat_id;
+
+-- DatabaseConnectionRepository.findByChatIdAndActiveTrue: неактивные подключения в индекс не попадают.
+-- deleteAllByChatId и внешний ключ обслуживает уникальный индекс (chat_id, name)
+CREATE INDEX idx_database_connections_chat_active ON database_connections(chat_id) WHERE is_active;
+DROP INDEX idx_database_connections_chat_id;
+
+-- Внешний ключ sql_queries -> database_connections: удаление подключения без полного просмотра sql_queries
+CREATE INDEX idx_sql_queries_database_connection_id ON sql_queries(database_connection_id)
+    WHERE database_connection_id IS NOT NULL;
+
+-- SqlQueryRepository.findTopFingerprints*: max(id) тоже берется из индекса, агрегаты читаются Index Only Scan
+DROP INDEX idx_sql_queries_user_fingerprint;
+CREATE INDEX idx_sql_queries_user_fingerprint ON sql_queries(user_id, fingerprint)
+    INCLUDE (original_execution_time_ms, execution_time_ms, id)
+    WHERE fingerprint IS NOT NULL;
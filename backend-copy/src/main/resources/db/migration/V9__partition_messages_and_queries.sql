@@ -0,0 +1,120 @@
+-- messages и sql_queries секционируются по месяцам created_at: запросы чата читают только секции
+-- с момента создания чата, старые месяцы отсоединяются и выгружаются заданием хранения.
+-- Первичный ключ секционированной таблицы обязан содержать ключ секционирования, поэтому
+-- внешние ключи на эти таблицы заменены триггерами каскадного удаления
+
+-- Секция таблицы на месяц month: <таблица>_pYYYY_MM, создается, если ее еще нет
+CREATE OR REPLACE FUNCTION create_monthly_partition(parent_table TEXT, month DATE) RETURNS TEXT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', month)::DATE;
+    partition_name TEXT := parent_table || '_p' || to_char(month_start, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, parent_table, month_start, (month_start + INTERVAL '1 month')::DATE);
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE sql_query_tables DROP CONSTRAINT sql_query_tables_sql_query_id_fkey;
+ALTER TABLE sql_queries RENAME TO sql_queries_legacy;
+ALTER TABLE messages RENAME TO messages_legacy;
+-- Имена ограничений и индексов уникальны в схеме: освобождаем их для новых таблиц
+ALTER TABLE sql_queries_legacy RENAME CONSTRAINT sql_queries_pkey TO sql_queries_legacy_pkey;
+ALTER TABLE messages_legacy RENAME CONSTRAINT messages_pkey TO messages_legacy_pkey;
+ALTER SEQUENCE messages_id_seq OWNED BY NONE;
+ALTER SEQUENCE sql_queries_id_seq OWNED BY NONE;
+
+CREATE TABLE messages (
+                          id BIGINT NOT NULL,
+                          chat_id BIGINT NOT NULL REFERENCES chats(id) ON DELETE CASCADE,
+                          content TEXT NOT NULL,
+                          is_from_user BOOLEAN NOT NULL,
+                          created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                          PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE sql_queries (
+                             id BIGINT NOT NULL,
+                             message_id BIGINT NOT NULL,
+                             user_id BIGINT REFERENCES users(id) ON DELETE CASCADE,
+                             original_query TEXT NOT NULL,
+                             optimized_query TEXT,
+                             database_connection_id BIGINT REFERENCES database_connections(id),
+                             execution_time_ms BIGINT,
+                             original_execution_time_ms BIGINT,
+                             fingerprint BIGINT,
+                             normalized_query TEXT,
+                             statement_type VARCHAR(16),
+                             original_plan BYTEA,
+                             optimized_plan BYTEA,
+                             created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                             PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER TABLE sql_queries ALTER COLUMN original_plan SET STORAGE EXTERNAL;
+ALTER TABLE sql_queries ALTER COLUMN optimized_plan SET STORAGE EXTERNAL;
+
+-- Секции от самого старого месяца истории до трех месяцев вперед
+DO $$
+DECLARE
+    month DATE := date_trunc('month', LEAST(
+            (SELECT min(created_at) FROM messages_legacy),
+            (SELECT min(created_at) FROM sql_queries_legacy),
+            CURRENT_TIMESTAMP))::DATE;
+BEGIN
+    WHILE month <= date_trunc('month', CURRENT_TIMESTAMP) + INTERVAL '3 months' LOOP
+        PERFORM create_monthly_partition('messages', month);
+        PERFORM create_monthly_partition('sql_queries', month);
+        month := (month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END;
+$$;
+
+INSERT INTO messages (id, chat_id, content, is_from_user, created_at)
+SELECT id, chat_id, content, is_from_user, created_at FROM messages_legacy;
+
+INSERT INTO sql_queries (id, message_id, user_id, original_query, optimized_query, database_connection_id,
+                         execution_time_ms, original_execution_time_ms, fingerprint, normalized_query,
+                         statement_type, original_plan, optimized_plan, created_at)
+SELECT id, message_id, user_id, original_query, optimized_query, database_connection_id,
+       execution_time_ms, original_execution_time_ms, fingerprint, normalized_query,
+       statement_type, original_plan, optimized_plan, created_at
+FROM sql_queries_legacy;
+
+DROP TABLE sql_queries_legacy;
+DROP TABLE messages_legacy;
+
+-- Индексы V8 на секционированных таблицах; в каждой секции создаются свои копии
+CREATE INDEX idx_messages_chat_created ON messages(chat_id, created_at);
+CREATE INDEX idx_sql_queries_message_id ON sql_queries(message_id);
+CREATE INDEX idx_sql_queries_database_connection_id ON sql_queries(database_connection_id)
+    WHERE database_connection_id IS NOT NULL;
+CREATE INDEX idx_sql_queries_user_fingerprint ON sql_queries(user_id, fingerprint)
+    INCLUDE (original_execution_time_ms, execution_time_ms, id)
+    WHERE fingerprint IS NOT NULL;
+CREATE INDEX idx_sql_queries_user_statement_type ON sql_queries(user_id, statement_type);
+
+-- Бывшие ON DELETE CASCADE: messages -> sql_queries -> sql_query_tables
+CREATE OR REPLACE FUNCTION delete_message_queries() RETURNS TRIGGER AS $$
+BEGIN
+    DELETE FROM sql_queries WHERE message_id = OLD.id AND created_at >= OLD.created_at;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_messages_delete_queries
+    AFTER DELETE ON messages
+    FOR EACH ROW EXECUTE FUNCTION delete_message_queries();
+
+CREATE OR REPLACE FUNCTION delete_query_tables() RETURNS TRIGGER AS $$
+BEGIN
+    DELETE FROM sql_query_tables WHERE sql_query_id = OLD.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_sql_queries_delete_tables
+    AFTER DELETE ON sql_queries
+    FOR EACH ROW EXECUTE FUNCTION delete_query_tables();
@@ -9,6 +9,7 @@ import com.example.backend.model.dto.SqlQueryRequest;
 import com.example.backend.model.dto.SqlQueryResponse;
 import com.example.backend.model.entity.User;
 import com.example.backend.security.CustomUserDetails;
+import com.example.backend.service.QueryHistoryService;
 import com.example.backend.service.SqlOptimizationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -51,6 +52,9 @@ public class SqlOptimizationControllerTest {
     @MockBean
     private SqlOptimizationService sqlOptimizationService;
 
+    @MockBean
+    private QueryHistoryService queryHistoryService;
+
     private CustomUserDetails userDetails;
 
     @BeforeEach
@@ -83,7 +87,7 @@ public class SqlOptimizationControllerTest {
                 .id(1L)
                 .originalQuery("SELECT * FROM users")
                 .optimizedQuery("SELECT id, name, email FROM users")
-                .executionTimeMs(100L)
+                .executionTimeMs(100.0)
                 .createdAt(LocalDateTime.now())
                 .message(messageDto)
                 .build();
@@ -103,7 +107,7 @@ public class SqlOptimizationControllerTest {
                         .andExpect(jsonPath("$.id").value(1))
                         .andExpect(jsonPath("$.originalQuery").value("SELECT * FROM users"))
                         .andExpect(jsonPath("$.optimizedQuery").value("SELECT id, name, email FROM users"))
-                        .andExpect(jsonPath("$.executionTimeMs").value(100))
+                        .andExpect(jsonPath("$.executionTimeMs").value(100.0))
                         .andExpect(jsonPath("$.message.id").value(1))
                         .andExpect(jsonPath("$.message.content").value("Optimized query"))
                         .andExpect(jsonPath("$.message.fromUser").value(false)));
@@ -131,19 +135,19 @@ public class SqlOptimizationControllerTest {
                         .id(1L)
                         .originalQuery("SELECT * FROM users")
                         .optimizedQuery("SELECT id, name, email FROM users")
-                        .executionTimeMs(100L)
+                        .executionTimeMs(100.0)
                         .createdAt(LocalDateTime.now())
                         .build(),
                 SqlQueryResponse.builder()
                         .id(2L)
                         .originalQuery("SELECT * FROM orders")
                         .optimizedQuery("SELECT id, user_id, total FROM orders")
-                        .executionTimeMs(150L)
+                        .executionTimeMs(150.0)
                         .createdAt(LocalDateTime.now())
                         .build()
         );
 
-        when(sqlOptimizationService.getQueryHistory(eq(1L), any(Long.class))).thenReturn(history);
+        when(queryHistoryService.getQueryHistory(eq(1L), any(Long.class))).thenReturn(history);
 
         mockMvc.perform(get("/sql/history/1")
                         .with(user(userDetails)))
@@ -152,16 +156,16 @@ public class SqlOptimizationControllerTest {
                 .andExpect(jsonPath("$[0].id").value(1))
                 .andExpect(jsonPath("$[0].originalQuery").value("SELECT * FROM users"))
                 .andExpect(jsonPath("$[0].optimizedQuery").value("SELECT id, name, email FROM users"))
-                .andExpect(jsonPath("$[0].executionTimeMs").value(100))
+                .andExpect(jsonPath("$[0].executionTimeMs").value(100.0))
                 .andExpect(jsonPath("$[1].id").value(2))
                 .andExpect(jsonPath("$[1].originalQuery").value("SELECT * FROM orders"))
                 .andExpect(jsonPath("$[1].optimizedQuery").value("SELECT id, user_id, total FROM orders"))
-                .andExpect(jsonPath("$[1].executionTimeMs").value(150));
+                .andExpect(jsonPath("$[1].executionTimeMs").value(150.0));
     }
 
     @Test
     public void getQueryHistory_ChatNotFound_ReturnsNotFound() throws Exception {
-        when(sqlOptimizationService.getQueryHistory(eq(999L), any(Long.class)))
+        when(queryHistoryService.getQueryHistory(eq(999L), any(Long.class)))
                 .thenThrow(new ResourceNotFoundException("Chat not found"));
 
         mockMvc.perform(get("/sql/history/999")
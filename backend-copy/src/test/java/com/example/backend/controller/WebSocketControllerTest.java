@@ -2,10 +2,13 @@ package com.example.backend.controller;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.HashMap;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -21,6 +24,7 @@ import com.example.backend.config.TestWebSocketConfig;
 import com.example.backend.model.ChatMessage;
 import com.example.backend.model.dto.MessageDto;
 import com.example.backend.service.ChatService;
+import com.example.backend.tracing.StompPublisher;
 
 @WebMvcTest(WebSocketController.class)
 @Import({ TestConfig.class, TestSecurityConfig.class, TestWebSocketConfig.class })
@@ -35,6 +39,9 @@ public class WebSocketControllerTest {
     @MockBean
     private ChatService chatService;
 
+    @MockBean
+    private StompPublisher stompPublisher;
+
     @Test
     @WithMockUser(username = "testuser")
     public void sendMessage_ValidMessage_SendsToTopic() {
@@ -59,4 +66,18 @@ public class WebSocketControllerTest {
         // Assert
         verify(chatService).sendMessage(eq(123L), eq(1L), any(MessageDto.class));
     }
+
+    @Test
+    public void addUser_ValidMessage_PublishesJoinThroughStompPublisher() {
+        ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setSender("testuser");
+        chatMessage.setChatId(123L);
+
+        SimpMessageHeaderAccessor headerAccessor = mock(SimpMessageHeaderAccessor.class);
+        when(headerAccessor.getSessionAttributes()).thenReturn(new HashMap<>());
+
+        webSocketController.addUser(chatMessage, headerAccessor);
+
+        verify(stompPublisher).convertAndSend(eq("/topic/chat/123"), same(chatMessage));
+    }
 }
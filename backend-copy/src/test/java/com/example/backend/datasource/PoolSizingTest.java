@@ -0,0 +1,23 @@
+package com.example.backend.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class PoolSizingTest {
+
+    @Test
+    public void maximumPoolSize_ManyWorkers_LimitedByDatabaseCores() {
+        assertEquals(9, PoolSizing.maximumPoolSize(4, 300));
+    }
+
+    @Test
+    public void maximumPoolSize_FewWorkers_LimitedByWorkers() {
+        assertEquals(6, PoolSizing.maximumPoolSize(16, 6));
+    }
+
+    @Test
+    public void maximumPoolSize_SingleCore_NotBelowMinimum() {
+        assertEquals(PoolSizing.MIN_POOL_SIZE, PoolSizing.maximumPoolSize(1, 300));
+    }
+}
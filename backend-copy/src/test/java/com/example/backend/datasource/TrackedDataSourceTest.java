@@ -0,0 +1,52 @@
+package com.example.backend.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class TrackedDataSourceTest {
+
+    private final ConnectionHolderRegistry registry = new ConnectionHolderRegistry(true);
+    private final TrackedDataSource dataSource = new TrackedDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:tracked;DB_CLOSE_DELAY=-1", "sa", ""), "test-pool", registry);
+
+    @Test
+    public void openConnection_RegisteredWithApplicationStack() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            List<ConnectionHolderRegistry.Holder> holders = registry.snapshot();
+
+            assertEquals(1, holders.size());
+            ConnectionHolderRegistry.Holder holder = holders.get(0);
+            assertEquals("test-pool", holder.pool());
+            assertEquals(Thread.currentThread().getName(), holder.thread());
+            assertTrue(holder.stack().get(0).contains("TrackedDataSourceTest.openConnection_RegisteredWithApplicationStack"));
+            assertTrue(connection.isValid(1));
+        }
+
+        assertTrue(registry.snapshot().isEmpty());
+    }
+
+    @Test
+    public void snapshot_OldestHolderFirst() throws SQLException {
+        try (Connection first = dataSource.getConnection()) {
+            Connection second = dataSource.getConnection();
+            List<ConnectionHolderRegistry.Holder> holders = registry.snapshot();
+
+            assertEquals(2, holders.size());
+            assertTrue(holders.get(0).id() < holders.get(1).id());
+
+            second.close();
+            second.close();
+            // Повторное закрытие второго соединения не снимает учет первого
+            assertFalse(first.isClosed());
+            assertEquals(1, registry.snapshot().size());
+        }
+    }
+}
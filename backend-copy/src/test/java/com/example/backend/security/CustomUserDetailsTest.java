@@ -0,0 +1,31 @@
+package com.example.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.example.backend.model.entity.User;
+
+public class CustomUserDetailsTest {
+
+    @Test
+    public void authorities_AdminRole() {
+        User user = User.builder().id(1L).username("postgres").password("secret").role(User.ROLE_ADMIN).build();
+
+        assertEquals(List.of("ROLE_ADMIN"), authorities(new CustomUserDetails(user)));
+    }
+
+    @Test
+    public void authorities_DefaultUserRole() {
+        User user = User.builder().id(2L).username("alice").password("secret").build();
+
+        assertEquals(List.of("ROLE_USER"), authorities(new CustomUserDetails(user)));
+    }
+
+    private List<String> authorities(CustomUserDetails userDetails) {
+        return userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+}
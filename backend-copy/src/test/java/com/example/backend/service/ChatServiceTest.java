@@ -0,0 +1,138 @@
+package com.example.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.backend.model.dto.MessageDto;
+import com.example.backend.model.entity.Chat;
+import com.example.backend.model.entity.Message;
+import com.example.backend.repository.ChatRepository;
+import com.example.backend.repository.MessageRepository;
+import com.example.backend.repository.UserRepository;
+import com.example.backend.service.chat.ChatActivityTracker;
+import com.example.backend.service.chat.MessageWriteBehindBuffer;
+import com.example.backend.service.event.SqlMessageReceivedEvent;
+import com.example.backend.service.storage.ContentStore;
+import com.example.backend.tracing.StompPublisher;
+
+public class ChatServiceTest {
+
+    private final ChatRepository chatRepository = mock(ChatRepository.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final StompPublisher stompPublisher = mock(StompPublisher.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ChatActivityTracker chatActivityTracker = mock(ChatActivityTracker.class);
+    private final ContentStore contentStore = mock(ContentStore.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<MessageWriteBehindBuffer> writeBehindBuffer = mock(ObjectProvider.class);
+    private final MessageWriteBehindBuffer buffer = mock(MessageWriteBehindBuffer.class);
+
+    private ChatService chatService;
+
+    @BeforeEach
+    public void setUp() {
+        chatService = new ChatService(chatRepository, messageRepository, userRepository, null, stompPublisher,
+                eventPublisher, chatActivityTracker, contentStore, writeBehindBuffer);
+        Chat chat = Chat.builder().id(7L).title("chat").build();
+        when(chatRepository.findByIdAndUserId(7L, 1L)).thenReturn(Optional.of(chat));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setId(100L);
+            return message;
+        });
+    }
+
+    @Test
+    public void sendMessage_SqlFromUser_SavesOnceAndQueuesOptimization() {
+        chatService.sendMessage(7L, 1L, MessageDto.builder()
+                .content("-- отчет\nWITH recent AS (SELECT 1) SELECT * FROM recent")
+                .fromUser(true)
+                .llmProvider("GigaChat")
+                .databaseConnectionId("3")
+                .mpp(true)
+                .build());
+
+        ArgumentCaptor<SqlMessageReceivedEvent> event = ArgumentCaptor.forClass(SqlMessageReceivedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(100L, event.getValue().getMessage().getId());
+        assertEquals("GigaChat", event.getValue().getRequest().getLlm());
+        assertEquals("3", event.getValue().getRequest().getDatabaseConnectionId());
+        assertTrue(event.getValue().getRequest().isMPP());
+        verify(messageRepository).save(any(Message.class));
+        verify(stompPublisher, never()).convertAndSend(anyString(), any());
+        verify(chatActivityTracker).touch(7L);
+    }
+
+    @Test
+    public void sendMessage_Prose_BroadcastsWithoutOptimization() {
+        chatService.sendMessage(7L, 1L, MessageDto.builder().content("With this query I get a timeout")
+                .fromUser(true).build());
+
+        verify(stompPublisher).convertAndSend(anyString(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void sendMessage_ProseStartingWithKeyword_BroadcastsWithoutOptimization() {
+        chatService.sendMessage(7L, 1L, MessageDto.builder().content("Update: it is still slow").fromUser(true)
+                .build());
+        chatService.sendMessage(7L, 1L, MessageDto.builder().content("Select the best plan, please")
+                .fromUser(true).build());
+
+        verify(stompPublisher, times(2)).convertAndSend(anyString(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void sendMessage_Ddl_BroadcastsWithoutOptimization() {
+        chatService.sendMessage(7L, 1L, MessageDto.builder().content("DROP TABLE orders").fromUser(true).build());
+
+        verify(stompPublisher).convertAndSend(anyString(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void sendMessage_SqlNotFromUser_Broadcasts() {
+        chatService.sendMessage(7L, 1L, MessageDto.builder().content("SELECT * FROM orders").fromUser(false)
+                .build());
+
+        verify(stompPublisher).convertAndSend(anyString(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void sendMessage_WriteBehindEnabled_BuffersProseButSavesSql() {
+        when(writeBehindBuffer.getIfAvailable()).thenReturn(buffer);
+        when(buffer.write(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setId(200L);
+            return message;
+        });
+
+        MessageDto prose = chatService.sendMessage(7L, 1L, MessageDto.builder().content("Спасибо!").fromUser(true)
+                .build());
+        assertEquals(200L, prose.getId());
+        verify(messageRepository, never()).save(any(Message.class));
+
+        // На сообщение с SQL ссылается sql_queries: оно пишется сразу
+        chatService.sendMessage(7L, 1L, MessageDto.builder().content("SELECT 1").fromUser(true).build());
+        verify(messageRepository).save(any(Message.class));
+        verify(buffer).write(any(Message.class));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class PlanSamplesTest {
+
+    @Test
+    public void median_KeepsFractionalTimeAndItsPlan() {
+        SqlOptimizationService.PlanSamples samples = new SqlOptimizationService.PlanSamples("SELECT 1");
+        samples.add("slow", 3.75);
+        samples.add("fast", 0.42);
+        samples.add("middle", 0.61);
+
+        assertEquals(0.61, samples.medianTimeMs());
+        assertEquals("middle", samples.medianPlan());
+    }
+
+    @Test
+    public void median_EvenRuns_UsesLowerMiddleRun() {
+        SqlOptimizationService.PlanSamples samples = new SqlOptimizationService.PlanSamples("SELECT 1");
+        samples.add("a", 2.0);
+        samples.add("b", 1.0);
+
+        assertEquals(1.0, samples.medianTimeMs());
+        assertEquals("b", samples.medianPlan());
+    }
+
+    @Test
+    public void median_RunWithoutExecutionTime_NotMeasured() {
+        SqlOptimizationService.PlanSamples samples = new SqlOptimizationService.PlanSamples("SELECT 1");
+        samples.add("a", 2.0);
+        samples.add("b", -1.0);
+        samples.add("c", 3.0);
+
+        assertEquals(-1.0, samples.medianTimeMs());
+    }
+}
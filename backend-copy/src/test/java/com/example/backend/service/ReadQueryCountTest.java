@@ -0,0 +1,203 @@
+package com.example.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.backend.model.dto.DatabaseConnectionDto;
+import com.example.backend.model.dto.FingerprintStatsDto;
+import com.example.backend.model.dto.MessageDto;
+import com.example.backend.model.dto.SqlQueryResponse;
+import com.example.backend.model.entity.Chat;
+import com.example.backend.model.entity.DatabaseConnection;
+import com.example.backend.model.entity.Message;
+import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.model.entity.User;
+import com.example.backend.repository.ChatRepository;
+import com.example.backend.repository.ContentBlobRepository;
+import com.example.backend.repository.DatabaseConnectionRepository;
+import com.example.backend.repository.MessageRepository;
+import com.example.backend.repository.SqlQueryRepository;
+import com.example.backend.repository.UserRepository;
+import com.example.backend.service.plan.PlanDiffer;
+import com.example.backend.service.plan.PlanParser;
+import com.example.backend.service.storage.BodyCodec;
+
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Число SQL-запросов на каждый читающий эндпоинт. Тест идет вне транзакции, как запрос без
+ * open-in-view: ленивая загрузка при маппинге в DTO упала бы или добавила запросы.
+ */
+// Схема создается Hibernate: миграции написаны для PostgreSQL
+@DataJpaTest(properties = {"spring.flyway.enabled=false", "spring.jpa.properties.hibernate.generate_statistics=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReadQueryCountTest {
+
+    private static final String RESPONSE = "```sql\nSELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id\n```\n"
+            .repeat(3);
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private SqlQueryRepository sqlQueryRepository;
+    @Autowired
+    private DatabaseConnectionRepository databaseConnectionRepository;
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ChatService chatService;
+    private DatabaseConnectionService databaseConnectionService;
+    private QueryHistoryService queryHistoryService;
+    private Statistics statistics;
+    private Long userId;
+    private Long chatId;
+    private String fingerprint;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        chatService = new ChatService(chatRepository, messageRepository, userRepository, null, null, null, null, null,
+                mock(ObjectProvider.class));
+        databaseConnectionService = new DatabaseConnectionService(databaseConnectionRepository, userRepository,
+                chatRepository, ObservationRegistry.NOOP);
+        queryHistoryService = new QueryHistoryService(sqlQueryRepository, chatRepository, new PlanParser(),
+                new PlanDiffer());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        seed();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            sqlQueryRepository.deleteAll();
+            messageRepository.deleteAll();
+            databaseConnectionRepository.deleteAll();
+            chatRepository.deleteAll();
+            userRepository.deleteAll();
+            contentBlobRepository.deleteAll();
+        });
+    }
+
+    @Test
+    public void getUserChats_OneQuery() {
+        assertEquals(2, count(1, () -> chatService.getUserChats(userId)).size());
+    }
+
+    @Test
+    public void getChat_OneQuery() {
+        assertEquals("orders", count(1, () -> chatService.getChat(chatId, userId)).getTitle());
+    }
+
+    @Test
+    public void getChatMessages_ChatAndMessagesWithBodies() {
+        List<MessageDto> messages = count(2, () -> chatService.getChatMessages(chatId, userId));
+
+        assertEquals(3, messages.size());
+        assertEquals(RESPONSE, messages.get(1).getContent());
+    }
+
+    @Test
+    public void getConnectionsForChat_OneQuery() {
+        List<DatabaseConnectionDto> connections = count(1,
+                () -> databaseConnectionService.getConnectionsForChat(chatId));
+
+        assertEquals(2, connections.size());
+        assertEquals(chatId, connections.get(0).getChatId());
+    }
+
+    @Test
+    public void getQueryHistory_ChatAndQueriesWithBodies() {
+        List<SqlQueryResponse> history = count(2, () -> queryHistoryService.getQueryHistory(chatId, userId));
+
+        assertEquals(1, history.size());
+        assertEquals(RESPONSE, history.get(0).getOptimizedQuery());
+        assertEquals(List.of("CREATE INDEX ON orders (customer_id)"),
+                history.get(0).getResult().getIndexSuggestions());
+    }
+
+    @Test
+    public void getTopFingerprints_StatsAndSamples() {
+        List<FingerprintStatsDto> top = count(2, () -> queryHistoryService.getTopFingerprints(userId, null, 10));
+
+        assertEquals(1, top.size());
+        assertEquals(List.of("customers", "orders"), top.get(0).getTables());
+    }
+
+    @Test
+    public void getFingerprintStats_StatsAndSample() {
+        FingerprintStatsDto stats = count(2, () -> queryHistoryService.getFingerprintStats(userId, fingerprint));
+
+        assertEquals("SELECT", stats.getStatementType());
+    }
+
+    private <T> T count(long expected, Supplier<T> endpoint) {
+        statistics.clear();
+        T result = endpoint.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "SQL statements");
+        return result;
+    }
+
+    private void seed() {
+        byte[] raw = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        BodyCodec.Encoded encoded = BodyCodec.encode(raw, 6);
+        jdbcTemplate.update("INSERT INTO content_blobs (id, hash, codec, original_length, data, created_at) "
+                + "VALUES (1, ?, ?, ?, ?, ?)", BodyCodec.hash(raw), encoded.codec(), raw.length, encoded.data(),
+                Timestamp.valueOf(LocalDateTime.now()));
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.save(User.builder().username("user").email("user@example.com")
+                    .password("secret").build());
+            Chat chat = chatRepository.save(Chat.builder().user(user).title("orders").build());
+            chatRepository.save(Chat.builder().user(user).title("archive").archived(true).build());
+            for (boolean active : new boolean[] {true, true, false}) {
+                databaseConnectionRepository.save(DatabaseConnection.builder().user(user).chat(chat).name("db")
+                        .dbType("postgresql").host("localhost").port(5432).databaseName("shop").username("app")
+                        .password("secret").active(active).build());
+            }
+            Message question = messageRepository.save(Message.builder().chat(chat).fromUser(true)
+                    .content("SELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id").build());
+            messageRepository.save(Message.builder().chat(chat).fromUser(false)
+                    .contentBlob(contentBlobRepository.getReferenceById(1L)).build());
+            messageRepository.save(Message.builder().chat(chat).fromUser(true).content("Спасибо!").build());
+            sqlQueryRepository.save(SqlQuery.builder().message(question).user(user)
+                    .originalQuery(question.getContent()).optimizedBlob(contentBlobRepository.getReferenceById(1L))
+                    .fingerprint(7L).normalizedQuery("SELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id")
+                    .statementType("SELECT").referencedTables(Set.of("orders", "customers"))
+                    .rationale("Фильтр по ключу соединения").risks(List.of("Порядок строк не гарантирован"))
+                    .suggestedIndexes(List.of("CREATE INDEX ON orders (customer_id)")).build());
+            userId = user.getId();
+            chatId = chat.getId();
+        });
+        fingerprint = Long.toHexString(7L);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.backend.service.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.service.DatabaseConnectionService;
+import com.example.backend.service.plan.PlanParser;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+
+public class MppAnalyzerTest {
+
+    private final MppAnalyzer analyzer = new MppAnalyzer(null, null, null);
+
+    @Test
+    public void analyze_JoinOnNonDistributionKey_ReportsRedistribution() throws Exception {
+        MppAnalysis analysis = analyzer.analyze(
+                parse("SELECT c.name, sum(o.amount) FROM orders o JOIN customers c ON o.customer_id = c.id "
+                        + "GROUP BY c.name"),
+                Map.of("orders", List.of("order_id"), "customers", List.of("id")),
+                Map.of("orders", 800_000_000L, "customers", 2_000_000L),
+                Map.of(), null);
+
+        assertEquals(1, analysis.getFindings().size());
+        String finding = analysis.getFindings().get(0);
+        assertTrue(finding.contains("orders.customer_id = customers.id"), finding);
+        assertTrue(finding.contains("(order_id)"), finding);
+        assertTrue(finding.contains("800 млн строк"), finding);
+    }
+
+    @Test
+    public void analyze_ColocatedJoin_HasNoFindings() throws Exception {
+        MppAnalysis analysis = analyzer.analyze(
+                parse("SELECT * FROM orders o JOIN order_items i ON i.order_id = o.order_id"),
+                Map.of("orders", List.of("order_id"), "order_items", List.of("order_id")),
+                Map.of(), Map.of(), null);
+
+        assertTrue(analysis.getFindings().isEmpty());
+    }
+
+    @Test
+    public void analyze_SkewRandomDistributionAndBroadcastMotion() throws Exception {
+        ExecutionPlan plan = new PlanParser().parse("""
+                [{"Plan": {"Node Type": "Gather Motion", "Slice": 2, "Total Cost": 900.0,
+                  "Plans": [{"Node Type": "Hash Join", "Slice": 1, "Total Cost": 850.0,
+                    "Plans": [
+                      {"Node Type": "Seq Scan", "Relation Name": "sales", "Slice": 1, "Total Cost": 400.0},
+                      {"Node Type": "Broadcast Motion", "Slice": 0, "Plan Rows": 5000000, "Total Cost": 300.0,
+                       "Plans": [{"Node Type": "Seq Scan", "Relation Name": "stores", "Slice": 0}]}
+                    ]}]}}]
+                """);
+
+        MppAnalysis analysis = analyzer.analyze(
+                parse("SELECT * FROM sales s JOIN stores st ON st.id = s.store_id"),
+                Map.of("sales", List.of("store_id"), "stores", List.of()),
+                Map.of(), Map.of("sales", List.of(100L, 100L, 100L, 500L)), plan);
+
+        assertEquals(Map.of("sales", MppAnalyzer.skewCoefficient(List.of(100L, 100L, 100L, 500L))),
+                analysis.getSkewCoefficients());
+        assertTrue(analysis.getFindings().stream().anyMatch(f -> f.startsWith("Таблица stores распределена случайно")));
+        assertTrue(analysis.getFindings().stream().anyMatch(f -> f.startsWith("Перекос данных в sales")));
+        assertTrue(analysis.getFindings().stream().anyMatch(f -> f.startsWith("Broadcast Motion stores: ~5 млн строк")));
+        assertTrue(analysis.getFindings().stream().anyMatch(f -> f.startsWith("План состоит из 3 слайсов")));
+    }
+
+    @Test
+    public void segmentRows_CountedOncePerTableWithinTtl() {
+        DatabaseConnectionService connections = mock(DatabaseConnectionService.class);
+        when(connections.getSegmentRowCounts(eq(1L), eq(List.of("sales")), anyInt()))
+                .thenReturn(Map.of("sales", List.of(100L, 300L)));
+        when(connections.getSegmentRowCounts(eq(1L), eq(List.of("orders")), anyInt()))
+                .thenReturn(Map.of("orders", List.of(50L, 50L)));
+        MppAnalyzer cachingAnalyzer = new MppAnalyzer(connections, null, null);
+
+        cachingAnalyzer.segmentRows(1L, List.of("sales"));
+        Map<String, List<Long>> rows = cachingAnalyzer.segmentRows(1L, List.of("SALES", "orders"));
+
+        assertEquals(Map.of("SALES", List.of(100L, 300L), "orders", List.of(50L, 50L)), rows);
+        verify(connections).getSegmentRowCounts(eq(1L), eq(List.of("sales")), anyInt());
+        verify(connections).getSegmentRowCounts(eq(1L), eq(List.of("orders")), anyInt());
+    }
+
+    @Test
+    public void skewCoefficient_UniformSegments_IsZero() {
+        assertEquals(0.0, MppAnalyzer.skewCoefficient(List.of(250L, 250L, 250L, 250L)));
+        assertEquals(null, MppAnalyzer.skewCoefficient(List.of(0L, 0L)));
+    }
+
+    private Statement parse(String sql) throws Exception {
+        return CCJSqlParserUtil.parse(sql);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.backend.service.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+
+public class QueryAnalyzerTest {
+
+    private final QueryAnalyzer analyzer = new QueryAnalyzer();
+
+    @Test
+    public void analyze_PointLookup_IsBelowThreshold() throws Exception {
+        QueryAnalysis analysis = analyzer.analyze(parse("SELECT id, name FROM users WHERE id = 42"), Map.of());
+
+        assertEquals(0, analysis.getScore());
+        assertTrue(analysis.isBelowThreshold());
+    }
+
+    @Test
+    public void analyze_JoinsSubqueriesAndFunctions_AreAboveThreshold() throws Exception {
+        QueryAnalysis analysis = analyzer.analyze(parse(
+                "SELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id "
+                        + "WHERE date(o.created_at) = '2024-01-01' AND o.id IN (SELECT order_id FROM payments) "
+                        + "ORDER BY o.id"), Map.of());
+
+        // 1 JOIN, 1 подзапрос, 1 функция над столбцом, ORDER BY без LIMIT
+        assertEquals(10 + 15 + 15 + 10, analysis.getScore());
+        assertFalse(analysis.isBelowThreshold());
+    }
+
+    @Test
+    public void analyze_CatalogStatistics_AdjustScore() throws Exception {
+        Statement statement = parse("SELECT count(*) FROM events");
+
+        assertTrue(analyzer.analyze(statement, Map.of("events", 500L)).isBelowThreshold());
+        QueryAnalysis large = analyzer.analyze(statement, Map.of("events", 5_000_000L));
+        assertEquals(15 + 20, large.getScore());
+        assertFalse(large.isBelowThreshold());
+    }
+
+    @Test
+    public void analyze_DataModifyingStatement_AlwaysGoesToLlm() throws Exception {
+        assertFalse(analyzer.analyze(parse("DELETE FROM sessions WHERE id = 1"), Map.of()).isBelowThreshold());
+    }
+
+    @Test
+    public void tableNames_ExcludeCteNames() throws Exception {
+        Set<String> names = analyzer.tableNames(parse(
+                "WITH recent AS (SELECT * FROM orders) SELECT * FROM recent JOIN customers ON true"));
+
+        assertEquals(Set.of("orders", "customers"), names);
+    }
+
+    private Statement parse(String sql) throws Exception {
+        return CCJSqlParserUtil.parse(sql);
+    }
+}
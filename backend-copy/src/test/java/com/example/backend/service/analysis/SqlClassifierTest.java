@@ -0,0 +1,45 @@
+package com.example.backend.service.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.service.analysis.SqlClassifier.Kind;
+
+public class SqlClassifierTest {
+
+    @Test
+    public void classify_SkipsWhitespaceCommentsAndParentheses() {
+        assertEquals(Kind.SELECT, SqlClassifier.classify("  \n\tselect 1"));
+        assertEquals(Kind.SELECT, SqlClassifier.classify("-- отчет\n/* внешний /* вложенный */ */ SeLeCt * FROM t"));
+        assertEquals(Kind.SELECT, SqlClassifier.classify("﻿( (SELECT 1) UNION (SELECT 2))"));
+        assertEquals(Kind.DELETE, SqlClassifier.classify("delete from orders"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("-- SELECT 1"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("/* SELECT 1"));
+    }
+
+    @Test
+    public void classify_RecognizesWithExplainAndMerge() {
+        assertEquals(Kind.WITH, SqlClassifier.classify("WITH recent AS (SELECT 1) SELECT * FROM recent"));
+        assertEquals(Kind.WITH, SqlClassifier.classify("with recursive \"tree\"(id, parent) as (select 1, 2) table tree"));
+        assertEquals(Kind.EXPLAIN, SqlClassifier.classify("EXPLAIN (ANALYZE, BUFFERS) SELECT 1"));
+        assertEquals(Kind.EXPLAIN, SqlClassifier.classify("explain analyze verbose with a as (select 1) select 1"));
+        assertEquals(Kind.MERGE, SqlClassifier.classify("MERGE INTO stock s USING delivery d ON s.id = d.id "
+                + "WHEN MATCHED THEN UPDATE SET qty = s.qty + d.qty"));
+        assertTrue(SqlClassifier.classify("WITH a AS (SELECT 1) SELECT 1").isQuery());
+        assertFalse(SqlClassifier.classify("INSERT INTO t VALUES (1)").isQuery());
+    }
+
+    @Test
+    public void classify_DoesNotMistakeProseForSql() {
+        assertEquals(Kind.NONE, SqlClassifier.classify("With this query I get a timeout"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("Explain why the plan uses a seq scan"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("Merge these two queries please"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("Selected rows are wrong"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("Почему запрос медленный?"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("   "));
+        assertEquals(Kind.NONE, SqlClassifier.classify(null));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.backend.service.decompose;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+public class QueryDecomposerTest {
+
+    private static final String QUERY = "WITH recent AS (SELECT id, customer_id FROM orders WHERE created_at > '2024-01-01'), "
+            + "totals AS (SELECT customer_id, sum(amount) AS total FROM payments GROUP BY customer_id) "
+            + "SELECT r.id, t.total FROM recent r JOIN totals t ON t.customer_id = r.customer_id "
+            + "JOIN (SELECT id FROM customers WHERE active = 1) c ON c.id = r.customer_id";
+
+    private final QueryDecomposer decomposer = new QueryDecomposer();
+
+    @Test
+    public void decompose_SplitsCtesAndDerivedTables() throws Exception {
+        Decomposition decomposition = decomposer.decompose(CCJSqlParserUtil.parse(QUERY), 0);
+
+        assertEquals(List.of("CTE recent", "CTE totals", "Производная таблица c"), labels(decomposition));
+        assertEquals(List.of("recent", "totals"), decomposition.getCteNames());
+        assertEquals("SELECT id FROM customers WHERE active = 1", decomposition.getUnits().get(2).getSql());
+    }
+
+    @Test
+    public void decompose_UnionBranchesAndMinUnitSize() throws Exception {
+        Decomposition decomposition = decomposer.decompose(CCJSqlParserUtil.parse(
+                "SELECT id FROM archive_orders WHERE status = 'NEW' UNION ALL SELECT id FROM orders WHERE status = 'NEW' "
+                        + "UNION ALL SELECT 1"), 20);
+
+        // Ветвь SELECT 1 короче порога и остается в каркасе
+        assertEquals(List.of("Ветвь UNION 1", "Ветвь UNION 2"), labels(decomposition));
+        assertNull(decomposer.decompose(CCJSqlParserUtil.parse("DELETE FROM orders"), 0));
+    }
+
+    @Test
+    public void reassemble_SubstitutesValidPartsAndRejectsChangedColumns() throws Exception {
+        Decomposition decomposition = decomposer.decompose(CCJSqlParserUtil.parse(QUERY), 0);
+        QueryUnit recent = decomposition.getUnits().get(0);
+        QueryUnit totals = decomposition.getUnits().get(1);
+        QueryUnit customers = decomposition.getUnits().get(2);
+
+        Reassembly reassembly = decomposer.reassemble(decomposition, Map.of(
+                recent, "SELECT id, customer_id FROM orders WHERE created_at >= '2024-01-02';",
+                // Потерян столбец total
+                totals, "SELECT customer_id FROM payments GROUP BY customer_id",
+                customers, "not a query"));
+
+        assertEquals(List.of(totals, customers), reassembly.getRejected());
+        assertTrue(reassembly.getSql().contains("WHERE created_at >= '2024-01-02'"), reassembly.getSql());
+        assertTrue(reassembly.getSql().contains("sum(amount) AS total"), reassembly.getSql());
+        CCJSqlParserUtil.parse(reassembly.getSql());
+    }
+
+    private List<String> labels(Decomposition decomposition) {
+        return decomposition.getUnits().stream().map(QueryUnit::getLabel).toList();
+    }
+}
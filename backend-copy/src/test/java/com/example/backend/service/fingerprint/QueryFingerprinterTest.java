@@ -0,0 +1,55 @@
+package com.example.backend.service.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.service.analysis.QueryAnalyzer;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+public class QueryFingerprinterTest {
+
+    private final QueryFingerprinter fingerprinter = new QueryFingerprinter(new QueryAnalyzer());
+
+    @Test
+    public void fingerprint_IgnoresLiteralsCaseAndWhitespace() throws Exception {
+        QueryFingerprint first = fingerprint("SELECT id FROM orders WHERE status = 'NEW' AND amount > 10.5 "
+                + "AND customer_id IN (1, 2, 3) ORDER BY id LIMIT 10");
+        QueryFingerprint second = fingerprint("select id\n  from ORDERS where status = 'PAID' and amount > -3 "
+                + "and customer_id in (7) order by id limit 500");
+
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals("select id from orders where status = ? and amount > ? and customer_id in (?) order by id limit ?",
+                first.getNormalizedQuery());
+        assertEquals(16, first.getHex().length());
+    }
+
+    @Test
+    public void fingerprint_DistinguishesShapes() throws Exception {
+        assertNotEquals(fingerprint("SELECT id FROM orders WHERE status = 'NEW'").getFingerprint(),
+                fingerprint("SELECT id FROM orders WHERE customer_id = 1").getFingerprint());
+        // Список значений сворачивается, подзапрос — нет
+        assertNotEquals(fingerprint("SELECT id FROM orders WHERE customer_id IN (1, 2)").getFingerprint(),
+                fingerprint("SELECT id FROM orders WHERE customer_id IN (SELECT id FROM customers)").getFingerprint());
+    }
+
+    @Test
+    public void fingerprint_StatementTypeAndTables() throws Exception {
+        QueryFingerprint select = fingerprint("WITH recent AS (SELECT * FROM Orders) "
+                + "SELECT * FROM recent r JOIN customers c ON c.id = r.customer_id");
+        QueryFingerprint update = fingerprint("UPDATE orders SET status = 'DONE' WHERE id = 5");
+
+        assertEquals("SELECT", select.getStatementType());
+        assertEquals(Set.of("orders", "customers"), select.getTables());
+        assertEquals("UPDATE", update.getStatementType());
+        assertEquals("update orders set status = ? where id = ?", update.getNormalizedQuery());
+    }
+
+    private QueryFingerprint fingerprint(String sql) throws Exception {
+        return fingerprinter.fingerprint(CCJSqlParserUtil.parse(sql));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.backend.service.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+public class IndexCandidateExtractorTest {
+
+    private final IndexCandidateExtractor extractor = new IndexCandidateExtractor();
+
+    @Test
+    public void extract_EqualityBeforeRange() throws Exception {
+        List<IndexCandidate> candidates = extract(
+                "SELECT * FROM orders WHERE created_at >= '2024-01-01' AND status = 'NEW' AND customer_id = 7");
+
+        assertEquals(List.of(new IndexCandidate("orders", List.of("status", "customer_id", "created_at"))),
+                candidates);
+    }
+
+    @Test
+    public void extract_JoinKeysResolvedThroughAliases() throws Exception {
+        List<IndexCandidate> candidates = extract(
+                "SELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id WHERE c.region = 'EU'");
+
+        assertTrue(candidates.contains(new IndexCandidate("customers", List.of("region"))));
+        assertTrue(candidates.contains(new IndexCandidate("customers", List.of("id"))));
+        assertTrue(candidates.contains(new IndexCandidate("orders", List.of("customer_id"))));
+    }
+
+    @Test
+    public void extract_OrderByFollowsEqualityColumns() throws Exception {
+        List<IndexCandidate> candidates = extract(
+                "SELECT id FROM events WHERE user_id = 1 ORDER BY created_at DESC LIMIT 20");
+
+        assertEquals(List.of(
+                new IndexCandidate("events", List.of("user_id")),
+                new IndexCandidate("events", List.of("user_id", "created_at"))), candidates);
+        assertEquals("CREATE INDEX ON events (user_id, created_at)", candidates.get(1).toCreateStatement());
+    }
+
+    @Test
+    public void extract_SubqueryTablesAndSchemaQualifiedNames() throws Exception {
+        List<IndexCandidate> candidates = extract(
+                "SELECT id FROM sales.orders WHERE customer_id IN (SELECT id FROM customers WHERE vip = true)");
+
+        assertTrue(candidates.contains(new IndexCandidate("sales.orders", List.of("customer_id"))));
+        assertTrue(candidates.contains(new IndexCandidate("customers", List.of("vip"))));
+    }
+
+    @Test
+    public void extract_AmbiguousColumnsAreIgnored() throws Exception {
+        List<IndexCandidate> candidates = extract(
+                "SELECT * FROM orders o, customers c WHERE status = 'NEW'");
+
+        assertTrue(candidates.isEmpty());
+    }
+
+    private List<IndexCandidate> extract(String sql) throws Exception {
+        return extractor.extract(CCJSqlParserUtil.parse(sql));
+    }
+}
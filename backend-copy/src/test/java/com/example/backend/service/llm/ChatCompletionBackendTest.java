@@ -0,0 +1,85 @@
+package com.example.backend.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.backend.metrics.OptimizationMetrics;
+import com.example.backend.service.GigaChatAuthService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ChatCompletionBackendTest {
+
+    private final OptimizationMetrics metrics = new OptimizationMetrics(new SimpleMeterRegistry());
+
+    private final LLMRequest request = LLMRequest.builder()
+            .systemPrompt("system")
+            .userPrompt("SELECT 1")
+            .temperature(0.2)
+            .maxTokens(512)
+            .schemaName(OptimizationResultParser.SCHEMA_NAME)
+            .responseSchema(OptimizationResultParser.SCHEMA)
+            .build();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void openAiCompatible_RequestsJsonSchema() {
+        Map<String, Object> body = openAi(true).prepareRequestBody(request);
+
+        Map<String, Object> responseFormat = (Map<String, Object>) body.get("response_format");
+        assertEquals("json_schema", responseFormat.get("type"));
+        Map<String, Object> jsonSchema = (Map<String, Object>) responseFormat.get("json_schema");
+        assertEquals(OptimizationResultParser.SCHEMA_NAME, jsonSchema.get("name"));
+        assertEquals(OptimizationResultParser.SCHEMA, jsonSchema.get("schema"));
+    }
+
+    @Test
+    public void openAiCompatible_StructuredOutputDisabled() {
+        assertFalse(openAi(false).prepareRequestBody(request).containsKey("response_format"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void gigaChat_ForcesFunctionCall() {
+        Map<String, Object> body = gigaChat().prepareRequestBody(request);
+
+        List<Map<String, Object>> functions = (List<Map<String, Object>>) body.get("functions");
+        assertEquals(OptimizationResultParser.SCHEMA, functions.get(0).get("parameters"));
+        assertEquals(Map.of("name", OptimizationResultParser.SCHEMA_NAME), body.get("function_call"));
+    }
+
+    @Test
+    public void extractContent_FunctionCallArguments() {
+        // GigaChat возвращает аргументы объектом, OpenAI — строкой
+        assertEquals("{\"optimizedSql\":\"SELECT 1\"}", gigaChat().extractContent("""
+                {"choices": [{"message": {"role": "assistant", "content": "",
+                  "function_call": {"name": "optimization_result", "arguments": {"optimizedSql": "SELECT 1"}}}}]}"""));
+        assertEquals("{\"optimizedSql\": \"SELECT 1\"}", openAi(true).extractContent("""
+                {"choices": [{"message": {"content": null,
+                  "function_call": {"arguments": "{\\"optimizedSql\\": \\"SELECT 1\\"}"}}}]}"""));
+    }
+
+    @Test
+    public void extractContent_PlainContent() {
+        assertEquals("SELECT 1", openAi(true).extractContent(
+                "{\"choices\": [{\"message\": {\"content\": \"SELECT 1\"}}]}"));
+    }
+
+    private OpenAiCompatibleBackend openAi(boolean structuredOutput) {
+        return new OpenAiCompatibleBackend("local", "model", "http://localhost:1234", 0, Duration.ofSeconds(1),
+                structuredOutput, new RestTemplate(), metrics);
+    }
+
+    private GigaChatBackend gigaChat() {
+        return new GigaChatBackend("gigachat", "GigaChat", 0, Duration.ofSeconds(1), true,
+                mock(GigaChatAuthService.class), metrics);
+    }
+}
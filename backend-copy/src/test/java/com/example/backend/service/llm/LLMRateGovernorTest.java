@@ -0,0 +1,146 @@
+package com.example.backend.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.ApiException;
+import com.example.backend.exception.LLMRateLimitException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+public class LLMRateGovernorTest {
+
+    private LLMConfig.RateLimit config;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        config = new LLMConfig.RateLimit();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void withUserLimit_QueueFull_RejectsWithTooManyRequests() {
+        config.getUser().setMaxInFlight(1);
+        config.getUser().setMaxQueue(0);
+        LLMRateGovernor governor = governor();
+        Sinks.One<String> blocker = Sinks.one();
+
+        governor.withUserLimit(1L, blocker::asMono).subscribe();
+
+        ApiException error = assertThrows(ApiException.class,
+                () -> governor.withUserLimit(1L, () -> Mono.just("second")).block());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, error.getStatus());
+        assertEquals("other user", governor.withUserLimit(2L, () -> Mono.just("other user")).block());
+        assertEquals(1.0, meterRegistry.get("llm.governor.rejected").counter().count());
+    }
+
+    @Test
+    public void withUserLimit_WaitsForReleasedSlot() {
+        config.getUser().setMaxInFlight(1);
+        LLMRateGovernor governor = governor();
+        Sinks.One<String> blocker = Sinks.one();
+        AtomicInteger started = new AtomicInteger();
+
+        governor.withUserLimit(1L, blocker::asMono).subscribe();
+        Mono<String> queued = governor.withUserLimit(1L, () -> {
+            started.incrementAndGet();
+            return Mono.just("queued");
+        });
+        queued.subscribe();
+
+        assertEquals(0, started.get());
+        assertEquals(1.0, meterRegistry.get("llm.governor.queue.size").tag("scope", "user").gauge().value());
+        blocker.tryEmitValue("first");
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    public void withProviderLimit_TokenBucketSpacesRequests() {
+        LLMConfig.Limit limit = new LLMConfig.Limit();
+        limit.setPermitsPerSecond(10);
+        limit.setBurst(1);
+        config.getProviders().put(LLMBackend.GROUP_GIGACHAT, limit);
+        LLMRateGovernor governor = governor();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            governor.withProviderLimit(LLMBackend.GROUP_GIGACHAT, () -> Mono.just("ok")).block();
+        }
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertTrue(elapsedMs >= 150, "expected at least two refill intervals, got " + elapsedMs + "ms");
+    }
+
+    @Test
+    public void withProviderLimit_RetryAfterPausesProvider() {
+        LLMRateGovernor governor = governor();
+
+        assertThrows(LLMRateLimitException.class, () -> governor.withProviderLimit(LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.<String>error(new LLMRateLimitException("slow down", Duration.ofMillis(300)))).block());
+
+        long start = System.nanoTime();
+        governor.withProviderLimit(LLMBackend.GROUP_GIGACHAT, () -> Mono.just("ok")).block();
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 250);
+    }
+
+    @Test
+    public void evictIdleUserGovernors_KeepsBusyUsers() {
+        config.getUser().setMaxInFlight(1);
+        LLMRateGovernor governor = governor();
+        Sinks.One<String> blocker = Sinks.one();
+
+        governor.withUserLimit(1L, blocker::asMono).subscribe();
+        assertEquals("done", governor.withUserLimit(2L, () -> Mono.just("done")).block());
+
+        assertEquals(1, governor.evictIdleUserGovernors());
+        assertEquals(1, governor.userGovernorCount());
+        blocker.tryEmitValue("first");
+        assertEquals(1, governor.evictIdleUserGovernors());
+        assertEquals(0, governor.userGovernorCount());
+        // После очистки пользователь получает новый ограничитель
+        assertEquals("again", governor.withUserLimit(1L, () -> Mono.just("again")).block());
+        assertEquals(1, governor.userGovernorCount());
+    }
+
+    @Test
+    public void retireIfIdle_PartialBucketIsKeptAndRetiredGrantsNothing() {
+        LLMConfig.Limit limit = new LLMConfig.Limit();
+        limit.setPermitsPerSecond(0.001);
+        limit.setBurst(2);
+        RequestGovernor requestGovernor = new RequestGovernor("user:1", limit, Schedulers.parallel());
+
+        requestGovernor.acquire().block().release();
+
+        assertFalse(requestGovernor.retireIfIdle());
+
+        RequestGovernor idle = new RequestGovernor("user:2", limit, Schedulers.parallel());
+        assertTrue(idle.retireIfIdle());
+        assertNull(idle.acquire().block());
+    }
+
+    @Test
+    public void parseRetryAfter_SecondsAndInvalid() {
+        assertEquals(Duration.ofSeconds(7), LLMRateGovernor.parseRetryAfter("7"));
+        assertEquals(null, LLMRateGovernor.parseRetryAfter("soon"));
+        assertEquals(null, LLMRateGovernor.parseRetryAfter(null));
+    }
+
+    private LLMRateGovernor governor() {
+        return new LLMRateGovernor(config, meterRegistry, Schedulers.parallel());
+    }
+}
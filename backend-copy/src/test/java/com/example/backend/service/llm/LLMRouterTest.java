@@ -0,0 +1,193 @@
+package com.example.backend.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.ApiException;
+import com.example.backend.metrics.OptimizationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+public class LLMRouterTest {
+
+    private final LLMRequest request = LLMRequest.builder()
+            .systemPrompt("system")
+            .userPrompt("SELECT 1")
+            .temperature(0.1)
+            .maxTokens(100)
+            .build();
+
+    private LLMConfig.Router routerConfig;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        routerConfig = new LLMConfig.Router();
+        routerConfig.setHedgeEnabled(false);
+        routerConfig.setCircuitFailureThreshold(2);
+        routerConfig.setCircuitOpenMs(60000);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void route_PrimaryServerError_FailsOverToNextBackend() {
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.error(new ApiException("down", HttpStatus.SERVICE_UNAVAILABLE)));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+
+        String result = router(primary, secondary).route(LLMBackend.GROUP_GIGACHAT, request).block();
+
+        assertEquals("from local", result);
+        assertEquals(1, primary.calls.get());
+        assertEquals(1, secondary.calls.get());
+    }
+
+    @Test
+    public void route_ClientError_DoesNotFailOver() {
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.error(new ApiException("bad prompt", HttpStatus.BAD_REQUEST)));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+
+        ApiException error = assertThrows(ApiException.class,
+                () -> router(primary, secondary).route(LLMBackend.GROUP_GIGACHAT, request).block());
+
+        assertEquals(HttpStatus.BAD_REQUEST, error.getStatus());
+        assertEquals(0, secondary.calls.get());
+    }
+
+    @Test
+    public void route_RepeatedServerErrors_OpensCircuitAndSkipsBackend() {
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.error(new ApiException("down", HttpStatus.SERVICE_UNAVAILABLE)));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+        LLMRouter router = router(primary, secondary);
+
+        router.route(LLMBackend.GROUP_GIGACHAT, request).block();
+        router.route(LLMBackend.GROUP_GIGACHAT, request).block();
+        String result = router.route(LLMBackend.GROUP_GIGACHAT, request).block();
+
+        assertEquals("from local", result);
+        assertEquals(2, primary.calls.get());
+        assertEquals(List.of(secondary), router.rankCandidates(LLMBackend.GROUP_GIGACHAT));
+        assertEquals(1.0, meterRegistry.get("llm.backend.circuit.open").tag("backend", "giga").gauge().value());
+    }
+
+    @Test
+    public void route_SlowPrimary_HedgesToSecondary() {
+        routerConfig.setHedgeEnabled(true);
+        routerConfig.setHedgeDefaultDelayMs(50);
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.delay(Duration.ofSeconds(10)).thenReturn("from giga"));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+
+        long start = System.nanoTime();
+        String result = router(primary, secondary).route(LLMBackend.GROUP_GIGACHAT, request).block();
+
+        assertEquals("from local", result);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5000);
+    }
+
+    @Test
+    public void route_HedgingFastFailingPrimary_FailsOverWithoutWaitingForHedge() {
+        routerConfig.setHedgeEnabled(true);
+        routerConfig.setHedgeDefaultDelayMs(5000);
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.error(new ApiException("down", HttpStatus.SERVICE_UNAVAILABLE)));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+
+        long start = System.nanoTime();
+        String result = router(primary, secondary).route(LLMBackend.GROUP_GIGACHAT, request).block();
+
+        assertEquals("from local", result);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+        assertEquals(1, secondary.calls.get());
+    }
+
+    @Test
+    public void route_HedgingClientError_IsNotHedged() throws InterruptedException {
+        routerConfig.setHedgeEnabled(true);
+        routerConfig.setHedgeDefaultDelayMs(50);
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT,
+                () -> Mono.error(new ApiException("bad prompt", HttpStatus.BAD_REQUEST)));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+
+        ApiException error = assertThrows(ApiException.class,
+                () -> router(primary, secondary).route(LLMBackend.GROUP_GIGACHAT, request).block());
+        // Таймер хеджа отменен: второй бэкенд не вызывается и после задержки
+        Thread.sleep(200);
+
+        assertEquals(HttpStatus.BAD_REQUEST, error.getStatus());
+        assertEquals(0, secondary.calls.get());
+    }
+
+    @Test
+    public void route_NoCrossProviderFallback_OnlyUsesRequestedGroup() {
+        routerConfig.setCrossProviderFallback(false);
+        FakeBackend primary = new FakeBackend("giga", LLMBackend.GROUP_GIGACHAT, () -> Mono.just("from giga"));
+        FakeBackend secondary = new FakeBackend("local", LLMBackend.GROUP_LOCAL, () -> Mono.just("from local"));
+
+        assertEquals(List.of(secondary), router(primary, secondary).rankCandidates(LLMBackend.GROUP_LOCAL));
+    }
+
+    private LLMRouter router(LLMBackend... backends) {
+        LLMRateGovernor rateGovernor = new LLMRateGovernor(new LLMConfig.RateLimit(), meterRegistry,
+                Schedulers.parallel());
+        return new LLMRouter(routerConfig, List.of(backends), rateGovernor, new OptimizationMetrics(meterRegistry),
+                meterRegistry);
+    }
+
+    private static class FakeBackend implements LLMBackend {
+
+        private final String name;
+        private final String group;
+        private final Supplier<Mono<String>> response;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        FakeBackend(String name, String group, Supplier<Mono<String>> response) {
+            this.name = name;
+            this.group = group;
+            this.response = response;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getGroup() {
+            return group;
+        }
+
+        @Override
+        public String getModel() {
+            return "test-model";
+        }
+
+        @Override
+        public double getCostPer1kTokens() {
+            return 0;
+        }
+
+        @Override
+        public Mono<String> complete(LLMRequest request) {
+            return Mono.defer(() -> {
+                calls.incrementAndGet();
+                return response.get();
+            });
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.backend.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.dto.OptimizationResult;
+
+public class OptimizationResultParserTest {
+
+    @Test
+    public void parse_SchemaCompliantJson() {
+        OptimizationResult result = OptimizationResultParser.parse("""
+                {"optimizedSql": "SELECT id FROM orders WHERE status = 'NEW'",
+                 "rationale": "Убран SELECT *", "estimatedGain": "~20%",
+                 "risks": [], "indexSuggestions": ["CREATE INDEX ON orders (status)"]}""");
+
+        assertEquals("SELECT id FROM orders WHERE status = 'NEW'", result.getOptimizedSql());
+        assertEquals("Убран SELECT *", result.getRationale());
+        assertEquals("~20%", result.getEstimatedGain());
+        assertEquals(List.of(), result.getRisks());
+        assertEquals(List.of("CREATE INDEX ON orders (status)"), result.getIndexSuggestions());
+    }
+
+    @Test
+    public void parse_JsonWrappedInTextWithRawNewlinesAndTrailingComma() {
+        // Так отвечают локальные модели без ограничения по схеме
+        OptimizationResult result = OptimizationResultParser.parse("""
+                Вот результат {в JSON}:
+                ```json
+                {"optimizedSql": "SELECT id
+                FROM orders WHERE note = '}'",
+                 "rationale": "Фильтр {status}",
+                 "risks": "Порядок строк не гарантирован",}
+                ```""");
+
+        assertEquals("SELECT id\nFROM orders WHERE note = '}'", result.getOptimizedSql());
+        assertEquals("Фильтр {status}", result.getRationale());
+        assertEquals("", result.getEstimatedGain());
+        assertEquals(List.of("Порядок строк не гарантирован"), result.getRisks());
+    }
+
+    @Test
+    public void parse_NestedResultAndFencedSql() {
+        OptimizationResult result = OptimizationResultParser.parse(
+                "{\"result\": {\"optimizedSql\": \"```sql\\nSELECT 1\\n```\", \"rationale\": \"\"}}");
+
+        assertEquals("SELECT 1", result.getOptimizedSql());
+    }
+
+    @Test
+    public void parse_MarkdownFallback() {
+        OptimizationResult result = OptimizationResultParser.parse("""
+                ## Оптимизированный SQL-запрос
+                ```sql
+                SELECT id FROM orders
+                ```
+                ## Обоснование изменений
+                Убран SELECT *""");
+
+        assertEquals("SELECT id FROM orders", result.getOptimizedSql());
+        assertEquals("#### Обоснование изменений\nУбран SELECT *", result.getRationale());
+        assertTrue(result.getRisks().isEmpty());
+    }
+
+    @Test
+    public void parse_PlainSqlFallback() {
+        assertEquals("SELECT 1", OptimizationResultParser.parse(" SELECT 1 ").getOptimizedSql());
+    }
+
+    @Test
+    public void parse_NoSql_RetryableError() {
+        ApiException error = assertThrows(ApiException.class,
+                () -> OptimizationResultParser.parse("Запрос уже оптимален."));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, error.getStatus());
+    }
+
+    @Test
+    public void parse_InvalidSql_RetryableError() {
+        ApiException error = assertThrows(ApiException.class,
+                () -> OptimizationResultParser.parse("{\"optimizedSql\": \"SELECT FROM WHERE\"}"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, error.getStatus());
+        assertTrue(error.getMessage().startsWith("LLM returned an invalid SQL query"));
+    }
+
+    @Test
+    public void findResultObject_TruncatedResponse() {
+        assertNull(OptimizationResultParser.findResultObject("{\"optimizedSql\": \"SELECT 1\", \"rationale\": \"об"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.backend.service.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.example.backend.config.LLMConfig;
+import com.example.backend.exception.ApiException;
+import com.example.backend.model.catalog.TableMetadata;
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.service.plan.PlanParser;
+
+public class PromptBudgeterTest {
+
+    private static final String TEMPLATE = "Запрос: {query_text}\nПлан: {query_plan}\nМетаданные: {tables_meta}";
+
+    private static final String PLAN = """
+            [{"Plan": {"Node Type": "Hash Join", "Total Cost": 10000.0, "Plan Rows": 500,
+              "Plans": [
+                {"Node Type": "Seq Scan", "Relation Name": "orders", "Total Cost": 9000.0, "Plan Rows": 100000,
+                 "Filter": "(status = 'NEW'::text)"},
+                {"Node Type": "Hash", "Total Cost": 50.0, "Plan Rows": 100,
+                 "Plans": [{"Node Type": "Seq Scan", "Relation Name": "customers", "Total Cost": 40.0,
+                            "Plan Rows": 100}]}
+              ]}}]
+            """;
+
+    @Test
+    public void estimate_CountsWordsAndPunctuation() {
+        assertEquals(0, TokenEstimator.estimate("   "));
+        // select(2) *(1) from(1) orders(2)
+        assertEquals(6, TokenEstimator.estimate("select * from orders"));
+        // оптимизация — 11 букв, по 3 на токен
+        assertEquals(4, TokenEstimator.estimate("оптимизация"));
+    }
+
+    @Test
+    public void budget_FillsPlaceholdersAndPrunesCheapPlanNodes() {
+        PromptBudgeter budgeter = new PromptBudgeter(budget(8192));
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("id", "bigint");
+        columns.put("status", "text");
+        columns.put("comment", "text");
+        PromptContext context = PromptContext.builder()
+                .plan(new PlanParser().parse(PLAN))
+                .tables(Map.of("orders", TableMetadata.builder().name("orders").rowEstimate(100000L)
+                        .columns(columns).indexes(List.of("CREATE INDEX orders_status_idx ON orders (status)"))
+                        .build()))
+                .referencedColumns(Set.of("id", "status"))
+                .build();
+
+        BudgetedPrompt prompt = budgeter.budget(TEMPLATE, "SELECT id FROM orders WHERE status = 'NEW'", context, 2048);
+
+        assertFalse(prompt.getSystemPrompt().contains("{"), prompt.getSystemPrompt());
+        assertFalse(prompt.getSystemPrompt().contains("SELECT id FROM orders"));
+        assertTrue(prompt.getSystemPrompt().contains("Seq Scan on orders cost=9000 rows=100000"));
+        // Hash и Seq Scan customers дешевле 2% стоимости корня
+        assertTrue(prompt.getSystemPrompt().contains("… еще узлов: 2"));
+        assertTrue(prompt.getSystemPrompt().contains("orders (~100000 строк): id bigint, status text (+1 других столбцов)"));
+        // Короткий запрос не резервирует весь llm.max-tokens
+        int queryTokens = TokenEstimator.estimate(prompt.getUserPrompt());
+        assertEquals((int) Math.ceil(600 + 1.2 * queryTokens), prompt.getMaxTokens());
+        // ...и не превышает llm.max-tokens
+        assertEquals(300, budgeter.budget(TEMPLATE, prompt.getUserPrompt(), context, 300).getMaxTokens());
+    }
+
+    @Test
+    public void budget_DropsPlanBeforeRejectingAndRejectsOversizedQuery() {
+        ExecutionPlan plan = new PlanParser().parse(PLAN);
+        PromptContext context = PromptContext.builder().plan(plan).build();
+        String query = "SELECT id FROM orders WHERE status = 'NEW'";
+        int queryTokens = TokenEstimator.estimate(query);
+        int templateTokens = TokenEstimator.estimate(TEMPLATE.replace("{query_text}", "(запрос — в сообщении пользователя)")
+                .replace("{query_plan}", "недоступен").replace("{tables_meta}", "недоступны"));
+
+        // Окно вмещает промпт только без плана
+        PromptBudgeter tight = new PromptBudgeter(budget(templateTokens + queryTokens + 512));
+        BudgetedPrompt prompt = tight.budget(TEMPLATE, query, context, 2048);
+        assertTrue(prompt.getSystemPrompt().contains("План: недоступен"));
+        assertEquals(512, prompt.getMaxTokens());
+
+        PromptBudgeter tiny = new PromptBudgeter(budget(100));
+        ApiException error = assertThrows(ApiException.class, () -> tiny.budget(TEMPLATE, query, context, 2048));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, error.getStatus());
+    }
+
+    @Test
+    public void dedupeCtes_ReplacesRepeatedBodies() {
+        PromptBudgeter budgeter = new PromptBudgeter(budget(8192));
+
+        String deduped = budgeter.dedupeCtes("WITH a AS (SELECT id FROM orders WHERE status = 'NEW'), "
+                + "b AS (select id from orders   where status = 'NEW') SELECT * FROM a JOIN b ON a.id = b.id");
+
+        assertTrue(deduped.contains("b AS (SELECT * FROM a)"), deduped);
+        assertEquals("SELECT 1", budgeter.dedupeCtes("SELECT 1"));
+    }
+
+    private LLMConfig.Budget budget(int contextWindow) {
+        LLMConfig.Budget budget = new LLMConfig.Budget();
+        budget.setContextWindow(contextWindow);
+        return budget;
+    }
+}
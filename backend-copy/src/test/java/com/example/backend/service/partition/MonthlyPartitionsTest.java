@@ -0,0 +1,31 @@
+package com.example.backend.service.partition;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.Test;
+
+public class MonthlyPartitionsTest {
+
+    @Test
+    public void lowerBound_IsStartOfChatMonth() {
+        assertEquals(LocalDateTime.of(2026, 3, 1, 0, 0),
+                MonthlyPartitions.lowerBound(LocalDateTime.of(2026, 3, 31, 23, 59, 59)));
+        assertEquals(LocalDateTime.of(1970, 1, 1, 0, 0), MonthlyPartitions.lowerBound(null));
+    }
+
+    @Test
+    public void partitionName_RoundTripsThroughMonth() {
+        String name = MonthlyPartitions.partitionName("sql_queries", YearMonth.of(2025, 7));
+
+        assertEquals("sql_queries_p2025_07", name);
+        assertEquals(YearMonth.of(2025, 7), MonthlyPartitions.month("sql_queries", name));
+        // Секции другой таблицы и посторонние имена не считаются
+        assertNull(MonthlyPartitions.month("messages", name));
+        assertNull(MonthlyPartitions.month("sql_queries", "sql_queries_legacy"));
+        assertNull(MonthlyPartitions.month("messages", "messages_archive_p2025_07"));
+    }
+}
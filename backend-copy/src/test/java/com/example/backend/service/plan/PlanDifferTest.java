@@ -0,0 +1,118 @@
+package com.example.backend.service.plan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.backend.model.plan.ExecutionPlan;
+import com.example.backend.model.plan.PlanChange;
+import com.example.backend.model.plan.PlanDiff;
+import com.example.backend.model.plan.PlanNode;
+
+public class PlanDifferTest {
+
+    private static final String ORIGINAL = """
+            [{"Plan": {"Node Type": "Hash Join", "Join Type": "Inner", "Startup Cost": 10.0, "Total Cost": 2500.0,
+                "Plan Rows": 50, "Actual Rows": 12000, "Actual Loops": 1, "Actual Total Time": 180.5,
+                "Shared Hit Blocks": 40, "Shared Read Blocks": 900,
+                "Plans": [
+                  {"Node Type": "Seq Scan", "Relation Name": "orders", "Alias": "o", "Total Cost": 2000.0,
+                   "Plan Rows": 50, "Actual Rows": 12000, "Actual Loops": 1, "Filter": "(status = 'NEW'::text)"},
+                  {"Node Type": "Hash", "Total Cost": 30.0, "Plan Rows": 100, "Actual Rows": 100, "Actual Loops": 1,
+                   "Plans": [{"Node Type": "Seq Scan", "Relation Name": "customers", "Alias": "c",
+                              "Total Cost": 30.0, "Plan Rows": 100, "Actual Rows": 100, "Actual Loops": 1}]}
+                ]},
+              "Planning Time": 0.4, "Execution Time": 181.2}]
+            """;
+
+    private static final String OPTIMIZED = """
+            [{"Plan": {"Node Type": "Nested Loop", "Join Type": "Inner", "Total Cost": 420.0,
+                "Plan Rows": 11000, "Actual Rows": 12000, "Actual Loops": 1,
+                "Plans": [
+                  {"Node Type": "Index Scan", "Relation Name": "orders", "Index Name": "orders_status_idx",
+                   "Total Cost": 300.0, "Plan Rows": 11000, "Actual Rows": 12000, "Actual Loops": 1},
+                  {"Node Type": "Index Scan", "Relation Name": "customers", "Index Name": "customers_pkey",
+                   "Total Cost": 0.3, "Plan Rows": 1, "Actual Rows": 1, "Actual Loops": 12000}
+                ]},
+              "Planning Time": 0.5, "Execution Time": 25.0}]
+            """;
+
+    private final PlanParser parser = new PlanParser();
+    private final PlanDiffer differ = new PlanDiffer();
+
+    @Test
+    public void parse_ReadsAnalyzeAndBuffers() {
+        ExecutionPlan plan = parser.parse(ORIGINAL);
+
+        PlanNode root = plan.getRoot();
+        assertEquals("Hash Join", root.getNodeType());
+        assertEquals(900L, root.getSharedReadBlocks());
+        assertEquals(181.2, plan.getExecutionTimeMs());
+        assertEquals(4, plan.getNodes().size());
+        assertEquals(240.0, root.getEstimationError());
+        assertEquals(12000.0, parser.parse(OPTIMIZED).getRoot().getChildren().get(1).getTotalActualRows());
+    }
+
+    @Test
+    public void diff_ReportsRemovedSeqScansJoinStrategyAndMisestimates() {
+        PlanDiff diff = differ.diff(parser.parse(ORIGINAL), parser.parse(OPTIMIZED));
+
+        assertEquals(2500.0, diff.getOriginalCost());
+        assertEquals(420.0, diff.getOptimizedCost());
+        assertEquals(List.of("orders", "customers"), relations(diff, PlanChange.Type.SEQ_SCAN_REMOVED));
+        assertEquals(List.of("customers, orders"), relations(diff, PlanChange.Type.JOIN_STRATEGY_CHANGED));
+        // Hash Join и Seq Scan orders исходного плана ошиблись в 240 раз; в оптимизированном оценки точные
+        assertEquals(List.of("Hash Join", "orders"), relations(diff, PlanChange.Type.MISESTIMATE));
+    }
+
+    @Test
+    public void diff_GreenplumMotionsAndSlices() {
+        String broadcast = """
+                [{"Plan": {"Node Type": "Gather Motion", "Senders": 4, "Receivers": 1, "Slice": 2, "Total Cost": 900.0,
+                  "Plans": [{"Node Type": "Hash Join", "Slice": 1, "Total Cost": 850.0,
+                    "Plans": [
+                      {"Node Type": "Seq Scan", "Relation Name": "sales", "Slice": 1, "Total Cost": 400.0},
+                      {"Node Type": "Hash", "Slice": 1, "Total Cost": 300.0,
+                       "Plans": [{"Node Type": "Broadcast Motion", "Senders": 4, "Receivers": 4, "Slice": 0,
+                                  "Total Cost": 300.0,
+                                  "Plans": [{"Node Type": "Seq Scan", "Relation Name": "stores", "Slice": 0,
+                                             "Total Cost": 20.0}]}]}
+                    ]}]}}]
+                """;
+        String colocated = """
+                [{"Plan": {"Node Type": "Gather Motion", "Senders": 4, "Receivers": 1, "Slice": 1, "Total Cost": 600.0,
+                  "Plans": [{"Node Type": "Hash Join", "Slice": 0, "Total Cost": 550.0,
+                    "Plans": [
+                      {"Node Type": "Seq Scan", "Relation Name": "sales", "Slice": 0, "Total Cost": 400.0},
+                      {"Node Type": "Hash", "Slice": 0, "Total Cost": 20.0,
+                       "Plans": [{"Node Type": "Seq Scan", "Relation Name": "stores", "Slice": 0, "Total Cost": 20.0}]}
+                    ]}]}}]
+                """;
+
+        ExecutionPlan before = parser.parse(broadcast);
+        PlanDiff diff = differ.diff(before, parser.parse(colocated));
+
+        assertEquals(3, before.getSliceCount());
+        assertTrue(before.getRoot().isMotion());
+        assertEquals(List.of("stores"), relations(diff, PlanChange.Type.MOTION_REMOVED));
+        assertTrue(relations(diff, PlanChange.Type.SEQ_SCAN_REMOVED).isEmpty());
+    }
+
+    @Test
+    public void compression_RoundTrips() {
+        byte[] compressed = PlanCompression.compress(ORIGINAL);
+
+        assertTrue(compressed.length < ORIGINAL.length());
+        assertEquals(ORIGINAL, PlanCompression.decompress(compressed));
+    }
+
+    private List<String> relations(PlanDiff diff, PlanChange.Type type) {
+        return diff.getChanges().stream()
+                .filter(change -> change.getType() == type)
+                .map(PlanChange::getRelation)
+                .toList();
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.backend.service.rewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+public class SqlRewriteEngineTest {
+
+    private final SqlRewriteEngine engine = new SqlRewriteEngine(List.of(
+            new SelectStarInSubqueryRule(),
+            new NotInToNotExistsRule(),
+            new OrChainToInRule(),
+            new SargablePredicateRule(),
+            new RedundantDistinctRule(),
+            new UnionToUnionAllRule()));
+
+    @Test
+    public void rewrite_OrChain_BecomesIn() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT id FROM orders WHERE status = 'new' OR status = 'paid' OR status = 'sent' OR total > 10");
+
+        assertEquals("SELECT id FROM orders WHERE status IN ('new', 'paid', 'sent') OR total > 10",
+                result.getRewrittenSql());
+        assertTrue(applied(result, OrChainToInRule.ID));
+    }
+
+    @Test
+    public void rewrite_NotInSubquery_BecomesNotExists() throws JSQLParserException {
+        SqlRewriteResult result = rewrite(
+                "SELECT c.id FROM customers c WHERE c.id NOT IN (SELECT customer_id FROM orders o WHERE o.total > 100)",
+                new RewriteContext(Map.of("customers", Set.of("id"), "orders", Set.of("id", "customer_id"))));
+
+        assertEquals("SELECT c.id FROM customers c WHERE NOT EXISTS (SELECT 1 FROM orders o "
+                + "WHERE o.total > 100 AND o.customer_id = c.id)", result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_NotInNullableSubqueryColumn_OnlyHint() throws JSQLParserException {
+        // NULL в blocked.id: исходный запрос не вернет строк, NOT EXISTS — вернет
+        SqlRewriteResult result = rewrite(
+                "SELECT * FROM orders WHERE customer_id NOT IN (SELECT id FROM blocked)",
+                new RewriteContext(Map.of("orders", Set.of("customer_id"))));
+
+        assertFalse(result.isChanged());
+        assertFalse(result.getNotes().get(0).isApplied());
+        assertTrue(result.getNotes().get(0).getDescription().contains("blocked.id"));
+    }
+
+    @Test
+    public void rewrite_NotInNullableOuterColumn_OnlyHint() throws JSQLParserException {
+        // Строку с NULL в orders.customer_id NOT IN отбрасывает, NOT EXISTS — оставляет
+        SqlRewriteResult result = rewrite(
+                "SELECT * FROM orders WHERE customer_id NOT IN (SELECT id FROM blocked)",
+                new RewriteContext(Map.of("blocked", Set.of("id"))));
+
+        assertFalse(result.isChanged());
+        assertTrue(result.getNotes().get(0).getDescription().contains("orders.customer_id"));
+    }
+
+    @Test
+    public void rewrite_NotInWithoutSchema_OnlyHint() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT * FROM orders WHERE customer_id NOT IN (SELECT id FROM blocked)");
+
+        assertFalse(result.isChanged());
+    }
+
+    @Test
+    public void rewrite_NotInProvenByIsNotNull_BecomesNotExists() {
+        SqlRewriteResult result = engine.rewrite("SELECT * FROM orders WHERE customer_id IS NOT NULL "
+                + "AND customer_id NOT IN (SELECT id FROM blocked WHERE id IS NOT NULL)");
+
+        assertEquals("SELECT * FROM orders WHERE customer_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM blocked "
+                + "WHERE id IS NOT NULL AND blocked.id = orders.customer_id)", result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_NotInOnOuterJoinedColumn_OnlyHint() throws JSQLParserException {
+        // NOT NULL в схеме не спасает: LEFT JOIN дополняет строки NULL
+        SqlRewriteResult result = rewrite("SELECT o.id FROM orders o LEFT JOIN customers c ON c.id = o.customer_id "
+                + "WHERE c.id NOT IN (SELECT b.id FROM blocked b)",
+                new RewriteContext(Map.of("customers", Set.of("id"), "blocked", Set.of("id"))));
+
+        assertFalse(result.isChanged());
+    }
+
+    @Test
+    public void rewrite_NotInOnSameTable_IsSkipped() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT id FROM categories WHERE id NOT IN (SELECT parent_id FROM categories)");
+
+        assertFalse(result.isChanged());
+    }
+
+    @Test
+    public void rewrite_DateFunction_BecomesRange() throws JSQLParserException {
+        SqlRewriteResult result = rewrite(
+                "SELECT id FROM orders WHERE date(created_at) = '2024-02-29' AND EXTRACT(YEAR FROM paid_at) = 2023",
+                new RewriteContext(Map.of(), Map.of("orders",
+                        Map.of("created_at", "timestamp without time zone", "paid_at", "date"))));
+
+        assertEquals("SELECT id FROM orders WHERE (created_at >= '2024-02-29' AND created_at < '2024-03-01') "
+                + "AND (paid_at >= '2023-01-01' AND paid_at < '2024-01-01')", result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_DateCastOfTextColumn_IsKept() throws JSQLParserException {
+        SqlRewriteResult result = rewrite(
+                "SELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id "
+                        + "WHERE o.created_at::date = '2024-02-29'",
+                new RewriteContext(Map.of(), Map.of("orders", Map.of("created_at", "text"))));
+
+        assertFalse(result.isChanged());
+        assertTrue(result.getNotes().stream().noneMatch(note -> note.getRuleId().equals(SargablePredicateRule.ID)));
+    }
+
+    @Test
+    public void rewrite_DateFunctionWithoutSchema_OnlyHint() {
+        SqlRewriteResult result = engine.rewrite("SELECT id FROM orders WHERE date(created_at) = '2024-02-29'");
+
+        assertFalse(result.isChanged());
+        assertTrue(result.getNotes().stream().anyMatch(note -> !note.isApplied()
+                && note.getRuleId().equals(SargablePredicateRule.ID)));
+    }
+
+    @Test
+    public void rewrite_DistinctUnderGroupBy_IsRemoved() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT DISTINCT customer_id, count(*) FROM orders GROUP BY customer_id");
+
+        assertEquals("SELECT customer_id, count(*) FROM orders GROUP BY customer_id", result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_DistinctNotCoveredByGroupBy_IsKept() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT DISTINCT count(*) FROM orders GROUP BY customer_id");
+
+        assertFalse(result.isChanged());
+    }
+
+    @Test
+    public void rewrite_DistinctAliasShadowingGroupByColumn_IsKept() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT DISTINCT lower(name) AS name FROM users GROUP BY name");
+
+        assertFalse(result.isChanged());
+    }
+
+    @Test
+    public void rewrite_UnionInsideIn_BecomesUnionAll() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT id FROM users WHERE id IN (SELECT user_id FROM a UNION SELECT user_id FROM b)");
+
+        assertEquals("SELECT id FROM users WHERE id IN (SELECT user_id FROM a UNION ALL SELECT user_id FROM b)",
+                result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_TopLevelUnion_OnlyHints() {
+        SqlRewriteResult result = engine.rewrite("SELECT id FROM a UNION SELECT id FROM b");
+
+        assertFalse(result.isChanged());
+        assertEquals(1, result.getNotes().size());
+        assertFalse(result.getNotes().get(0).isApplied());
+    }
+
+    @Test
+    public void rewrite_SelectStarInDerivedTableAndExists_IsNarrowed() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT t.id, t.total FROM (SELECT * FROM orders WHERE total > 0) t "
+                        + "WHERE EXISTS (SELECT * FROM payments p WHERE p.order_id = t.id) ORDER BY t.total");
+
+        assertEquals("SELECT t.id, t.total FROM (SELECT id, total FROM orders WHERE total > 0) t "
+                + "WHERE EXISTS (SELECT 1 FROM payments p WHERE p.order_id = t.id) ORDER BY t.total",
+                result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_SelectStarWithAliasInWhere_IsKept() {
+        // В WHERE total — входной столбец производной таблицы, а не алиас SELECT
+        String sql = "SELECT o.price AS total FROM (SELECT * FROM items) o WHERE total > 100";
+
+        assertEquals(sql, engine.rewrite(sql).getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_SelectStarWithAliasInOrderBy_IsNarrowed() {
+        SqlRewriteResult result = engine.rewrite(
+                "SELECT o.price AS total FROM (SELECT * FROM items) o ORDER BY total");
+
+        assertEquals("SELECT o.price AS total FROM (SELECT price FROM items) o ORDER BY total",
+                result.getRewrittenSql());
+    }
+
+    @Test
+    public void rewrite_SelectStarReferencedByStar_IsKept() {
+        SqlRewriteResult result = engine.rewrite("SELECT * FROM (SELECT * FROM orders) t");
+
+        assertFalse(result.isChanged());
+        assertEquals("SELECT * FROM (SELECT * FROM orders) t", result.getRewrittenSql());
+    }
+
+    private boolean applied(SqlRewriteResult result, String ruleId) {
+        return result.getNotes().stream().anyMatch(note -> note.isApplied() && note.getRuleId().equals(ruleId));
+    }
+
+    private SqlRewriteResult rewrite(String sql, RewriteContext context) throws JSQLParserException {
+        return engine.rewrite(sql, CCJSqlParserUtil.parse(sql), context);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.backend.service.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.example.backend.exception.ApiException;
+
+public class HistorySearchServiceTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private final HistorySearchService historySearchService = new HistorySearchService(jdbcTemplate);
+
+    @Test
+    public void cursor_RoundTripKeepsExactRank() {
+        SearchCursor cursor = new SearchCursor((double) 0.0607927f, HistorySearchService.QUERY, 123456789L);
+
+        assertEquals(cursor, SearchCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    public void cursor_Garbage_BadRequest() {
+        ApiException e = assertThrows(ApiException.class, () -> SearchCursor.decode("not a cursor!"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    @Test
+    public void search_BlankQuery_BadRequest() {
+        assertThrows(ApiException.class, () -> historySearchService.search(1L, "  ", null, 20));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void sql_ShortQuery_NoSubstringMatch() {
+        String sql = HistorySearchService.sql(false, false);
+
+        assertFalse(sql.contains("ILIKE"));
+        assertFalse(sql.contains(":afterRank"));
+    }
+
+    @Test
+    public void sql_WithCursor_AddsKeysetCondition() {
+        String sql = HistorySearchService.sql(true, true);
+
+        assertTrue(sql.contains("m.content ILIKE :pattern"));
+        assertTrue(sql.contains("rank < :afterRank"));
+    }
+
+    @Test
+    public void escapeLike_WildcardsAreLiteral() {
+        assertEquals("order\\_items\\%", HistorySearchService.escapeLike("order_items%"));
+    }
+}
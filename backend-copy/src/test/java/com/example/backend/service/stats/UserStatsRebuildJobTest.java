@@ -0,0 +1,23 @@
+package com.example.backend.service.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class UserStatsRebuildJobTest {
+
+    @Test
+    public void chunks_CoverAllUserIdsWithoutOverlap() {
+        List<UserStatsRebuildJob.Chunk> chunks = UserStatsRebuildJob.chunks(1201, 500);
+
+        assertEquals(List.of(new UserStatsRebuildJob.Chunk(1, 500), new UserStatsRebuildJob.Chunk(501, 1000),
+                new UserStatsRebuildJob.Chunk(1001, 1201)), chunks);
+    }
+
+    @Test
+    public void chunks_FewUsers_SingleChunk() {
+        assertEquals(List.of(new UserStatsRebuildJob.Chunk(1, 3)), UserStatsRebuildJob.chunks(3, 500));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.backend.service.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.backend.model.dto.UserStatsDto;
+import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.model.entity.User;
+import com.example.backend.model.entity.UserOptimizationStats;
+import com.example.backend.model.entity.UserTopQuery;
+import com.example.backend.repository.UserStatsRepository;
+
+public class UserStatsServiceTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private final UserStatsRepository repository = mock(UserStatsRepository.class);
+    private UserStatsService userStatsService;
+
+    @BeforeEach
+    public void setUp() {
+        userStatsService = new UserStatsService(repository);
+        ReflectionTestUtils.setField(userStatsService, "topQueries", 10);
+    }
+
+    @Test
+    public void record_FasterQuery_CountedAndAddedToTop() {
+        userStatsService.record(query(7L, 120.0, 30.0));
+
+        verify(repository).increment(1L, 1, 1, 120.0, 30.0, CREATED_AT);
+        verify(repository).insertTopQuery(1L, 7L, "SELECT * FROM orders WHERE id = ?", 120.0, 30.0, 90.0,
+                CREATED_AT);
+        verify(repository).trimTopQueries(1L, 10);
+    }
+
+    @Test
+    public void record_SlowerQuery_MeasuredButNotImproved() {
+        userStatsService.record(query(7L, 30.0, 120.0));
+
+        verify(repository).increment(1L, 1, 0, 30.0, 120.0, CREATED_AT);
+        verify(repository, never()).insertTopQuery(anyLong(), anyLong(), any(), anyDouble(), anyDouble(), anyDouble(),
+                any());
+    }
+
+    @Test
+    public void record_SubMillisecondTimes_Measured() {
+        // Раньше время округлялось вниз до целых миллисекунд, и быстрые запросы выпадали из замеров
+        userStatsService.record(query(7L, 0.8, 0.3));
+
+        verify(repository).increment(1L, 1, 1, 0.8, 0.3, CREATED_AT);
+        verify(repository).insertTopQuery(eq(1L), eq(7L), any(), eq(0.8), eq(0.3), anyDouble(), eq(CREATED_AT));
+    }
+
+    @Test
+    public void record_NotMeasured_OnlyCounted() {
+        userStatsService.record(query(7L, null, -1.0));
+
+        verify(repository).increment(1L, 0, 0, 0.0, 0.0, CREATED_AT);
+        verify(repository, never()).trimTopQueries(anyLong(), anyInt());
+    }
+
+    @Test
+    public void record_WithoutUser_Ignored() {
+        SqlQuery sqlQuery = query(7L, 120.0, 30.0);
+        sqlQuery.setUser(null);
+
+        userStatsService.record(sqlQuery);
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    public void getUserStats_DerivesRateAndSavedTime() {
+        when(repository.findById(1L)).thenReturn(Optional.of(UserOptimizationStats.builder()
+                .userId(1L).optimizationCount(5).measuredCount(4).improvedCount(3)
+                .originalTimeMs(1000).optimizedTimeMs(400).lastOptimizedAt(CREATED_AT).build()));
+        when(repository.findTopQueries(eq(1L), any(Limit.class))).thenReturn(List.of(UserTopQuery.builder()
+                .sqlQueryId(7L).userId(1L).originalTimeMs(500).optimizedTimeMs(100).savedMs(400)
+                .createdAt(CREATED_AT).build()));
+
+        UserStatsDto stats = userStatsService.getUserStats(1L);
+
+        assertEquals(5, stats.getOptimizationCount());
+        assertEquals(0.75, stats.getSuccessRate());
+        assertEquals(600, stats.getTimeSavedMs());
+        assertEquals(1, stats.getTopQueries().size());
+        assertEquals(400, stats.getTopQueries().get(0).getSavedMs());
+        assertEquals(5.0, stats.getTopQueries().get(0).getSpeedup());
+    }
+
+    @Test
+    public void getUserStats_NoHistory_ReturnsZeros() {
+        when(repository.findById(1L)).thenReturn(Optional.empty());
+        when(repository.findTopQueries(eq(1L), any(Limit.class))).thenReturn(List.of());
+
+        UserStatsDto stats = userStatsService.getUserStats(1L);
+
+        assertEquals(0, stats.getOptimizationCount());
+        assertNull(stats.getSuccessRate());
+        assertEquals(List.of(), stats.getTopQueries());
+    }
+
+    private SqlQuery query(Long id, Double originalTimeMs, Double optimizedTimeMs) {
+        User user = new User();
+        user.setId(1L);
+        return SqlQuery.builder()
+                .id(id)
+                .user(user)
+                .normalizedQuery("SELECT * FROM orders WHERE id = ?")
+                .originalExecutionTimeMs(originalTimeMs)
+                .executionTimeMs(optimizedTimeMs)
+                .createdAt(CREATED_AT)
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.backend.service.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class BodyCodecTest {
+
+    @Test
+    public void encode_LlmResponse_RoundTripsCompressed() {
+        String response = "## Оптимизированный запрос\n```sql\nSELECT o.id, o.amount FROM orders o WHERE o.status = 'NEW'\n```\n"
+                .repeat(50);
+        byte[] raw = response.getBytes(StandardCharsets.UTF_8);
+
+        BodyCodec.Encoded encoded = BodyCodec.encode(raw, 6);
+
+        assertEquals(BodyCodec.DEFLATE, encoded.codec());
+        assertTrue(encoded.data().length < raw.length / 10);
+        assertEquals(response, BodyCodec.decode(encoded.codec(), encoded.data(), raw.length));
+    }
+
+    @Test
+    public void encode_Incompressible_StoredAsIs() {
+        byte[] raw = new byte[4096];
+        new Random(42).nextBytes(raw);
+
+        BodyCodec.Encoded encoded = BodyCodec.encode(raw, 6);
+
+        assertEquals(BodyCodec.NONE, encoded.codec());
+        assertArrayEquals(raw, encoded.data());
+    }
+
+    @Test
+    public void decode_Truncated_Throws() {
+        byte[] raw = "SELECT 1;\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+        BodyCodec.Encoded encoded = BodyCodec.encode(raw, 6);
+        byte[] truncated = Arrays.copyOf(encoded.data(), encoded.data().length / 2);
+
+        assertThrows(IllegalStateException.class, () -> BodyCodec.decode(BodyCodec.DEFLATE, truncated, raw.length));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.backend.service.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.backend.model.entity.ContentBlob;
+import com.example.backend.model.entity.Message;
+import com.example.backend.model.entity.SqlQuery;
+import com.example.backend.repository.ContentBlobRepository;
+
+public class ContentStoreTest {
+
+    private static final String RESPONSE = "```sql\nSELECT id FROM orders WHERE status = 'NEW'\n```\n".repeat(100);
+
+    private final ContentBlobRepository repository = mock(ContentBlobRepository.class);
+    private ContentStore contentStore;
+
+    @BeforeEach
+    public void setUp() {
+        contentStore = new ContentStore(repository);
+        ReflectionTestUtils.setField(contentStore, "minBytes", 1024);
+        ReflectionTestUtils.setField(contentStore, "level", 6);
+    }
+
+    @Test
+    public void compact_ShortMessage_StaysInline() {
+        Message message = Message.builder().content("SELECT 1").build();
+
+        contentStore.compact(message);
+
+        assertEquals("SELECT 1", message.getContent());
+        assertNull(message.getContentBlob());
+        verify(repository, never()).findByHash(any());
+    }
+
+    @Test
+    public void compact_LongMessage_StoredOnceAndReadBack() {
+        byte[] raw = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        BodyCodec.Encoded encoded = BodyCodec.encode(raw, 6);
+        ContentBlob stored = ContentBlob.builder().id(5L).codec(encoded.codec()).originalLength(raw.length)
+                .data(encoded.data()).build();
+        when(repository.findByHash(any())).thenReturn(Optional.empty()).thenReturn(Optional.of(stored));
+        Message message = Message.builder().content(RESPONSE).build();
+
+        contentStore.compact(message);
+
+        verify(repository).insertIfAbsent(any(), anyString(), anyInt(), any(), anyString());
+        assertSame(stored, message.getContentBlob());
+        assertEquals(RESPONSE, message.getContent());
+    }
+
+    @Test
+    public void compact_KnownOptimizedQuery_ReusesBlob() {
+        ContentBlob existing = ContentBlob.builder().id(5L).build();
+        when(repository.findByHash(any())).thenReturn(Optional.of(existing));
+        SqlQuery sqlQuery = SqlQuery.builder().optimizedQuery(RESPONSE).build();
+
+        contentStore.compact(sqlQuery);
+
+        verify(repository, never()).insertIfAbsent(any(), anyString(), anyInt(), any(), anyString());
+        assertSame(existing, sqlQuery.getOptimizedBlob());
+        // Текст запомнен при сохранении, блок не распаковывается
+        assertEquals(RESPONSE, sqlQuery.getOptimizedQuery());
+    }
+
+    @Test
+    public void getText_StoredBlob_DecompressesOnRead() {
+        byte[] raw = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        BodyCodec.Encoded encoded = BodyCodec.encode(raw, 6);
+        ContentBlob blob = ContentBlob.builder().id(5L).codec(encoded.codec()).originalLength(raw.length)
+                .data(encoded.data()).build();
+
+        assertEquals(RESPONSE, Message.builder().contentBlob(blob).build().getContent());
+    }
+}
@@ -16,6 +16,13 @@ export interface Chat {
     archived: boolean;
 }
 
+// Параметры оптимизации: сервер сам решает, SQL ли сообщение, и тогда отправляет его на оптимизацию
+export interface SendMessageOptions {
+    llmProvider?: string;
+    databaseConnectionId?: string;
+    mpp?: boolean;
+}
+
 const handleApiError = (error: any): never => {
     console.error('API Error:', error);
     if (error.response) {
@@ -92,9 +99,10 @@ export const chatApi = {
         }
     },
 
-    sendMessage: async (chatId: string, content: string, fromUser: boolean): Promise<Message> => {
+    sendMessage: async (chatId: string, content: string, fromUser: boolean,
+                        options: SendMessageOptions = {}): Promise<Message> => {
         try {
-            const payload = { content, fromUser };
+            const payload = { content, fromUser, ...options };
             console.log(`Sending message to /chats/${chatId}/messages:`, { chatId, payload });
             const response = await apiClient.post(`/chats/${chatId}/messages`, payload);
             return { ...response.data, id: String(response.data.id) };
@@ -1,6 +1,5 @@
 import apiClient from './client';
 import { Message } from './chat';
-import { getPromptTemplate } from '../lib/llmResponseParser';
 
 export interface SqlQueryRequest {
     chatId: string;
@@ -10,10 +9,21 @@ export interface SqlQueryRequest {
     isMPP: boolean;
 }
 
+// Результат оптимизации по полям; текст сообщения в чате сервер строит из него сам
+export interface OptimizationResult {
+    optimizedSql: string;
+    rationale: string;
+    estimatedGain: string;
+    risks: string[];
+    indexSuggestions: string[];
+}
+
 export interface SqlQueryResponse {
     id: string;
     originalQuery: string;
     optimizedQuery: string;
+    // Нет у запросов, сохраненных до структурированных ответов
+    result?: OptimizationResult;
     executionTimeMs?: number;
     createdAt: string;
     message: Message;
@@ -21,16 +31,12 @@ export interface SqlQueryResponse {
 
 export const sqlApi = {
     async optimizeQuery({ chatId, query, databaseConnectionId, llm, isMPP }: SqlQueryRequest) {
-        const hasConnection = !!databaseConnectionId;
-        
-        const promptTemplate = getPromptTemplate(isMPP, hasConnection);
-        
+        // Промпт и формат ответа выбирает сервер по isMPP и наличию подключения
         const response = await apiClient.post('/sql/optimize', {
             chatId,
             query,
             databaseConnectionId,
             llm,
-            promptTemplate,
             isMPP
         });
 
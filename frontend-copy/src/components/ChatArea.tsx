@@ -8,12 +8,10 @@ import LLMSelect from './LLMSelect';
 import { Prism as SyntaxHighlighter } from 'react-syntax-highlighter';
 import { vscDarkPlus } from 'react-syntax-highlighter/dist/esm/styles/prism';
 import { Message } from '../api/chat';
-import { sqlApi } from '../api/sql';
 import { connectionApi, DatabaseConnectionDto } from '../api/connection';
 import { chatApi } from '../api/chat';
 import { createWebSocketClient, disconnectWebSocket } from '../api/websocket';
 import { OptimizedSQLResponse } from './OptimizedSQLResponse';
-import { parseLLMResponse } from '../lib/llmResponseParser';
 import ReactMarkdown from 'react-markdown';
 import rehypeRaw from 'rehype-raw';
 import rehypeSanitize from 'rehype-sanitize';
@@ -60,7 +58,6 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
     const [error, setError] = useState('');
     const [connections, setConnections] = useState<DatabaseConnectionDto[]>([]);
     const [localMessages, setLocalMessages] = useState<Message[]>([]);
-    const [pendingMessageIds, setPendingMessageIds] = useState<string[]>([]);
     const [isMPP, setIsMPP] = useState(false);
     const processedMessageIds = React.useRef<Set<string>>(new Set());
     const wsClient = React.useRef<WebSocketClient | null>(null);
@@ -78,7 +75,6 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
     useEffect(() => {
         if (selectedChatId) {
             setLocalMessages([]);
-            setPendingMessageIds([]);
             processedMessageIds.current.clear();
             scrollToBottom();
         }
@@ -87,7 +83,6 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
     useEffect(() => {
         if (!selectedChatId) {
             setLocalMessages([]);
-            setPendingMessageIds([]);
             return;
         }
 
@@ -97,7 +92,6 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
                 const messages = await chatApi.getChatMessages(selectedChatId);
                 setLocalMessages(messages || []);
                 messages?.forEach(msg => processedMessageIds.current.add(msg.id));
-                setPendingMessageIds([]);
                 setTimeout(() => {
                     scrollToBottom();
                 }, 100);
@@ -132,10 +126,16 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
         fetchConnections();
     }, [selectedChatId]);
 
-    const isSQLQuery = useCallback((text: string) => {
-        const upperText = text.toUpperCase();
-        return upperText.includes('SELECT') && upperText.includes('FROM');
-    }, []);
+    // Сообщение может прийти и из топика, и в ответе на отправку: показываем его один раз
+    const appendMessage = useCallback((newMessage: Message) => {
+        if (processedMessageIds.current.has(newMessage.id)) return;
+
+        processedMessageIds.current.add(newMessage.id);
+        setLocalMessages(prev => [...prev, newMessage]);
+        setTimeout(() => {
+            scrollToBottom();
+        }, 100);
+    }, [scrollToBottom]);
 
     useEffect(() => {
         if (!selectedChatId) return;
@@ -152,21 +152,7 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
             const subscription = client.subscribe(`/topic/chat/${selectedChatId}`, (message) => {
                 try {
                     const newMessage: Message = JSON.parse(message.body);
-
-                    if (processedMessageIds.current.has(newMessage.id)) return;
-
-                    processedMessageIds.current.add(newMessage.id);
-
-                    if (isSQLQuery(newMessage.content) && pendingMessageIds.length > 0) {
-                        const tempId = pendingMessageIds[0];
-                        setPendingMessageIds(prev => prev.slice(1));
-                        setLocalMessages(prev => prev.filter(m => m.id !== tempId));
-                    }
-
-                    setLocalMessages(prev => [...prev, newMessage]);
-                    setTimeout(() => {
-                        scrollToBottom();
-                    }, 100);
+                    appendMessage({ ...newMessage, id: String(newMessage.id) });
                 } catch (err) {
                     console.error('Error processing message:', err);
                 }
@@ -191,7 +177,7 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
                 wsClient.current.subscription?.unsubscribe();
             }
         };
-    }, [selectedChatId, scrollToBottom, isSQLQuery]);
+    }, [selectedChatId, appendMessage]);
 
     const handleSendMessage = useCallback(async () => {
         if (!message.trim() || !selectedChatId) return;
@@ -202,37 +188,19 @@ const ChatArea: React.FC<ChatAreaProps> = memo(({
         setError('');
 
         try {
-            if (isSQLQuery(currentMessage)) {
-                const tempId = `temp_${Date.now()}`;
-                const tempMessage: Message = {
-                    id: tempId,
-                    chatId: selectedChatId,
-                    content: currentMessage,
-                    fromUser: true,
-                    createdAt: new Date().toISOString(),
-                };
-                setLocalMessages(prev => [...prev, tempMessage]);
-                setPendingMessageIds(prev => [...prev, tempId]);
-
-                await sqlApi.optimizeQuery({
-                    chatId: selectedChatId,
-                    query: currentMessage,
-                    databaseConnectionId: connections.length > 0 ? connections[0].id : undefined,
-                    llm: selectedLLM,
-                    isMPP: isMPP
-                });
-            } else {
-                await chatApi.sendMessage(selectedChatId, currentMessage, true);
-                await chatApi.sendMessage(selectedChatId, "Please submit SQL query for optimization", false);
-            }
+            // SQL от обычного текста отличает сервер; результат оптимизации придет в топик чата
+            const sentMessage = await chatApi.sendMessage(selectedChatId, currentMessage, true, {
+                llmProvider: selectedLLM,
+                databaseConnectionId: connections.length > 0 ? connections[0].id : undefined,
+                mpp: isMPP
+            });
+            appendMessage(sentMessage);
         } catch (err) {
             setError('Failed to send message: ' + (err instanceof Error ? err.message : 'Unknown error'));
-            setLocalMessages(prev => prev.filter(msg => !msg.id.startsWith('temp_')));
-            setPendingMessageIds([]);
         } finally {
             setLoading(false);
         }
-    }, [message, selectedChatId, connections, selectedLLM, isMPP]);
+    }, [message, selectedChatId, connections, selectedLLM, isMPP, appendMessage]);
 
     const handleKeyDown = useCallback((e: React.KeyboardEvent<HTMLInputElement | HTMLTextAreaElement>) => {
         if (e.key === 'Enter' && !e.shiftKey) {
@@ -33,6 +33,12 @@ const LLMSelect = ({ value, onValueChange }: { value: string; onValueChange: (va
                                 <CheckIcon />
                             </Select.ItemIndicator>
                         </Select.Item>
+                        <Select.Item value="Rules" className="px-4 py-2 hover:bg-primary cursor-pointer relative">
+                            <Select.ItemText>Rules</Select.ItemText>
+                            <Select.ItemIndicator className="absolute right-2">
+                                <CheckIcon />
+                            </Select.ItemIndicator>
+                        </Select.Item>
                     </Select.Viewport>
                     <Select.ScrollDownButton />
                 </Select.Content>